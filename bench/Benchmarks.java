@@ -0,0 +1,301 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import ast.Backend;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import ast.compiler.BytecodeCompiler;
+import ast.nodes.specialized.Specializer;
+import ast.typesystem.TypeException;
+import environment.Environment;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Micro benchmarks for the MFL evaluator. Each benchmark parses a generated
+ * program, warms it up and reports the steady-state time per evaluation.
+ * Run all of them with {@code ant bench}, or a single one with
+ * {@code ant bench -Dbench=<name>}.
+ */
+public class Benchmarks
+{
+    private static final int WARMUP = 2000;     // Evaluations before timing.
+    private static final long WARMUP_NANOS = 2_000_000_000L; // And time.
+    private static final int ITERATIONS = 5000; // Timed evaluations.
+
+    /**
+     * Builds an arithmetic heavy program: a few let bound integers and a
+     * long chain of arithmetic and comparisons over them.
+     * 
+     * @param terms the number of terms in the chain.
+     * @return the program text.
+     */
+    private static String arithProgram(int terms)
+    {
+        return "let a := 7 in let b := 3 in let c := 11 in " + arithChain(terms)
+                + " > c * c;";
+    }
+
+    /**
+     * Builds a chain of integer arithmetic over a, b and c.
+     * 
+     * @param terms the number of terms in the chain.
+     * @return the expression text.
+     */
+    private static String arithChain(int terms)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < terms; i++)
+        {
+            if (i > 0)
+                sb.append(" + ");
+            switch (i % 4)
+            {
+            case 0: sb.append("a * b - c"); break;
+            case 1: sb.append("(c mod b) * a"); break;
+            case 2: sb.append("c / b + ").append(i); break;
+            default: sb.append("a - b * 2"); break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds a wide program: independent vals, each an arithmetic chain,
+     * and their sum.
+     * 
+     * @param vals the number of vals.
+     * @param terms the number of terms in each chain.
+     * @return the program text.
+     */
+    private static String wideProgram(int vals, int terms)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < vals; i++)
+            sb.append("val v").append(i).append(" := let a := 7 in let b := 3 in ")
+                    .append("let c := ").append(i + 1).append(" in ")
+                    .append(arithChain(terms)).append(";\n");
+        for (int i = 0; i < vals; i++)
+            sb.append(i > 0 ? " + " : "").append("v").append(i);
+        sb.append(";");
+        return sb.toString();
+    }
+
+    /**
+     * Builds a guard heavy program: a disjunction of guarded clauses, each an
+     * {@code and} of a cheap guard and an arithmetic chain that is false.
+     * 
+     * @param clauses the number of guarded clauses.
+     * @param guard the guard, which decides whether the chains are evaluated.
+     * @return the program text.
+     */
+    private static String guardProgram(int clauses, String guard)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("let a := 7 in let b := 3 in let c := 11 in ");
+        for (int i = 0; i < clauses; i++)
+        {
+            sb.append("(").append(guard).append(" and ");
+            sb.append("a * b - c + (c mod b) * a + c / b + ").append(i);
+            sb.append(" > c * c) or ");
+        }
+        sb.append("a > b;");
+        return sb.toString();
+    }
+
+    /**
+     * Parses a program, optionally type checking it.
+     * 
+     * @param src the program.
+     * @param typed true if the program should be type checked.
+     * @param backend the backend evaluating the tree.
+     * @return the syntax tree.
+     */
+    private static SyntaxTree parse(String src, boolean typed, Backend backend)
+            throws ParseException, TypeException
+    {
+        SyntaxTree ast = new MFLParser(src).parse();
+        ast.setBackend(backend);
+        if (typed)
+            ast.getType();
+        return ast;
+    }
+
+    /**
+     * Evaluates the tree repeatedly and reports the mean time per evaluation.
+     * 
+     * @param label the label for the report.
+     * @param ast the tree to evaluate.
+     * @return the mean time per evaluation in nanoseconds.
+     */
+    private static double measure(String label, SyntaxTree ast)
+            throws EvaluationException
+    {
+        return measure(label, ast, false);
+    }
+
+    /**
+     * Evaluates the tree repeatedly and reports the mean time per evaluation.
+     * 
+     * @param label the label for the report.
+     * @param ast the tree to evaluate.
+     * @param fresh true to evaluate in a new environment each time, as a
+     *              program binding vals cannot bind them twice.
+     * @return the mean time per evaluation in nanoseconds.
+     */
+    private static double measure(String label, SyntaxTree ast, boolean fresh)
+            throws EvaluationException
+    {
+        Object res = null;
+        long warm = System.nanoTime() + WARMUP_NANOS;
+        for (int i = 0; i < WARMUP || System.nanoTime() < warm; i++)
+        {
+            if (fresh)
+                ast.setEnvironment(new Environment());
+            res = ast.evaluate();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            if (fresh)
+                ast.setEnvironment(new Environment());
+            res = ast.evaluate();
+        }
+        double ns = (System.nanoTime() - start) / (double) ITERATIONS;
+
+        System.out.printf("  %-40s %12.1f ns/eval  (result %s)%n", label, ns,
+                res);
+        return ns;
+    }
+
+    /**
+     * Compares generic operation nodes against nodes that specialize
+     * themselves on the observed operand types.
+     */
+    public static void specialization() throws Exception
+    {
+        String src = arithProgram(200);
+        System.out.println("specialization: 200 term arithmetic chain");
+
+        Specializer.setEnabled(false);
+        double generic = measure("generic nodes", parse(src, false, Backend.TREE));
+        double genericTyped = measure("generic nodes, type checked",
+                parse(src, true, Backend.TREE));
+
+        Specializer.setEnabled(true);
+        double special = measure("self-specializing nodes", parse(src, false, Backend.TREE));
+        double specialTyped = measure("self-specializing, type checked",
+                parse(src, true, Backend.TREE));
+
+        System.out.printf("  speedup untyped %.2fx, typed %.2fx%n",
+                generic / special, genericTyped / specialTyped);
+    }
+
+    /**
+     * Compares the tree walking evaluator against the compiling backends.
+     */
+    public static void backends() throws Exception
+    {
+        String src = arithProgram(200);
+        System.out.println("backends: 200 term arithmetic chain");
+
+        double tree = measure("tree walking, type checked",
+                parse(src, true, Backend.TREE));
+        double closure = measure("closures, type checked",
+                parse(src, true, Backend.CLOSURE));
+        measure("closures, untyped", parse(src, false, Backend.CLOSURE));
+        double vm = measure("register vm, type checked",
+                parse(src, true, Backend.VM));
+        measure("register vm, untyped", parse(src, false, Backend.VM));
+        double jvm = measure("jvm bytecode, type checked",
+                parse(src, true, Backend.JVM));
+        measure("jvm bytecode, untyped", parse(src, false, Backend.JVM));
+
+        System.out.printf(
+                "  speedup over tree: closure %.2fx, vm %.2fx, jvm %.2fx%n",
+                tree / closure, tree / vm, tree / jvm);
+
+        SyntaxTree ast = parse(src, true, Backend.VM);
+        System.out.printf("  vm bytecode size %d bytes%n",
+                BytecodeCompiler.compile(ast.getRootNode()).size());
+    }
+
+    /**
+     * Compares guard heavy programs whose guards skip the right operands of
+     * {@code and} against the same programs with guards that do not.
+     */
+    public static void logical() throws Exception
+    {
+        String skipped = guardProgram(100, "b > a");
+        String evaluated = guardProgram(100, "a > b");
+        System.out.println("logical: 100 guarded clauses");
+
+        for (Backend b : new Backend[] { Backend.TREE, Backend.CLOSURE })
+        {
+            double skip = measure(b.name().toLowerCase() + ", guards false",
+                    parse(skipped, true, b));
+            double eval = measure(b.name().toLowerCase() + ", guards true",
+                    parse(evaluated, true, b));
+            System.out.printf("  %s: short-circuiting saves %.2fx%n",
+                    b.name().toLowerCase(), eval / skip);
+        }
+    }
+
+    /**
+     * Compares evaluating the vals of a wide program in order against
+     * evaluating them in parallel.
+     */
+    public static void vals() throws Exception
+    {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        String src = wideProgram(32, 100);
+        System.out.println("vals: 32 independent vals of 100 terms, " + cpus
+                + " cpus");
+
+        for (Backend b : new Backend[] { Backend.TREE, Backend.CLOSURE })
+        {
+            SyntaxTree ast = parse(src, true, b);
+            double seq = measure(b.name().toLowerCase() + ", in order", ast,
+                    true);
+            ast = parse(src, true, b);
+            ast.setParallel(true);
+            double par = measure(b.name().toLowerCase() + ", in parallel", ast,
+                    true);
+            System.out.printf("  %s: parallel speedup %.2fx%n",
+                    b.name().toLowerCase(), seq / par);
+        }
+    }
+
+    /**
+     * Runs the benchmarks named on the command line, or all of them.
+     * 
+     * @param args the names of the benchmarks to run.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String which = args.length > 0 ? args[0] : "all";
+
+        if (which.equals("all") || which.equals("specialization"))
+            specialization();
+        if (which.equals("all") || which.equals("backends"))
+            backends();
+        if (which.equals("all") || which.equals("logical"))
+            logical();
+        if (which.equals("all") || which.equals("vals"))
+            vals();
+    }
+}
@@ -19,7 +19,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Scanner;
 
+import ast.Backend;
+import ast.CostModel;
 import ast.EvaluationException;
+import ast.MemoCache;
 import ast.SyntaxTree;
 import ast.typesystem.TypeException;
 import environment.Environment;
@@ -43,6 +46,14 @@ public class Interpreter
     private static boolean doFile = false;       // Run program in the file.
     private static String fileName = null;       // File containing the program.
     private static boolean displayAST = false;   // Display the AST resulting from parsing.
+    private static Backend backend = Backend.getDefault(); // How to evaluate.
+    private static boolean lazy = false;         // Evaluate bindings lazily.
+    private static boolean parallel = false;     // Evaluate independent vals in parallel.
+    private static int forkThreshold = -1;       // The fork threshold, if one was given.
+    private static boolean doCse = false;        // Share repeated subexpressions.
+    private static boolean resultOnly = false;   // Skip statements the result does not use.
+    private static boolean assumeTotal = false;  // Skip them even if they may fail.
+    private static MemoCache memo = null;        // Values of statements seen before.
 
     /**
      * Show the license message to the screen.
@@ -62,13 +73,21 @@ public class Interpreter
     public static void usage()
     {
         System.err.println("usage:");
-        System.err.println("   mfl [--trace] [--ast] --file <filename>");
-        System.err.println("   mfl [--trace] [--ast]");
+        System.err.println("   mfl [--trace] [--ast] [--backend <name>] [--lazy] [--parallel [--fork-threshold <n>]] [--cse] [--memo] [--result-only [--assume-total]] --file <filename>");
+        System.err.println("   mfl [--trace] [--ast] [--backend <name>] [--lazy] [--parallel [--fork-threshold <n>]] [--cse] [--memo]");
         System.err.println("   mfl --help");
         System.err.println("options:");
         System.err.println("--trace, -t \t\tTurn on interpreter tracing.");
         System.err.println("--file, -f \t\tInterpret the file.");
         System.err.println("--ast,-a \t\tDisplay the abstract syntax tree.");
+        System.err.println("--backend, -b \t\tEvaluate with the named backend: closure (default), vm, jvm or tree.");
+        System.err.println("--lazy, -l \t\tEvaluate let and val bindings only when used.");
+        System.err.println("--parallel, -p \t\tEvaluate independent vals, wide lists and costly operands in parallel.");
+        System.err.println("--fork-threshold, -k \tWith --parallel, fork operands only when both cost at least n.");
+        System.err.println("--cse, -c \t\tEvaluate repeated subexpressions once.");
+        System.err.println("--memo, -m \t\tCache the values of statements and reuse them.");
+        System.err.println("--result-only, -r \tSkip vals and statements the result does not use.");
+        System.err.println("--assume-total, -T \tWith --result-only, skip them even if they may fail.");
         System.err.println("--help, -h \t\tDisplay this message");
         System.exit(1);
     }
@@ -115,15 +134,25 @@ public class Interpreter
                 
                 if (displayAST)
                     ast.printTree();
+                ast.setBackend(backend);
+                ast.setLazy(lazy);
+                ast.setParallel(parallel);
+                ast.setCache(memo);
+                noteDeep(ast);
 
+                // The line works on copies, so a line that fails leaves the
+                // environments as they were. Copies are constant time.
                 if (env != null)
-                    ast.setEnvironment(env);
+                    ast.setEnvironment(env.copy());
                     
                 if (tenv != null)
-                    ast.setTypeEnvironment(tenv);
+                    ast.setTypeEnvironment(tenv.copy());
                 try
                 {
                     String type = ast.getType();
+                    ast.optimize();
+                    if (doCse)
+                        eliminate(ast);
                     Object res = ast.evaluate();
                     System.out.println(res + " : " + type);
 
@@ -145,6 +174,8 @@ public class Interpreter
                 exit = true;
         }
         scan.close();
+        if (memo != null)
+            System.err.println("memo: " + memo);
     }
 
     /**
@@ -173,13 +204,26 @@ public class Interpreter
            
             if (displayAST)
                 ast.printTree();
+            ast.setBackend(backend);
+            ast.setLazy(lazy);
+            ast.setParallel(parallel);
+            ast.setCache(memo);
+            noteDeep(ast);
 
             try
             {
                 if (!ast.typeCheck())
                     System.exit(1);
+                if (resultOnly)
+                    System.err.println("result-only: skipped "
+                            + ast.eliminateDeadVals(assumeTotal)
+                            + " statements");
+                if (doCse)
+                    eliminate(ast);
                 Object res = ast.evaluate();
                 System.out.println(res + " : " + ast.getType());
+                if (memo != null)
+                    System.err.println("memo: " + memo);
             }
             catch (EvaluationException ex)
             {
@@ -199,6 +243,36 @@ public class Interpreter
         }
     }
 
+    /**
+     * Eliminates the common subexpressions of a type checked tree and
+     * reports how many nodes it saved.
+     * 
+     * @param ast the tree to optimize.
+     */
+    private static void eliminate(SyntaxTree ast)
+    {
+        int eliminated = ast.eliminateCommonSubexpressions();
+        System.err.println("cse: eliminated " + eliminated + " nodes");
+    }
+
+    /**
+     * Notes the statements too deep to walk recursively, which are
+     * evaluated with a stack of their own whatever the options, when the
+     * options ask for something they do not get.
+     * 
+     * @param ast the tree to evaluate.
+     */
+    private static void noteDeep(SyntaxTree ast)
+    {
+        String ignored = (backend != Backend.TREE ? " --backend "
+                + backend.name().toLowerCase() : "")
+                + (parallel ? " --parallel" : "") + (doCse ? " --cse" : "");
+        int deep = ast.getDeepStatements();
+        if (deep > 0 && !ignored.isEmpty())
+            System.err.println("deep: " + deep + " statements walked with a"
+                    + " stack, ignoring" + ignored);
+    }
+
     /**
      * Process the command line arguments.
      * 
@@ -208,17 +282,25 @@ public class Interpreter
     {
         OptionParser parser;
 
-        LongOption[] opts = new LongOption[4];
+        LongOption[] opts = new LongOption[12];
         opts[0] = new LongOption("help", false, 'h');
         opts[1] = new LongOption("file", true, 'f');
         opts[2] = new LongOption("trace", false, 't');
         opts[3] = new LongOption("ast", false, 'a');
+        opts[4] = new LongOption("backend", true, 'b');
+        opts[5] = new LongOption("lazy", false, 'l');
+        opts[6] = new LongOption("cse", false, 'c');
+        opts[7] = new LongOption("result-only", false, 'r');
+        opts[8] = new LongOption("assume-total", false, 'T');
+        opts[9] = new LongOption("parallel", false, 'p');
+        opts[10] = new LongOption("memo", false, 'm');
+        opts[11] = new LongOption("fork-threshold", true, 'k');
 
         Tuple<Character, String> currOpt;
 
         parser = new OptionParser(args);
         parser.setLongOpts(opts);
-        parser.setOptString("hf:ta");
+        parser.setOptString("hf:tab:lcrTpmk:");
 
         while (parser.getOptIdx() != args.length)
         {
@@ -239,6 +321,41 @@ public class Interpreter
             case 'a':
                 displayAST = true;
                 break;
+            case 'b':
+                backend = Backend.fromName(currOpt.getSecond());
+                if (backend == null)
+                    usage();
+                break;
+            case 'l':
+                lazy = true;
+                break;
+            case 'c':
+                doCse = true;
+                break;
+            case 'r':
+                resultOnly = true;
+                break;
+            case 'T':
+                assumeTotal = true;
+                break;
+            case 'p':
+                parallel = true;
+                break;
+            case 'm':
+                memo = new MemoCache();
+                break;
+            case 'k':
+                try
+                {
+                    forkThreshold = Integer.parseInt(currOpt.getSecond());
+                }
+                catch (NumberFormatException ex)
+                {
+                    usage();
+                }
+                if (forkThreshold < 0)
+                    usage();
+                break;
             case '?':
                 usage();
                 break;
@@ -246,8 +363,15 @@ public class Interpreter
         }
 
         // Verify the options are not conflicting.
-        if (doFile && doHelp || doTracing && doHelp || displayAST && doHelp)
+        if (doFile && doHelp || doTracing && doHelp || displayAST && doHelp
+                || lazy && doHelp || parallel && doHelp || doCse && doHelp
+                || memo != null && doHelp
+                || resultOnly && !doFile || assumeTotal && !resultOnly
+                || forkThreshold >= 0 && !parallel)
             usage();
+
+        if (forkThreshold >= 0)
+            CostModel.setForkThreshold(forkThreshold);
     }
 
     /**
@@ -259,7 +383,7 @@ public class Interpreter
     public static void main(String[] args)
     {
         // Determine if we are looking at file or command line.
-        if (args.length > 4)
+        if (args.length > 14)
             usage();
 
         // Determine what the user requested.
@@ -0,0 +1,162 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.List;
+
+import lexer.TokenType;
+
+/**
+ * The loops behind {@code sum}, {@code prod}, {@code min} and {@code max},
+ * shared by the tree walker and the compiled backends.
+ * <p>
+ * A list of only integers or only reals is folded over the primitive array
+ * its {@link ListValue} keeps, in a loop the JIT compiler unrolls and, for
+ * integers, vectorizes. Reals are added and multiplied from left to right,
+ * so the result is that of the chain {@code x1 + x2 + ... + xn}. Any other
+ * list is folded element by element, as the arithmetic operators would:
+ * integers stay integers until a real is met.
+ * </p>
+ */
+public final class Aggregates
+{
+    private Aggregates() {}
+
+    /**
+     * Folds a list.
+     *
+     * @param op {@link TokenType#SUM}, {@link TokenType#PROD},
+     *           {@link TokenType#MIN} or {@link TokenType#MAX}.
+     * @param list the list.
+     * @param real true if the list is known to hold reals, which decides
+     *             the sum and product of an empty list.
+     * @return the result, or null if the list is empty and has no least or
+     *         greatest element, or holds something other than a number.
+     */
+    public static Object fold(TokenType op, List<?> list, boolean real)
+    {
+        if (list.isEmpty())
+        {
+            if (op == TokenType.SUM)
+                return real ? (Object) 0.0 : (Object) 0;
+            if (op == TokenType.PROD)
+                return real ? (Object) 1.0 : (Object) 1;
+            return null;
+        }
+
+        if (list instanceof ListValue)
+        {
+            int[] ints = ((ListValue) list).ints();
+            if (ints != null)
+                return fold(op, ints);
+            double[] reals = ((ListValue) list).reals();
+            if (reals != null)
+                return fold(op, reals);
+        }
+        return foldBoxed(op, list);
+    }
+
+    private static int fold(TokenType op, int[] a)
+    {
+        int acc = a[0];
+        switch (op)
+        {
+        case SUM:
+            for (int i = 1; i < a.length; i++)
+                acc += a[i];
+            break;
+        case PROD:
+            for (int i = 1; i < a.length; i++)
+                acc *= a[i];
+            break;
+        case MIN:
+            for (int i = 1; i < a.length; i++)
+                acc = Math.min(acc, a[i]);
+            break;
+        default:
+            for (int i = 1; i < a.length; i++)
+                acc = Math.max(acc, a[i]);
+            break;
+        }
+        return acc;
+    }
+
+    private static double fold(TokenType op, double[] a)
+    {
+        double acc = a[0];
+        switch (op)
+        {
+        case SUM:
+            for (int i = 1; i < a.length; i++)
+                acc += a[i];
+            break;
+        case PROD:
+            for (int i = 1; i < a.length; i++)
+                acc *= a[i];
+            break;
+        case MIN:
+            for (int i = 1; i < a.length; i++)
+                acc = Math.min(acc, a[i]);
+            break;
+        default:
+            for (int i = 1; i < a.length; i++)
+                acc = Math.max(acc, a[i]);
+            break;
+        }
+        return acc;
+    }
+
+    /**
+     * Folds a list whose elements are not all of one numeric type.
+     */
+    private static Object foldBoxed(TokenType op, List<?> list)
+    {
+        Object acc = null;
+        for (Object e : list)
+        {
+            if (!(e instanceof Integer || e instanceof Double))
+                return null;
+            acc = acc == null ? e : combine(op, acc, e);
+        }
+        return acc;
+    }
+
+    private static Object combine(TokenType op, Object a, Object b)
+    {
+        if (a instanceof Integer && b instanceof Integer)
+        {
+            int x = (Integer) a;
+            int y = (Integer) b;
+            switch (op)
+            {
+            case SUM:  return x + y;
+            case PROD: return x * y;
+            case MIN:  return Math.min(x, y);
+            default:   return Math.max(x, y);
+            }
+        }
+        double x = ((Number) a).doubleValue();
+        double y = ((Number) b).doubleValue();
+        switch (op)
+        {
+        case SUM:  return x + y;
+        case PROD: return x * y;
+        case MIN:  return Math.min(x, y);
+        default:   return Math.max(x, y);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+/**
+ * The ways a syntax tree can be evaluated.
+ */
+public enum Backend
+{
+    /**
+     * Walk the tree, calling {@code evaluate} on each node. This is the
+     * reference implementation, kept for debugging and differential testing.
+     */
+    TREE,
+
+    /**
+     * Compile the tree once into a tree of closures and run those.
+     */
+    CLOSURE,
+
+    /**
+     * Compile the tree into bytecode for a register machine and run that.
+     */
+    VM,
+
+    /**
+     * Compile the tree into a JVM class and run that. Trees too large for
+     * a single JVM method are compiled into closures instead.
+     */
+    JVM;
+
+    /**
+     * Gets the backend selected by the {@code mfl.backend} system property,
+     * defaulting to {@link #CLOSURE}.
+     * 
+     * @return the default backend.
+     */
+    public static Backend getDefault()
+    {
+        Backend b = fromName(System.getProperty("mfl.backend", "closure"));
+        return b == null ? CLOSURE : b;
+    }
+
+    /**
+     * Looks up a backend by its (case insensitive) name.
+     * 
+     * @param name the name of the backend.
+     * @return the backend, or null if there is no backend with that name.
+     */
+    public static Backend fromName(String name)
+    {
+        for (Backend b : values())
+            if (b.name().equalsIgnoreCase(name))
+                return b;
+        return null;
+    }
+}
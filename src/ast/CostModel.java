@@ -0,0 +1,199 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayDeque;
+
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.ListNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import lexer.TokenType;
+
+/**
+ * A static estimate of the cost of evaluating a subtree, used to decide
+ * what is worth evaluating in parallel.
+ * <p>
+ * Every node costs one, plus the cost of its children. Building a list
+ * literal costs one more for each element. Operations that copy a list,
+ * {@code ++} and {@code sort}, cost one more for each element copied, and
+ * {@code elem} and aggregates such as {@code sum} one more for each element
+ * read: the length of a list literal, or {@link #COPY_COST} for a list
+ * whose length is not known. Slices such as {@code tl} and {@code take}
+ * share the elements of their list, so cost no more.
+ * </p>
+ * <p>
+ * The cost is stored in the nodes, so {@code --ast} shows it, and
+ * estimated again whenever a tree gets a new root.
+ * </p>
+ */
+public final class CostModel
+{
+    /** The default fork threshold. */
+    public static final int DEFAULT_FORK_THRESHOLD = 1024;
+
+    /** The cost of copying a list whose length is not known. */
+    public static final int COPY_COST = 32;
+
+    private static volatile int forkThreshold = DEFAULT_FORK_THRESHOLD;
+
+    private CostModel() {}
+
+    /**
+     * Gets the estimated cost of evaluating a subtree, computing it the
+     * first time.
+     *
+     * @param node the root of the subtree.
+     * @return its cost.
+     */
+    public static int cost(SyntaxNode node)
+    {
+        if (node.getCost() < 0)
+            fill(node);
+        return node.getCost();
+    }
+
+    /**
+     * Estimates the cost of evaluating every node of a subtree again, for a
+     * tree whose nodes may have been rewritten since they were estimated.
+     *
+     * @param node the root of the subtree.
+     * @return its cost.
+     */
+    public static int estimate(SyntaxNode node)
+    {
+        ArrayDeque<SyntaxNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty())
+        {
+            SyntaxNode n = stack.pop();
+            n.setCost(-1);
+            for (SyntaxNode child : n.children())
+                stack.push(child);
+        }
+        fill(node);
+        return node.getCost();
+    }
+
+    /**
+     * Estimates the nodes of a subtree that have no estimate, children
+     * first. The tree is walked with a stack of its own, so it may be as
+     * deep as the heap allows.
+     */
+    private static void fill(SyntaxNode root)
+    {
+        ArrayDeque<SyntaxNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty())
+        {
+            SyntaxNode node = stack.peek();
+            long cost = 1;
+            boolean ready = true;
+            for (SyntaxNode child : node.children())
+            {
+                if (child.getCost() < 0)
+                {
+                    stack.push(child);
+                    ready = false;
+                }
+                cost += child.getCost();
+            }
+            if (!ready)
+                continue;
+            stack.pop();
+
+            if (node instanceof ListNode)
+                cost += ((ListNode) node).getElements().size();
+            else if (node instanceof BinOpNode
+                    && ((BinOpNode) node).getOp() == TokenType.CONCAT)
+                cost += copied(((BinOpNode) node).getLeftTerm())
+                        + copied(((BinOpNode) node).getRightTerm());
+            else if (node instanceof AggregateNode)
+                cost += copied(((AggregateNode) node).getExpr());
+            else if (node instanceof SortNode)
+                cost += copied(((SortNode) node).getExpr());
+            else if (node instanceof ElemNode)
+                cost += copied(((ElemNode) node).getList());
+            node.setCost((int) Math.min(cost, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Estimates the length of a list that is copied.
+     */
+    private static int copied(SyntaxNode list)
+    {
+        if (list instanceof ListNode)
+            return ((ListNode) list).getElements().size();
+        return COPY_COST;
+    }
+
+    /**
+     * Determines if the operands of a binary operation are costly enough
+     * to evaluate in parallel: both must cost at least the fork threshold.
+     *
+     * @param node a node.
+     * @return true if {@code node} is an arithmetic or relational operation
+     *         whose left operand should be forked.
+     */
+    public static boolean forksOperands(SyntaxNode node)
+    {
+        SyntaxNode left;
+        SyntaxNode right;
+        if (node instanceof BinOpNode)
+        {
+            left = ((BinOpNode) node).getLeftTerm();
+            right = ((BinOpNode) node).getRightTerm();
+        }
+        else if (node instanceof RelOpNode)
+        {
+            left = ((RelOpNode) node).getLeftTerm();
+            right = ((RelOpNode) node).getRightTerm();
+        }
+        else
+            return false;
+
+        int threshold = forkThreshold;
+        return cost(left) >= threshold && cost(right) >= threshold;
+    }
+
+    /**
+     * Sets the cost both operands of an operation need for the left one to
+     * be forked. Trees already compiled keep the threshold they were
+     * compiled with.
+     *
+     * @param threshold the fork threshold.
+     */
+    public static void setForkThreshold(int threshold)
+    {
+        forkThreshold = threshold;
+    }
+
+    /**
+     * Gets the cost both operands of an operation need for the left one to
+     * be forked.
+     *
+     * @return the fork threshold.
+     */
+    public static int getForkThreshold()
+    {
+        return forkThreshold;
+    }
+}
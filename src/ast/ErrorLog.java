@@ -0,0 +1,73 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where evaluation errors are reported. Errors are printed as they are
+ * found, unless the thread reporting them is holding them back: a
+ * statement evaluated in parallel holds its errors until the statements
+ * before it have reported theirs, so the output is the same as when the
+ * program runs in order. Holding nests: a thread holding errors for one
+ * piece of work may hold them for a smaller piece within it.
+ */
+public final class ErrorLog
+{
+    private static final ThreadLocal<ArrayDeque<List<String>>> HELD =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ErrorLog() {}
+
+    /**
+     * Reports an error message.
+     *
+     * @param msg the message.
+     */
+    public static void report(String msg)
+    {
+        List<String> held = HELD.get().peek();
+        if (held != null)
+            held.add(msg);
+        else
+            System.out.println(msg);
+    }
+
+    /**
+     * Holds back the errors the current thread reports until
+     * {@link #release()} is called.
+     */
+    public static void hold()
+    {
+        HELD.get().push(new ArrayList<>());
+    }
+
+    /**
+     * Stops holding back errors, returning to holding them for the
+     * enclosing piece of work, if any.
+     *
+     * @return the errors held back since the matching {@link #hold()}, in
+     *         order.
+     */
+    public static List<String> release()
+    {
+        List<String> held = HELD.get().poll();
+        return held != null ? held : List.of();
+    }
+}
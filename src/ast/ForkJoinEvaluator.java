@@ -0,0 +1,246 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ast.nodes.ListNode;
+import ast.nodes.SyntaxNode;
+import environment.Environment;
+
+/**
+ * Evaluates costly parts of a tree in parallel: the elements of wide list
+ * literals, and the operands of arithmetic and relational operations when
+ * the {@link CostModel} finds both costly. The elements of a list are split
+ * into ranges evaluated as fork-join tasks, each storing its values in
+ * place in an array the size of the list; the operands of an operation are
+ * two ranges of one.
+ * <p>
+ * Each range is evaluated in order, in its own copy of the environment, so
+ * the lets in its elements have a frame of their own. Errors are held back
+ * and reported for the first failing element in source order only, so a
+ * list fails exactly as it does when its elements are evaluated in order.
+ * Ranges after an element known to fail are not evaluated.
+ * </p>
+ */
+public final class ForkJoinEvaluator
+{
+    /** The fewest elements a list literal needs to be forked. */
+    public static final int MIN_ELEMENTS = 256;
+
+    /** The least cost the list needs, elements and all. */
+    public static final int MIN_COST = 4096;
+
+    private static final int MIN_RANGE = 32;   // The fewest elements a task gets.
+
+    /**
+     * Evaluates the element of a list at an index.
+     */
+    @FunctionalInterface
+    public interface Element
+    {
+        /**
+         * Evaluates an element.
+         *
+         * @param index the index of the element.
+         * @param env the environment to evaluate it in.
+         * @return its value.
+         * @throws EvaluationException if the element fails to evaluate.
+         */
+        Object evaluate(int index, Environment env) throws EvaluationException;
+    }
+
+    private ForkJoinEvaluator() {}
+
+    /**
+     * Determines if a list literal is wide and costly enough for forking its
+     * elements to pay off.
+     *
+     * @param node a list literal.
+     * @return true if its elements should be evaluated in parallel.
+     */
+    public static boolean isWide(ListNode node)
+    {
+        return node.getElements().size() >= MIN_ELEMENTS
+                && CostModel.cost(node) >= MIN_COST;
+    }
+
+    /**
+     * Determines if a tree has a list literal wide enough to fork, or an
+     * operation whose operands should be forked.
+     *
+     * @param node the root of the tree.
+     * @return true if part of the tree should be evaluated in parallel.
+     */
+    public static boolean hasForks(SyntaxNode node)
+    {
+        if (node instanceof ListNode && isWide((ListNode) node))
+            return true;
+        if (CostModel.forksOperands(node))
+            return true;
+        for (SyntaxNode child : node.children())
+            if (hasForks(child))
+                return true;
+        return false;
+    }
+
+    /**
+     * Evaluates the elements of a list in parallel.
+     *
+     * @param size the number of elements.
+     * @param elem evaluates an element.
+     * @param env the environment to evaluate them in.
+     * @return the list of their values, in order.
+     * @throws EvaluationException if an element fails.
+     */
+    public static ListValue evaluate(int size, Element elem,
+            Environment env) throws EvaluationException
+    {
+        int range = Math.max(MIN_RANGE,
+                size / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        return new ListValue(Arrays.asList(run(size, elem, env, range)));
+    }
+
+    /**
+     * Evaluates the two operands of an operation in parallel.
+     *
+     * @param operand evaluates the left operand at index 0, and the right
+     *                at index 1.
+     * @param env the environment to evaluate them in.
+     * @return the values of the operands, left first.
+     * @throws EvaluationException if an operand fails.
+     */
+    public static Object[] operands(Element operand, Environment env)
+            throws EvaluationException
+    {
+        return run(2, operand, env, 1);
+    }
+
+    /**
+     * Evaluates elements in ranges of at most {@code range}, reporting the
+     * errors of the first that fails.
+     */
+    private static Object[] run(int size, Element elem, Environment env,
+            int range) throws EvaluationException
+    {
+        Object[] out = new Object[size];
+        Fork fork = new Fork(elem, env, out, range, new AtomicInteger(size),
+                0, size);
+        Outcome res = ForkJoinPool.commonPool().invoke(fork);
+
+        for (String msg : res.log)
+            ErrorLog.report(msg);
+        if (res.error instanceof EvaluationException)
+            throw (EvaluationException) res.error;
+        if (res.error instanceof RuntimeException)
+            throw (RuntimeException) res.error;
+        if (res.error instanceof Error)
+            throw (Error) res.error;
+        return out;
+    }
+
+    /**
+     * What evaluating a range of elements reported, up to its first
+     * failure.
+     */
+    private static final class Outcome
+    {
+        final String[] log;       // The errors reported, in order.
+        final Throwable error;    // The failure, or null.
+
+        Outcome(String[] log, Throwable error)
+        {
+            this.log = log;
+            this.error = error;
+        }
+
+        /**
+         * Combines the outcome of a range with that of the range after it.
+         */
+        Outcome then(Outcome next)
+        {
+            if (error != null || next.log.length == 0 && next.error == null)
+                return this;
+            String[] both = Arrays.copyOf(log, log.length + next.log.length);
+            System.arraycopy(next.log, 0, both, log.length, next.log.length);
+            return new Outcome(both, next.error);
+        }
+    }
+
+    /**
+     * Evaluates the elements in a range, splitting it while it is large.
+     */
+    private static final class Fork extends RecursiveTask<Outcome>
+    {
+        private final Element elem;
+        private final Environment env;
+        private final Object[] out;
+        private final int range;
+        private final AtomicInteger firstFailure;
+        private final int lo;
+        private final int hi;
+
+        Fork(Element elem, Environment env, Object[] out, int range,
+                AtomicInteger firstFailure, int lo, int hi)
+        {
+            this.elem = elem;
+            this.env = env;
+            this.out = out;
+            this.range = range;
+            this.firstFailure = firstFailure;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Outcome compute()
+        {
+            if (hi - lo > range)
+            {
+                int mid = (lo + hi) >>> 1;
+                Fork right = new Fork(elem, env, out, range, firstFailure,
+                        mid, hi);
+                right.fork();
+                Outcome left = new Fork(elem, env, out, range, firstFailure,
+                        lo, mid).compute();
+                return left.then(right.join());
+            }
+
+            Environment local = env.capture();
+            Throwable error = null;
+            ErrorLog.hold();
+            for (int i = lo; i < hi && i < firstFailure.get(); i++)
+            {
+                try
+                {
+                    out[i] = elem.evaluate(i, local);
+                }
+                catch (Throwable ex)
+                {
+                    error = ex;
+                    firstFailure.accumulateAndGet(i, Math::min);
+                    break;
+                }
+            }
+            return new Outcome(ErrorLog.release().toArray(new String[0]),
+                    error);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The value of an MFL list. Its elements are kept in an array, so the
+ * element at any index is found at once. Lists are never changed once they
+ * are built, so a list remembers its hash code and, when its elements are
+ * all integers or all reals, a copy of them in an array. Comparing two lists then rejects
+ * lists of different lengths or hashes at once, and compares the arrays of
+ * numeric lists with {@link Arrays#equals(int[], int[])}, which the JVM
+ * vectorizes. Lists of lists compare their elements the same way, and as a
+ * list may be an element of many others its hash is found once for all of
+ * them. A numeric list also remembers whether it is sorted, so it can be
+ * searched by bisection.
+ * <p>
+ * A slice of a list, such as its tail, is a view of the same array, so
+ * taking one copies nothing. A slice of a slice is a view of the original
+ * array, never of the slice, and a slice cannot be added to.
+ * </p>
+ * <p>
+ * Equality and hash codes are those of any {@link java.util.List}, so a
+ * list equals a {@link java.util.LinkedList} with the same elements. A list
+ * is built by adding elements to its end; should it be changed after its
+ * hash is found, the hash is found again.
+ * </p>
+ */
+public final class ListValue extends AbstractList<Object>
+        implements RandomAccess
+{
+    private static final Object[] EMPTY = {};
+
+    private Object[] elems;   // The elements, then room for more.
+    private final int offset;   // Of the first element in elems.
+    private final boolean view;   // True if elems is shared with other lists.
+    private int size;
+    private Summary summary;   // The hash, once found.
+
+    /**
+     * Creates an empty list.
+     */
+    public ListValue()
+    {
+        elems = EMPTY;
+        offset = 0;
+        view = false;
+    }
+
+    /**
+     * Creates a list of the elements of {@code c}, in order.
+     *
+     * @param c the elements.
+     */
+    public ListValue(Collection<?> c)
+    {
+        elems = c.toArray();
+        if (elems.getClass() != Object[].class)
+            elems = Arrays.copyOf(elems, elems.length, Object[].class);
+        size = elems.length;
+        offset = 0;
+        view = false;
+    }
+
+    private ListValue(Object[] elems, int offset, int size, boolean view)
+    {
+        this.elems = elems;
+        this.offset = offset;
+        this.size = size;
+        this.view = view;
+    }
+
+    /**
+     * Gets a slice of a list, which shares the elements of a
+     * {@link ListValue} rather than copying them.
+     *
+     * @param list the list.
+     * @param from the index of the first element of the slice.
+     * @param to the index after the last element of the slice.
+     * @return the elements of the list from {@code from} up to, but not
+     *         including, {@code to}.
+     * @throws IndexOutOfBoundsException if the indices are out of range.
+     */
+    public static ListValue slice(List<?> list, int from, int to)
+    {
+        if (list instanceof ListValue)
+            return ((ListValue) list).subList(from, to);
+        return new ListValue(list.subList(from, to));
+    }
+
+    /**
+     * Joins two lists into a new one.
+     *
+     * @param a the first list.
+     * @param b the second list.
+     * @return the elements of {@code a} followed by those of {@code b}.
+     */
+    public static ListValue concat(List<?> a, List<?> b)
+    {
+        Object[] as = a instanceof ListValue ? null : a.toArray();
+        Object[] bs = b instanceof ListValue ? null : b.toArray();
+        int n = a.size();
+        Object[] out = new Object[n + b.size()];
+        if (as == null)
+            ((ListValue) a).copyTo(out, 0);
+        else
+            System.arraycopy(as, 0, out, 0, n);
+        if (bs == null)
+            ((ListValue) b).copyTo(out, n);
+        else
+            System.arraycopy(bs, 0, out, n, bs.length);
+        return new ListValue(out, 0, out.length, false);
+    }
+
+    /**
+     * Creates a list of sorted integers.
+     *
+     * @param a the integers, in ascending order. The list keeps the array.
+     * @return the list.
+     */
+    static ListValue sorted(int[] a)
+    {
+        ListValue list = new ListValue();
+        int h = 1;
+        for (int x : a)
+        {
+            list.add(x);
+            h = 31 * h + Integer.hashCode(x);
+        }
+        list.summary = new Summary(list.modCount, h, a, null, true);
+        return list;
+    }
+
+    /**
+     * Creates a list of sorted reals.
+     *
+     * @param a the reals, in ascending order. The list keeps the array.
+     * @return the list.
+     */
+    static ListValue sorted(double[] a)
+    {
+        ListValue list = new ListValue();
+        int h = 1;
+        for (double x : a)
+        {
+            list.add(x);
+            h = 31 * h + Double.hashCode(x);
+        }
+        list.summary = new Summary(list.modCount, h, null, a, true);
+        return list;
+    }
+
+    @Override
+    public Object get(int index)
+    {
+        return elems[offset + Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Gets a view of part of the list, which shares its elements.
+     */
+    @Override
+    public ListValue subList(int from, int to)
+    {
+        Objects.checkFromToIndex(from, to, size);
+        if (from == 0 && to == size && view)
+            return this;
+        return new ListValue(elems, offset + from, to - from, true);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean add(Object e)
+    {
+        if (view)
+            throw new UnsupportedOperationException();
+        if (size == elems.length)
+            elems = Arrays.copyOf(elems, Math.max(8, size + (size >> 1)));
+        elems[size++] = e;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<?> c)
+    {
+        if (view)
+            throw new UnsupportedOperationException();
+        Object[] a = c.toArray();
+        if (size + a.length > elems.length)
+            elems = Arrays.copyOf(elems, Math.max(size + a.length,
+                    size + (size >> 1)));
+        System.arraycopy(a, 0, elems, size, a.length);
+        size += a.length;
+        modCount++;
+        return a.length > 0;
+    }
+
+    @Override
+    public Object[] toArray()
+    {
+        return Arrays.copyOfRange(elems, offset, offset + size);
+    }
+
+    private void copyTo(Object[] dest, int at)
+    {
+        System.arraycopy(elems, offset, dest, at, size);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return summary().hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+            return true;
+        if (!(obj instanceof ListValue))
+            return super.equals(obj);
+        ListValue other = (ListValue) obj;
+        if (size() != other.size())
+            return false;
+
+        Summary a = summary();
+        Summary b = other.summary();
+        if (a.hash != b.hash)
+            return false;
+        if (a.ints != null && b.ints != null)
+            return Arrays.equals(a.ints, b.ints);
+        if (a.reals != null && b.reals != null)
+            return Arrays.equals(a.reals, b.reals);
+
+        for (int i = 0; i < size; i++)
+            if (!Objects.equals(elems[offset + i], other.elems[other.offset + i]))
+                return false;
+        return true;
+    }
+
+    /**
+     * Gets the elements of a list of only integers. The array is shared, so
+     * it must not be changed.
+     *
+     * @return the elements, or null if the list is empty or holds anything
+     *         but integers.
+     */
+    int[] ints()
+    {
+        return summary().ints;
+    }
+
+    /**
+     * Gets the elements of a list of only reals. The array is shared, so it
+     * must not be changed.
+     *
+     * @return the elements, or null if the list is empty or holds anything
+     *         but reals.
+     */
+    double[] reals()
+    {
+        return summary().reals;
+    }
+
+    /**
+     * Determines if the list holds only integers or only reals, in ascending
+     * order as {@link Arrays#sort(double[])} puts them.
+     *
+     * @return true if {@link #ints()} or {@link #reals()} is sorted.
+     */
+    boolean isSorted()
+    {
+        return summary().sorted;
+    }
+
+    /**
+     * Gets the hash and numeric elements of the list, finding them the first
+     * time.
+     */
+    private Summary summary()
+    {
+        Summary s = summary;
+        if (s == null || s.modCount != modCount)
+            summary = s = new Summary(this);
+        return s;
+    }
+
+    /**
+     * The hash of a list and, if it has only integers or only reals, its
+     * elements and whether they are sorted. The fields are final so that a
+     * summary found by one thread is seen whole by the others.
+     */
+    private static final class Summary
+    {
+        final int modCount;   // Of the list when it was summarized.
+        final int hash;
+        final int[] ints;
+        final double[] reals;
+        final boolean sorted;
+
+        Summary(int modCount, int hash, int[] ints, double[] reals,
+                boolean sorted)
+        {
+            this.modCount = modCount;
+            this.hash = hash;
+            this.ints = ints;
+            this.reals = reals;
+            this.sorted = sorted;
+        }
+
+        Summary(ListValue list)
+        {
+            int n = list.size();
+            Object first = n > 0 ? list.get(0) : null;
+            int[] is = first instanceof Integer ? new int[n] : null;
+            double[] ds = first instanceof Double ? new double[n] : null;
+
+            int h = 1;
+            boolean up = true;
+            for (int i = 0; i < n; i++)
+            {
+                Object e = list.elems[list.offset + i];
+                h = 31 * h + (e == null ? 0 : e.hashCode());
+                if (is != null && e instanceof Integer)
+                {
+                    is[i] = (Integer) e;
+                    up = up && (i == 0 || is[i - 1] <= is[i]);
+                }
+                else if (ds != null && e instanceof Double)
+                {
+                    ds[i] = (Double) e;
+                    up = up && (i == 0 || Double.compare(ds[i - 1], ds[i]) <= 0);
+                }
+                else
+                {
+                    is = null;
+                    ds = null;
+                }
+            }
+            modCount = list.modCount;
+            hash = h;
+            ints = is;
+            reals = ds;
+            sorted = up && (is != null || ds != null);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the values of top-level expressions. MFL has no side
+ * effects, so an expression evaluates to the same value whenever the vals
+ * it reads are bound to the same values; a program evaluated with a cache
+ * looks each statement up by its structure and the values of the vals it
+ * reads before evaluating it. The least recently used value is evicted
+ * once the cache is full.
+ * <p>
+ * Vals match only when they are bound to the very same value, so a val
+ * defined again, even to an equal value, misses. Statements that fail are
+ * not cached, so they report their errors every time. A cache may be shared
+ * by any number of trees and threads.
+ * </p>
+ */
+public final class MemoCache
+{
+    /** The default number of values kept. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final LinkedHashMap<Object, Object> values;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_CAPACITY} values.
+     */
+    public MemoCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache holding up to {@code capacity} values.
+     *
+     * @param capacity the most values kept.
+     */
+    public MemoCache(int capacity)
+    {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        values = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> e)
+            {
+                if (size() <= capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Looks up the value of an expression, counting a hit or a miss.
+     *
+     * @param key the expression and the values it reads.
+     * @return its value, or null if it is not cached.
+     */
+    synchronized Object get(Object key)
+    {
+        Object value = values.get(key);
+        if (value != null)
+            hits++;
+        else
+            misses++;
+        return value;
+    }
+
+    /**
+     * Caches the value of an expression.
+     *
+     * @param key the expression and the values it reads.
+     * @param value its value.
+     */
+    synchronized void put(Object key, Object value)
+    {
+        values.put(key, value);
+    }
+
+    /**
+     * Gets the number of lookups that found a value.
+     *
+     * @return the hits.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that found no value.
+     *
+     * @return the misses.
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Gets the number of values evicted to make room for others.
+     *
+     * @return the evictions.
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of values cached.
+     *
+     * @return the size of the cache.
+     */
+    public synchronized int size()
+    {
+        return values.size();
+    }
+
+    /**
+     * Removes every value, keeping the counts.
+     */
+    public synchronized void clear()
+    {
+        values.clear();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return hits + " hits, " + misses + " misses, " + evictions
+                + " evictions, " + values.size() + " cached";
+    }
+}
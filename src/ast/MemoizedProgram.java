@@ -0,0 +1,274 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+
+import ast.compiler.Code;
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.ProgNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import ast.nodes.ValNode;
+import environment.Environment;
+import lexer.Token;
+
+/**
+ * Evaluates the top-level statements of a program in order, looking the
+ * value of each up in a {@link MemoCache} first.
+ * <p>
+ * A statement is keyed by a canonical form of its expression, which two
+ * expressions share exactly when they have the same structure, literals and
+ * names, together with the values of the vals it reads, compared by
+ * identity. The canonical form and the vals read are found once, when the
+ * program is prepared. Statements using nodes the canonical form does not
+ * know are always evaluated.
+ * </p>
+ */
+final class MemoizedProgram
+{
+    // Closes a subtree on the stack of the canonical form.
+    private static final Object CLOSE = new Object();
+
+    private final List<SyntaxNode> stmts;
+    private final SyntaxNode[] exprs;   // The expression of each statement.
+    private final Code[] code;          // The compiled expressions, if any.
+    private final String[] forms;       // The canonical forms, or null.
+    private final Token[][] reads;      // The vals each expression reads.
+
+    /**
+     * Prepares to evaluate {@code prog} with a cache.
+     *
+     * @param prog the program.
+     * @param compiler compiles the expression of a statement, or gives
+     *                 null to have the tree walked.
+     */
+    MemoizedProgram(ProgNode prog, Function<SyntaxNode, Code> compiler)
+    {
+        stmts = new ArrayList<>(prog.getStatements());
+        int n = stmts.size();
+        exprs = new SyntaxNode[n];
+        code = new Code[n];
+        forms = new String[n];
+        reads = new Token[n][];
+        for (int i = 0; i < n; i++)
+        {
+            SyntaxNode s = stmts.get(i);
+            exprs[i] = s instanceof ValNode ? ((ValNode) s).getExpr() : s;
+            code[i] = compiler.apply(exprs[i]);
+
+            StringBuilder form = new StringBuilder();
+            LinkedHashMap<String, Token> vals = new LinkedHashMap<>();
+            if (canonical(exprs[i], form, vals))
+            {
+                forms[i] = form.toString();
+                reads[i] = vals.values().toArray(new Token[0]);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the program.
+     *
+     * @param env the environment, which the vals of the program are bound
+     *            in.
+     * @param cache the values of statements evaluated before.
+     * @return the value of the last statement.
+     * @throws EvaluationException if a statement fails.
+     */
+    Object run(Environment env, MemoCache cache) throws EvaluationException
+    {
+        Object res = null;
+        for (int i = 0; i < exprs.length; i++)
+        {
+            Object value;
+            if (forms[i] == null)
+                value = evaluate(i, env);
+            else
+            {
+                Object[] bound = new Object[reads[i].length];
+                for (int j = 0; j < bound.length; j++)
+                    bound[j] = env.lookup(reads[i][j]);
+                Key key = new Key(forms[i], bound);
+                value = cache.get(key);
+                if (value == null)
+                {
+                    value = evaluate(i, env);
+                    cache.put(key, value);
+                }
+            }
+
+            SyntaxNode s = stmts.get(i);
+            if (!(s instanceof ValNode))
+            {
+                res = value;
+                continue;
+            }
+            Token name = ((ValNode) s).getNameToken();
+            if (env.lookup(name) != null)
+            {
+                s.logError(name.getValue() + " already defined.");
+                throw new EvaluationException();
+            }
+            env.updateEnvironment(name, value);
+            res = name.getValue();
+        }
+        return res;
+    }
+
+    private Object evaluate(int i, Environment env) throws EvaluationException
+    {
+        return code[i] != null ? code[i].run(env) : exprs[i].evaluate(env);
+    }
+
+    /**
+     * Appends the canonical form of a subtree, recording the vals it reads
+     * by name. The tree is walked with a stack of its own, so it may be as
+     * deep as the heap allows.
+     *
+     * @return false if the subtree has a node the form does not know.
+     */
+    private static boolean canonical(SyntaxNode root, StringBuilder form,
+            LinkedHashMap<String, Token> vals)
+    {
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty())
+        {
+            Object item = stack.pop();
+            if (item == CLOSE)
+            {
+                form.append(')');
+                continue;
+            }
+            SyntaxNode node = (SyntaxNode) item;
+            form.append('(');
+            if (node instanceof TokenNode)
+            {
+                TokenNode tok = (TokenNode) node;
+                Object lit = tok.getLiteral();
+                if (lit != null)
+                    form.append(lit.getClass().getSimpleName()).append(' ')
+                            .append(lit);
+                else
+                {
+                    String name = tok.getToken().getValue();
+                    form.append("id ").append(name).append(' ')
+                            .append(tok.getSlot());
+                    if (tok.getSlot() < 0)
+                        vals.putIfAbsent(name, tok.getToken());
+                }
+            }
+            else if (node instanceof BinOpNode)
+                form.append("bin ").append(((BinOpNode) node).getOp());
+            else if (node instanceof RelOpNode)
+                form.append("rel ").append(((RelOpNode) node).getOp());
+            else if (node instanceof LogicalNode)
+                form.append("log ").append(((LogicalNode) node).getOp());
+            else if (node instanceof UnaryOpNode)
+                form.append("un ").append(((UnaryOpNode) node).getOp());
+            else if (node instanceof LetNode)
+                form.append("let ").append(((LetNode) node).getName().getValue())
+                        .append(' ').append(((LetNode) node).getSlot());
+            else if (node instanceof ListNode)
+                form.append("list");
+            else if (node instanceof HeadNode)
+                form.append("hd");
+            else if (node instanceof TailNode)
+                form.append("tl");
+            else if (node instanceof LenNode)
+                form.append("len");
+            else if (node instanceof AggregateNode)
+                form.append("agg ").append(((AggregateNode) node).getOp());
+            else if (node instanceof SortNode)
+                form.append("sort");
+            else if (node instanceof ElemNode)
+                form.append("elem");
+            else if (node instanceof IndexNode)
+                form.append("index");
+            else if (node instanceof SliceNode)
+                form.append("slice ").append(((SliceNode) node).getOp());
+            else
+                return false;
+
+            stack.push(CLOSE);
+            List<SyntaxNode> children = node.children();
+            for (int i = children.size() - 1; i >= 0; i--)
+                stack.push(children.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * The canonical form of an expression and the values of the vals it
+     * reads.
+     */
+    private static final class Key
+    {
+        private final String form;
+        private final Object[] bound;
+        private final int hash;
+
+        Key(String form, Object[] bound)
+        {
+            this.form = form;
+            this.bound = bound;
+            int h = form.hashCode();
+            for (Object v : bound)
+                h = 31 * h + System.identityHashCode(v);
+            hash = h;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            if (other.hash != hash || !other.form.equals(form)
+                    || other.bound.length != bound.length)
+                return false;
+            for (int i = 0; i < bound.length; i++)
+                if (other.bound[i] != bound[i])
+                    return false;
+            return true;
+        }
+    }
+}
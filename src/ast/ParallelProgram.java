@@ -0,0 +1,258 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+import ast.compiler.Code;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.ValNode;
+import ast.optimizer.ValDependencies;
+import environment.Environment;
+import lexer.Token;
+
+/**
+ * Evaluates the top-level statements of a program in parallel. A statement
+ * is started on the fork-join pool once the vals it reads have their
+ * values, so statements that do not depend on each other run at the same
+ * time.
+ * <p>
+ * Each statement runs in its own copy of the environment the program
+ * starts in, with the values of the vals it reads bound; environments are
+ * persistent, so the copies share the vals and no thread changes another's
+ * bindings. The vals are bound in the program's environment in source
+ * order once every statement is done. Errors are held back and reported in
+ * source order, up to the first statement that fails, so a program prints
+ * and throws exactly what it does when its statements run in order.
+ * </p>
+ */
+final class ParallelProgram
+{
+    private final ValDependencies graph;
+    private final Code[] code;          // The compiled statements, if any.
+    private final int[][] dependents;   // The statements reading each val.
+
+    /**
+     * Prepares to evaluate {@code prog} in parallel.
+     *
+     * @param prog the program.
+     * @param compiler compiles the expression of a statement, or gives
+     *                 null to have the tree walked.
+     */
+    ParallelProgram(ProgNode prog, Function<SyntaxNode, Code> compiler)
+    {
+        graph = new ValDependencies(prog);
+        int n = graph.getStatements().size();
+
+        code = new Code[n];
+        List<List<Integer>> readers = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+        {
+            code[i] = compiler.apply(graph.getExpression(i));
+            readers.add(new ArrayList<>());
+            for (int dep : graph.getDependencies(i))
+                readers.get(dep).add(i);
+        }
+
+        dependents = new int[n][];
+        for (int i = 0; i < n; i++)
+            dependents[i] = readers.get(i).stream()
+                    .mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Evaluates the program.
+     *
+     * @param env the environment, which the vals of the program are bound
+     *            in.
+     * @return the value of the last statement.
+     * @throws EvaluationException if a statement fails.
+     */
+    Object run(Environment env) throws EvaluationException
+    {
+        return new Run(env).run();
+    }
+
+    /**
+     * The state of one evaluation of the program.
+     */
+    private final class Run
+    {
+        private final Environment base;
+        private final int n = code.length;
+        private final Object[] values = new Object[n];
+        private final Throwable[] errors = new Throwable[n];
+        private final String[][] logs = new String[n][];
+        private final boolean[] blocked = new boolean[n];   // A val failed.
+        private final AtomicIntegerArray pending = new AtomicIntegerArray(n);
+        private final AtomicInteger firstFailure = new AtomicInteger(n);
+        private final CountDownLatch done = new CountDownLatch(n);
+
+        Run(Environment env)
+        {
+            base = env;
+        }
+
+        Object run() throws EvaluationException
+        {
+            for (int i = 0; i < n; i++)
+                pending.set(i, graph.getDependencies(i).length);
+            for (int i = 0; i < n; i++)
+                if (graph.getDependencies(i).length == 0)
+                    start(i);
+
+            try
+            {
+                done.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new EvaluationException();
+            }
+            return finish();
+        }
+
+        private void start(int i)
+        {
+            ForkJoinPool.commonPool().execute(() -> evaluate(i));
+        }
+
+        /**
+         * Evaluates statement {@code i}, whose vals all have values.
+         */
+        private void evaluate(int i)
+        {
+            // A statement after one that failed is never reached.
+            if (i < firstFailure.get())
+            {
+                Environment env = base.capture();
+                for (int dep : graph.getDependencies(i))
+                    env.updateEnvironment(name(dep), values[dep]);
+
+                ErrorLog.hold();
+                try
+                {
+                    values[i] = code[i] != null ? code[i].run(env)
+                            : graph.getExpression(i).evaluate(env);
+                }
+                catch (Throwable ex)
+                {
+                    errors[i] = ex;
+                    firstFailure.accumulateAndGet(i, Math::min);
+                }
+                finally
+                {
+                    logs[i] = ErrorLog.release().toArray(new String[0]);
+                }
+            }
+            else
+                blocked[i] = true;
+            complete(i);
+        }
+
+        /**
+         * Marks statement {@code i} done, and starts the statements that
+         * were waiting only for it. Those reading a val that has no value
+         * are done without being evaluated.
+         */
+        private void complete(int i)
+        {
+            ArrayDeque<Integer> finished = new ArrayDeque<>();
+            finished.push(i);
+            while (!finished.isEmpty())
+            {
+                int j = finished.pop();
+                boolean failed = errors[j] != null || blocked[j];
+                for (int d : dependents[j])
+                {
+                    if (failed)
+                        blocked[d] = true;
+                    if (pending.decrementAndGet(d) == 0)
+                    {
+                        if (blocked[d])
+                            finished.push(d);
+                        else
+                            start(d);
+                    }
+                }
+                done.countDown();
+            }
+        }
+
+        /**
+         * Reports the errors and binds the vals of the statements in
+         * source order, up to the first that failed.
+         */
+        private Object finish() throws EvaluationException
+        {
+            Object res = null;
+            for (int i = 0; i < n; i++)
+            {
+                if (logs[i] != null)
+                    for (String msg : logs[i])
+                        ErrorLog.report(msg);
+                rethrow(errors[i]);
+
+                SyntaxNode s = graph.getStatements().get(i);
+                if (!(s instanceof ValNode))
+                {
+                    res = values[i];
+                    continue;
+                }
+                Token name = name(i);
+                if (base.lookup(name) != null)
+                {
+                    s.logError(name.getValue() + " already defined.");
+                    throw new EvaluationException();
+                }
+                base.updateEnvironment(name, values[i]);
+                res = name.getValue();
+            }
+            return res;
+        }
+
+        private Token name(int val)
+        {
+            return ((ValNode) graph.getStatements().get(val)).getNameToken();
+        }
+    }
+
+    /**
+     * Throws the error a statement failed with, if any, in the caller.
+     */
+    private static void rethrow(Throwable ex) throws EvaluationException
+    {
+        if (ex == null)
+            return;
+        if (ex instanceof EvaluationException)
+            throw (EvaluationException) ex;
+        if (ex instanceof RuntimeException)
+            throw (RuntimeException) ex;
+        if (ex instanceof Error)
+            throw (Error) ex;
+        throw new IllegalStateException(ex);   // Code throws no others.
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Sorting lists of numbers and searching lists, for {@code sort} and
+ * {@code elem}, shared by the tree walker and the compiled backends.
+ * <p>
+ * A list of only integers or only reals is sorted as the primitive array
+ * its {@link ListValue} keeps, in parallel once it has
+ * {@link #PARALLEL_THRESHOLD} elements. The sorted list remembers that it
+ * is sorted, as does any numeric list found to be in order, and is then
+ * searched by bisection. Reals are ordered and compared as
+ * {@link Double#compare} does, as list equality compares them.
+ * </p>
+ */
+public final class SortedLists
+{
+    /** The length from which lists are sorted in parallel. */
+    public static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private SortedLists() {}
+
+    /**
+     * Sorts a list of numbers into ascending order.
+     *
+     * @param list the list, which is not changed.
+     * @return the sorted list, or null if the list holds something other
+     *         than a number.
+     */
+    public static ListValue sort(List<?> list)
+    {
+        ListValue lv = list instanceof ListValue ? (ListValue) list
+                : new ListValue(list);
+        if (lv.isEmpty() || lv.isSorted())
+            return lv;   // Lists are never changed, so it may be shared.
+
+        int[] ints = lv.ints();
+        if (ints != null)
+        {
+            int[] a = ints.clone();
+            if (a.length >= PARALLEL_THRESHOLD)
+                Arrays.parallelSort(a);
+            else
+                Arrays.sort(a);
+            return ListValue.sorted(a);
+        }
+        double[] reals = lv.reals();
+        if (reals != null)
+        {
+            double[] a = reals.clone();
+            if (a.length >= PARALLEL_THRESHOLD)
+                Arrays.parallelSort(a);
+            else
+                Arrays.sort(a);
+            return ListValue.sorted(a);
+        }
+
+        // Integers and reals together, which only an unchecked program
+        // can build: order them by value.
+        for (Object e : lv)
+            if (!(e instanceof Integer || e instanceof Double))
+                return null;
+        ListValue out = new ListValue(lv);
+        out.sort(Comparator.comparingDouble(e -> ((Number) e).doubleValue()));
+        return out;
+    }
+
+    /**
+     * Determines if a value is an element of a list.
+     *
+     * @param x the value.
+     * @param list the list.
+     * @return true if an element of the list equals {@code x}.
+     */
+    public static boolean contains(Object x, List<?> list)
+    {
+        if (list instanceof ListValue && !list.isEmpty())
+        {
+            ListValue lv = (ListValue) list;
+            int[] ints = x instanceof Integer ? lv.ints() : null;
+            if (ints != null)
+            {
+                int key = (Integer) x;
+                if (lv.isSorted())
+                    return Arrays.binarySearch(ints, key) >= 0;
+                for (int e : ints)
+                    if (e == key)
+                        return true;
+                return false;
+            }
+            double[] reals = x instanceof Double ? lv.reals() : null;
+            if (reals != null)
+            {
+                double key = (Double) x;
+                if (lv.isSorted())
+                    return Arrays.binarySearch(reals, key) >= 0;
+                for (double e : reals)
+                    if (Double.compare(e, key) == 0)
+                        return true;
+                return false;
+            }
+        }
+        for (Object e : list)
+            if (Objects.equals(e, x))
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.ProgNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import ast.nodes.ValNode;
+import environment.Environment;
+import lexer.Token;
+
+/**
+ * Walks a syntax tree with a stack of its own instead of the Java call
+ * stack, so a tree may be as deep as the heap allows. Left-associative
+ * chains such as {@code 1 + 1 + ... + 1} make trees as deep as they are
+ * long, which the recursive tree walker and the compilers can not handle.
+ * <p>
+ * Each node on the stack records the child it is waiting for, and the
+ * values of evaluated children are kept on a second stack until their
+ * parent applies its operator to them. Operators are applied by the nodes
+ * themselves, so the values and errors are those of the tree walker. Lists
+ * are evaluated in order, and nodes the evaluator does not know are walked
+ * recursively. Thunks are forced on the stack as well, in the environment
+ * they captured, so chains of lazy bindings may be as long as the heap
+ * allows too.
+ * </p>
+ */
+public final class StackEvaluator
+{
+    /**
+     * The deepest tree walked recursively when the size of the thread
+     * stack is not known.
+     */
+    public static final int DEFAULT_MAX_RECURSIVE_DEPTH = 1000;
+
+    // Trees no deeper than this are walked recursively on any stack.
+    private static final int SHALLOW_DEPTH = 256;
+
+    /** The deepest tree walked recursively, found on first use. */
+    private static final class Limit
+    {
+        static final int DEPTH = maxRecursiveDepth();
+    }
+
+    private SyntaxNode[] nodes = new SyntaxNode[64];   // The nodes being evaluated.
+    private int[] states = new int[64];                // The children started.
+    private final ArrayDeque<Iterator<SyntaxNode>> cursors = new ArrayDeque<>();   // Of open lists.
+    private Environment[] envs = new Environment[64];   // Where each runs.
+    private Thunk[] thunks = new Thunk[64];    // Being forced by names.
+    private int top;
+    private Object[] values = new Object[64];          // The values of children.
+    private int count;
+
+    private StackEvaluator() {}
+
+    /**
+     * Gets the depth of a tree, without recursing.
+     *
+     * @param root the root of the tree.
+     * @return the number of nodes on its longest path from the root.
+     */
+    public static int depth(SyntaxNode root)
+    {
+        ArrayDeque<SyntaxNode> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> depths = new ArrayDeque<>();
+        stack.push(root);
+        depths.push(1);
+        int max = 0;
+        while (!stack.isEmpty())
+        {
+            SyntaxNode node = stack.pop();
+            int d = depths.pop();
+            max = Math.max(max, d);
+            for (SyntaxNode child : node.children())
+            {
+                stack.push(child);
+                depths.push(d + 1);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Determines if a tree is too deep to walk recursively.
+     *
+     * @param root the root of the tree.
+     * @return true if the tree is deeper than
+     *         {@link #getMaxRecursiveDepth()}.
+     */
+    public static boolean isDeep(SyntaxNode root)
+    {
+        int depth = depth(root);
+        return depth > SHALLOW_DEPTH && depth > getMaxRecursiveDepth();
+    }
+
+    /**
+     * Gets the depth of the deepest tree walked recursively. Deeper trees
+     * are evaluated, and type checked, with a stack of their own. The
+     * recursive walks need up to a kilobyte of the thread stack for each
+     * level of the tree, so the depth is the size of the thread stack in
+     * kilobytes, as set by {@code -Xss}, unless the
+     * {@code mfl.maxRecursiveDepth} property gives another.
+     *
+     * @return the depth.
+     */
+    public static int getMaxRecursiveDepth()
+    {
+        return Limit.DEPTH;
+    }
+
+    private static int maxRecursiveDepth()
+    {
+        Integer depth = Integer.getInteger("mfl.maxRecursiveDepth");
+        if (depth != null)
+            return depth;
+        try
+        {
+            long kb = Long.parseLong(ManagementFactory
+                    .getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                    .getVMOption("ThreadStackSize").getValue());
+            if (kb > 0)
+                return (int) Math.min(kb, Integer.MAX_VALUE);
+        }
+        catch (RuntimeException | LinkageError ex)
+        {
+            // Not a HotSpot VM.
+        }
+        return DEFAULT_MAX_RECURSIVE_DEPTH;
+    }
+
+    /**
+     * Evaluates a tree.
+     *
+     * @param root the root of the tree.
+     * @param env the environment to evaluate it in.
+     * @return its value.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public static Object evaluate(SyntaxNode root, Environment env)
+            throws EvaluationException
+    {
+        return new StackEvaluator().run(root, env);
+    }
+
+    private Object run(SyntaxNode root, Environment initial)
+            throws EvaluationException
+    {
+        push(root);
+        envs[0] = initial;
+        while (top > 0)
+        {
+            SyntaxNode node = nodes[top - 1];
+            int state = states[top - 1];
+            Environment env = envs[top - 1];
+
+            if (node instanceof BinOpNode)
+            {
+                BinOpNode bin = (BinOpNode) node;
+                if (state < 2)
+                    child(state == 0 ? bin.getLeftTerm() : bin.getRightTerm());
+                else
+                {
+                    Object r = pop();
+                    done(bin.apply(pop(), r));
+                }
+            }
+            else if (node instanceof RelOpNode)
+            {
+                RelOpNode rel = (RelOpNode) node;
+                if (state < 2)
+                    child(state == 0 ? rel.getLeftTerm() : rel.getRightTerm());
+                else
+                {
+                    Object r = pop();
+                    done(rel.apply(pop(), r));
+                }
+            }
+            else if (node instanceof LogicalNode)
+            {
+                LogicalNode log = (LogicalNode) node;
+                if (state == 0)
+                    child(log.getLeftTerm());
+                else if (state == 1)
+                {
+                    boolean l = log.check(pop());
+                    if (log.decides(l))
+                        done(l);
+                    else
+                        child(log.getRightTerm());
+                }
+                else
+                    done(log.check(pop()));
+            }
+            else if (node instanceof TokenNode)
+            {
+                TokenNode tok = (TokenNode) node;
+                if (state == 1)
+                {
+                    // The thunk read by the name is evaluated.
+                    Object value = pop();
+                    thunks[top - 1].set(value);
+                    done(value);
+                    continue;
+                }
+                Object bound = tok.getLiteral() != null ? null
+                        : tok.getSlot() >= 0 ? env.getLocal(tok.getSlot())
+                        : env.lookup(tok.getToken());
+                Thunk thunk = bound instanceof Thunk ? (Thunk) bound : null;
+                if (thunk != null && thunk.getExpr() != null)
+                {
+                    thunks[top - 1] = thunk;
+                    child(thunk.getExpr());
+                    envs[top - 1] = thunk.getEnvironment();
+                }
+                else
+                    done(node.evaluate(env));
+            }
+            else if (node instanceof UnaryOpNode)
+            {
+                if (state == 0)
+                    child(((UnaryOpNode) node).getExpr());
+                else
+                    done(((UnaryOpNode) node).apply(pop()));
+            }
+            else if (node instanceof LetNode)
+            {
+                LetNode let = (LetNode) node;
+                if (state == 0 && env.isLazy())
+                {
+                    env.setLocal(let.getSlot(),
+                            new Thunk(let.getBound(), env.capture(), true));
+                    states[top - 1]++;
+                    child(let.getBody());
+                }
+                else if (state == 0)
+                    child(let.getBound());
+                else if (state == 1)
+                {
+                    env.setLocal(let.getSlot(), pop());
+                    child(let.getBody());
+                }
+                else
+                    finish();   // With the value of the body.
+            }
+            else if (node instanceof ListNode)
+            {
+                if (state == 0)
+                    cursors.push(((ListNode) node).getElements().iterator());
+                Iterator<SyntaxNode> it = cursors.peek();
+                if (it.hasNext())
+                    child(it.next());
+                else
+                {
+                    cursors.pop();
+                    // The values of the elements are the last ones on the
+                    // stack, one for each child started, in order.
+                    ListValue out = new ListValue(
+                            Arrays.asList(values).subList(count - state, count));
+                    Arrays.fill(values, count - state, count, null);
+                    count -= state;
+                    done(out);
+                }
+            }
+            else if (node instanceof HeadNode)
+            {
+                if (state == 0)
+                    child(((HeadNode) node).getExpr());
+                else
+                    done(((HeadNode) node).apply(pop()));
+            }
+            else if (node instanceof TailNode)
+            {
+                if (state == 0)
+                    child(((TailNode) node).getExpr());
+                else
+                    done(((TailNode) node).apply(pop()));
+            }
+            else if (node instanceof LenNode)
+            {
+                if (state == 0)
+                    child(((LenNode) node).getExpr());
+                else
+                    done(((LenNode) node).apply(pop()));
+            }
+            else if (node instanceof AggregateNode)
+            {
+                if (state == 0)
+                    child(((AggregateNode) node).getExpr());
+                else
+                    done(((AggregateNode) node).apply(pop()));
+            }
+            else if (node instanceof SortNode)
+            {
+                if (state == 0)
+                    child(((SortNode) node).getExpr());
+                else
+                    done(((SortNode) node).apply(pop()));
+            }
+            else if (node instanceof ElemNode)
+            {
+                ElemNode in = (ElemNode) node;
+                if (state < 2)
+                    child(state == 0 ? in.getElem() : in.getList());
+                else
+                {
+                    Object r = pop();
+                    done(in.apply(pop(), r));
+                }
+            }
+            else if (node instanceof IndexNode)
+            {
+                IndexNode in = (IndexNode) node;
+                if (state < 2)
+                    child(state == 0 ? in.getList() : in.getIndex());
+                else
+                {
+                    Object k = pop();
+                    done(in.apply(pop(), k));
+                }
+            }
+            else if (node instanceof SliceNode)
+            {
+                SliceNode in = (SliceNode) node;
+                if (state < 2)
+                    child(state == 0 ? in.getCount() : in.getList());
+                else
+                {
+                    Object r = pop();
+                    done(in.apply(pop(), r));
+                }
+            }
+            else if (node instanceof ValNode)
+            {
+                ValNode val = (ValNode) node;
+                if (state == 0 && !env.isLazy())
+                    child(val.getExpr());
+                else
+                    done(bind(val, env, state == 0
+                            ? new Thunk(val.getExpr(), env.capture(), true)
+                            : pop()));
+            }
+            else if (node instanceof ProgNode)
+            {
+                if (state == 0)
+                    cursors.push(((ProgNode) node).getStatements().iterator());
+                Iterator<SyntaxNode> it = cursors.peek();
+                if (it.hasNext())
+                {
+                    if (state > 0)
+                        pop();   // Only the last statement gives the value.
+                    child(it.next());
+                }
+                else
+                {
+                    cursors.pop();
+                    if (state == 0)
+                        done(null);
+                    else
+                        finish();   // With the value of the last statement.
+                }
+            }
+            else
+                done(node.evaluate(env));   // Walk what is not known here.
+        }
+        return pop();
+    }
+
+    /**
+     * Binds a val, as {@link ValNode#evaluate(Environment)} does.
+     *
+     * @return the name of the val.
+     */
+    private static Object bind(ValNode node, Environment env, Object value)
+            throws EvaluationException
+    {
+        Token name = node.getNameToken();
+        if (env.lookup(name) != null)
+        {
+            node.logError(name.getValue() + " already defined.");
+            throw new EvaluationException();
+        }
+        env.updateEnvironment(name, value);
+        return name.getValue();
+    }
+
+    /**
+     * Starts evaluating the next child of the node on top of the stack.
+     */
+    private void child(SyntaxNode child)
+    {
+        states[top - 1]++;
+        push(child);
+    }
+
+    private void push(SyntaxNode node)
+    {
+        if (top == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, 2 * top);
+            states = Arrays.copyOf(states, 2 * top);
+            envs = Arrays.copyOf(envs, 2 * top);
+            thunks = Arrays.copyOf(thunks, 2 * top);
+        }
+        if (top > 0)
+            envs[top] = envs[top - 1];
+        nodes[top] = node;
+        states[top++] = 0;
+    }
+
+    /**
+     * Finishes the node on top of the stack, whose value is the last one on
+     * the stack of values.
+     */
+    private void finish()
+    {
+        nodes[--top] = null;
+        envs[top] = null;
+        thunks[top] = null;
+    }
+
+    /**
+     * Finishes the node on top of the stack with a value.
+     */
+    private void done(Object value)
+    {
+        finish();
+        if (count == values.length)
+            values = Arrays.copyOf(values, 2 * count);
+        values[count++] = value;
+    }
+
+    private Object pop()
+    {
+        Object v = values[--count];
+        values[count] = null;
+        return v;
+    }
+}
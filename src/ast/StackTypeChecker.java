@@ -0,0 +1,369 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.ProgNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import ast.nodes.ValNode;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.ListType;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.VarType;
+import environment.TypeEnvironment;
+
+/**
+ * Infers the type of a syntax tree with a stack of its own, as
+ * {@link StackEvaluator} evaluates one, for trees too deep to type check
+ * recursively.
+ * <p>
+ * The types of children are kept on a stack until their parent is typed.
+ * Operators are typed by the nodes themselves, given the types of their
+ * operands, so the types inferred, the type variables made and the errors
+ * reported are those of {@link SyntaxNode#typeOf}. Nodes the checker does
+ * not know are typed recursively.
+ * </p>
+ */
+public final class StackTypeChecker
+{
+    private final TypeEnvironment tenv;
+    private final Inferencer inferencer;
+
+    private SyntaxNode[] nodes = new SyntaxNode[64];   // The nodes being typed.
+    private int[] states = new int[64];                // The children started.
+    private final ArrayDeque<Iterator<SyntaxNode>> cursors = new ArrayDeque<>();   // Of open lists.
+    private Type[] saved = new Type[64];   // List elements, or shadowed names.
+    private int top;
+    private Type[] types = new Type[64];   // The types of children.
+    private int count;
+
+    private StackTypeChecker(TypeEnvironment tenv, Inferencer inferencer)
+    {
+        this.tenv = tenv;
+        this.inferencer = inferencer;
+    }
+
+    /**
+     * Infers the type of a tree.
+     *
+     * @param root the root of the tree.
+     * @param tenv the types of the names in scope.
+     * @param inferencer the substitutions found so far.
+     * @return the type of the tree.
+     * @throws TypeException if the tree is not well typed.
+     */
+    public static Type typeOf(SyntaxNode root, TypeEnvironment tenv,
+            Inferencer inferencer) throws TypeException
+    {
+        return new StackTypeChecker(tenv, inferencer).run(root);
+    }
+
+    private Type run(SyntaxNode root) throws TypeException
+    {
+        push(root);
+        try
+        {
+            return walk();
+        }
+        catch (TypeException ex)
+        {
+            // Put back the names shadowed by the lets being typed.
+            for (int i = top - 1; i >= 0; i--)
+                if (nodes[i] instanceof LetNode && states[i] == 2)
+                    tenv.updateEnvironment(((LetNode) nodes[i]).getName(), saved[i]);
+            throw ex;
+        }
+    }
+
+    private Type walk() throws TypeException
+    {
+        while (top > 0)
+        {
+            SyntaxNode node = nodes[top - 1];
+            int state = states[top - 1];
+
+            if (node instanceof BinOpNode)
+            {
+                BinOpNode bin = (BinOpNode) node;
+                if (state < 2)
+                    child(state == 0 ? bin.getLeftTerm() : bin.getRightTerm());
+                else
+                {
+                    Type r = pop();
+                    done(bin.typeOf(pop(), r, tenv, inferencer));
+                }
+            }
+            else if (node instanceof RelOpNode)
+            {
+                RelOpNode rel = (RelOpNode) node;
+                if (state < 2)
+                    child(state == 0 ? rel.getLeftTerm() : rel.getRightTerm());
+                else
+                {
+                    Type r = pop();
+                    done(rel.typeOf(pop(), r, tenv, inferencer));
+                }
+            }
+            else if (node instanceof LogicalNode)
+            {
+                LogicalNode log = (LogicalNode) node;
+                if (state < 2)
+                    child(state == 0 ? log.getLeftTerm() : log.getRightTerm());
+                else
+                {
+                    Type r = pop();
+                    done(log.typeOf(pop(), r));
+                }
+            }
+            else if (node instanceof TokenNode)
+                done(node.typeOf(tenv, inferencer));
+            else if (node instanceof UnaryOpNode)
+            {
+                if (state == 0)
+                    child(((UnaryOpNode) node).getExpr());
+                else
+                    done(((UnaryOpNode) node).typeOf(pop()));
+            }
+            else if (node instanceof LetNode)
+            {
+                LetNode let = (LetNode) node;
+                if (state == 0)
+                    child(let.getBound());
+                else if (state == 1)
+                {
+                    // Shadow the name for the body, as LetNode does.
+                    saved[top - 1] = tenv.lookup(let.getName());
+                    tenv.updateEnvironment(let.getName(), pop());
+                    child(let.getBody());
+                }
+                else
+                {
+                    tenv.updateEnvironment(let.getName(), saved[top - 1]);
+                    finish();   // With the type of the body.
+                }
+            }
+            else if (node instanceof ListNode)
+            {
+                if (state == 0)
+                {
+                    cursors.push(((ListNode) node).getElements().iterator());
+                    saved[top - 1] = tenv.getTypeVariable();
+                }
+                else
+                    inferencer.unify(pop(), saved[top - 1],
+                            message(node, "list elements must match"));
+                Iterator<SyntaxNode> it = cursors.peek();
+                if (it.hasNext())
+                    child(it.next());
+                else
+                {
+                    cursors.pop();
+                    done(new ListType((VarType) saved[top - 1]));
+                }
+            }
+            else if (node instanceof HeadNode)
+            {
+                if (state == 0)
+                    child(((HeadNode) node).getExpr());
+                else
+                    done(((HeadNode) node).typeOf(pop(), tenv, inferencer));
+            }
+            else if (node instanceof TailNode)
+            {
+                if (state == 0)
+                    child(((TailNode) node).getExpr());
+                else
+                    done(((TailNode) node).typeOf(pop(), tenv, inferencer));
+            }
+            else if (node instanceof LenNode)
+            {
+                if (state == 0)
+                    child(((LenNode) node).getExpr());
+                else
+                    done(((LenNode) node).typeOf(pop(), tenv, inferencer));
+            }
+            else if (node instanceof AggregateNode)
+            {
+                if (state == 0)
+                    child(((AggregateNode) node).getExpr());
+                else
+                    done(((AggregateNode) node).typeOf(pop(), tenv, inferencer));
+            }
+            else if (node instanceof SortNode)
+            {
+                if (state == 0)
+                    child(((SortNode) node).getExpr());
+                else
+                    done(((SortNode) node).typeOf(pop(), tenv, inferencer));
+            }
+            else if (node instanceof ElemNode)
+            {
+                ElemNode in = (ElemNode) node;
+                if (state < 2)
+                    child(state == 0 ? in.getElem() : in.getList());
+                else
+                {
+                    Type r = pop();
+                    done(in.typeOf(pop(), r, inferencer));
+                }
+            }
+            else if (node instanceof IndexNode)
+            {
+                IndexNode in = (IndexNode) node;
+                if (state < 2)
+                    child(state == 0 ? in.getList() : in.getIndex());
+                else
+                {
+                    Type k = pop();
+                    done(in.typeOf(pop(), k, tenv, inferencer));
+                }
+            }
+            else if (node instanceof SliceNode)
+            {
+                SliceNode in = (SliceNode) node;
+                if (state < 2)
+                    child(state == 0 ? in.getCount() : in.getList());
+                else
+                {
+                    Type r = pop();
+                    done(in.typeOf(pop(), r, tenv, inferencer));
+                }
+            }
+            else if (node instanceof ValNode)
+            {
+                if (state == 0)
+                    child(((ValNode) node).getExpr());
+                else
+                    finish();   // With the type of the expression.
+            }
+            else if (node instanceof ProgNode)
+            {
+                if (state == 0)
+                {
+                    if (((ProgNode) node).getStatements().isEmpty())
+                        throw new TypeException("Invalid expression.");
+                    cursors.push(((ProgNode) node).getStatements().iterator());
+                }
+                else
+                    declare(((ProgNode) node).getStatements().get(state - 1));
+                Iterator<SyntaxNode> it = cursors.peek();
+                if (it.hasNext())
+                {
+                    if (state > 0)
+                        pop();   // Only the last statement gives the type.
+                    child(it.next());
+                }
+                else
+                {
+                    cursors.pop();
+                    done(inferencer.getSubstitutions().apply(pop()));
+                }
+            }
+            else
+                done(node.typeOf(tenv, inferencer));   // Type what is not known here.
+        }
+        return pop();
+    }
+
+    /**
+     * Brings a top-level val into scope, as {@link ProgNode} does, once its
+     * type is on top of the stack.
+     */
+    private void declare(SyntaxNode stmt) throws TypeException
+    {
+        if (!(stmt instanceof ValNode))
+            return;
+        ValNode val = (ValNode) stmt;
+        if (tenv.lookup(val.getNameToken()) != null)
+            throw new TypeException(message(stmt,
+                    val.getNameToken().getValue() + " already defined."));
+        tenv.updateEnvironment(val.getNameToken(), types[count - 1]);
+    }
+
+    private static String message(SyntaxNode node, String msg)
+    {
+        return "(line " + node.lineNumber() + ") " + msg;
+    }
+
+    /**
+     * Starts typing the next child of the node on top of the stack.
+     */
+    private void child(SyntaxNode child)
+    {
+        states[top - 1]++;
+        push(child);
+    }
+
+    private void push(SyntaxNode node)
+    {
+        if (top == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, 2 * top);
+            states = Arrays.copyOf(states, 2 * top);
+            saved = Arrays.copyOf(saved, 2 * top);
+        }
+        nodes[top] = node;
+        states[top++] = 0;
+    }
+
+    /**
+     * Finishes the node on top of the stack, whose type is the last one on
+     * the stack of types.
+     */
+    private void finish()
+    {
+        nodes[--top] = null;
+        saved[top] = null;
+    }
+
+    /**
+     * Finishes the node on top of the stack with a type.
+     */
+    private void done(Type type)
+    {
+        finish();
+        if (count == types.length)
+            types = Arrays.copyOf(types, 2 * count);
+        types[count++] = type;
+    }
+
+    private Type pop()
+    {
+        Type t = types[--count];
+        types[count] = null;
+        return t;
+    }
+}
@@ -16,16 +16,52 @@
  */
 package ast;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import ast.compiler.BytecodeCompiler;
+import ast.compiler.ClosureCompiler;
+import ast.compiler.Code;
+import ast.compiler.JvmCompiler;
 import ast.nodes.ProgNode;
+import ast.optimizer.CommonSubexpressions;
+import ast.optimizer.ConstantFolder;
+import ast.optimizer.DeadVals;
+import ast.optimizer.LetInliner;
 import ast.nodes.SyntaxNode;
+import ast.nodes.ValNode;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.Type;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 
 /**
  * Represents a syntax tree for the language.
+ * <p>
+ * Once it is parsed, type checked, optimized and configured, a tree may be
+ * evaluated by many threads at once with {@link #evaluate(Environment)}:
+ * each evaluation has an environment of its own, and the compiled form of
+ * the tree is built once and never changed. The tree walker rewrites nodes
+ * into specialized forms as it runs, which is safe, as a node and its
+ * specialized form evaluate alike for operands of any type: a specialized
+ * node that meets operands it was not specialized for, such as two ints
+ * where it saw reals, rewrites itself back into the generic form. Type
+ * checking, optimizing and changing the backend or the evaluation mode are
+ * not safe while the tree is being evaluated.
+ * </p>
+ * <p>
+ * Top-level statements deeper than
+ * {@link StackEvaluator#getMaxRecursiveDepth()}, such as long chains of
+ * operators, are evaluated with a stack of their own by
+ * {@link StackEvaluator}, whatever the backend, and are not optimized.
+ * The other statements are compiled, optimized and run in parallel as
+ * usual. A program with such a statement is type checked with a stack of
+ * its own by {@link StackTypeChecker}.
+ * </p>
  * 
  * @author Zach Kissel
  */
@@ -35,6 +71,16 @@ public class SyntaxTree
     Environment env; // The executional environment.
     TypeEnvironment tenv; // The type environment.
     Inferencer inferencer;   // The type substitutions.
+    Backend backend;         // How the tree is evaluated.
+    volatile Code compiled;  // The compiled form of the tree, if built.
+    int frameSize;           // The slots needed for let bound values.
+    boolean lazy;            // Bind thunks instead of values.
+    Type type;               // The type of the program, once checked.
+    boolean parallel;        // Evaluate independent statements in parallel.
+    volatile ParallelProgram scheduled;   // Statements ready to run in parallel.
+    MemoCache cache;         // The values of statements seen before, if any.
+    volatile MemoizedProgram memoized;    // Statements ready to look up.
+    Set<SyntaxNode> deep;    // Statements too deep to walk recursively.
 
     /**
      * Constructs a new syntax tree with root {@code root}.
@@ -43,10 +89,11 @@ public class SyntaxTree
      */
     public SyntaxTree(SyntaxNode root)
     {
-        this.root = root;
+        setRootNode(root);
         this.env = new Environment();
         this.tenv = new TypeEnvironment();
         this.inferencer = new Inferencer();
+        this.backend = Backend.getDefault();
     }
 
     /**
@@ -58,13 +105,63 @@ public class SyntaxTree
     }
 
     /**
-     * Sets the root node to {@code root}
+     * Sets the root node to {@code root}, resolves the names it uses and
+     * estimates the cost of its nodes.
      * 
      * @param root the object to set the root node to.
      */
     public void setRootNode(SyntaxNode root)
     {
         this.root = root;
+        this.compiled = null;
+        this.scheduled = null;
+        this.memoized = null;
+        this.frameSize = 0;
+        this.deep = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (root != null)
+        {
+            for (SyntaxNode part : parts())
+                if (StackEvaluator.isDeep(part))
+                {
+                    // Parallel and cached programs compile the expressions
+                    // of vals.
+                    deep.add(part);
+                    if (part instanceof ValNode)
+                        deep.add(((ValNode) part).getExpr());
+                }
+            Scope scope = new Scope();
+            root.resolve(scope);
+            frameSize = scope.getFrameSize();
+            CostModel.estimate(root);
+        }
+    }
+
+    /**
+     * Gets the parts of the tree that are compiled and optimized on their
+     * own when some are too deep to walk recursively: the top-level
+     * statements of a program, or else the whole tree.
+     */
+    private List<SyntaxNode> parts()
+    {
+        if (root instanceof ProgNode)
+            return List.copyOf(((ProgNode) root).getStatements());
+        return List.of(root);
+    }
+
+    /**
+     * Gets the number of top-level statements too deep to walk
+     * recursively, which are evaluated with a stack of their own whatever
+     * the backend, and are not optimized.
+     * 
+     * @return the number of such statements.
+     */
+    public int getDeepStatements()
+    {
+        int count = 0;
+        for (SyntaxNode part : parts())
+            if (deep.contains(part))
+                count++;
+        return count;
     }
 
     /**
@@ -78,14 +175,275 @@ public class SyntaxTree
     }
 
     /**
-     * Evaluate the syntax tree.
+     * Sets how the tree is evaluated.
+     * 
+     * @param backend the backend to use.
+     */
+    public void setBackend(Backend backend)
+    {
+        if (backend != this.backend)
+        {
+            this.compiled = null;
+            this.scheduled = null;
+            this.memoized = null;
+        }
+        this.backend = backend;
+    }
+
+    /**
+     * Gets how the tree is evaluated.
+     * 
+     * @return the backend in use.
+     */
+    public Backend getBackend()
+    {
+        return backend;
+    }
+
+    /**
+     * Sets whether lets and vals are evaluated lazily: the name is bound to
+     * a thunk that evaluates the expression the first time the name is
+     * used, so bindings that are never used cost nothing. Errors in unused
+     * bindings are not reported. The register machine and JVM backends
+     * always evaluate bindings eagerly, so lazy trees are compiled to
+     * closures.
+     * 
+     * @param lazy true to evaluate bindings lazily.
+     */
+    public void setLazy(boolean lazy)
+    {
+        if (lazy != this.lazy)
+            this.compiled = null;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Determines if lets and vals are evaluated lazily.
+     * 
+     * @return true if bindings are lazy.
+     */
+    public boolean isLazy()
+    {
+        return lazy;
+    }
+
+    /**
+     * Sets whether the top-level statements of the program, the elements of
+     * wide list literals, and the operands of operations the
+     * {@link CostModel} finds costly, are evaluated in parallel. A statement
+     * is started as soon as the vals it reads have their values, so
+     * statements that do not depend on each other run at the same time. The
+     * result, the vals bound and the errors reported are those of
+     * evaluating in order. The register machine and JVM backends evaluate
+     * in order, so trees with anything to fork are compiled to closures.
+     * Lazy trees are evaluated in order.
+     * 
+     * @param parallel true to evaluate independent statements, wide lists
+     *                 and costly operands in parallel.
+     */
+    public void setParallel(boolean parallel)
+    {
+        if (parallel != this.parallel)
+        {
+            this.compiled = null;
+            this.memoized = null;
+        }
+        this.parallel = parallel;
+    }
+
+    /**
+     * Determines if independent top-level statements are evaluated in
+     * parallel.
+     * 
+     * @return true if statements are evaluated in parallel.
+     */
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
+    /**
+     * Sets the cache the values of the top-level statements are looked up
+     * in before they are evaluated, so a statement evaluated before with
+     * the vals it reads bound to the same values is not evaluated again.
+     * Statements are evaluated in order when there is a cache, though wide
+     * lists and costly operands are still forked in parallel mode. Lazy
+     * trees are not cached.
+     * 
+     * @param cache the cache, or null to evaluate every statement.
+     */
+    public void setCache(MemoCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Gets the cache the values of the top-level statements are looked up
+     * in.
+     * 
+     * @return the cache, or null if there is none.
+     */
+    public MemoCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Evaluate the syntax tree. Unless the tree walking backend was
+     * selected, the tree is compiled on the first evaluation and the compiled
+     * form is run from then on. Type checking the tree before the first
+     * evaluation lets the compiler use unboxed arithmetic.
      * 
      * @return the object representing the result of the evaluation.
      * @throws EvaluationException if the evaluation fails.
      */
     public Object evaluate() throws EvaluationException
     {
-         return root.evaluate(env);
+        return run(env);
+    }
+
+    /**
+     * Evaluate the syntax tree in an environment of its own, starting with
+     * the vals bound in {@code initial}. The vals the program binds are not
+     * bound in {@code initial}, which is not changed, nor in the environment
+     * of the tree. Any number of threads may evaluate the tree this way at
+     * once.
+     * 
+     * @param initial the vals the program starts with.
+     * @return the object representing the result of the evaluation.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    public Object evaluate(Environment initial) throws EvaluationException
+    {
+        return run(initial.copy());
+    }
+
+    /**
+     * Evaluates the tree in {@code env}, compiling it first if needed.
+     */
+    private Object run(Environment env) throws EvaluationException
+    {
+        env.ensureFrame(frameSize);
+        env.setLazy(lazy);
+        env.setParallel(parallel && !lazy);
+        MemoCache memo = cache;
+        if (memo != null && !lazy && root instanceof ProgNode)
+            return memoize().run(env, memo);
+        if (parallel && !lazy && root instanceof ProgNode)
+            return schedule().run(env);
+        if (backend == Backend.TREE && deep.isEmpty())
+            return root.evaluate(env);
+        return code().run(env);
+    }
+
+    /**
+     * Gets the compiled tree, compiling it on first use. Threads evaluating
+     * the tree for the first time at once wait for a single compilation.
+     */
+    private Code code()
+    {
+        Code code = compiled;
+        if (code == null)
+        {
+            synchronized (this)
+            {
+                code = compiled;
+                if (code == null)
+                    compiled = code = compile(root);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Gets the statements of the program ready to run in parallel,
+     * scheduling them on first use.
+     */
+    private ParallelProgram schedule()
+    {
+        ParallelProgram prog = scheduled;
+        if (prog == null)
+        {
+            synchronized (this)
+            {
+                prog = scheduled;
+                if (prog == null)
+                    scheduled = prog = new ParallelProgram((ProgNode) root,
+                            this::compile);
+            }
+        }
+        return prog;
+    }
+
+    /**
+     * Gets the statements of the program ready to look up in the cache,
+     * preparing them on first use.
+     */
+    private MemoizedProgram memoize()
+    {
+        MemoizedProgram prog = memoized;
+        if (prog == null)
+        {
+            synchronized (this)
+            {
+                prog = memoized;
+                if (prog == null)
+                    memoized = prog = new MemoizedProgram((ProgNode) root,
+                            this::compile);
+            }
+        }
+        return prog;
+    }
+
+    /**
+     * Compiles a node with the selected backend. Statements too deep to
+     * walk recursively are evaluated with a stack of their own, and the
+     * programs holding them are compiled one statement at a time.
+     * 
+     * @param node the root of the tree to compile.
+     * @return the compiled tree, or null to have the tree walked.
+     */
+    private Code compile(SyntaxNode node)
+    {
+        if (deep.contains(node))
+            return env -> StackEvaluator.evaluate(node, env);
+        if (node == root && !deep.isEmpty())
+            return compileStatements((ProgNode) root);
+        if (backend == Backend.TREE)
+            return null;
+        Code code = null;
+        if (lazy)
+            return ClosureCompiler.compile(node);   // Only closures are lazy.
+        if (parallel && ForkJoinEvaluator.hasForks(node))
+            return ClosureCompiler.compile(node);   // And forks.
+        if (backend == Backend.JVM)
+            code = JvmCompiler.compile(node);
+        else if (backend == Backend.VM)
+            code = BytecodeCompiler.compile(node);
+        return code != null ? code : ClosureCompiler.compile(node);
+    }
+
+    /**
+     * Compiles the statements of a program one at a time, as
+     * {@link ClosureCompiler} does the whole program.
+     */
+    private Code compileStatements(ProgNode prog)
+    {
+        List<SyntaxNode> stmts = prog.getStatements();
+        Code[] code = new Code[stmts.size()];
+        for (int i = 0; i < code.length; i++)
+        {
+            SyntaxNode s = stmts.get(i);
+            code[i] = compile(s);
+            if (code[i] == null)
+                code[i] = s::evaluate;
+        }
+        return env -> {
+            Object res = null;
+            for (Code c : code)
+                res = c.run(env);
+            return res;
+        };
     }
 
     /**
@@ -129,7 +487,8 @@ public class SyntaxTree
     }
 
     /**
-     * Get the type of the statement as a string.
+     * Get the type of the statement as a string. The tree is checked once;
+     * checking it again would bind its vals in the type environment twice.
      * @return the syntax tree's type.
      * @throws TypeException when the type of the tree can not 
      * be determined.
@@ -139,22 +498,124 @@ public class SyntaxTree
         if (root == null)
             throw new TypeException("Empty tree -- no type.");
             
-        Type typ = root.typeOf(tenv, inferencer);
-        if (typ == null)
+        if (type == null && !deep.isEmpty())
+            type = StackTypeChecker.typeOf(root, tenv, inferencer);
+        else if (type == null)
+            type = root.typeOf(tenv, inferencer);
+        if (type == null)
             throw new TypeException("Unknown value.");
-        return typ.toString();  
+        return type.toString();  
     }
 
     /**
-     * Type checks the program.
+     * Type checks the program, and optimizes it if it type checks.
      * @return true if the program type checks; otherwise false.
      */
     public boolean typeCheck()
     {
-        if (root instanceof ProgNode)
-            return ((ProgNode)root).typeCheck(tenv, inferencer);
-        return false;
+        if (!(root instanceof ProgNode))
+            return false;
+        try
+        {
+            getType();
+        }
+        catch (TypeException ex)
+        {
+            System.out.println("Type Error: " + ex.getMessage());
+            return false;
+        }
+        optimize();
+        return true;
     }
+
+    /**
+     * Folds the constant subexpressions of the tree into literals and
+     * removes the let bindings it does not need. Substituting a binding
+     * can make more of the tree constant, so the tree is folded again. The
+     * tree must have been type checked. Statements too deep to walk
+     * recursively are left as they are.
+     */
+    public void optimize()
+    {
+        if (root == null)
+            return;
+        SyntaxNode tree = root;
+        for (SyntaxNode part : shallowParts())
+            tree = replace(tree, part, ConstantFolder.fold(
+                    LetInliner.inline(ConstantFolder.fold(part))));
+        setRootNode(tree);
+    }
+
+    /**
+     * Gets the parts of the tree shallow enough to walk recursively: the
+     * whole tree, or the top-level statements that are not too deep.
+     */
+    private List<SyntaxNode> shallowParts()
+    {
+        if (deep.isEmpty())
+            return List.of(root);
+        return parts().stream().filter(part -> !deep.contains(part)).toList();
+    }
+
+    /**
+     * Replaces a part of a tree with its rewritten form, unless the pass
+     * rewriting it put the new form in its place already.
+     * 
+     * @return the root of the tree.
+     */
+    private static SyntaxNode replace(SyntaxNode tree, SyntaxNode part,
+            SyntaxNode rewritten)
+    {
+        if (part == tree)
+            return rewritten;
+        if (part.getParent() == tree)
+            part.replace(rewritten);
+        return tree;
+    }
+
+    /**
+     * Removes the top-level statements the value of the program does not
+     * depend on, so they are not evaluated. Statements that may fail are
+     * kept unless {@code assumeTotal} is set. The tree must have been type
+     * checked, and the vals removed are not bound in the environment.
+     * 
+     * @param assumeTotal true to remove statements even if they may fail.
+     * @return the number of statements removed.
+     */
+    public int eliminateDeadVals(boolean assumeTotal)
+    {
+        if (!(root instanceof ProgNode))
+            return 0;
+        int before = ((ProgNode) root).getStatements().size();
+        ProgNode prog = DeadVals.eliminate((ProgNode) root, assumeTotal);
+        setRootNode(prog);
+        return before - prog.getStatements().size();
+    }
+
+    /**
+     * Computes each repeated subexpression of the tree once, binding it by
+     * a let that its occurrences read instead. The tree must have been type
+     * checked. Statements too deep to walk recursively are left as they
+     * are.
+     * 
+     * @return the number of nodes no longer evaluated.
+     */
+    public int eliminateCommonSubexpressions()
+    {
+        if (root == null)
+            return 0;
+        SyntaxNode tree = root;
+        int eliminated = 0;
+        for (SyntaxNode part : shallowParts())
+        {
+            CommonSubexpressions cse = new CommonSubexpressions(part);
+            tree = replace(tree, part, cse.run());
+            eliminated += cse.getEliminated();
+        }
+        setRootNode(tree);
+        return eliminated;
+    }
+
     /**
      * Displays the syntax tree to the screen in a nicely formatted manner.
      */
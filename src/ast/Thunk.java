@@ -0,0 +1,124 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast;
+
+import ast.nodes.SyntaxNode;
+import environment.Environment;
+
+/**
+ * A binding whose value is computed the first time it is needed. Lazy
+ * evaluation binds thunks in place of values; reading a name forces the
+ * thunk, which evaluates its expression once and remembers the result.
+ * MFL is pure, so when the expression is evaluated does not change its
+ * value.
+ */
+public final class Thunk
+{
+    private SyntaxNode expr;    // The expression, until it is evaluated.
+    private Environment env;    // The bindings the expression sees.
+    private Object value;       // The value, once evaluated.
+    private final boolean deep; // Evaluate with a stack of its own.
+
+    /**
+     * Delays evaluating {@code expr} in {@code env}.
+     *
+     * @param expr the expression to evaluate.
+     * @param env the environment to evaluate it in. It must not be changed
+     *            afterwards, see {@link Environment#capture()}.
+     */
+    public Thunk(SyntaxNode expr, Environment env)
+    {
+        this(expr, env, false);
+    }
+
+    /**
+     * Delays evaluating {@code expr} in {@code env}.
+     *
+     * @param expr the expression to evaluate.
+     * @param env the environment to evaluate it in. It must not be changed
+     *            afterwards, see {@link Environment#capture()}.
+     * @param deep true to evaluate the expression with the
+     *             {@link StackEvaluator}, as it may be too deep to walk
+     *             recursively.
+     */
+    public Thunk(SyntaxNode expr, Environment env, boolean deep)
+    {
+        this.expr = expr;
+        this.env = env;
+        this.deep = deep;
+    }
+
+    /**
+     * Gets the value of the binding, evaluating it the first time.
+     *
+     * @return the value.
+     * @throws EvaluationException if the expression fails to evaluate. The
+     *         thunk is left unevaluated, so forcing it again fails again.
+     */
+    public Object get() throws EvaluationException
+    {
+        if (expr != null)
+        {
+            value = deep ? StackEvaluator.evaluate(expr, env)
+                    : expr.evaluate(env);
+            expr = null;   // Lets the expression and bindings be collected.
+            env = null;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the expression of the binding, for the {@link StackEvaluator} to
+     * evaluate in place of {@link #get()}.
+     *
+     * @return the expression, or null once the thunk is evaluated.
+     */
+    SyntaxNode getExpr()
+    {
+        return expr;
+    }
+
+    /** @return the bindings the expression sees, until it is evaluated. */
+    Environment getEnvironment()
+    {
+        return env;
+    }
+
+    /**
+     * Remembers the value of the expression, as {@link #get()} does.
+     *
+     * @param value the value of the expression.
+     */
+    void set(Object value)
+    {
+        this.value = value;
+        expr = null;
+        env = null;
+    }
+
+    /**
+     * Gets the value of {@code v}, forcing it if it is a thunk.
+     *
+     * @param v a bound value.
+     * @return the value itself.
+     * @throws EvaluationException if forcing the thunk fails.
+     */
+    public static Object force(Object v) throws EvaluationException
+    {
+        return v instanceof Thunk ? ((Thunk) v).get() : v;
+    }
+}
@@ -0,0 +1,673 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import static ast.compiler.Opcodes.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import ast.Aggregates;
+import ast.ErrorLog;
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.SortedLists;
+import ast.Thunk;
+import environment.Environment;
+import lexer.Symbol;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * A program compiled for the register machine, together with the machine
+ * that runs it. See {@link Opcodes} for the instruction set and
+ * {@link BytecodeCompiler} for how programs are built.
+ * <p>
+ * A program does not refer to the syntax tree it came from, so it can be
+ * kept after the tree is gone, written out with {@link #write} and read back
+ * with {@link #read}.
+ * </p>
+ */
+public final class Bytecode implements Code
+{
+    private static final int MAGIC = 0x4D464C42;   // "MFLB"
+    private static final int VERSION = 2;
+
+    private final int[] code;
+    private final Object[] consts;
+    private final int registers;     // Size of the object register file.
+    private final int primitives;    // Size of the primitive register file.
+
+    Bytecode(int[] code, Object[] consts, int registers, int primitives)
+    {
+        this.code = code;
+        this.consts = consts;
+        this.registers = registers;
+        this.primitives = primitives;
+    }
+
+    /**
+     * Gets the size of the program in bytes: its code and its constants
+     * table, not counting the constants themselves.
+     *
+     * @return the size of the encoded program.
+     */
+    public int size()
+    {
+        return 4 * (code.length + consts.length);
+    }
+
+    /**
+     * Runs the program.
+     *
+     * @param env the environment names are looked up in and vals bound in.
+     * @return the value of the program.
+     * @throws EvaluationException if the program fails.
+     */
+    @Override
+    public Object run(Environment env) throws EvaluationException
+    {
+        final int[] code = this.code;
+        final Object[] k = consts;
+        final Object[] r = new Object[registers];
+        final long[] p = new long[primitives];
+        int pc = 0;
+
+        while (true)
+        {
+            int op = code[pc];
+            int d = code[pc + 1];
+            switch (op)
+            {
+            case KONST:
+                r[d] = k[code[pc + 2]];
+                break;
+            case LOAD:
+                r[d] = load(env, (Token) k[code[pc + 2]], code[pc + 3]);
+                break;
+            case MOV:
+                r[d] = r[code[pc + 2]];
+                break;
+            case PMOV:
+                p[d] = p[code[pc + 2]];
+                break;
+
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case CONCAT:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+            case EQ:
+            case NE:
+                r[d] = binary(op, r[code[pc + 2]], r[code[pc + 3]],
+                        code[pc + 4]);
+                break;
+
+            case NEG:
+            case NOT:
+            case HD:
+            case TL:
+                r[d] = unary(op, r[code[pc + 2]], code[pc + 3]);
+                break;
+            case CHKZ:
+                r[d] = truth(r[code[pc + 2]], code[pc + 3]);
+                break;
+
+            case MKLIST:
+            {
+                ListValue list = new ListValue();
+                for (int i = code[pc + 2], end = i + code[pc + 3]; i < end; i++)
+                    list.add(r[i]);
+                r[d] = list;
+                break;
+            }
+            case VAL:
+                r[d] = val(env, (Token) k[code[pc + 3]], r[code[pc + 2]],
+                        code[pc + 4]);
+                break;
+            case RET:
+                return r[d];
+
+            case JF:
+                if (!truth(r[d], code[pc + 3]))
+                {
+                    pc = code[pc + 2];
+                    continue;
+                }
+                break;
+            case JT:
+                if (truth(r[d], code[pc + 3]))
+                {
+                    pc = code[pc + 2];
+                    continue;
+                }
+                break;
+            case ZJF:
+                if (p[d] == 0)
+                {
+                    pc = code[pc + 2];
+                    continue;
+                }
+                break;
+            case ZJT:
+                if (p[d] != 0)
+                {
+                    pc = code[pc + 2];
+                    continue;
+                }
+                break;
+
+            case ICONST:
+                p[d] = code[pc + 2];
+                break;
+            case DCONST:
+                p[d] = Double.doubleToRawLongBits((Double) k[code[pc + 2]]);
+                break;
+            case IADD:
+                p[d] = (int) p[code[pc + 2]] + (int) p[code[pc + 3]];
+                break;
+            case ISUB:
+                p[d] = (int) p[code[pc + 2]] - (int) p[code[pc + 3]];
+                break;
+            case IMUL:
+                p[d] = (int) p[code[pc + 2]] * (int) p[code[pc + 3]];
+                break;
+            case IDIV:
+                p[d] = (int) p[code[pc + 2]] / (int) p[code[pc + 3]];
+                break;
+            case IMOD:
+                p[d] = (int) p[code[pc + 2]] % (int) p[code[pc + 3]];
+                break;
+            case DADD:
+                p[d] = bits(dbl(p[code[pc + 2]]) + dbl(p[code[pc + 3]]));
+                break;
+            case DSUB:
+                p[d] = bits(dbl(p[code[pc + 2]]) - dbl(p[code[pc + 3]]));
+                break;
+            case DMUL:
+                p[d] = bits(dbl(p[code[pc + 2]]) * dbl(p[code[pc + 3]]));
+                break;
+            case DDIV:
+                p[d] = bits(dbl(p[code[pc + 2]]) / dbl(p[code[pc + 3]]));
+                break;
+            case INEG:
+                p[d] = -(int) p[code[pc + 2]];
+                break;
+            case DNEG:
+                p[d] = bits(-dbl(p[code[pc + 2]]));
+                break;
+            case ZNOT:
+                p[d] = p[code[pc + 2]] ^ 1;
+                break;
+            case I2D:
+                p[d] = bits((int) p[code[pc + 2]]);
+                break;
+
+            case ILT:
+                p[d] = p[code[pc + 2]] < p[code[pc + 3]] ? 1 : 0;
+                break;
+            case IGT:
+                p[d] = p[code[pc + 2]] > p[code[pc + 3]] ? 1 : 0;
+                break;
+            case ILE:
+                p[d] = p[code[pc + 2]] <= p[code[pc + 3]] ? 1 : 0;
+                break;
+            case IGE:
+                p[d] = p[code[pc + 2]] >= p[code[pc + 3]] ? 1 : 0;
+                break;
+            case IEQ:
+                p[d] = p[code[pc + 2]] == p[code[pc + 3]] ? 1 : 0;
+                break;
+            case INE:
+                p[d] = p[code[pc + 2]] != p[code[pc + 3]] ? 1 : 0;
+                break;
+            case DLT:
+                p[d] = dbl(p[code[pc + 2]]) < dbl(p[code[pc + 3]]) ? 1 : 0;
+                break;
+            case DGT:
+                p[d] = dbl(p[code[pc + 2]]) > dbl(p[code[pc + 3]]) ? 1 : 0;
+                break;
+            case DLE:
+                p[d] = dbl(p[code[pc + 2]]) <= dbl(p[code[pc + 3]]) ? 1 : 0;
+                break;
+            case DGE:
+                p[d] = dbl(p[code[pc + 2]]) >= dbl(p[code[pc + 3]]) ? 1 : 0;
+                break;
+            case DEQ:
+                p[d] = dbl(p[code[pc + 2]]) == dbl(p[code[pc + 3]]) ? 1 : 0;
+                break;
+            case DNE:
+                p[d] = dbl(p[code[pc + 2]]) != dbl(p[code[pc + 3]]) ? 1 : 0;
+                break;
+            case ILEN:
+                p[d] = length(r[code[pc + 2]], code[pc + 3]);
+                break;
+            case FOLD:
+                r[d] = fold(r[code[pc + 2]], code[pc + 3], code[pc + 4]);
+                break;
+            case SORT:
+                r[d] = sort(r[code[pc + 2]], code[pc + 3]);
+                break;
+            case ELEM:
+                r[d] = SortedLists.contains(r[code[pc + 2]],
+                        list(r[code[pc + 3]], "elem", code[pc + 4]));
+                break;
+            case INDEX:
+                r[d] = index(r[code[pc + 2]], r[code[pc + 3]], code[pc + 4]);
+                break;
+            case TAKE:
+            case DROP:
+                r[d] = slice(op, r[code[pc + 2]], r[code[pc + 3]], code[pc + 4]);
+                break;
+
+            case BOXI:
+                r[d] = (int) p[code[pc + 2]];
+                break;
+            case BOXD:
+                r[d] = dbl(p[code[pc + 2]]);
+                break;
+            case BOXZ:
+                r[d] = p[code[pc + 2]] != 0;
+                break;
+            case UNBOXI:
+                p[d] = Ops.toInt(r[code[pc + 2]]);
+                break;
+            case UNBOXD:
+                p[d] = bits(Ops.toDouble(r[code[pc + 2]]));
+                break;
+            case UNBOXZ:
+                p[d] = Ops.toBool(r[code[pc + 2]]) ? 1 : 0;
+                break;
+
+            default:
+                throw new IllegalStateException("bad opcode " + op);
+            }
+            pc += 1 + operands(op);
+        }
+    }
+
+    private static double dbl(long bits)
+    {
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long bits(double v)
+    {
+        return Double.doubleToRawLongBits(v);
+    }
+
+    /************
+     * The generic instructions. These check their operands exactly as the
+     * nodes they were compiled from do.
+     ************/
+
+    private static EvaluationException error(int line, String msg)
+    {
+        ErrorLog.report("Error (line " + line + "): " + msg);
+        return new EvaluationException();
+    }
+
+    private static Object load(Environment env, Token name, int line)
+            throws EvaluationException
+    {
+        Object v = Thunk.force(env.lookup(name));
+        if (v != null)
+            return v;
+        throw error(line, name.getValue() + " is not defined.");
+    }
+
+    private static Object val(Environment env, Token name, Object v, int line)
+            throws EvaluationException
+    {
+        if (env.lookup(name) != null)
+            throw error(line, name.getValue() + " already defined.");
+        env.updateEnvironment(name, v);
+        return name.getValue();
+    }
+
+    private static boolean truth(Object v, int line)
+            throws EvaluationException
+    {
+        if (!(v instanceof Boolean))
+            throw error(line, "Logical operators expect boolean operands.");
+        return (Boolean) v;
+    }
+
+    private static Object binary(int op, Object a, Object b, int line)
+            throws EvaluationException
+    {
+        switch (op)
+        {
+        case CONCAT:
+            if (!(a instanceof List<?>) || !(b instanceof List<?>))
+                throw error(line, "++ expects two lists.");
+            return ListValue.concat((List<?>) a, (List<?>) b);
+
+        case EQ:
+        case NE:
+            boolean eq;
+            if (isNumber(a) && isNumber(b))
+                eq = toDouble(a) == toDouble(b);
+            else
+                eq = a != null ? a.equals(b) : b == null;
+            return op == EQ ? eq : !eq;
+
+        case LT:
+        case GT:
+        case LE:
+        case GE:
+            if (!isNumber(a) || !isNumber(b))
+                throw error(line, relName(op) + " expects numeric operands");
+            double x = toDouble(a);
+            double y = toDouble(b);
+            switch (op)
+            {
+            case LT: return x < y;
+            case GT: return x > y;
+            case LE: return x <= y;
+            default: return x >= y;
+            }
+
+        default:
+            return arithmetic(op, a, b, line);
+        }
+    }
+
+    private static Object arithmetic(int op, Object a, Object b, int line)
+            throws EvaluationException
+    {
+        if (!isNumber(a) || !isNumber(b))
+            throw error(line, "Operator " + arithName(op)
+                    + " expects numeric operands.");
+
+        if (a instanceof Integer && b instanceof Integer)
+        {
+            int x = (Integer) a;
+            int y = (Integer) b;
+            switch (op)
+            {
+            case ADD: return x + y;
+            case SUB: return x - y;
+            case MUL: return x * y;
+            case DIV: return x / y;
+            default:  return x % y;
+            }
+        }
+
+        double x = toDouble(a);
+        double y = toDouble(b);
+        switch (op)
+        {
+        case ADD: return x + y;
+        case SUB: return x - y;
+        case MUL: return x * y;
+        case DIV: return x / y;
+        default:
+            throw error(line, "mod requires integer operands.");
+        }
+    }
+
+    private static Object unary(int op, Object a, int line)
+            throws EvaluationException
+    {
+        switch (op)
+        {
+        case NOT:
+            if (a instanceof Boolean)
+                return !(Boolean) a;
+            throw error(line, "not expects a boolean.");
+        case NEG:
+            if (a instanceof Integer)
+                return -(Integer) a;
+            if (a instanceof Double)
+                return -(Double) a;
+            throw error(line, "Unary - expects numeric operands.");
+        case HD:
+            return nonEmpty(a, "hd", line).get(0);
+        default:
+            List<?> list = nonEmpty(a, "tl", line);
+            return ListValue.slice(list, 1, list.size());
+        }
+    }
+
+    private static List<?> nonEmpty(Object v, String op, int line)
+            throws EvaluationException
+    {
+        if (!(v instanceof List<?>))
+            throw error(line, op + " expects a list");
+        List<?> list = (List<?>) v;
+        if (list.isEmpty())
+            throw error(line, op + " on empty list");
+        return list;
+    }
+
+    private static int length(Object v, int line) throws EvaluationException
+    {
+        if (!(v instanceof List<?>))
+            throw error(line, "len expects a list");
+        return ((List<?>) v).size();
+    }
+
+    private static Object fold(Object v, int agg, int line)
+            throws EvaluationException
+    {
+        TokenType op = FOLDS[agg % FOLD_REAL];
+        String name = op.name().toLowerCase();
+        List<?> list = list(v, name, line);
+        Object res = Aggregates.fold(op, list, agg >= FOLD_REAL);
+        if (res != null)
+            return res;
+        throw error(line, list.isEmpty() ? name + " on empty list"
+                : name + " expects a list of numbers");
+    }
+
+    private static Object sort(Object v, int line) throws EvaluationException
+    {
+        ListValue sorted = SortedLists.sort(list(v, "sort", line));
+        if (sorted == null)
+            throw error(line, "sort expects a list of numbers");
+        return sorted;
+    }
+
+    private static Object index(Object v, Object k, int line)
+            throws EvaluationException
+    {
+        List<?> list = list(v, "!", line);
+        if (!(k instanceof Integer))
+            throw error(line, "! expects an int index");
+        int i = (Integer) k;
+        if (i < 0 || i >= list.size())
+            throw error(line, "index " + i + " out of bounds for list of length "
+                    + list.size());
+        return list.get(i);
+    }
+
+    private static Object slice(int op, Object n, Object v, int line)
+            throws EvaluationException
+    {
+        String name = op == TAKE ? "take" : "drop";
+        if (!(n instanceof Integer))
+            throw error(line, name + " expects an int count");
+        List<?> list = list(v, name, line);
+        int at = Math.max(0, Math.min((Integer) n, list.size()));
+        return op == TAKE ? ListValue.slice(list, 0, at)
+                : ListValue.slice(list, at, list.size());
+    }
+
+    private static List<?> list(Object v, String op, int line)
+            throws EvaluationException
+    {
+        if (!(v instanceof List<?>))
+            throw error(line, op + " expects a list");
+        return (List<?>) v;
+    }
+
+    private static boolean isNumber(Object o)
+    {
+        return o instanceof Integer || o instanceof Double;
+    }
+
+    private static double toDouble(Object v)
+    {
+        return (v instanceof Integer) ? ((Integer) v).doubleValue() : (Double) v;
+    }
+
+    /** The token the tree walker names an arithmetic operator by. */
+    private static TokenType arithName(int op)
+    {
+        switch (op)
+        {
+        case ADD: return TokenType.ADD;
+        case SUB: return TokenType.SUB;
+        case MUL: return TokenType.MULT;
+        case DIV: return TokenType.DIV;
+        default:  return TokenType.MOD;
+        }
+    }
+
+    /** The token the tree walker names a comparison by. */
+    private static TokenType relName(int op)
+    {
+        switch (op)
+        {
+        case LT: return TokenType.LT;
+        case GT: return TokenType.GT;
+        case LE: return TokenType.LTE;
+        default: return TokenType.GTE;
+        }
+    }
+
+    /************
+     * Serialization
+     ************/
+
+    /**
+     * Writes the program to {@code out}.
+     *
+     * @param out the stream to write to.
+     * @throws IOException if the stream can not be written.
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(registers);
+        data.writeInt(primitives);
+        data.writeInt(code.length);
+        for (int c : code)
+            data.writeInt(c);
+
+        data.writeInt(consts.length);
+        for (Object c : consts)
+        {
+            if (c instanceof Integer)
+            {
+                data.writeByte('I');
+                data.writeInt((Integer) c);
+            }
+            else if (c instanceof Double)
+            {
+                data.writeByte('D');
+                data.writeDouble((Double) c);
+            }
+            else if (c instanceof Boolean)
+            {
+                data.writeByte('Z');
+                data.writeBoolean((Boolean) c);
+            }
+            else
+            {
+                data.writeByte('N');
+                data.writeUTF(((Token) c).getValue());
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a program written by {@link #write}.
+     *
+     * @param in the stream to read from.
+     * @return the program.
+     * @throws IOException if the stream does not hold a program.
+     */
+    public static Bytecode read(InputStream in) throws IOException
+    {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION)
+            throw new IOException("not an MFL bytecode file");
+        int registers = data.readInt();
+        int primitives = data.readInt();
+
+        int[] code = new int[data.readInt()];
+        for (int i = 0; i < code.length; i++)
+            code[i] = data.readInt();
+
+        Object[] consts = new Object[data.readInt()];
+        for (int i = 0; i < consts.length; i++)
+        {
+            int tag = data.readByte();
+            switch (tag)
+            {
+            case 'I':
+                consts[i] = data.readInt();
+                break;
+            case 'D':
+                consts[i] = data.readDouble();
+                break;
+            case 'Z':
+                consts[i] = data.readBoolean();
+                break;
+            case 'N':
+                consts[i] = new Token(Symbol.intern(data.readUTF()));
+                break;
+            default:
+                throw new IOException("bad constant tag " + tag);
+            }
+        }
+        return new Bytecode(code, consts, registers, primitives);
+    }
+
+    /**
+     * Lists the instructions of the program.
+     *
+     * @return the listing.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += 1 + operands(code[pc]))
+        {
+            sb.append(String.format("%4d  %-7s", pc, NAMES[code[pc]]));
+            for (int i = 1; i <= operands(code[pc]); i++)
+                sb.append(' ').append(code[pc + i]);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,717 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import static ast.compiler.Opcodes.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.ProgNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import ast.nodes.ValNode;
+import ast.typesystem.types.BoolType;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * Compiles a syntax tree into {@link Bytecode} for the register machine.
+ * <p>
+ * Registers are allocated like a stack: the operands of an instruction are
+ * the most recently allocated registers, and are released for its result.
+ * A let keeps its bound value in a register for the duration of its body,
+ * and the names it binds are read straight from that register.
+ * </p>
+ * <p>
+ * Type checked subtrees are compiled to the typed instructions on the
+ * primitive registers; everything else uses the generic instructions.
+ * </p>
+ */
+public final class BytecodeCompiler
+{
+    // The kinds of value a register holds.
+    private static final int OBJ = 0;
+    private static final int INT = 1;
+    private static final int DBL = 2;
+    private static final int BOOL = 3;
+
+    /** A value computed into a register. */
+    private static final class Operand
+    {
+        final int kind;
+        final int reg;
+        final boolean temp;   // Released once used?
+
+        Operand(int kind, int reg, boolean temp)
+        {
+            this.kind = kind;
+            this.reg = reg;
+            this.temp = temp;
+        }
+    }
+
+    private int[] code = new int[64];
+    private int length;
+    private final ArrayList<Object> consts = new ArrayList<>();
+    private final HashMap<Object, Integer> constIndex = new HashMap<>();
+    private int topR, maxR;   // Next free object register, and high water.
+    private int topP, maxP;   // The same for primitive registers.
+    // The let bound names in scope, and the registers holding them.
+    private final HashMap<String, Operand> scope = new HashMap<>();
+
+    private BytecodeCompiler() {}
+
+    /**
+     * Compiles the tree rooted at {@code node}.
+     *
+     * @param node the root of the tree to compile.
+     * @return the compiled program, or null if the tree holds nodes the
+     *         register machine has no instructions for.
+     */
+    public static Bytecode compile(SyntaxNode node)
+    {
+        BytecodeCompiler c = new BytecodeCompiler();
+        Operand res;
+        try
+        {
+            res = c.asObj(c.compileNode(node));
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            return null;
+        }
+        c.emit(RET, res.reg);
+        return new Bytecode(Arrays.copyOf(c.code, c.length),
+                c.consts.toArray(), c.maxR, c.maxP);
+    }
+
+    /************
+     * Emission and registers
+     ************/
+
+    private void emit(int... words)
+    {
+        if (length + words.length > code.length)
+            code = Arrays.copyOf(code, 2 * (length + words.length));
+        for (int w : words)
+            code[length++] = w;
+    }
+
+    private int constant(Object value)
+    {
+        // Keys include the class so that 1 and 1.0 stay apart.
+        Object key = value instanceof Token
+                ? "name:" + ((Token) value).getValue()
+                : value.getClass().getName() + ":" + value;
+        Integer idx = constIndex.get(key);
+        if (idx == null)
+        {
+            idx = consts.size();
+            consts.add(value);
+            constIndex.put(key, idx);
+        }
+        return idx;
+    }
+
+    private Operand alloc(int kind)
+    {
+        int reg;
+        if (kind == OBJ)
+        {
+            reg = topR++;
+            maxR = Math.max(maxR, topR);
+        }
+        else
+        {
+            reg = topP++;
+            maxP = Math.max(maxP, topP);
+        }
+        return new Operand(kind, reg, true);
+    }
+
+    private void free(Operand o)
+    {
+        if (!o.temp)
+            return;
+        if (o.kind == OBJ)
+            topR--;
+        else
+            topP--;
+    }
+
+    private static int line(SyntaxNode node)
+    {
+        return (int) node.lineNumber();
+    }
+
+    /************
+     * Conversions between kinds
+     ************/
+
+    private Operand asObj(Operand o)
+    {
+        if (o.kind == OBJ)
+            return o;
+        free(o);
+        Operand d = alloc(OBJ);
+        emit(o.kind == INT ? BOXI : o.kind == DBL ? BOXD : BOXZ, d.reg, o.reg);
+        return d;
+    }
+
+    private Operand unbox(Operand o, int kind)
+    {
+        Operand obj = asObj(o);
+        free(obj);
+        Operand d = alloc(kind);
+        emit(kind == INT ? UNBOXI : kind == DBL ? UNBOXD : UNBOXZ, d.reg,
+                obj.reg);
+        return d;
+    }
+
+    private Operand asInt(Operand o)
+    {
+        return o.kind == INT ? o : unbox(o, INT);
+    }
+
+    private Operand asDouble(Operand o)
+    {
+        if (o.kind == DBL)
+            return o;
+        if (o.kind == INT)
+        {
+            free(o);
+            Operand d = alloc(DBL);
+            emit(I2D, d.reg, o.reg);
+            return d;
+        }
+        return unbox(o, DBL);
+    }
+
+    private Operand asBool(Operand o)
+    {
+        return o.kind == BOOL ? o : unbox(o, BOOL);
+    }
+
+    /************
+     * Compilation
+     ************/
+
+    private Operand compileNode(SyntaxNode node)
+    {
+        if (node instanceof TokenNode)
+            return compileToken((TokenNode) node);
+        if (node instanceof BinOpNode)
+            return compileBinOp((BinOpNode) node);
+        if (node instanceof RelOpNode)
+            return compileRelOp((RelOpNode) node);
+        if (node instanceof LogicalNode)
+            return compileLogical((LogicalNode) node);
+        if (node instanceof UnaryOpNode)
+            return compileUnaryOp((UnaryOpNode) node);
+        if (node instanceof LetNode)
+            return compileLet((LetNode) node);
+        if (node instanceof ValNode)
+            return compileVal((ValNode) node);
+        if (node instanceof ListNode)
+            return compileList((ListNode) node);
+        if (node instanceof HeadNode)
+            return generic(HD, ((HeadNode) node).getExpr(), node);
+        if (node instanceof TailNode)
+            return generic(TL, ((TailNode) node).getExpr(), node);
+        if (node instanceof LenNode)
+            return compileInt(node);
+        if (node instanceof AggregateNode)
+            return compileFold((AggregateNode) node);
+        if (node instanceof SortNode)
+            return generic(SORT, ((SortNode) node).getExpr(), node);
+        if (node instanceof ElemNode)
+            return generic(ELEM, ((ElemNode) node).getElem(),
+                    ((ElemNode) node).getList(), node);
+        if (node instanceof IndexNode)
+            return generic(INDEX, ((IndexNode) node).getList(),
+                    ((IndexNode) node).getIndex(), node);
+        if (node instanceof SliceNode)
+            return generic(((SliceNode) node).getOp() == TokenType.TAKE
+                    ? TAKE : DROP, ((SliceNode) node).getCount(),
+                    ((SliceNode) node).getList(), node);
+        if (node instanceof ProgNode)
+            return compileProg((ProgNode) node);
+
+        throw new UnsupportedOperationException(node.getClass().getName());
+    }
+
+    private Operand compileToken(TokenNode node)
+    {
+        Object literal = node.getLiteral();
+        Operand d;
+        if (literal != null)
+        {
+            d = alloc(OBJ);
+            emit(KONST, d.reg, constant(literal));
+            return d;
+        }
+
+        Operand bound = scope.get(node.getToken().getValue());
+        if (bound != null)
+            return bound;
+
+        d = alloc(OBJ);
+        emit(LOAD, d.reg, constant(node.getToken()), line(node));
+        return d;
+    }
+
+    private Operand compileBinOp(BinOpNode node)
+    {
+        Type type = node.getResultType();
+        if (type instanceof IntType)
+            return compileInt(node);
+        if (type instanceof RealType)
+            return compileDouble(node);
+        return generic(genericOp(node.getOp()), node.getLeftTerm(),
+                node.getRightTerm(), node);
+    }
+
+    private Operand compileRelOp(RelOpNode node)
+    {
+        if (isTypedCompare(node))
+            return compileBool(node);
+        return generic(genericOp(node.getOp()), node.getLeftTerm(),
+                node.getRightTerm(), node);
+    }
+
+    /**
+     * Compiles {@code and} and {@code or}: the left operand goes into the
+     * result register, and the right one is evaluated only if the branch on
+     * the left one is not taken.
+     */
+    private Operand compileLogical(LogicalNode node)
+    {
+        if (node.getResultType() instanceof BoolType)
+            return compileBool(node);
+
+        boolean and = node.getOp() == TokenType.AND;
+        Operand d = into(OBJ, asObj(compileNode(node.getLeftTerm())));
+        int branch = length;
+        emit(and ? JF : JT, d.reg, 0, line(node));
+        Operand b = asObj(compileNode(node.getRightTerm()));
+        free(b);
+        emit(CHKZ, d.reg, b.reg, line(node));
+        code[branch + 2] = length;
+        return d;
+    }
+
+    /**
+     * Gets a fresh temporary register holding the value of {@code o}.
+     */
+    private Operand into(int kind, Operand o)
+    {
+        free(o);
+        Operand d = alloc(kind);
+        if (d.reg != o.reg || !o.temp)
+            emit(kind == OBJ ? MOV : PMOV, d.reg, o.reg);
+        return d;
+    }
+
+    private Operand compileUnaryOp(UnaryOpNode node)
+    {
+        Type type = node.getResultType();
+        if (type instanceof IntType)
+            return compileInt(node);
+        if (type instanceof RealType)
+            return compileDouble(node);
+        if (type instanceof BoolType)
+            return compileBool(node);
+        return generic(node.getOp() == TokenType.NOT ? NOT : NEG,
+                node.getExpr(), node);
+    }
+
+    private Operand generic(int op, SyntaxNode left, SyntaxNode right,
+            SyntaxNode node)
+    {
+        Operand a = asObj(compileNode(left));
+        Operand b = asObj(compileNode(right));
+        free(b);
+        free(a);
+        Operand d = alloc(OBJ);
+        emit(op, d.reg, a.reg, b.reg, line(node));
+        return d;
+    }
+
+    private Operand generic(int op, SyntaxNode expr, SyntaxNode node)
+    {
+        Operand a = asObj(compileNode(expr));
+        free(a);
+        Operand d = alloc(OBJ);
+        emit(op, d.reg, a.reg, line(node));
+        return d;
+    }
+
+    private Operand compileFold(AggregateNode node)
+    {
+        int agg = Arrays.asList(FOLDS).indexOf(node.getOp());
+        if (node.getResultType() instanceof RealType)
+            agg += FOLD_REAL;
+        Operand a = asObj(compileNode(node.getExpr()));
+        free(a);
+        Operand d = alloc(OBJ);
+        emit(FOLD, d.reg, a.reg, agg, line(node));
+        return d;
+    }
+
+    private Operand compileLet(LetNode node)
+    {
+        String name = node.getName().getValue();
+        Operand bound = compileNode(node.getBound());
+
+        // The body reads the name from the bound value's register.
+        Operand shadowed = scope.put(name, new Operand(bound.kind, bound.reg,
+                false));
+        Operand body = compileNode(node.getBody());
+        if (shadowed == null)
+            scope.remove(name);
+        else
+            scope.put(name, shadowed);
+
+        if (!bound.temp)
+            return body;
+
+        // Release the bound register, moving the result down into it.
+        free(body);
+        free(bound);
+        Operand d = alloc(body.kind);
+        if (d.reg != body.reg || !body.temp)
+            emit(d.kind == OBJ ? MOV : PMOV, d.reg, body.reg);
+        return d;
+    }
+
+    private Operand compileVal(ValNode node)
+    {
+        Operand a = asObj(compileNode(node.getExpr()));
+        free(a);
+        Operand d = alloc(OBJ);
+        emit(VAL, d.reg, a.reg, constant(node.getNameToken()), line(node));
+        return d;
+    }
+
+    private Operand compileList(ListNode node)
+    {
+        int first = topR;
+        int n = 0;
+        for (SyntaxNode e : node.getElements())
+        {
+            Operand o = asObj(compileNode(e));
+            if (!o.temp)
+            {
+                // A let bound value, copied into place.
+                Operand d = alloc(OBJ);
+                emit(MOV, d.reg, o.reg);
+            }
+            n++;
+        }
+        topR = first;
+        Operand d = alloc(OBJ);
+        emit(MKLIST, d.reg, first, n);
+        maxR = Math.max(maxR, first + n);
+        return d;
+    }
+
+    private Operand compileProg(ProgNode node)
+    {
+        Operand res = null;
+        for (SyntaxNode s : node.getStatements())
+        {
+            if (res != null)
+                free(res);
+            res = asObj(compileNode(s));
+        }
+        return res;
+    }
+
+    /************
+     * Typed compilation
+     ************/
+
+    private Operand compileInt(SyntaxNode node)
+    {
+        if (node instanceof TokenNode
+                && ((TokenNode) node).getLiteral() instanceof Integer)
+        {
+            Operand d = alloc(INT);
+            emit(ICONST, d.reg, (Integer) ((TokenNode) node).getLiteral());
+            return d;
+        }
+
+        if (node instanceof BinOpNode
+                && ((BinOpNode) node).getResultType() instanceof IntType)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            Operand a = compileInt(bin.getLeftTerm());
+            Operand b = compileInt(bin.getRightTerm());
+            return typed(intOp(bin.getOp()), INT, a, b);
+        }
+
+        if (node instanceof UnaryOpNode
+                && ((UnaryOpNode) node).getResultType() instanceof IntType)
+        {
+            Operand a = compileInt(((UnaryOpNode) node).getExpr());
+            free(a);
+            Operand d = alloc(INT);
+            emit(INEG, d.reg, a.reg);
+            return d;
+        }
+
+        if (node instanceof LenNode)
+        {
+            Operand a = asObj(compileNode(((LenNode) node).getExpr()));
+            free(a);
+            Operand d = alloc(INT);
+            emit(ILEN, d.reg, a.reg, line(node));
+            return d;
+        }
+
+        return asInt(compileUntyped(node));
+    }
+
+    private Operand compileDouble(SyntaxNode node)
+    {
+        if (node instanceof TokenNode)
+        {
+            Object lit = ((TokenNode) node).getLiteral();
+            if (lit instanceof Integer || lit instanceof Double)
+            {
+                Operand d = alloc(DBL);
+                emit(DCONST, d.reg, constant(((Number) lit).doubleValue()));
+                return d;
+            }
+        }
+
+        Type type = null;
+        if (node instanceof BinOpNode)
+            type = ((BinOpNode) node).getResultType();
+        else if (node instanceof UnaryOpNode)
+            type = ((UnaryOpNode) node).getResultType();
+
+        if (type instanceof IntType || node instanceof LenNode)
+            return asDouble(compileInt(node));
+
+        if (type instanceof RealType && node instanceof BinOpNode)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            Operand a = compileDouble(bin.getLeftTerm());
+            Operand b = compileDouble(bin.getRightTerm());
+            return typed(doubleOp(bin.getOp()), DBL, a, b);
+        }
+
+        if (type instanceof RealType && node instanceof UnaryOpNode)
+        {
+            Operand a = compileDouble(((UnaryOpNode) node).getExpr());
+            free(a);
+            Operand d = alloc(DBL);
+            emit(DNEG, d.reg, a.reg);
+            return d;
+        }
+
+        return asDouble(compileUntyped(node));
+    }
+
+    private Operand compileBool(SyntaxNode node)
+    {
+        if (node instanceof TokenNode
+                && ((TokenNode) node).getLiteral() instanceof Boolean)
+        {
+            Operand d = alloc(BOOL);
+            emit(ICONST, d.reg,
+                    (Boolean) ((TokenNode) node).getLiteral() ? 1 : 0);
+            return d;
+        }
+
+        if (node instanceof LogicalNode
+                && ((LogicalNode) node).getResultType() instanceof BoolType)
+        {
+            LogicalNode log = (LogicalNode) node;
+            Operand d = into(BOOL, compileBool(log.getLeftTerm()));
+            int branch = length;
+            emit(log.getOp() == TokenType.AND ? ZJF : ZJT, d.reg, 0);
+            Operand b = compileBool(log.getRightTerm());
+            free(b);
+            emit(PMOV, d.reg, b.reg);
+            code[branch + 2] = length;
+            return d;
+        }
+
+        if (node instanceof RelOpNode && isTypedCompare((RelOpNode) node))
+        {
+            RelOpNode rel = (RelOpNode) node;
+            Type type = rel.getOperandType();
+            Operand a, b;
+            int op = compareOp(rel.getOp());
+            if (type instanceof RealType)
+            {
+                a = compileDouble(rel.getLeftTerm());
+                b = compileDouble(rel.getRightTerm());
+                op += DLT - ILT;
+            }
+            else if (type instanceof IntType)
+            {
+                a = compileInt(rel.getLeftTerm());
+                b = compileInt(rel.getRightTerm());
+            }
+            else
+            {
+                a = compileBool(rel.getLeftTerm());
+                b = compileBool(rel.getRightTerm());
+            }
+            return typed(op, BOOL, a, b);
+        }
+
+        if (node instanceof UnaryOpNode
+                && ((UnaryOpNode) node).getResultType() instanceof BoolType)
+        {
+            Operand a = compileBool(((UnaryOpNode) node).getExpr());
+            free(a);
+            Operand d = alloc(BOOL);
+            emit(ZNOT, d.reg, a.reg);
+            return d;
+        }
+
+        return asBool(compileUntyped(node));
+    }
+
+    /**
+     * Compiles a node the typed compilers have no instruction for. Typed
+     * operators reaching here are compiled generically, since compiling
+     * them through {@link #compileNode} would come straight back.
+     */
+    private Operand compileUntyped(SyntaxNode node)
+    {
+        if (node instanceof BinOpNode
+                && ((BinOpNode) node).getResultType() != null)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            return generic(genericOp(bin.getOp()), bin.getLeftTerm(),
+                    bin.getRightTerm(), bin);
+        }
+        return compileNode(node);
+    }
+
+    private Operand typed(int op, int kind, Operand a, Operand b)
+    {
+        free(b);
+        free(a);
+        Operand d = alloc(kind);
+        emit(op, d.reg, a.reg, b.reg);
+        return d;
+    }
+
+    private static boolean isTypedCompare(RelOpNode node)
+    {
+        Type type = node.getOperandType();
+        switch (node.getOp())
+        {
+        case LT:
+        case GT:
+        case LTE:
+        case GTE:
+            return type instanceof IntType || type instanceof RealType;
+        case EQ:
+        case NEQ:
+            return type != null;
+        default:
+            return false;
+        }
+    }
+
+    private static int genericOp(TokenType op)
+    {
+        switch (op)
+        {
+        case ADD:    return ADD;
+        case SUB:    return SUB;
+        case MULT:   return MUL;
+        case DIV:    return DIV;
+        case MOD:    return MOD;
+        case CONCAT: return CONCAT;
+        case LT:     return LT;
+        case GT:     return GT;
+        case LTE:    return LE;
+        case GTE:    return GE;
+        case EQ:     return EQ;
+        case NEQ:    return NE;
+        default:
+            throw new UnsupportedOperationException(op.toString());
+        }
+    }
+
+    private static int intOp(TokenType op)
+    {
+        switch (op)
+        {
+        case ADD:  return IADD;
+        case SUB:  return ISUB;
+        case MULT: return IMUL;
+        case DIV:  return IDIV;
+        case MOD:  return IMOD;
+        default:
+            throw new UnsupportedOperationException(op.toString());
+        }
+    }
+
+    private static int doubleOp(TokenType op)
+    {
+        switch (op)
+        {
+        case ADD:  return DADD;
+        case SUB:  return DSUB;
+        case MULT: return DMUL;
+        case DIV:  return DDIV;
+        default:
+            throw new UnsupportedOperationException(op.toString());
+        }
+    }
+
+    private static int compareOp(TokenType op)
+    {
+        switch (op)
+        {
+        case LT:  return ILT;
+        case GT:  return IGT;
+        case LTE: return ILE;
+        case GTE: return IGE;
+        case EQ:  return IEQ;
+        default:  return INE;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A minimal writer for JVM class files, covering only what the
+ * {@link JvmCompiler} emits: a constant pool, fields, and methods with a
+ * {@code Code} attribute.
+ * <p>
+ * Classes are written in version 49 (Java 5) format, so the verifier infers
+ * the types at branch targets itself and no {@code StackMapTable} has to be
+ * computed.
+ * </p>
+ */
+final class ClassFile
+{
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAJOR_VERSION = 49;
+
+    // Constant pool tags.
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final ArrayList<byte[]> fields = new ArrayList<>();
+    private final ArrayList<byte[]> methods = new ArrayList<>();
+
+    /**
+     * Starts a public final class.
+     *
+     * @param name the internal name of the class.
+     * @param superName the internal name of its super class.
+     * @param interfaceNames the internal names of the interfaces implemented.
+     */
+    ClassFile(String name, String superName, String... interfaceNames)
+    {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaces.length; i++)
+            interfaces[i] = classRef(interfaceNames[i]);
+    }
+
+    /************
+     * Constant pool
+     ************/
+
+    int utf8(String s)
+    {
+        return entry("U" + s, 1, out -> {
+            out.writeByte(UTF8);
+            out.writeUTF(s);
+        });
+    }
+
+    int classRef(String internalName)
+    {
+        int name = utf8(internalName);
+        return entry("C" + internalName, 1, out -> {
+            out.writeByte(CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int integer(int v)
+    {
+        return entry("I" + v, 1, out -> {
+            out.writeByte(INTEGER);
+            out.writeInt(v);
+        });
+    }
+
+    int doubleConst(double v)
+    {
+        long bits = Double.doubleToRawLongBits(v);
+        // Doubles take two pool slots.
+        return entry("D" + bits, 2, out -> {
+            out.writeByte(DOUBLE);
+            out.writeLong(bits);
+        });
+    }
+
+    int fieldRef(String owner, String name, String desc)
+    {
+        return memberRef(FIELD_REF, owner, name, desc);
+    }
+
+    int methodRef(String owner, String name, String desc)
+    {
+        return memberRef(METHOD_REF, owner, name, desc);
+    }
+
+    int interfaceMethodRef(String owner, String name, String desc)
+    {
+        return memberRef(INTERFACE_METHOD_REF, owner, name, desc);
+    }
+
+    private int memberRef(int tag, String owner, String name, String desc)
+    {
+        int cls = classRef(owner);
+        int nameIdx = utf8(name);
+        int descIdx = utf8(desc);
+        int nat = entry("N" + name + ":" + desc, 1, out -> {
+            out.writeByte(NAME_AND_TYPE);
+            out.writeShort(nameIdx);
+            out.writeShort(descIdx);
+        });
+        return entry(tag + owner + "." + name + ":" + desc, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(cls);
+            out.writeShort(nat);
+        });
+    }
+
+    /** Writes one constant pool entry. */
+    @FunctionalInterface
+    private interface EntryWriter
+    {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, int slots, EntryWriter writer)
+    {
+        Integer idx = poolIndex.get(key);
+        if (idx != null)
+            return idx;
+
+        try
+        {
+            writer.write(pool);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);   // Not for a byte array.
+        }
+        idx = poolCount;
+        poolCount += slots;
+        if (poolCount > 0xFFFF)
+            throw new IllegalStateException("constant pool overflow");
+        poolIndex.put(key, idx);
+        return idx;
+    }
+
+    /************
+     * Members
+     ************/
+
+    void addField(int access, String name, String desc)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(desc));
+            out.writeShort(0);   // No attributes.
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    void addMethod(int access, String name, String desc, MethodCode code)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(desc));
+            out.writeShort(1);   // Just the Code attribute.
+            code.writeAttribute(out, utf8("Code"));
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * Gets the bytes of the finished class file.
+     *
+     * @return the class file.
+     */
+    byte[] toByteArray()
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try
+        {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int i : interfaces)
+                out.writeShort(i);
+            out.writeShort(fields.size());
+            for (byte[] f : fields)
+                out.write(f);
+            out.writeShort(methods.size());
+            for (byte[] m : methods)
+                out.write(m);
+            out.writeShort(0);   // No class attributes.
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import java.util.LinkedList;
+
+import ast.CostModel;
+import ast.EvaluationException;
+import ast.ForkJoinEvaluator;
+import ast.ListValue;
+import ast.Thunk;
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.ProgNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import ast.nodes.ValNode;
+import ast.typesystem.types.BoolType;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import environment.Environment;
+import lexer.TokenType;
+
+/**
+ * Compiles a syntax tree into a tree of closures. All of the decisions the
+ * tree walker makes on every evaluation -- which operator a node applies,
+ * whether an operand is an int, a real or a boolean, whether a token is a
+ * literal or a name -- are made once, here, and the resulting closures only
+ * do the work that is left.
+ * <p>
+ * When the tree has been type checked, integer, real and boolean subtrees are
+ * compiled into closures over unboxed values. Otherwise the closures test for
+ * the common case and defer to the node for anything else, so the error
+ * behaviour is exactly that of the tree walker. Nodes the compiler does not
+ * know about are evaluated by walking them.
+ * </p>
+ */
+public final class ClosureCompiler
+{
+    /** Compiled code producing an unboxed integer. */
+    @FunctionalInterface
+    interface IntCode
+    {
+        int run(Environment env) throws EvaluationException;
+    }
+
+    /** Compiled code producing an unboxed real. */
+    @FunctionalInterface
+    interface DoubleCode
+    {
+        double run(Environment env) throws EvaluationException;
+    }
+
+    /** Compiled code producing an unboxed boolean. */
+    @FunctionalInterface
+    interface BoolCode
+    {
+        boolean run(Environment env) throws EvaluationException;
+    }
+
+    /** An operator applied to boxed operands. */
+    @FunctionalInterface
+    private interface Operator
+    {
+        Object apply(Object a, Object b) throws EvaluationException;
+    }
+
+    private ClosureCompiler() {}
+
+    /**
+     * Compiles the tree rooted at {@code node}.
+     *
+     * @param node the root of the tree to compile.
+     * @return code equivalent to evaluating {@code node}.
+     */
+    public static Code compile(SyntaxNode node)
+    {
+        if (CostModel.forksOperands(node))
+            return compileForked(node);
+        if (node instanceof TokenNode)
+            return compileToken((TokenNode) node);
+        if (node instanceof BinOpNode)
+            return compileBinOp((BinOpNode) node);
+        if (node instanceof RelOpNode)
+            return compileRelOp((RelOpNode) node);
+        if (node instanceof LogicalNode)
+            return compileLogical((LogicalNode) node);
+        if (node instanceof UnaryOpNode)
+            return compileUnaryOp((UnaryOpNode) node);
+        if (node instanceof LetNode)
+            return compileLet((LetNode) node);
+        if (node instanceof ValNode)
+            return compileVal((ValNode) node);
+        if (node instanceof ListNode)
+            return compileList((ListNode) node);
+        if (node instanceof HeadNode)
+            return compileHead((HeadNode) node);
+        if (node instanceof TailNode)
+            return compileTail((TailNode) node);
+        if (node instanceof LenNode)
+            return compileLen((LenNode) node);
+        if (node instanceof AggregateNode)
+            return compileFold((AggregateNode) node);
+        if (node instanceof SortNode)
+            return compileSort((SortNode) node);
+        if (node instanceof ElemNode)
+            return compileElem((ElemNode) node);
+        if (node instanceof IndexNode)
+            return compileIndex((IndexNode) node);
+        if (node instanceof SliceNode)
+            return compileSlice((SliceNode) node);
+        if (node instanceof ProgNode)
+            return compileProg((ProgNode) node);
+
+        // Anything else is walked.
+        return node::evaluate;
+    }
+
+    /************
+     * Boxed compilation
+     ************/
+
+    private static Code compileToken(TokenNode node)
+    {
+        Object literal = node.getLiteral();
+        if (literal != null)
+            return env -> literal;
+        int slot = node.getSlot();
+        if (slot >= 0)
+            return env -> Thunk.force(env.getLocal(slot));
+        return env -> Ops.lookup(node, env);
+    }
+
+    private static Code compileBinOp(BinOpNode node)
+    {
+        Type type = node.getResultType();
+        if (type instanceof IntType)
+        {
+            IntCode code = compileInt(node);
+            return env -> code.run(env);
+        }
+        if (type instanceof RealType)
+        {
+            DoubleCode code = compileDouble(node);
+            return env -> code.run(env);
+        }
+
+        // Untyped: handle the common case inline and let the node deal with
+        // everything else, including errors.
+        Code l = compile(node.getLeftTerm());
+        Code r = compile(node.getRightTerm());
+        switch (node.getOp())
+        {
+        case ADD:
+            return env -> {
+                Object a = l.run(env);
+                Object b = r.run(env);
+                if (a instanceof Integer && b instanceof Integer)
+                    return (Integer) a + (Integer) b;
+                return node.apply(a, b);
+            };
+        case SUB:
+            return env -> {
+                Object a = l.run(env);
+                Object b = r.run(env);
+                if (a instanceof Integer && b instanceof Integer)
+                    return (Integer) a - (Integer) b;
+                return node.apply(a, b);
+            };
+        case MULT:
+            return env -> {
+                Object a = l.run(env);
+                Object b = r.run(env);
+                if (a instanceof Integer && b instanceof Integer)
+                    return (Integer) a * (Integer) b;
+                return node.apply(a, b);
+            };
+        default:
+            return env -> node.apply(l.run(env), r.run(env));
+        }
+    }
+
+    /**
+     * Compiles an operation whose operands are costly enough to evaluate in
+     * parallel when the environment is. The operands are boxed either way,
+     * which is little next to their cost.
+     */
+    private static Code compileForked(SyntaxNode node)
+    {
+        Operator op = node instanceof BinOpNode ? ((BinOpNode) node)::apply
+                : ((RelOpNode) node)::apply;
+        Code[] operands = compileAll(new LinkedList<>(node.children()));
+        Code l = operands[0];
+        Code r = operands[1];
+
+        return env -> {
+            if (!env.isParallel())
+                return op.apply(l.run(env), r.run(env));
+            Object[] v = ForkJoinEvaluator.operands(
+                    (i, e) -> operands[i].run(e), env);
+            return op.apply(v[0], v[1]);
+        };
+    }
+
+    private static Code compileRelOp(RelOpNode node)
+    {
+        BoolCode typed = compileCompare(node);
+        if (typed != null)
+            return env -> typed.run(env);
+
+        Code l = compile(node.getLeftTerm());
+        Code r = compile(node.getRightTerm());
+        switch (node.getOp())
+        {
+        case LT:
+            return env -> {
+                Object a = l.run(env);
+                Object b = r.run(env);
+                if (a instanceof Integer && b instanceof Integer)
+                    return (Integer) a < (Integer) b;
+                return node.apply(a, b);
+            };
+        case GT:
+            return env -> {
+                Object a = l.run(env);
+                Object b = r.run(env);
+                if (a instanceof Integer && b instanceof Integer)
+                    return (Integer) a > (Integer) b;
+                return node.apply(a, b);
+            };
+        case EQ:
+            return env -> {
+                Object a = l.run(env);
+                Object b = r.run(env);
+                if (a instanceof Integer && b instanceof Integer)
+                    return ((Integer) a).intValue() == ((Integer) b).intValue();
+                return node.apply(a, b);
+            };
+        default:
+            return env -> node.apply(l.run(env), r.run(env));
+        }
+    }
+
+    private static Code compileLogical(LogicalNode node)
+    {
+        if (node.getResultType() instanceof BoolType)
+        {
+            BoolCode code = compileBool(node);
+            return env -> code.run(env);
+        }
+
+        Code l = compile(node.getLeftTerm());
+        Code r = compile(node.getRightTerm());
+        return env -> {
+            boolean a = node.check(l.run(env));
+            return node.decides(a) ? a : node.check(r.run(env));
+        };
+    }
+
+    private static Code compileUnaryOp(UnaryOpNode node)
+    {
+        Type type = node.getResultType();
+        if (type instanceof IntType)
+        {
+            IntCode code = compileInt(node);
+            return env -> code.run(env);
+        }
+        if (type instanceof RealType)
+        {
+            DoubleCode code = compileDouble(node);
+            return env -> code.run(env);
+        }
+        if (type instanceof BoolType)
+        {
+            BoolCode code = compileBool(node);
+            return env -> code.run(env);
+        }
+
+        Code e = compile(node.getExpr());
+        return env -> node.apply(e.run(env));
+    }
+
+    private static Code compileLet(LetNode node)
+    {
+        int slot = node.getSlot();
+        Code bound = compile(node.getBound());
+        Code body = compile(node.getBody());
+
+        return env -> {
+            if (env.isLazy())
+                env.setLocal(slot, new Thunk(node.getBound(), env.capture()));
+            else
+                env.setLocal(slot, bound.run(env));
+            return body.run(env);
+        };
+    }
+
+    private static Code compileVal(ValNode node)
+    {
+        Code expr = compile(node.getExpr());
+        return env -> Ops.val(node, env, env.isLazy()
+                ? new Thunk(node.getExpr(), env.capture()) : expr.run(env));
+    }
+
+    private static Code compileList(ListNode node)
+    {
+        Code[] elems = compileAll(node.getElements());
+        boolean wide = ForkJoinEvaluator.isWide(node);
+
+        return env -> {
+            if (wide && env.isParallel())
+                return ForkJoinEvaluator.evaluate(elems.length,
+                        (i, e) -> elems[i].run(e), env);
+            ListValue out = new ListValue();
+            for (Code e : elems)
+                out.add(e.run(env));
+            return out;
+        };
+    }
+
+    private static Code compileHead(HeadNode node)
+    {
+        Code expr = compile(node.getExpr());
+        return env -> Ops.head(node, expr.run(env));
+    }
+
+    private static Code compileTail(TailNode node)
+    {
+        Code expr = compile(node.getExpr());
+        return env -> Ops.tail(node, expr.run(env));
+    }
+
+    private static Code compileLen(LenNode node)
+    {
+        Code expr = compile(node.getExpr());
+        return env -> Ops.len(node, expr.run(env));
+    }
+
+    private static Code compileFold(AggregateNode node)
+    {
+        Code expr = compile(node.getExpr());
+        return env -> Ops.fold(node, expr.run(env));
+    }
+
+    private static Code compileSort(SortNode node)
+    {
+        Code expr = compile(node.getExpr());
+        return env -> Ops.sort(node, expr.run(env));
+    }
+
+    private static Code compileElem(ElemNode node)
+    {
+        Code elem = compile(node.getElem());
+        Code list = compile(node.getList());
+        return env -> {
+            Object x = elem.run(env);
+            return Ops.elem(node, x, list.run(env));
+        };
+    }
+
+    private static Code compileIndex(IndexNode node)
+    {
+        Code list = compile(node.getList());
+        Code index = compile(node.getIndex());
+        return env -> {
+            Object v = list.run(env);
+            return Ops.index(node, v, index.run(env));
+        };
+    }
+
+    private static Code compileSlice(SliceNode node)
+    {
+        Code count = compile(node.getCount());
+        Code list = compile(node.getList());
+        return env -> {
+            Object n = count.run(env);
+            return Ops.slice(node, n, list.run(env));
+        };
+    }
+
+    private static Code compileProg(ProgNode node)
+    {
+        Code[] stmts = compileAll(node.getStatements());
+
+        return env -> {
+            Object res = null;
+            for (Code s : stmts)
+                res = s.run(env);
+            return res;
+        };
+    }
+
+    private static Code[] compileAll(LinkedList<SyntaxNode> nodes)
+    {
+        Code[] out = new Code[nodes.size()];
+        int i = 0;
+        for (SyntaxNode n : nodes)
+            out[i++] = compile(n);
+        return out;
+    }
+
+    /************
+     * Unboxed compilation, used for type checked subtrees.
+     ************/
+
+    private static IntCode compileInt(SyntaxNode node)
+    {
+        if (CostModel.forksOperands(node))
+        {
+            Code code = compileForked(node);
+            return env -> Ops.toInt(code.run(env));
+        }
+
+        if (node instanceof TokenNode
+                && ((TokenNode) node).getLiteral() instanceof Integer)
+        {
+            int v = (Integer) ((TokenNode) node).getLiteral();
+            return env -> v;
+        }
+
+        if (node instanceof BinOpNode
+                && ((BinOpNode) node).getResultType() instanceof IntType)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            IntCode l = compileInt(bin.getLeftTerm());
+            IntCode r = compileInt(bin.getRightTerm());
+            switch (bin.getOp())
+            {
+            case ADD:
+                return env -> l.run(env) + r.run(env);
+            case SUB:
+                return env -> l.run(env) - r.run(env);
+            case MULT:
+                return env -> l.run(env) * r.run(env);
+            case DIV:
+                return env -> l.run(env) / r.run(env);
+            case MOD:
+                return env -> l.run(env) % r.run(env);
+            default:
+                break;
+            }
+        }
+
+        if (node instanceof UnaryOpNode
+                && ((UnaryOpNode) node).getResultType() instanceof IntType)
+        {
+            IntCode e = compileInt(((UnaryOpNode) node).getExpr());
+            return env -> -e.run(env);
+        }
+
+        Code code = compile(node);
+        return env -> Ops.toInt(code.run(env));
+    }
+
+    private static DoubleCode compileDouble(SyntaxNode node)
+    {
+        if (CostModel.forksOperands(node))
+        {
+            Code code = compileForked(node);
+            return env -> Ops.toDouble(code.run(env));
+        }
+
+        if (node instanceof TokenNode)
+        {
+            Object lit = ((TokenNode) node).getLiteral();
+            if (lit instanceof Double || lit instanceof Integer)
+            {
+                double v = ((Number) lit).doubleValue();
+                return env -> v;
+            }
+        }
+
+        if (node instanceof BinOpNode)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            if (bin.getResultType() instanceof IntType)
+            {
+                IntCode code = compileInt(bin);
+                return env -> code.run(env);
+            }
+            if (bin.getResultType() instanceof RealType)
+            {
+                DoubleCode l = compileDouble(bin.getLeftTerm());
+                DoubleCode r = compileDouble(bin.getRightTerm());
+                switch (bin.getOp())
+                {
+                case ADD:
+                    return env -> l.run(env) + r.run(env);
+                case SUB:
+                    return env -> l.run(env) - r.run(env);
+                case MULT:
+                    return env -> l.run(env) * r.run(env);
+                case DIV:
+                    return env -> l.run(env) / r.run(env);
+                default:
+                    break;
+                }
+            }
+        }
+
+        if (node instanceof UnaryOpNode)
+        {
+            UnaryOpNode un = (UnaryOpNode) node;
+            if (un.getResultType() instanceof IntType)
+            {
+                IntCode code = compileInt(un);
+                return env -> code.run(env);
+            }
+            if (un.getResultType() instanceof RealType)
+            {
+                DoubleCode e = compileDouble(un.getExpr());
+                return env -> -e.run(env);
+            }
+        }
+
+        Code code = compile(node);
+        return env -> Ops.toDouble(code.run(env));
+    }
+
+    private static BoolCode compileBool(SyntaxNode node)
+    {
+        if (CostModel.forksOperands(node))
+        {
+            Code code = compileForked(node);
+            return env -> Ops.toBool(code.run(env));
+        }
+
+        if (node instanceof TokenNode
+                && ((TokenNode) node).getLiteral() instanceof Boolean)
+        {
+            boolean v = (Boolean) ((TokenNode) node).getLiteral();
+            return env -> v;
+        }
+
+        if (node instanceof LogicalNode
+                && ((LogicalNode) node).getResultType() instanceof BoolType)
+        {
+            LogicalNode log = (LogicalNode) node;
+            BoolCode l = compileBool(log.getLeftTerm());
+            BoolCode r = compileBool(log.getRightTerm());
+            if (log.getOp() == TokenType.AND)
+                return env -> l.run(env) && r.run(env);
+            return env -> l.run(env) || r.run(env);
+        }
+
+        if (node instanceof RelOpNode)
+        {
+            BoolCode code = compileCompare((RelOpNode) node);
+            if (code != null)
+                return code;
+        }
+
+        if (node instanceof UnaryOpNode
+                && ((UnaryOpNode) node).getResultType() instanceof BoolType)
+        {
+            BoolCode e = compileBool(((UnaryOpNode) node).getExpr());
+            return env -> !e.run(env);
+        }
+
+        Code code = compile(node);
+        return env -> Ops.toBool(code.run(env));
+    }
+
+    private static BoolCode compileCompare(RelOpNode node)
+    {
+        Type type = node.getOperandType();
+        SyntaxNode left = node.getLeftTerm();
+        SyntaxNode right = node.getRightTerm();
+
+        if (type instanceof IntType)
+        {
+            IntCode l = compileInt(left);
+            IntCode r = compileInt(right);
+            switch (node.getOp())
+            {
+            case LT:  return env -> l.run(env) <  r.run(env);
+            case GT:  return env -> l.run(env) >  r.run(env);
+            case LTE: return env -> l.run(env) <= r.run(env);
+            case GTE: return env -> l.run(env) >= r.run(env);
+            case EQ:  return env -> l.run(env) == r.run(env);
+            case NEQ: return env -> l.run(env) != r.run(env);
+            default:  return null;
+            }
+        }
+        else if (type instanceof RealType)
+        {
+            DoubleCode l = compileDouble(left);
+            DoubleCode r = compileDouble(right);
+            switch (node.getOp())
+            {
+            case LT:  return env -> l.run(env) <  r.run(env);
+            case GT:  return env -> l.run(env) >  r.run(env);
+            case LTE: return env -> l.run(env) <= r.run(env);
+            case GTE: return env -> l.run(env) >= r.run(env);
+            case EQ:  return env -> l.run(env) == r.run(env);
+            case NEQ: return env -> l.run(env) != r.run(env);
+            default:  return null;
+            }
+        }
+        else if (type instanceof BoolType)
+        {
+            BoolCode l = compileBool(left);
+            BoolCode r = compileBool(right);
+            switch (node.getOp())
+            {
+            case EQ:  return env -> l.run(env) == r.run(env);
+            case NEQ: return env -> l.run(env) != r.run(env);
+            default:  return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import ast.EvaluationException;
+import environment.Environment;
+
+/**
+ * A program, or a piece of a program, that has been compiled ahead of
+ * evaluation. Running it is equivalent to evaluating the syntax tree it was
+ * compiled from.
+ */
+@FunctionalInterface
+public interface Code
+{
+    /**
+     * Runs the compiled code.
+     * 
+     * @param env the executional environment.
+     * @return the value computed by the code.
+     * @throws EvaluationException if the evaluation fails.
+     */
+    Object run(Environment env) throws EvaluationException;
+}
@@ -0,0 +1,838 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import static ast.compiler.MethodCode.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.ProgNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import ast.nodes.ValNode;
+import ast.typesystem.types.BoolType;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import lexer.TokenType;
+
+/**
+ * Compiles a syntax tree into a JVM class implementing {@link Code}, loaded
+ * as a hidden class so it is unloaded along with the tree.
+ * <p>
+ * Subtrees whose static type was recorded by type checking are compiled to
+ * primitive {@code int}, {@code double} and {@code boolean} instructions, so
+ * the JIT sees ordinary Java arithmetic. Everything else stays boxed and
+ * calls the node it came from -- {@code apply} for operators, the checked
+ * operations in {@link Ops} for names and lists -- so the results and error
+ * messages are those of the tree walker. Nodes the compiler does not know
+ * about are evaluated by walking them.
+ * </p>
+ * <p>
+ * The nodes, tokens and literals the code refers to are passed to the
+ * constructor of the generated class as an array of constants. Values bound
+ * by a let are kept in JVM locals as well as in the frame of the environment,
+ * so the body reads them without going through the environment. Large trees
+ * are split over several methods, since HotSpot does not JIT compile
+ * methods of more than 8000 bytes of bytecode.
+ * </p>
+ */
+public final class JvmCompiler
+{
+    private static final String NAME = "ast/compiler/MflProgram";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String CODE = "ast/compiler/Code";
+    private static final String OPS = "ast/compiler/Ops";
+    private static final String ENV = "environment/Environment";
+    private static final String LIST = "ast/ListValue";
+    private static final String NODES = "ast/nodes/";
+
+    private static final String ENV_DESC = "L" + ENV + ";";
+    private static final String CONSTS_DESC = "[Ljava/lang/Object;";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final int THIS = 0;   // Local holding this.
+    private static final int ENV_SLOT = 1;   // Local holding the environment.
+
+    /** The most nodes compiled into one method. */
+    private static final int METHOD_NODES = 200;
+
+    private final ClassFile cf;
+    private MethodCode mc;             // The method being emitted.
+    private SyntaxNode methodRoot;     // The node the method computes.
+    private int methodCount;
+    // The let bound names in scope and the locals holding their values.
+    private LinkedHashMap<String, Integer> scope = new LinkedHashMap<>();
+    private final Set<SyntaxNode> outlined =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ArrayList<Object> constants = new ArrayList<>();
+    private final IdentityHashMap<Object, Integer> constantIndex =
+            new IdentityHashMap<>();
+
+    private JvmCompiler()
+    {
+        cf = new ClassFile(NAME, OBJECT, CODE);
+        mc = new MethodCode(cf, 2);
+    }
+
+    /**
+     * Compiles the tree rooted at {@code node}.
+     *
+     * @param node the root of the tree to compile.
+     * @return code equivalent to evaluating {@code node}, or null if the
+     *         tree is beyond the limits of a class file.
+     */
+    public static Code compile(SyntaxNode node)
+    {
+        JvmCompiler c = new JvmCompiler();
+        byte[] bytes;
+        try
+        {
+            bytes = c.compileClass(node);
+        }
+        catch (IllegalStateException ex)
+        {
+            return null;   // Out of one of the class file limits.
+        }
+        return c.load(bytes);
+    }
+
+    private byte[] compileClass(SyntaxNode root)
+    {
+        cf.addField(ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL, "k",
+                CONSTS_DESC);
+
+        // The constructor just keeps the constants.
+        MethodCode init = new MethodCode(cf, 2);
+        init.aload(THIS);
+        init.invoke(INVOKESPECIAL, OBJECT, "<init>", "()V");
+        init.aload(THIS);
+        init.aload(1);
+        init.putField(NAME, "k", CONSTS_DESC);
+        init.op(RETURN, 0);
+        cf.addMethod(ClassFile.ACC_PUBLIC, "<init>", "(" + CONSTS_DESC + ")V",
+                init);
+
+        chooseMethods(root);
+        methodRoot = root;
+        emit(root);
+        mc.op(ARETURN, -1);
+        cf.addMethod(ClassFile.ACC_PUBLIC, "run",
+                "(" + ENV_DESC + ")Ljava/lang/Object;", mc);
+        return cf.toByteArray();
+    }
+
+    private Code load(byte[] bytes)
+    {
+        try
+        {
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            MethodHandle ctor = hidden.findConstructor(hidden.lookupClass(),
+                    MethodType.methodType(void.class, Object[].class));
+            return (Code) ctor.invoke(constants.toArray());
+        }
+        catch (Error | RuntimeException ex)
+        {
+            throw ex;
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException("cannot load compiled code", ex);
+        }
+    }
+
+    /**
+     * Pushes the constant {@code value}, cast to {@code type}.
+     */
+    private void constant(Object value, String type)
+    {
+        Integer idx = constantIndex.get(value);
+        if (idx == null)
+        {
+            idx = constants.size();
+            constants.add(value);
+            constantIndex.put(value, idx);
+        }
+        mc.aload(THIS);
+        mc.getField(NAME, "k", CONSTS_DESC);
+        mc.iconst(idx);
+        mc.op(AALOAD, -1);
+        if (!type.equals(OBJECT))
+            mc.checkcast(type);
+    }
+
+    private void node(SyntaxNode node)
+    {
+        constant(node, NODES + node.getClass().getSimpleName());
+    }
+
+    /************
+     * Splitting into methods
+     ************/
+
+    /**
+     * Picks the subtrees compiled into methods of their own, so that no
+     * method holds more than {@link #METHOD_NODES} nodes.
+     *
+     * @return the number of nodes left in the method computing {@code node}.
+     */
+    private int chooseMethods(SyntaxNode node)
+    {
+        int size = 1;
+        for (SyntaxNode child : node.children())
+        {
+            int childSize = chooseMethods(child);
+            if (size + childSize > METHOD_NODES)
+                outlined.add(child);
+            else
+                size += childSize;
+        }
+        return size;
+    }
+
+    /**
+     * Emits a call to a method computing {@code node} if the node was chosen
+     * to have one, compiling the method first.
+     *
+     * @param desc the descriptor of the value left on the stack.
+     * @return true if the call was emitted.
+     */
+    private boolean call(SyntaxNode node, String desc)
+    {
+        if (node == methodRoot || !outlined.contains(node))
+            return false;
+
+        // The names in scope are passed along.
+        if (scope.size() > 250)
+            throw new IllegalStateException("too many names in scope");
+        StringBuilder params = new StringBuilder("(" + ENV_DESC);
+        LinkedHashMap<String, Integer> calleeScope = new LinkedHashMap<>();
+        for (String var : scope.keySet())
+        {
+            params.append("Ljava/lang/Object;");
+            calleeScope.put(var, 2 + calleeScope.size());
+        }
+
+        MethodCode caller = mc;
+        SyntaxNode callerRoot = methodRoot;
+        LinkedHashMap<String, Integer> callerScope = scope;
+        String name = "m" + methodCount++;
+        String methodDesc = params + ")" + desc;
+
+        mc = new MethodCode(cf, 2 + calleeScope.size());
+        methodRoot = node;
+        scope = calleeScope;
+        switch (desc)
+        {
+        case "I":
+            emitInt(node);
+            mc.op(IRETURN, -1);
+            break;
+        case "D":
+            emitDouble(node);
+            mc.op(DRETURN, -2);
+            break;
+        case "Z":
+            emitBool(node);
+            mc.op(IRETURN, -1);
+            break;
+        default:
+            emit(node);
+            mc.op(ARETURN, -1);
+            break;
+        }
+        cf.addMethod(ClassFile.ACC_PRIVATE, name, methodDesc, mc);
+
+        mc = caller;
+        methodRoot = callerRoot;
+        scope = callerScope;
+        mc.aload(THIS);
+        mc.aload(ENV_SLOT);
+        for (int slot : scope.values())
+            mc.aload(slot);
+        mc.invoke(INVOKESPECIAL, NAME, name, methodDesc);
+        return true;
+    }
+
+    /************
+     * Boxed compilation
+     ************/
+
+    /**
+     * Emits code leaving the value of {@code node} on the stack.
+     */
+    private void emit(SyntaxNode node)
+    {
+        if (call(node, "Ljava/lang/Object;"))
+            return;
+
+        if (node instanceof TokenNode)
+            emitToken((TokenNode) node);
+        else if (node instanceof BinOpNode)
+            emitBinOp((BinOpNode) node);
+        else if (node instanceof RelOpNode)
+            emitRelOp((RelOpNode) node);
+        else if (node instanceof LogicalNode)
+            emitLogical((LogicalNode) node);
+        else if (node instanceof UnaryOpNode)
+            emitUnaryOp((UnaryOpNode) node);
+        else if (node instanceof LetNode)
+            emitLet((LetNode) node);
+        else if (node instanceof ValNode)
+            emitVal((ValNode) node);
+        else if (node instanceof ListNode)
+            emitList((ListNode) node);
+        else if (node instanceof HeadNode)
+            emitListOp(node, ((HeadNode) node).getExpr(), "head");
+        else if (node instanceof TailNode)
+            emitListOp(node, ((TailNode) node).getExpr(), "tail");
+        else if (node instanceof LenNode)
+        {
+            emitInt(node);
+            box(IntType.class);
+        }
+        else if (node instanceof AggregateNode)
+            emitListOp(node, ((AggregateNode) node).getExpr(), "fold");
+        else if (node instanceof SortNode)
+            emitListOp(node, ((SortNode) node).getExpr(), "sort");
+        else if (node instanceof ElemNode)
+            emitListOp(node, ((ElemNode) node).getElem(),
+                    ((ElemNode) node).getList(), "elem");
+        else if (node instanceof IndexNode)
+            emitListOp(node, ((IndexNode) node).getList(),
+                    ((IndexNode) node).getIndex(), "index");
+        else if (node instanceof SliceNode)
+            emitListOp(node, ((SliceNode) node).getCount(),
+                    ((SliceNode) node).getList(), "slice");
+        else if (node instanceof ProgNode)
+            emitProg((ProgNode) node);
+        else
+        {
+            // Anything else is walked.
+            constant(node, NODES + "SyntaxNode");
+            mc.aload(ENV_SLOT);
+            mc.invoke(INVOKEVIRTUAL, NODES + "SyntaxNode", "evaluate",
+                    "(" + ENV_DESC + ")Ljava/lang/Object;");
+        }
+    }
+
+    private void emitToken(TokenNode node)
+    {
+        Integer slot = scope.get(node.getToken().getValue());
+        if (node.getLiteral() != null)
+            constant(node.getLiteral(), OBJECT);
+        else if (slot != null)
+            mc.aload(slot);
+        else
+        {
+            node(node);
+            mc.aload(ENV_SLOT);
+            mc.invoke(INVOKESTATIC, OPS, "lookup",
+                    "(L" + NODES + "TokenNode;" + ENV_DESC
+                            + ")Ljava/lang/Object;");
+        }
+    }
+
+    private void emitBinOp(BinOpNode node)
+    {
+        Type type = node.getResultType();
+        if (type != null)
+        {
+            emitTyped(node, type);
+            return;
+        }
+
+        node(node);
+        emit(node.getLeftTerm());
+        emit(node.getRightTerm());
+        mc.invoke(INVOKEVIRTUAL, NODES + "BinOpNode", "apply",
+                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    private void emitRelOp(RelOpNode node)
+    {
+        if (isTypedCompare(node))
+        {
+            emitTyped(node, new BoolType());
+            return;
+        }
+
+        node(node);
+        emit(node.getLeftTerm());
+        emit(node.getRightTerm());
+        mc.invoke(INVOKEVIRTUAL, NODES + "RelOpNode", "apply",
+                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    /**
+     * Leaves the left operand on the stack if it decides the result, and
+     * otherwise replaces it with the right one.
+     */
+    private void emitLogical(LogicalNode node)
+    {
+        if (node.getResultType() instanceof BoolType)
+        {
+            emitTyped(node, node.getResultType());
+            return;
+        }
+
+        Label done = mc.newLabel();
+        node(node);
+        emit(node.getLeftTerm());
+        mc.invoke(INVOKEVIRTUAL, NODES + "LogicalNode", "check",
+                "(Ljava/lang/Object;)Z");
+        mc.op(DUP, 1);
+        mc.jump(node.getOp() == TokenType.AND ? IFEQ : IFNE, done);
+        mc.op(POP, -1);
+        node(node);
+        emit(node.getRightTerm());
+        mc.invoke(INVOKEVIRTUAL, NODES + "LogicalNode", "check",
+                "(Ljava/lang/Object;)Z");
+        mc.mark(done);
+        box(BoolType.class);
+    }
+
+    private void emitUnaryOp(UnaryOpNode node)
+    {
+        Type type = node.getResultType();
+        if (type != null)
+        {
+            emitTyped(node, type);
+            return;
+        }
+
+        node(node);
+        emit(node.getExpr());
+        mc.invoke(INVOKEVIRTUAL, NODES + "UnaryOpNode", "apply",
+                "(Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    /**
+     * Emits a typed subtree unboxed and boxes the result.
+     */
+    private void emitTyped(SyntaxNode node, Type type)
+    {
+        if (type instanceof IntType)
+            emitInt(node);
+        else if (type instanceof RealType)
+            emitDouble(node);
+        else
+            emitBool(node);
+        box(type.getClass());
+    }
+
+    private void box(Class<?> type)
+    {
+        if (type == IntType.class)
+            mc.invoke(INVOKESTATIC, "java/lang/Integer", "valueOf",
+                    "(I)Ljava/lang/Integer;");
+        else if (type == RealType.class)
+            mc.invoke(INVOKESTATIC, "java/lang/Double", "valueOf",
+                    "(D)Ljava/lang/Double;");
+        else
+            mc.invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf",
+                    "(Z)Ljava/lang/Boolean;");
+    }
+
+    /**
+     * Keeps the bound value in a JVM local for the body, and in its frame
+     * slot for any walked nodes that read it.
+     */
+    private void emitLet(LetNode node)
+    {
+        String name = node.getName().getValue();
+        int value = mc.newLocal();
+
+        emit(node.getBound());
+        mc.astore(value);
+        mc.aload(ENV_SLOT);
+        mc.iconst(node.getSlot());
+        mc.aload(value);
+        mc.invoke(INVOKEVIRTUAL, ENV, "setLocal", "(ILjava/lang/Object;)V");
+
+        Integer shadowed = scope.put(name, value);
+        emit(node.getBody());
+        if (shadowed == null)
+            scope.remove(name);
+        else
+            scope.put(name, shadowed);
+    }
+
+    private void emitVal(ValNode node)
+    {
+        node(node);
+        mc.aload(ENV_SLOT);
+        emit(node.getExpr());
+        mc.invoke(INVOKESTATIC, OPS, "val", "(L" + NODES + "ValNode;"
+                + ENV_DESC + "Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    private void emitList(ListNode node)
+    {
+        mc.newObject(LIST);
+        mc.op(DUP, 1);
+        mc.invoke(INVOKESPECIAL, LIST, "<init>", "()V");
+        for (SyntaxNode e : node.getElements())
+        {
+            mc.op(DUP, 1);
+            emit(e);
+            mc.invoke(INVOKEVIRTUAL, LIST, "add", "(Ljava/lang/Object;)Z");
+            mc.op(POP, -1);
+        }
+    }
+
+    private void emitListOp(SyntaxNode node, SyntaxNode expr, String op)
+    {
+        String type = NODES + node.getClass().getSimpleName();
+        constant(node, type);
+        emit(expr);
+        mc.invoke(INVOKESTATIC, OPS, op,
+                "(L" + type + ";Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    private void emitListOp(SyntaxNode node, SyntaxNode left,
+            SyntaxNode right, String op)
+    {
+        String type = NODES + node.getClass().getSimpleName();
+        constant(node, type);
+        emit(left);
+        emit(right);
+        mc.invoke(INVOKESTATIC, OPS, op, "(L" + type + ";"
+                + "Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    private void emitProg(ProgNode node)
+    {
+        boolean first = true;
+        for (SyntaxNode s : node.getStatements())
+        {
+            if (!first)
+                mc.op(POP, -1);
+            emit(s);
+            first = false;
+        }
+        if (first)
+            mc.op(ACONST_NULL, 1);
+    }
+
+    /************
+     * Unboxed compilation, used for type checked subtrees.
+     ************/
+
+    private void emitInt(SyntaxNode node)
+    {
+        if (call(node, "I"))
+            return;
+
+        if (node instanceof TokenNode
+                && ((TokenNode) node).getLiteral() instanceof Integer)
+        {
+            mc.iconst((Integer) ((TokenNode) node).getLiteral());
+            return;
+        }
+
+        if (node instanceof BinOpNode
+                && ((BinOpNode) node).getResultType() instanceof IntType)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            int opcode = intOpcode(bin.getOp());
+            if (opcode >= 0)
+            {
+                emitInt(bin.getLeftTerm());
+                emitInt(bin.getRightTerm());
+                mc.op(opcode, -1);
+                return;
+            }
+        }
+
+        if (node instanceof UnaryOpNode
+                && ((UnaryOpNode) node).getResultType() instanceof IntType)
+        {
+            emitInt(((UnaryOpNode) node).getExpr());
+            mc.op(INEG, 0);
+            return;
+        }
+
+        if (node instanceof LenNode)
+        {
+            node(node);
+            emit(((LenNode) node).getExpr());
+            mc.invoke(INVOKESTATIC, OPS, "len",
+                    "(L" + NODES + "LenNode;Ljava/lang/Object;)I");
+            return;
+        }
+
+        emitBoxed(node);
+        mc.invoke(INVOKESTATIC, OPS, "toInt", "(Ljava/lang/Object;)I");
+    }
+
+    private void emitDouble(SyntaxNode node)
+    {
+        if (call(node, "D"))
+            return;
+
+        if (node instanceof TokenNode)
+        {
+            Object lit = ((TokenNode) node).getLiteral();
+            if (lit instanceof Double || lit instanceof Integer)
+            {
+                mc.dconst(((Number) lit).doubleValue());
+                return;
+            }
+        }
+
+        Type type = null;
+        if (node instanceof BinOpNode)
+            type = ((BinOpNode) node).getResultType();
+        else if (node instanceof UnaryOpNode)
+            type = ((UnaryOpNode) node).getResultType();
+
+        if (type instanceof IntType || node instanceof LenNode)
+        {
+            emitInt(node);
+            mc.op(I2D, 1);
+            return;
+        }
+
+        if (type instanceof RealType && node instanceof BinOpNode)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            int opcode = doubleOpcode(bin.getOp());
+            if (opcode >= 0)
+            {
+                emitDouble(bin.getLeftTerm());
+                emitDouble(bin.getRightTerm());
+                mc.op(opcode, -2);
+                return;
+            }
+        }
+
+        if (type instanceof RealType && node instanceof UnaryOpNode)
+        {
+            emitDouble(((UnaryOpNode) node).getExpr());
+            mc.op(DNEG, 0);
+            return;
+        }
+
+        emitBoxed(node);
+        mc.invoke(INVOKESTATIC, OPS, "toDouble", "(Ljava/lang/Object;)D");
+    }
+
+    private void emitBool(SyntaxNode node)
+    {
+        if (call(node, "Z"))
+            return;
+
+        if (node instanceof TokenNode
+                && ((TokenNode) node).getLiteral() instanceof Boolean)
+        {
+            mc.iconst((Boolean) ((TokenNode) node).getLiteral() ? 1 : 0);
+            return;
+        }
+
+        if (node instanceof LogicalNode
+                && ((LogicalNode) node).getResultType() instanceof BoolType)
+        {
+            LogicalNode log = (LogicalNode) node;
+            Label done = mc.newLabel();
+            emitBool(log.getLeftTerm());
+            mc.op(DUP, 1);
+            mc.jump(log.getOp() == TokenType.AND ? IFEQ : IFNE, done);
+            mc.op(POP, -1);
+            emitBool(log.getRightTerm());
+            mc.mark(done);
+            return;
+        }
+
+        if (node instanceof RelOpNode && isTypedCompare((RelOpNode) node))
+        {
+            emitCompare((RelOpNode) node);
+            return;
+        }
+
+        if (node instanceof UnaryOpNode
+                && ((UnaryOpNode) node).getResultType() instanceof BoolType)
+        {
+            emitBool(((UnaryOpNode) node).getExpr());
+            mc.iconst(1);
+            mc.op(IXOR, -1);
+            return;
+        }
+
+        emitBoxed(node);
+        mc.invoke(INVOKESTATIC, OPS, "toBool", "(Ljava/lang/Object;)Z");
+    }
+
+    /**
+     * Emits a node whose value is unboxed by the caller. Typed nodes that
+     * reach here have no unboxed form of their own, so they are emitted
+     * generically rather than through {@link #emitTyped}, which would come
+     * straight back.
+     */
+    private void emitBoxed(SyntaxNode node)
+    {
+        if (node instanceof BinOpNode && ((BinOpNode) node).getResultType() != null)
+        {
+            BinOpNode bin = (BinOpNode) node;
+            node(bin);
+            emit(bin.getLeftTerm());
+            emit(bin.getRightTerm());
+            mc.invoke(INVOKEVIRTUAL, NODES + "BinOpNode", "apply",
+                    "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+        }
+        else
+            emit(node);
+    }
+
+    private static boolean isTypedCompare(RelOpNode node)
+    {
+        Type type = node.getOperandType();
+        switch (node.getOp())
+        {
+        case LT:
+        case GT:
+        case LTE:
+        case GTE:
+            return type instanceof IntType || type instanceof RealType;
+        case EQ:
+        case NEQ:
+            return type != null;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Emits a typed comparison, leaving 1 or 0 on the stack.
+     */
+    private void emitCompare(RelOpNode node)
+    {
+        Type type = node.getOperandType();
+        TokenType op = node.getOp();
+        Label isFalse = mc.newLabel();
+        Label done = mc.newLabel();
+
+        if (type instanceof RealType)
+        {
+            emitDouble(node.getLeftTerm());
+            emitDouble(node.getRightTerm());
+
+            // Pick the compare so that NaN makes the comparison false.
+            boolean greater = op == TokenType.LT || op == TokenType.LTE;
+            mc.op(greater ? DCMPG : DCMPL, -3);
+            mc.jump(negatedIf(op), isFalse);
+        }
+        else
+        {
+            if (type instanceof IntType)
+            {
+                emitInt(node.getLeftTerm());
+                emitInt(node.getRightTerm());
+            }
+            else
+            {
+                emitBool(node.getLeftTerm());
+                emitBool(node.getRightTerm());
+            }
+            mc.jump(negatedIfICmp(op), isFalse);
+        }
+
+        int depth = mc.depth();
+        mc.iconst(1);
+        mc.jump(GOTO, done);
+        mc.setDepth(depth);
+        mc.mark(isFalse);
+        mc.iconst(0);
+        mc.mark(done);
+    }
+
+    private static int intOpcode(TokenType op)
+    {
+        switch (op)
+        {
+        case ADD:  return IADD;
+        case SUB:  return ISUB;
+        case MULT: return IMUL;
+        case DIV:  return IDIV;
+        case MOD:  return IREM;
+        default:   return -1;
+        }
+    }
+
+    private static int doubleOpcode(TokenType op)
+    {
+        switch (op)
+        {
+        case ADD:  return DADD;
+        case SUB:  return DSUB;
+        case MULT: return DMUL;
+        case DIV:  return DDIV;
+        default:   return -1;
+        }
+    }
+
+    /** The branch taken on an {@code int} when {@code op} is false. */
+    private static int negatedIf(TokenType op)
+    {
+        switch (op)
+        {
+        case LT:  return IFGE;
+        case GT:  return IFLE;
+        case LTE: return IFGT;
+        case GTE: return IFLT;
+        case EQ:  return IFNE;
+        default:  return IFEQ;
+        }
+    }
+
+    /** The branch taken on two {@code int}s when {@code op} is false. */
+    private static int negatedIfICmp(TokenType op)
+    {
+        switch (op)
+        {
+        case LT:  return IF_ICMPGE;
+        case GT:  return IF_ICMPLE;
+        case LTE: return IF_ICMPGT;
+        case GTE: return IF_ICMPLT;
+        case EQ:  return IF_ICMPNE;
+        default:  return IF_ICMPEQ;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Assembles the bytecode of one method. Besides the instructions it tracks
+ * the operand stack depth, so the {@code max_stack} of the method is known
+ * when it is written, and resolves branch labels.
+ * <p>
+ * Stack depths are counted in slots, so {@code long} and {@code double}
+ * values count twice.
+ * </p>
+ */
+final class MethodCode
+{
+    // The opcodes the compiler uses.
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+    static final int IADD = 0x60;
+    static final int DADD = 0x63;
+    static final int ISUB = 0x64;
+    static final int DSUB = 0x67;
+    static final int IMUL = 0x68;
+    static final int DMUL = 0x6b;
+    static final int IDIV = 0x6c;
+    static final int DDIV = 0x6f;
+    static final int IREM = 0x70;
+    static final int INEG = 0x74;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int I2D = 0x87;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int IF_ICMPNE = 0xa0;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int DRETURN = 0xaf;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int NEW = 0xbb;
+    static final int ATHROW = 0xbf;
+    static final int CHECKCAST = 0xc0;
+
+    /** The largest method body the JVM accepts. */
+    private static final int MAX_CODE = 0xFFFF;
+
+    /** A branch target. */
+    static final class Label
+    {
+        private int pos = -1;
+        private final ArrayList<Integer> fixups = new ArrayList<>();
+    }
+
+    private final ClassFile cf;
+    private byte[] code = new byte[256];
+    private int length;
+    private int depth;
+    private int maxStack;
+    private int maxLocals;
+    private final ArrayList<int[]> handlers = new ArrayList<>();
+
+    /**
+     * Starts a method.
+     *
+     * @param cf the class the method belongs to.
+     * @param argSlots the local slots taken by {@code this} and the arguments.
+     */
+    MethodCode(ClassFile cf, int argSlots)
+    {
+        this.cf = cf;
+        this.maxLocals = argSlots;
+    }
+
+    /**
+     * Allocates a new local variable slot for a reference.
+     *
+     * @return the slot.
+     */
+    int newLocal()
+    {
+        return maxLocals++;
+    }
+
+    /** The current depth of the operand stack. */
+    int depth()
+    {
+        return depth;
+    }
+
+    /**
+     * Resets the tracked stack depth, for code reached only by a jump.
+     *
+     * @param depth the depth at this point.
+     */
+    void setDepth(int depth)
+    {
+        this.depth = depth;
+    }
+
+    /************
+     * Instructions
+     ************/
+
+    /**
+     * Emits an instruction without operands.
+     *
+     * @param opcode the instruction.
+     * @param stackDelta the change it makes to the stack depth.
+     */
+    void op(int opcode, int stackDelta)
+    {
+        u1(opcode);
+        adjust(stackDelta);
+    }
+
+    void iconst(int v)
+    {
+        if (v >= -1 && v <= 5)
+            u1(ICONST_0 + v);
+        else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE)
+        {
+            u1(BIPUSH);
+            u1(v);
+        }
+        else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE)
+        {
+            u1(SIPUSH);
+            u2(v);
+        }
+        else
+            ldc(cf.integer(v));
+        adjust(1);
+    }
+
+    void dconst(double v)
+    {
+        long bits = Double.doubleToRawLongBits(v);
+        if (bits == Double.doubleToRawLongBits(0.0))
+            u1(DCONST_0);
+        else if (v == 1.0)
+            u1(DCONST_1);
+        else
+        {
+            u1(LDC2_W);
+            u2(cf.doubleConst(v));
+        }
+        adjust(2);
+    }
+
+    private void ldc(int index)
+    {
+        if (index < 256)
+        {
+            u1(LDC);
+            u1(index);
+        }
+        else
+        {
+            u1(LDC_W);
+            u2(index);
+        }
+    }
+
+    void aload(int slot)
+    {
+        local(ALOAD, slot);
+        adjust(1);
+    }
+
+    void astore(int slot)
+    {
+        local(ASTORE, slot);
+        adjust(-1);
+    }
+
+    private void local(int opcode, int slot)
+    {
+        if (slot > 0xFF)
+            throw new IllegalStateException("too many locals");
+        u1(opcode);
+        u1(slot);
+    }
+
+    void getField(String owner, String name, String desc)
+    {
+        u1(GETFIELD);
+        u2(cf.fieldRef(owner, name, desc));
+        adjust(slots(desc) - 1);
+    }
+
+    void putField(String owner, String name, String desc)
+    {
+        u1(PUTFIELD);
+        u2(cf.fieldRef(owner, name, desc));
+        adjust(-slots(desc) - 1);
+    }
+
+    void newObject(String internalName)
+    {
+        u1(NEW);
+        u2(cf.classRef(internalName));
+        adjust(1);
+    }
+
+    void checkcast(String internalName)
+    {
+        u1(CHECKCAST);
+        u2(cf.classRef(internalName));
+    }
+
+    /**
+     * Emits a method call.
+     *
+     * @param opcode one of the invoke instructions.
+     * @param owner the internal name of the class declaring the method.
+     * @param name the method name.
+     * @param desc the method descriptor.
+     */
+    void invoke(int opcode, String owner, String name, String desc)
+    {
+        int args = argSlots(desc);
+        u1(opcode);
+        if (opcode == INVOKEINTERFACE)
+        {
+            u2(cf.interfaceMethodRef(owner, name, desc));
+            u1(args + 1);
+            u1(0);
+        }
+        else
+            u2(cf.methodRef(owner, name, desc));
+
+        int receiver = opcode == INVOKESTATIC ? 0 : 1;
+        adjust(slots(desc.substring(desc.indexOf(')') + 1)) - args - receiver);
+    }
+
+    /************
+     * Control flow
+     ************/
+
+    Label newLabel()
+    {
+        return new Label();
+    }
+
+    /**
+     * Emits a branch to {@code target}.
+     *
+     * @param opcode a conditional branch or {@code goto}.
+     * @param target where to branch to.
+     */
+    void jump(int opcode, Label target)
+    {
+        int at = length;
+        u1(opcode);
+        if (target.pos >= 0)
+            u2(offset(target.pos - at));
+        else
+        {
+            target.fixups.add(at);
+            u2(0);
+        }
+
+        if (opcode == IF_ICMPEQ || opcode == IF_ICMPNE || opcode == IF_ICMPLT
+                || opcode == IF_ICMPGE || opcode == IF_ICMPGT
+                || opcode == IF_ICMPLE)
+            adjust(-2);
+        else if (opcode != GOTO)
+            adjust(-1);
+    }
+
+    /**
+     * Places {@code label} at the current position.
+     */
+    void mark(Label label)
+    {
+        label.pos = length;
+        for (int at : label.fixups)
+        {
+            int off = offset(label.pos - at);
+            code[at + 1] = (byte) (off >> 8);
+            code[at + 2] = (byte) off;
+        }
+        label.fixups.clear();
+    }
+
+    /**
+     * Registers an exception handler catching everything thrown between
+     * {@code start} and {@code end}. The labels must already be placed.
+     */
+    void catchAll(Label start, Label end, Label handler)
+    {
+        handlers.add(new int[] { start.pos, end.pos, handler.pos });
+    }
+
+    private static int offset(int off)
+    {
+        if (off < Short.MIN_VALUE || off > Short.MAX_VALUE)
+            throw new IllegalStateException("branch out of range");
+        return off;
+    }
+
+    /************
+     * Output
+     ************/
+
+    /**
+     * Writes the {@code Code} attribute of the method.
+     *
+     * @param out where to write.
+     * @param nameIndex the constant pool index of the name "Code".
+     */
+    void writeAttribute(DataOutputStream out, int nameIndex) throws IOException
+    {
+        if (length > MAX_CODE)
+            throw new IllegalStateException("method too large");
+
+        out.writeShort(nameIndex);
+        out.writeInt(12 + length + 8 * handlers.size());
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(handlers.size());
+        for (int[] h : handlers)
+        {
+            out.writeShort(h[0]);
+            out.writeShort(h[1]);
+            out.writeShort(h[2]);
+            out.writeShort(0);   // Catch anything.
+        }
+        out.writeShort(0);       // No attributes of our own.
+    }
+
+    private void adjust(int delta)
+    {
+        depth += delta;
+        if (depth > maxStack)
+            maxStack = depth;
+    }
+
+    private void u1(int b)
+    {
+        if (length == code.length)
+            code = Arrays.copyOf(code, length * 2);
+        code[length++] = (byte) b;
+    }
+
+    private void u2(int v)
+    {
+        u1(v >> 8);
+        u1(v);
+    }
+
+    /** The number of stack slots a value of type {@code desc} takes. */
+    private static int slots(String desc)
+    {
+        switch (desc.charAt(0))
+        {
+        case 'V':
+            return 0;
+        case 'D':
+        case 'J':
+            return 2;
+        default:
+            return 1;
+        }
+    }
+
+    /** The number of stack slots taken by the arguments of a method. */
+    private static int argSlots(String desc)
+    {
+        int n = 0;
+        int i = 1;
+        while (desc.charAt(i) != ')')
+        {
+            char c = desc.charAt(i);
+            if (c == 'D' || c == 'J')
+                n += 2;
+            else
+                n++;
+
+            // Skip past the type.
+            while (desc.charAt(i) == '[')
+                i++;
+            if (desc.charAt(i) == 'L')
+                i = desc.indexOf(';', i);
+            i++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import lexer.TokenType;
+
+/**
+ * The instruction set of the register machine that runs {@link Bytecode}.
+ * <p>
+ * An instruction is an opcode followed by its operands, all stored in one
+ * {@code int[]}. The machine has two register files: {@code r}, holding
+ * objects, and {@code p}, holding primitives (ints, booleans as 0 or 1, and
+ * the bits of doubles). Operands named {@code d}, {@code a} and {@code b}
+ * are register numbers, {@code k} indexes the constants, {@code line} is the
+ * source line errors are reported against, {@code v} is an immediate and
+ * {@code t} is the index in the code of a branch target.
+ * </p>
+ * <p>
+ * The generic instructions work on objects of any type and check them as
+ * the tree walker does. The typed instructions are emitted for type checked
+ * subtrees and work on primitives without checks.
+ * </p>
+ */
+final class Opcodes
+{
+    private Opcodes() {}
+
+    // Objects: r[d] := ...
+    static final int KONST = 0;    // d k:       the constant k
+    static final int LOAD = 1;     // d k line:  the value of the name k
+    static final int MOV = 2;      // d a:       r[a]
+    static final int PMOV = 3;     // d a:       p[d] := p[a]
+
+    // Generic binary operators: d a b line, r[d] := r[a] op r[b]
+    static final int ADD = 4;
+    static final int SUB = 5;
+    static final int MUL = 6;
+    static final int DIV = 7;
+    static final int MOD = 8;
+    static final int CONCAT = 9;
+    static final int LT = 10;
+    static final int GT = 11;
+    static final int LE = 12;
+    static final int GE = 13;
+    static final int EQ = 14;
+    static final int NE = 15;
+
+    // Generic unary operators: d a line, r[d] := op r[a]
+    static final int NEG = 16;
+    static final int NOT = 17;
+    static final int HD = 18;
+    static final int TL = 19;
+    static final int CHKZ = 20;    // d a line:  r[a], which must be a boolean
+
+    static final int MKLIST = 21;  // d a n:     the list r[a] .. r[a + n - 1]
+    static final int VAL = 22;     // d a k line: bind name k to r[a]
+    static final int RET = 23;     // a:         return r[a]
+
+    // Branches to the instruction at t, for and and or.
+    static final int JF = 24;      // a t line:  if boolean r[a] is false
+    static final int JT = 25;      // a t line:  if boolean r[a] is true
+    static final int ZJF = 26;     // a t:       if p[a] is false
+    static final int ZJT = 27;     // a t:       if p[a] is true
+
+    // Primitives: p[d] := ...
+    static final int ICONST = 28;  // d v
+    static final int DCONST = 29;  // d k:       the double constant k
+    static final int IADD = 30;    // d a b
+    static final int ISUB = 31;
+    static final int IMUL = 32;
+    static final int IDIV = 33;
+    static final int IMOD = 34;
+    static final int DADD = 35;
+    static final int DSUB = 36;
+    static final int DMUL = 37;
+    static final int DDIV = 38;
+    static final int INEG = 39;    // d a
+    static final int DNEG = 40;
+    static final int ZNOT = 41;
+    static final int I2D = 42;
+    static final int ILT = 43;     // d a b
+    static final int IGT = 44;
+    static final int ILE = 45;
+    static final int IGE = 46;
+    static final int IEQ = 47;
+    static final int INE = 48;
+    static final int DLT = 49;
+    static final int DGT = 50;
+    static final int DLE = 51;
+    static final int DGE = 52;
+    static final int DEQ = 53;
+    static final int DNE = 54;
+    static final int ILEN = 55;    // d a line:  the length of list r[a]
+
+    // Moves between the register files.
+    static final int BOXI = 56;    // d a:       r[d] := p[a] as an Integer
+    static final int BOXD = 57;
+    static final int BOXZ = 58;
+    static final int UNBOXI = 59;  // d a:       p[d] := r[a] as an int
+    static final int UNBOXD = 60;
+    static final int UNBOXZ = 61;
+
+    // Lists: r[d] := ...
+    static final int FOLD = 62;    // d a v line: the aggregate FOLDS[v] of list r[a]
+    static final int SORT = 63;    // d a line:  list r[a] sorted
+    static final int ELEM = 64;    // d a b line: whether r[a] is an element of list r[b]
+    static final int INDEX = 65;   // d a b line: the element of list r[a] at index r[b]
+    static final int TAKE = 66;    // d a b line: the first r[a] elements of list r[b]
+    static final int DROP = 67;    // d a b line: list r[b] without its first r[a] elements
+
+    /**
+     * The aggregates {@link #FOLD} computes, by its operand {@code v}. The
+     * operand is {@link #FOLD_REAL} more for a list known to hold reals.
+     */
+    static final TokenType[] FOLDS = {
+        TokenType.SUM, TokenType.PROD, TokenType.MIN, TokenType.MAX,
+    };
+    static final int FOLD_REAL = 4;
+
+    /** The mnemonic of each opcode, for listings. */
+    static final String[] NAMES = {
+        "KONST", "LOAD", "MOV", "PMOV",
+        "ADD", "SUB", "MUL", "DIV", "MOD", "CONCAT",
+        "LT", "GT", "LE", "GE", "EQ", "NE",
+        "NEG", "NOT", "HD", "TL", "CHKZ", "MKLIST", "VAL", "RET",
+        "JF", "JT", "ZJF", "ZJT",
+        "ICONST", "DCONST", "IADD", "ISUB", "IMUL", "IDIV", "IMOD",
+        "DADD", "DSUB", "DMUL", "DDIV", "INEG", "DNEG", "ZNOT", "I2D",
+        "ILT", "IGT", "ILE", "IGE", "IEQ", "INE",
+        "DLT", "DGT", "DLE", "DGE", "DEQ", "DNE", "ILEN",
+        "BOXI", "BOXD", "BOXZ", "UNBOXI", "UNBOXD", "UNBOXZ",
+        "FOLD", "SORT", "ELEM", "INDEX", "TAKE", "DROP",
+    };
+
+    /**
+     * Gets the number of operands of an instruction.
+     *
+     * @param op the opcode.
+     * @return the operands following the opcode.
+     */
+    static int operands(int op)
+    {
+        if (op >= ADD && op <= NE)
+            return 4;
+        if (op == VAL || op == FOLD || (op >= ELEM && op <= DROP))
+            return 4;
+        if (op == RET)
+            return 1;
+        if (op == LOAD || op == MKLIST || op == ILEN || op == SORT
+                || op == JF || op == JT
+                || (op >= NEG && op <= CHKZ))
+            return 3;
+        if (op >= IADD && op <= DDIV)
+            return 3;
+        if (op >= ILT && op <= DNE)
+            return 3;
+        return 2;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.compiler;
+
+import java.util.List;
+
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.Thunk;
+import ast.nodes.AggregateNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnexpectedResultException;
+import ast.nodes.ValNode;
+import environment.Environment;
+import lexer.Token;
+
+/**
+ * The checked operations shared by the compiled backends. Each one reports
+ * errors through the node it was compiled from, so compiled code fails with
+ * exactly the messages the tree walker prints.
+ */
+final class Ops
+{
+    private Ops() {}
+
+    /**
+     * Looks up the identifier {@code node} names.
+     */
+    static Object lookup(TokenNode node, Environment env)
+            throws EvaluationException
+    {
+        Token tok = node.getToken();
+        Object v = Thunk.force(env.lookup(tok));
+        if (v != null)
+            return v;
+        node.logError(tok.getValue() + " is not defined.");
+        throw new EvaluationException();
+    }
+
+    /**
+     * Binds the value of a top-level val, refusing to rebind a name.
+     *
+     * @return the name bound, which is the value of a val.
+     */
+    static Object val(ValNode node, Environment env, Object val)
+            throws EvaluationException
+    {
+        Token name = node.getNameToken();
+        if (env.lookup(name) != null)
+        {
+            node.logError(name.getValue() + " already defined.");
+            throw new EvaluationException();
+        }
+        env.updateEnvironment(name, val);
+        return name.getValue();
+    }
+
+    static Object head(HeadNode node, Object v) throws EvaluationException
+    {
+        return nonEmpty(node, v, "hd").get(0);
+    }
+
+    static Object tail(TailNode node, Object v) throws EvaluationException
+    {
+        List<?> list = nonEmpty(node, v, "tl");
+        return ListValue.slice(list, 1, list.size());
+    }
+
+    static Object fold(AggregateNode node, Object v)
+            throws EvaluationException
+    {
+        return node.apply(v);
+    }
+
+    static Object sort(SortNode node, Object v) throws EvaluationException
+    {
+        return node.apply(v);
+    }
+
+    static Object elem(ElemNode node, Object x, Object v)
+            throws EvaluationException
+    {
+        return node.apply(x, v);
+    }
+
+    static Object index(IndexNode node, Object v, Object k)
+            throws EvaluationException
+    {
+        return node.apply(v, k);
+    }
+
+    static Object slice(SliceNode node, Object n, Object v)
+            throws EvaluationException
+    {
+        return node.apply(n, v);
+    }
+
+    static int len(LenNode node, Object v) throws EvaluationException
+    {
+        if (!(v instanceof List<?>))
+        {
+            node.logError("len expects a list");
+            throw new EvaluationException();
+        }
+        return ((List<?>) v).size();
+    }
+
+    private static List<?> nonEmpty(SyntaxNode node, Object v,
+            String op) throws EvaluationException
+    {
+        if (!(v instanceof List<?>))
+        {
+            node.logError(op + " expects a list");
+            throw new EvaluationException();
+        }
+        List<?> list = (List<?>) v;
+        if (list.isEmpty())
+        {
+            node.logError(op + " on empty list");
+            throw new EvaluationException();
+        }
+        return list;
+    }
+
+    /************
+     * Unboxing, used where typed code meets an untyped value.
+     ************/
+
+    static int toInt(Object v) throws UnexpectedResultException
+    {
+        if (v instanceof Integer)
+            return (Integer) v;
+        throw new UnexpectedResultException(v);
+    }
+
+    static double toDouble(Object v) throws UnexpectedResultException
+    {
+        if (v instanceof Double)
+            return (Double) v;
+        if (v instanceof Integer)
+            return (Integer) v;
+        throw new UnexpectedResultException(v);
+    }
+
+    static boolean toBool(Object v) throws UnexpectedResultException
+    {
+        if (v instanceof Boolean)
+            return (Boolean) v;
+        throw new UnexpectedResultException(v);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+
+import ast.Aggregates;
+import ast.EvaluationException;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.ListType;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.VarType;
+import environment.Environment;
+import environment.TypeEnvironment;
+import lexer.TokenType;
+
+/**
+ * Represents {@code sum}, {@code prod}, {@code min} and {@code max} of a
+ * list of numbers. A list of ints gives an int and a list of reals a real.
+ * The sum of an empty list is zero and its product one; it has no least or
+ * greatest element. The loops themselves are in {@link Aggregates}.
+ */
+public final class AggregateNode extends SyntaxNode {
+    private SyntaxNode expr;
+    private final TokenType op;
+    private Type resultType;   // The static result type, recorded by typeOf.
+
+    /**
+     * Creates a new aggregate node.
+     *
+     * @param expr the list operand.
+     * @param op {@link TokenType#SUM}, {@link TokenType#PROD},
+     *           {@link TokenType#MIN} or {@link TokenType#MAX}.
+     * @param lineNumber the line number.
+     */
+    public AggregateNode(SyntaxNode expr, TokenType op, long lineNumber) {
+        super(lineNumber);
+        this.expr = adopt(expr);
+        this.op = op;
+    }
+
+    /** @return the list operand. */
+    public SyntaxNode getExpr() {
+        return expr;
+    }
+
+    /** @return the aggregate computed. */
+    public TokenType getOp() {
+        return op;
+    }
+
+    /** @return the static result type, or null if the node is not type checked. */
+    public Type getResultType() {
+        return resultType;
+    }
+
+    /** @return the keyword naming the aggregate. */
+    private String name() {
+        return op.name().toLowerCase();
+    }
+
+    @Override
+    protected String displayHeader() {
+        return name() + "(";
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        return apply(expr.evaluate(env));
+    }
+
+    /**
+     * Applies the aggregate to an already evaluated operand.
+     *
+     * @param v the value of the operand.
+     * @return the result.
+     * @throws EvaluationException if the operand is not a list of numbers,
+     *                             or is empty and has no least or greatest
+     *                             element.
+     */
+    public Object apply(Object v) throws EvaluationException {
+        if (!(v instanceof List<?> list)) {
+            logError(name() + " expects a list");
+            throw new EvaluationException();
+        }
+
+        Object result = Aggregates.fold(op, list, resultType instanceof RealType);
+        if (result != null)
+            return result;
+        if (list.isEmpty())
+            logError(name() + " on empty list");
+        else
+            logError(name() + " expects a list of numbers");
+        throw new EvaluationException();
+    }
+
+    @Override
+    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
+        return typeOf(expr.typeOf(tenv, inferencer), tenv, inferencer);
+    }
+
+    /**
+     * Performs type inference for the aggregate given the type of its
+     * operand: {@code [int] -> int} or {@code [real] -> real}. A list whose
+     * element type is not yet known, such as {@code []}, is taken to be a
+     * list of ints.
+     *
+     * @param exprType the type of the operand.
+     * @return the type of the result.
+     * @throws TypeException if the operand is not a list of numbers.
+     */
+    public Type typeOf(Type exprType, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
+        VarType elemType = tenv.getTypeVariable();
+        inferencer.unify(exprType, new ListType(elemType),
+                buildErrorMessage(name() + " expects a list"));
+
+        Type t = inferencer.getSubstitutions().apply(elemType);
+        if (t instanceof VarType) {
+            t = new IntType();
+            inferencer.unify(elemType, t,
+                    buildErrorMessage(name() + " expects a list of numbers."));
+        }
+        if (!(t instanceof IntType) && !(t instanceof RealType))
+            throw new TypeException(buildErrorMessage(name() + " expects a list of numbers."));
+        resultType = t;
+        return resultType;
+    }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(expr);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (expr != oldChild)
+            return false;
+        expr = newChild;
+        return true;
+    }
+}
@@ -1,8 +1,12 @@
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
 
+import ast.CostModel;
 import ast.EvaluationException;
+import ast.ForkJoinEvaluator;
+import ast.ListValue;
+import ast.nodes.specialized.Specializer;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.BoolType;
@@ -21,9 +25,11 @@ import lexer.TokenType;
  * @author Zach Kissel
  */
 public final class BinOpNode extends SyntaxNode {
-    private final SyntaxNode leftTerm;
-    private final SyntaxNode rightTerm;
+    private SyntaxNode leftTerm;
+    private SyntaxNode rightTerm;
     private final TokenType op;
+    private Type resultType;   // The static result type, recorded by typeOf.
+    private boolean specializable;   // May this node rewrite itself?
 
     /**
      * Creates a new binary operation node.
@@ -34,49 +40,192 @@ public final class BinOpNode extends SyntaxNode {
      * @param line the line number.
      */
     public BinOpNode(SyntaxNode leftTerm, TokenType op, SyntaxNode rightTerm, long line) {
+        this(leftTerm, op, rightTerm, line, true);
+    }
+
+    /**
+     * Creates a new binary operation node that may or may not rewrite itself
+     * into a type specialized node once it has observed its operand types.
+     * 
+     * @param leftTerm the left-hand side operand.
+     * @param op the operator token.
+     * @param rightTerm the right-hand side operand.
+     * @param line the line number.
+     * @param specializable true if the node may specialize itself.
+     */
+    public BinOpNode(SyntaxNode leftTerm, TokenType op, SyntaxNode rightTerm, long line,
+            boolean specializable) {
         super(line);
-        this.leftTerm = leftTerm;
-        this.rightTerm = rightTerm;
+        this.leftTerm = adopt(leftTerm);
+        this.rightTerm = adopt(rightTerm);
         this.op = op;
+        this.specializable = specializable;
+    }
+
+    /** @return the left-hand side operand. */
+    public SyntaxNode getLeftTerm() {
+        return leftTerm;
+    }
+
+    /** @return the right-hand side operand. */
+    public SyntaxNode getRightTerm() {
+        return rightTerm;
+    }
+
+    /** @return the operator. */
+    public TokenType getOp() {
+        return op;
+    }
+
+    /** @return the static result type, or null if the node is not type checked. */
+    public Type getResultType() {
+        return resultType;
     }
 
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("BinOp[" + op + "](", indentAmt);
-        leftTerm.displaySubtree(indentAmt + 2);
-        rightTerm.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "BinOp[" + op + "](";
     }
 
     /**
-     * Evaluates the binary operation.
+     * Evaluates the binary operation. When the static type of the operation
+     * is known, the unboxed entry point for that type is used.
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
+        if (forks(env))
+            return evaluateForked(env);
+        if (resultType instanceof IntType)
+            return evaluateInt(env);
+        if (resultType instanceof RealType)
+            return evaluateDouble(env);
+        return evaluateGeneric(env);
+    }
+
+    /**
+     * Evaluates an integer operation without boxing the operands.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException {
+        if (!(resultType instanceof IntType) || forks(env))
+            return super.evaluateInt(env);
+
+        int l = leftTerm.evaluateInt(env);
+        int r = rightTerm.evaluateInt(env);
+        specialize(false);
+
+        switch (op) {
+            case ADD:
+                return l + r;
+            case SUB:
+                return l - r;
+            case MULT:
+                return l * r;
+            case DIV:
+                return l / r;
+            case MOD:
+                return l % r;
+            default:
+                logError("Unknown binary operator: " + op);
+                throw new EvaluationException();
+        }
+    }
+
+    /**
+     * Evaluates a real operation without boxing the operands. Integer
+     * operands are widened.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException {
+        if (resultType instanceof IntType)
+            return evaluateInt(env);
+        if (!(resultType instanceof RealType) || forks(env))
+            return super.evaluateDouble(env);
+
+        double l = leftTerm.evaluateDouble(env);
+        double r = rightTerm.evaluateDouble(env);
+        specialize(true);
+
+        switch (op) {
+            case ADD:
+                return l + r;
+            case SUB:
+                return l - r;
+            case MULT:
+                return l * r;
+            case DIV:
+                return l / r;
+            default:
+                logError("Unknown binary operator: " + op);
+                throw new EvaluationException();
+        }
+    }
+
+    /**
+     * Determines if the operands should be evaluated in parallel.
+     */
+    private boolean forks(Environment env) {
+        return env.isParallel() && CostModel.forksOperands(this);
+    }
+
+    /**
+     * Evaluates the operands in parallel, then applies the operator.
+     */
+    private Object evaluateForked(Environment env) throws EvaluationException {
+        Object[] v = ForkJoinEvaluator.operands(
+                (i, e) -> (i == 0 ? leftTerm : rightTerm).evaluate(e), env);
+        return apply(v[0], v[1]);
+    }
+
+    /**
+     * Evaluates the binary operation by inspecting the runtime values of the
+     * operands. This is used when the tree has not been type checked.
+     */
+    private Object evaluateGeneric(Environment env) throws EvaluationException {
         Object lval = leftTerm.evaluate(env);
         Object rval = rightTerm.evaluate(env);
+        Object result = apply(lval, rval);
+
+        if ((lval instanceof Integer || lval instanceof Double)
+                && (rval instanceof Integer || rval instanceof Double))
+            specialize(lval instanceof Double || rval instanceof Double);
+        return result;
+    }
+
+    /**
+     * Rewrites this node into the node specialized for its operand types, if
+     * there is one. This is attempted only once.
+     *
+     * @param real true if the operands are real; false if both are integers.
+     */
+    private void specialize(boolean real) {
+        if (!specializable || getParent() == null)
+            return;
+        specializable = false;
+
+        SyntaxNode special = Specializer.specialize(this, real);
+        if (special != null)
+            replace(special);
+    }
+
+    /**
+     * Applies the operator to already evaluated operands.
+     *
+     * @param lval the value of the left-hand side.
+     * @param rval the value of the right-hand side.
+     * @return the result of the operation.
+     * @throws EvaluationException if the operands are not valid for the
+     *                             operator.
+     */
+    public Object apply(Object lval, Object rval) throws EvaluationException {
 
         // Handle list concatenation.
         if (op == TokenType.CONCAT) {
-            if (!(lval instanceof LinkedList<?>) || !(rval instanceof LinkedList<?>)) {
+            if (!(lval instanceof List<?>) || !(rval instanceof List<?>)) {
                 logError("++ expects two lists.");
                 throw new EvaluationException();
             }
-            LinkedList<Object> newList = new LinkedList<>((LinkedList<?>) lval);
-            newList.addAll((LinkedList<?>) rval);
-            return newList;
-        }
-
-        // Handle logical operators.
-        if (op == TokenType.AND || op == TokenType.OR) {
-            if (!(lval instanceof Boolean) || !(rval instanceof Boolean)) {
-                logError("Logical operators expect boolean operands.");
-                throw new EvaluationException();
-            }
-            if (op == TokenType.AND)
-                return (Boolean) lval && (Boolean) rval;
-            else
-                return (Boolean) lval || (Boolean) rval;
+            return ListValue.concat((List<?>) lval, (List<?>) rval);
         }
 
         // Handle arithmetic and relational operators.
@@ -154,7 +303,20 @@ public final class BinOpNode extends SyntaxNode {
     public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
         Type lt = leftTerm.typeOf(tenv, inferencer);
         Type rt = rightTerm.typeOf(tenv, inferencer);
+        return typeOf(lt, rt, tenv, inferencer);
+    }
 
+    /**
+     * Performs type inference for the binary operation given the types of
+     * its operands.
+     *
+     * @param lt the type of the left-hand side.
+     * @param rt the type of the right-hand side.
+     * @return the type of the operation.
+     * @throws TypeException if the operands are not valid for the operator.
+     */
+    public Type typeOf(Type lt, Type rt, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
         switch (op) {
             case ADD:
             case SUB:
@@ -163,17 +325,16 @@ public final class BinOpNode extends SyntaxNode {
                 if (!(isNumeric(lt) && isNumeric(rt)))
                     throw new TypeException(buildErrorMessage(op + " expects numeric operands."));
                 if (lt instanceof RealType || rt instanceof RealType)
-                    return new RealType();
-                return new IntType();
+                    resultType = new RealType();
+                else
+                    resultType = new IntType();
+                return resultType;
             case MOD:
-                if (lt instanceof IntType && rt instanceof IntType)
-                    return new IntType();
+                if (lt instanceof IntType && rt instanceof IntType) {
+                    resultType = new IntType();
+                    return resultType;
+                }
                 throw new TypeException(buildErrorMessage("mod requires integer operands."));
-            case AND:
-            case OR:
-                if (lt instanceof BoolType && rt instanceof BoolType)
-                    return new BoolType();
-                throw new TypeException(buildErrorMessage("Logical operators expect boolean operands."));
             case CONCAT:
                 VarType elemType = tenv.getTypeVariable();
                 inferencer.unify(lt, new ListType(elemType), buildErrorMessage("++ expects two lists."));
@@ -196,4 +357,20 @@ public final class BinOpNode extends SyntaxNode {
     private boolean isNumeric(Type t) {
         return (t instanceof IntType) || (t instanceof RealType);
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(leftTerm, rightTerm);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (leftTerm == oldChild)
+            leftTerm = newChild;
+        else if (rightTerm == oldChild)
+            rightTerm = newChild;
+        else
+            return false;
+        return true;
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+
+import ast.EvaluationException;
+import ast.SortedLists;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.BoolType;
+import ast.typesystem.types.ListType;
+import ast.typesystem.types.Type;
+import environment.Environment;
+import environment.TypeEnvironment;
+
+/**
+ * Represents {@code elem <x> <list>}, which is true if x is an element of
+ * the list. Sorted lists of numbers are searched by bisection; see
+ * {@link SortedLists}.
+ */
+public final class ElemNode extends SyntaxNode {
+    private SyntaxNode elem;
+    private SyntaxNode list;
+
+    /**
+     * Constructs a membership node.
+     *
+     * @param elem the value looked for
+     * @param list the list searched
+     * @param lineNumber the source line number of this node
+     */
+    public ElemNode(SyntaxNode elem, SyntaxNode list, long lineNumber) {
+        super(lineNumber);
+        this.elem = adopt(elem);
+        this.list = adopt(list);
+    }
+
+    /** @return the value looked for. */
+    public SyntaxNode getElem() {
+        return elem;
+    }
+
+    /** @return the list searched. */
+    public SyntaxNode getList() {
+        return list;
+    }
+
+    @Override
+    protected String displayHeader() {
+        return "elem(";
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        Object x = elem.evaluate(env);
+        return apply(x, list.evaluate(env));
+    }
+
+    /**
+     * Applies {@code elem} to already evaluated operands.
+     *
+     * @param x the value looked for.
+     * @param v the value of the list.
+     * @return true if x is an element of the list.
+     * @throws EvaluationException if {@code v} is not a list.
+     */
+    public Object apply(Object x, Object v) throws EvaluationException {
+        if (!(v instanceof List<?> l)) {
+            logError("elem expects a list");
+            throw new EvaluationException();
+        }
+        return SortedLists.contains(x, l);
+    }
+
+    @Override
+    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
+        Type et = elem.typeOf(tenv, inferencer);
+        Type lt = list.typeOf(tenv, inferencer);
+        return typeOf(et, lt, inferencer);
+    }
+
+    /**
+     * Performs type inference for {@code elem} given the types of its
+     * operands: {@code t * [t] -> bool}.
+     *
+     * @param et the type of the value looked for.
+     * @param lt the type of the list.
+     * @return the type of the result.
+     * @throws TypeException if the list is not a list of the value's type.
+     */
+    public Type typeOf(Type et, Type lt, Inferencer inferencer) throws TypeException {
+        inferencer.unify(lt, new ListType(et),
+                buildErrorMessage("elem expects a list of the value's type"));
+        return new BoolType();
+    }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(elem, list);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (elem == oldChild)
+            elem = newChild;
+        else if (list == oldChild)
+            list = newChild;
+        else
+            return false;
+        return true;
+    }
+}
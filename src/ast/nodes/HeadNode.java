@@ -1,6 +1,6 @@
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
 
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
@@ -16,7 +16,7 @@ import environment.TypeEnvironment;
  * Extracts the first element of a list.
  */
 public final class HeadNode extends SyntaxNode {
-    private final SyntaxNode expr;
+    private SyntaxNode expr;
 
     /**
      * Constructs a head operation node.
@@ -26,17 +26,20 @@ public final class HeadNode extends SyntaxNode {
      */
     public HeadNode(SyntaxNode expr, long lineNumber) {
         super(lineNumber);
-        this.expr = expr;
+        this.expr = adopt(expr);
+    }
+
+    /** @return the list operand. */
+    public SyntaxNode getExpr() {
+        return expr;
     }
 
     /**
      * Displays the subtree for debugging purposes.
      */
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("hd(", indentAmt);
-        expr.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "hd(";
     }
 
     /**
@@ -48,9 +51,18 @@ public final class HeadNode extends SyntaxNode {
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-        Object v = expr.evaluate(env);
+        return apply(expr.evaluate(env));
+    }
 
-        if (!(v instanceof LinkedList<?> list)) {
+    /**
+     * Applies {@code hd} to an already evaluated operand.
+     *
+     * @param v the value of the operand.
+     * @return the result.
+     * @throws EvaluationException if the operand is not valid for {@code hd}.
+     */
+    public Object apply(Object v) throws EvaluationException {
+        if (!(v instanceof List<?> list)) {
             logError("hd expects a list");
             throw new EvaluationException();
         }
@@ -59,7 +71,7 @@ public final class HeadNode extends SyntaxNode {
             throw new EvaluationException();
         }
 
-        return list.getFirst();
+        return list.get(0);
     }
 
     /**
@@ -73,8 +85,18 @@ public final class HeadNode extends SyntaxNode {
      */
     @Override
     public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
-        Type exprType = expr.typeOf(tenv, inferencer);
+        return typeOf(expr.typeOf(tenv, inferencer), tenv, inferencer);
+    }
 
+    /**
+     * Performs type inference for {@code hd} given the type of its operand.
+     *
+     * @param exprType the type of the operand.
+     * @return the type of the result.
+     * @throws TypeException if the operand is not a list.
+     */
+    public Type typeOf(Type exprType, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
         VarType elemType = tenv.getTypeVariable();
         ListType listOfElem = new ListType(elemType);
 
@@ -82,4 +104,17 @@ public final class HeadNode extends SyntaxNode {
 
         return inferencer.getSubstitutions().apply(elemType);
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(expr);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (expr != oldChild)
+            return false;
+        expr = newChild;
+        return true;
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+
+import ast.EvaluationException;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.ListType;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.VarType;
+import environment.Environment;
+import environment.TypeEnvironment;
+
+/**
+ * Represents {@code <list> ! <index>}, the element of a list at an index
+ * counted from zero. Lists keep their elements in an array, so any element
+ * is reached at once rather than by a chain of {@code tl}.
+ */
+public final class IndexNode extends SyntaxNode {
+    private SyntaxNode list;
+    private SyntaxNode index;
+
+    /**
+     * Constructs an index node.
+     *
+     * @param list the list indexed
+     * @param index the index
+     * @param lineNumber the source line number of this node
+     */
+    public IndexNode(SyntaxNode list, SyntaxNode index, long lineNumber) {
+        super(lineNumber);
+        this.list = adopt(list);
+        this.index = adopt(index);
+    }
+
+    /** @return the list indexed. */
+    public SyntaxNode getList() {
+        return list;
+    }
+
+    /** @return the index. */
+    public SyntaxNode getIndex() {
+        return index;
+    }
+
+    @Override
+    protected String displayHeader() {
+        return "index(";
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        Object v = list.evaluate(env);
+        return apply(v, index.evaluate(env));
+    }
+
+    /**
+     * Applies {@code !} to already evaluated operands.
+     *
+     * @param v the value of the list.
+     * @param k the value of the index.
+     * @return the element of the list at the index.
+     * @throws EvaluationException if {@code v} is not a list, {@code k} is
+     *                             not an int, or the index is out of bounds.
+     */
+    public Object apply(Object v, Object k) throws EvaluationException {
+        if (!(v instanceof List<?> l)) {
+            logError("! expects a list");
+            throw new EvaluationException();
+        }
+        if (!(k instanceof Integer i)) {
+            logError("! expects an int index");
+            throw new EvaluationException();
+        }
+        if (i < 0 || i >= l.size()) {
+            logError("index " + i + " out of bounds for list of length " + l.size());
+            throw new EvaluationException();
+        }
+        return l.get(i);
+    }
+
+    @Override
+    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
+        Type lt = list.typeOf(tenv, inferencer);
+        Type it = index.typeOf(tenv, inferencer);
+        return typeOf(lt, it, tenv, inferencer);
+    }
+
+    /**
+     * Performs type inference for {@code !} given the types of its operands:
+     * {@code [t] * int -> t}.
+     *
+     * @param lt the type of the list.
+     * @param it the type of the index.
+     * @return the type of the result.
+     * @throws TypeException if the list is not a list or the index not an int.
+     */
+    public Type typeOf(Type lt, Type it, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
+        VarType elemType = tenv.getTypeVariable();
+        inferencer.unify(lt, new ListType(elemType), buildErrorMessage("! expects a list"));
+        inferencer.unify(it, new IntType(), buildErrorMessage("! expects an int index"));
+        return inferencer.getSubstitutions().apply(elemType);
+    }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(list, index);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (list == oldChild)
+            list = newChild;
+        else if (index == oldChild)
+            index = newChild;
+        else
+            return false;
+        return true;
+    }
+}
@@ -1,6 +1,6 @@
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
 
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
@@ -17,7 +17,7 @@ import environment.TypeEnvironment;
  * Computes the length of a list expression.
  */
 public final class LenNode extends SyntaxNode {
-    private final SyntaxNode expr;
+    private SyntaxNode expr;
 
     /**
      * Constructs a length operation node.
@@ -27,17 +27,20 @@ public final class LenNode extends SyntaxNode {
      */
     public LenNode(SyntaxNode expr, long lineNumber) {
         super(lineNumber);
-        this.expr = expr;
+        this.expr = adopt(expr);
+    }
+
+    /** @return the list operand. */
+    public SyntaxNode getExpr() {
+        return expr;
     }
 
     /**
      * Displays the subtree for debugging purposes.
      */
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("len(", indentAmt);
-        expr.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "len(";
     }
 
     /**
@@ -49,9 +52,18 @@ public final class LenNode extends SyntaxNode {
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-        Object v = expr.evaluate(env);
+        return apply(expr.evaluate(env));
+    }
 
-        if (!(v instanceof LinkedList<?> list)) {
+    /**
+     * Applies {@code len} to an already evaluated operand.
+     *
+     * @param v the value of the operand.
+     * @return the result.
+     * @throws EvaluationException if the operand is not valid for {@code len}.
+     */
+    public Object apply(Object v) throws EvaluationException {
+        if (!(v instanceof List<?> list)) {
             logError("len expects a list");
             throw new EvaluationException();
         }
@@ -70,8 +82,18 @@ public final class LenNode extends SyntaxNode {
      */
     @Override
     public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
-        Type exprType = expr.typeOf(tenv, inferencer);
+        return typeOf(expr.typeOf(tenv, inferencer), tenv, inferencer);
+    }
 
+    /**
+     * Performs type inference for {@code len} given the type of its operand.
+     *
+     * @param exprType the type of the operand.
+     * @return the type of the result.
+     * @throws TypeException if the operand is not a list.
+     */
+    public Type typeOf(Type exprType, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
         VarType elemType = tenv.getTypeVariable();
         ListType listOfElem = new ListType(elemType);
 
@@ -79,4 +101,17 @@ public final class LenNode extends SyntaxNode {
 
         return new IntType();
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(expr);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (expr != oldChild)
+            return false;
+        expr = newChild;
+        return true;
+    }
+}
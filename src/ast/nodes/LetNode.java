@@ -1,63 +1,88 @@
 package ast.nodes;
 
+import java.util.List;
+
 import ast.EvaluationException;
+import ast.Thunk;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.Type;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.Token;
 
 /**
  * let x = bound in body
- * No scope object available, so we:
- *  - save any prior binding for x,
- *  - bind x to the new value,
- *  - evaluate the body,
- *  - restore the prior binding (or clear by setting null if none existed).
+ * The name is resolved to a slot in the frame of locals before evaluation,
+ * so evaluating the let just stores the bound value in that slot and
+ * evaluates the body. Uses of x in the body read the slot.
  */
 public final class LetNode extends SyntaxNode {
     private final Token name;
-    private final SyntaxNode bound;
-    private final SyntaxNode body;
+    private int slot;   // The frame slot holding the bound value.
+    private SyntaxNode bound;
+    private SyntaxNode body;
 
     public LetNode(Token name, SyntaxNode bound, SyntaxNode body, long lineNumber) {
         super(lineNumber);
         this.name = name;
-        this.bound = bound;
-        this.body = body;
+        this.bound = adopt(bound);
+        this.body = adopt(body);
+    }
+
+    /** @return the token naming the bound variable. */
+    public Token getName() {
+        return name;
+    }
+
+    /** @return the expression bound to the variable. */
+    public SyntaxNode getBound() {
+        return bound;
+    }
+
+    /** @return the body evaluated with the binding in place. */
+    public SyntaxNode getBody() {
+        return body;
     }
 
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("let " + name.getValue() + " =", indentAmt);
-        bound.displaySubtree(indentAmt + 2);
-        printIndented("in", indentAmt);
-        body.displaySubtree(indentAmt + 2);
+    protected String displayHeader() {
+        return "let " + name.getValue() + " =";
     }
 
     @Override
-    public Object evaluate(Environment env) throws EvaluationException {
-        // save previous binding if any
-        Object old = env.lookup(name);
-        boolean had = (old != null);
+    protected String displaySeparator(int child) {
+        return "in";
+    }
 
-        // bind to new value
-        Object val = bound.evaluate(env);
-        env.updateEnvironment(name, val);
+    @Override
+    protected String displayFooter() {
+        return null;
+    }
 
-        try {
-            return body.evaluate(env);
-        } finally {
-            // restore the prior binding
-            if (had) {
-                env.updateEnvironment(name, old);
-            } else {
-                // no remove available in your Environment, so clear by setting null
-                // your env.lookup returns null for "not bound", so this mimics unbinding
-                env.updateEnvironment(name, null);
-            }
-        }
+    /** @return the frame slot holding the bound value. */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Brings the name into scope, giving it a slot. The bound expression is
+     * resolved outside the scope of the name, the body inside it; see
+     * {@link SyntaxNode#resolve(Scope)}.
+     */
+    void bind(Scope scope) {
+        slot = scope.bind(name.getValue());
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        // No other binding can be using the slot while the body runs.
+        if (env.isLazy())
+            env.setLocal(slot, new Thunk(bound, env.capture()));
+        else
+            env.setLocal(slot, bound.evaluate(env));
+        return body.evaluate(env);
     }
     /**
      * Type checking:
@@ -86,4 +111,20 @@ public final class LetNode extends SyntaxNode {
             }
         }
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(bound, body);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (bound == oldChild)
+            bound = newChild;
+        else if (body == oldChild)
+            body = newChild;
+        else
+            return false;
+        return true;
+    }
 }
@@ -1,8 +1,12 @@
 package ast.nodes;
 
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
 
 import ast.EvaluationException;
+import ast.ForkJoinEvaluator;
+import ast.ListValue;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.ListType;
@@ -16,6 +20,7 @@ import environment.TypeEnvironment;
  */
 public final class ListNode extends SyntaxNode {
     private final LinkedList<SyntaxNode> elems;
+    private Boolean wide;   // Whether the elements are worth forking, once known.
 
     /**
      * Constructs a list literal node.
@@ -26,28 +31,48 @@ public final class ListNode extends SyntaxNode {
     public ListNode(LinkedList<SyntaxNode> elems, long lineNumber) {
         super(lineNumber);
         this.elems = elems;
+        for (SyntaxNode e : elems)
+            adopt(e);
+    }
+
+    /**
+     * Gets the element expressions.
+     *
+     * @return the element expression nodes, in source order.
+     */
+    public LinkedList<SyntaxNode> getElements() {
+        return elems;
     }
 
     /**
      * Displays the subtree for debugging.
      */
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("List[", indentAmt);
-        for (SyntaxNode e : elems) e.displaySubtree(indentAmt + 2);
-        printIndented("]", indentAmt);
+    protected String displayHeader() {
+        return "List[";
+    }
+
+    @Override
+    protected String displayFooter() {
+        return "]";
     }
 
     /**
-     * Evaluates the list literal by evaluating each element.
+     * Evaluates the list literal by evaluating each element. In parallel
+     * mode, the elements of a wide literal are evaluated in parallel.
      *
      * @param env the runtime environment
-     * @return a new LinkedList of evaluated element values
+     * @return a new list of the evaluated element values
      * @throws EvaluationException if any element evaluation fails
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-        LinkedList<Object> out = new LinkedList<>();
+        if (env.isParallel() && isWide()) {
+            SyntaxNode[] nodes = elems.toArray(new SyntaxNode[0]);
+            return ForkJoinEvaluator.evaluate(nodes.length,
+                    (i, e) -> nodes[i].evaluate(e), env);
+        }
+        ListValue out = new ListValue();
         for (SyntaxNode e : elems) out.add(e.evaluate(env));
         return out;
     }
@@ -70,4 +95,31 @@ public final class ListNode extends SyntaxNode {
         }
         return new ListType(elemType);
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return elems;
+    }
+
+    private boolean isWide() {
+        if (wide == null)
+            wide = ForkJoinEvaluator.isWide(this);
+        return wide;
+    }
+
+    /**
+     * Elements evaluated in parallel may rewrite themselves at the same
+     * time, so replacements are made one at a time.
+     */
+    @Override
+    protected synchronized boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        ListIterator<SyntaxNode> it = elems.listIterator();
+        while (it.hasNext()) {
+            if (it.next() == oldChild) {
+                it.set(newChild);
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+
+import ast.EvaluationException;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.BoolType;
+import ast.typesystem.types.Type;
+import environment.Environment;
+import environment.TypeEnvironment;
+import lexer.TokenType;
+
+/**
+ * Represents a short-circuiting logical operation, {@code and} or
+ * {@code or}. The right operand is evaluated only when the left one does
+ * not decide the result.
+ */
+public final class LogicalNode extends SyntaxNode {
+    private SyntaxNode leftTerm;
+    private SyntaxNode rightTerm;
+    private final TokenType op;
+    private Type resultType;   // The static result type, recorded by typeOf.
+
+    /**
+     * Creates a new logical operation node.
+     *
+     * @param leftTerm the left-hand side operand.
+     * @param op the operator, {@code AND} or {@code OR}.
+     * @param rightTerm the right-hand side operand.
+     * @param line the line number.
+     */
+    public LogicalNode(SyntaxNode leftTerm, TokenType op, SyntaxNode rightTerm, long line) {
+        super(line);
+        this.leftTerm = adopt(leftTerm);
+        this.rightTerm = adopt(rightTerm);
+        this.op = op;
+    }
+
+    /** @return the left-hand side operand. */
+    public SyntaxNode getLeftTerm() {
+        return leftTerm;
+    }
+
+    /** @return the right-hand side operand. */
+    public SyntaxNode getRightTerm() {
+        return rightTerm;
+    }
+
+    /** @return the operator. */
+    public TokenType getOp() {
+        return op;
+    }
+
+    /** @return the static result type, or null if the node is not type checked. */
+    public Type getResultType() {
+        return resultType;
+    }
+
+    /**
+     * Determines if a value of the left operand decides the result: false
+     * for {@code and}, true for {@code or}.
+     *
+     * @param value the value of the left operand.
+     * @return true if the right operand need not be evaluated.
+     */
+    public boolean decides(boolean value) {
+        return value == (op == TokenType.OR);
+    }
+
+    @Override
+    protected String displayHeader() {
+        return "Logical[" + op + "](";
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        if (resultType instanceof BoolType)
+            return evaluateBoolean(env);
+
+        boolean l = check(leftTerm.evaluate(env));
+        if (decides(l))
+            return l;
+        return check(rightTerm.evaluate(env));
+    }
+
+    /**
+     * Evaluates the operation without boxing the operands.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException {
+        if (!(resultType instanceof BoolType))
+            return super.evaluateBoolean(env);
+
+        boolean l = leftTerm.evaluateBoolean(env);
+        if (decides(l))
+            return l;
+        return rightTerm.evaluateBoolean(env);
+    }
+
+    /**
+     * Checks that the value of an operand is a boolean.
+     *
+     * @param value the value of an operand.
+     * @return the value as a boolean.
+     * @throws EvaluationException if the value is not a boolean.
+     */
+    public boolean check(Object value) throws EvaluationException {
+        if (!(value instanceof Boolean)) {
+            logError("Logical operators expect boolean operands.");
+            throw new EvaluationException();
+        }
+        return (Boolean) value;
+    }
+
+    @Override
+    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
+        Type lt = leftTerm.typeOf(tenv, inferencer);
+        Type rt = rightTerm.typeOf(tenv, inferencer);
+        return typeOf(lt, rt);
+    }
+
+    /**
+     * Performs type inference for the logical operation given the types of
+     * its operands.
+     *
+     * @param lt the type of the left-hand side.
+     * @param rt the type of the right-hand side.
+     * @return the type of the operation.
+     * @throws TypeException if an operand is not a boolean.
+     */
+    public Type typeOf(Type lt, Type rt) throws TypeException {
+        if (lt instanceof BoolType && rt instanceof BoolType) {
+            resultType = new BoolType();
+            return resultType;
+        }
+        throw new TypeException(buildErrorMessage("Logical operators expect boolean operands."));
+    }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(leftTerm, rightTerm);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (leftTerm == oldChild)
+            leftTerm = newChild;
+        else if (rightTerm == oldChild)
+            rightTerm = newChild;
+        else
+            return false;
+        return true;
+    }
+}
@@ -17,6 +17,8 @@
 package ast.nodes;
 
 import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
 
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
@@ -34,14 +36,18 @@ public final class ProgNode extends SyntaxNode {
     public ProgNode(LinkedList<SyntaxNode> exprs, long line) {
         super(line);
         this.exprs = exprs;
+        for (SyntaxNode expr : exprs)
+            adopt(expr);
+    }
+
+    /** @return the top-level statements, in source order. */
+    public LinkedList<SyntaxNode> getStatements() {
+        return exprs;
     }
 
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("Prog(", indentAmt);
-        for (SyntaxNode expr : exprs)
-            expr.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "Prog(";
     }
 
     @Override
@@ -95,4 +101,25 @@ public final class ProgNode extends SyntaxNode {
             return false;
         }
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return exprs;
+    }
+
+    /**
+     * Statements evaluated in parallel may rewrite themselves at the same
+     * time, so replacements are made one at a time.
+     */
+    @Override
+    protected synchronized boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        ListIterator<SyntaxNode> it = exprs.listIterator();
+        while (it.hasNext()) {
+            if (it.next() == oldChild) {
+                it.set(newChild);
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -16,7 +16,12 @@
  */
 package ast.nodes;
 
+import java.util.List;
+
+import ast.CostModel;
 import ast.EvaluationException;
+import ast.ForkJoinEvaluator;
+import ast.nodes.specialized.Specializer;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.BoolType;
@@ -34,28 +39,173 @@ import lexer.TokenType;
  */
 public final class RelOpNode extends SyntaxNode {
     private final TokenType op;
-    private final SyntaxNode leftTerm;
-    private final SyntaxNode rightTerm;
+    private SyntaxNode leftTerm;
+    private SyntaxNode rightTerm;
+    private Type operandType;   // The static operand type, recorded by typeOf.
+    private boolean specializable;   // May this node rewrite itself?
 
     public RelOpNode(SyntaxNode lterm, TokenType op, SyntaxNode rterm, long line) {
+        this(lterm, op, rterm, line, true);
+    }
+
+    /**
+     * Creates a relational node that may or may not rewrite itself into a
+     * type specialized node once it has observed its operand types.
+     */
+    public RelOpNode(SyntaxNode lterm, TokenType op, SyntaxNode rterm, long line,
+            boolean specializable) {
         super(line);
         this.op = op;
-        this.leftTerm = lterm;
-        this.rightTerm = rterm;
+        this.leftTerm = adopt(lterm);
+        this.rightTerm = adopt(rterm);
+        this.specializable = specializable;
+    }
+
+    /** @return the left-hand side operand. */
+    public SyntaxNode getLeftTerm() {
+        return leftTerm;
+    }
+
+    /** @return the right-hand side operand. */
+    public SyntaxNode getRightTerm() {
+        return rightTerm;
+    }
+
+    /** @return the operator. */
+    public TokenType getOp() {
+        return op;
+    }
+
+    /**
+     * Gets the static type of the operands, if the comparison has an unboxed
+     * form.
+     *
+     * @return the operand type, or null if the node is not type checked or
+     *         compares lists.
+     */
+    public Type getOperandType() {
+        return operandType;
     }
 
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("RelOp[" + op + "](", indentAmt);
-        leftTerm.displaySubtree(indentAmt + 2);
-        rightTerm.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "RelOp[" + op + "](";
     }
 
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
+        if (forks(env))
+            return evaluateForked(env);
+        if (operandType != null)
+            return evaluateBoolean(env);
+        return evaluateGeneric(env);
+    }
+
+    /**
+     * Evaluates the comparison on unboxed operands when their static type is
+     * known.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException {
+        if (forks(env)) {
+            return super.evaluateBoolean(env);
+        } else if (operandType instanceof IntType) {
+            int a = leftTerm.evaluateInt(env);
+            int b = rightTerm.evaluateInt(env);
+            specialize(false);
+            switch (op) {
+                case LT:  return a <  b;
+                case GT:  return a >  b;
+                case LTE: return a <= b;
+                case GTE: return a >= b;
+                case EQ:  return a == b;
+                case NEQ: return a != b;
+                default:  break;
+            }
+        } else if (operandType instanceof RealType) {
+            double a = leftTerm.evaluateDouble(env);
+            double b = rightTerm.evaluateDouble(env);
+            specialize(true);
+            switch (op) {
+                case LT:  return a <  b;
+                case GT:  return a >  b;
+                case LTE: return a <= b;
+                case GTE: return a >= b;
+                case EQ:  return a == b;
+                case NEQ: return a != b;
+                default:  break;
+            }
+        } else if (operandType instanceof BoolType) {
+            boolean a = leftTerm.evaluateBoolean(env);
+            boolean b = rightTerm.evaluateBoolean(env);
+            switch (op) {
+                case EQ:  return a == b;
+                case NEQ: return a != b;
+                default:  break;
+            }
+        } else {
+            return super.evaluateBoolean(env);
+        }
+
+        logError("unknown relational operator " + op);
+        throw new EvaluationException();
+    }
+
+    /**
+     * Determines if the operands should be evaluated in parallel.
+     */
+    private boolean forks(Environment env) {
+        return env.isParallel() && CostModel.forksOperands(this);
+    }
+
+    /**
+     * Evaluates the operands in parallel, then applies the operator.
+     */
+    private Object evaluateForked(Environment env) throws EvaluationException {
+        Object[] v = ForkJoinEvaluator.operands(
+                (i, e) -> (i == 0 ? leftTerm : rightTerm).evaluate(e), env);
+        return apply(v[0], v[1]);
+    }
+
+    /**
+     * Evaluates the comparison by inspecting the runtime values of the
+     * operands. This is used when the tree has not been type checked.
+     */
+    private Object evaluateGeneric(Environment env) throws EvaluationException {
         Object lv = leftTerm.evaluate(env);
         Object rv = rightTerm.evaluate(env);
+        Object result = apply(lv, rv);
+
+        if (isNumber(lv) && isNumber(rv))
+            specialize(lv instanceof Double || rv instanceof Double);
+        return result;
+    }
+
+    /**
+     * Rewrites this node into the node specialized for its operand types, if
+     * there is one. This is attempted only once.
+     *
+     * @param real true if the operands are compared as reals.
+     */
+    private void specialize(boolean real) {
+        if (!specializable || getParent() == null)
+            return;
+        specializable = false;
+
+        SyntaxNode special = Specializer.specialize(this, real);
+        if (special != null)
+            replace(special);
+    }
+
+    /**
+     * Applies the comparison to already evaluated operands.
+     *
+     * @param lv the value of the left-hand side.
+     * @param rv the value of the right-hand side.
+     * @return the result of the comparison.
+     * @throws EvaluationException if the operands can not be compared.
+     */
+    public Object apply(Object lv, Object rv) throws EvaluationException {
 
         switch (op) {
             // numeric comparisons
@@ -111,7 +261,20 @@ public final class RelOpNode extends SyntaxNode {
     public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
         Type lt = leftTerm.typeOf(tenv, inferencer);
         Type rt = rightTerm.typeOf(tenv, inferencer);
+        return typeOf(lt, rt, tenv, inferencer);
+    }
 
+    /**
+     * Performs type inference for the relational operation given the types
+     * of its operands.
+     *
+     * @param lt the type of the left-hand side.
+     * @param rt the type of the right-hand side.
+     * @return the type of the comparison.
+     * @throws TypeException if the operands can not be compared.
+     */
+    public Type typeOf(Type lt, Type rt, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
         switch (op) {
             // numeric relational operators
             case LT:
@@ -123,10 +286,12 @@ public final class RelOpNode extends SyntaxNode {
                     RealType r = new RealType();
                     inferencer.unify(lt, r, buildErrorMessage(op + " expects numbers"));
                     inferencer.unify(rt, r, buildErrorMessage(op + " expects numbers"));
+                    operandType = r;
                 } else {
                     IntType i = new IntType();
                     inferencer.unify(lt, i, buildErrorMessage(op + " expects numbers"));
                     inferencer.unify(rt, i, buildErrorMessage(op + " expects numbers"));
+                    operandType = i;
                 }
                 return new BoolType();
             }
@@ -141,11 +306,17 @@ public final class RelOpNode extends SyntaxNode {
                     RealType r = new RealType();
                     inferencer.unify(lt, r, buildErrorMessage(op + " numeric comparison"));
                     inferencer.unify(rt, r, buildErrorMessage(op + " numeric comparison"));
+                    operandType = r;
                 } else {
                     // otherwise require same type via a fresh type variable
                     VarType a = tenv.getTypeVariable();
                     inferencer.unify(lt, a, buildErrorMessage(op + " requires compatible types"));
                     inferencer.unify(rt, a, buildErrorMessage(op + " requires compatible types"));
+
+                    // Only scalar comparisons have an unboxed form.
+                    Type resolved = inferencer.getSubstitutions().apply(a);
+                    if (resolved instanceof IntType || resolved instanceof BoolType)
+                        operandType = resolved;
                 }
                 return new BoolType();
             }
@@ -154,4 +325,20 @@ public final class RelOpNode extends SyntaxNode {
                 throw new TypeException(buildErrorMessage("unknown relational operator " + op));
         }
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(leftTerm, rightTerm);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (leftTerm == oldChild)
+            leftTerm = newChild;
+        else if (rightTerm == oldChild)
+            rightTerm = newChild;
+        else
+            return false;
+        return true;
+    }
 }
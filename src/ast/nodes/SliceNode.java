@@ -0,0 +1,155 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.ListType;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.VarType;
+import environment.Environment;
+import environment.TypeEnvironment;
+import lexer.TokenType;
+
+/**
+ * Represents {@code take <n> <list>}, the first n elements of a list, and
+ * {@code drop <n> <list>}, the list without them. A count past either end
+ * of the list is taken to be that end, so {@code take 5 [1, 2]} is
+ * {@code [1, 2]} and {@code drop 5 [1, 2]} is {@code []}. The result is a
+ * view sharing the elements of the list; see {@link ListValue}.
+ */
+public final class SliceNode extends SyntaxNode {
+    private SyntaxNode count;
+    private SyntaxNode list;
+    private final TokenType op;
+
+    /**
+     * Constructs a slice node.
+     *
+     * @param count the number of elements taken or dropped
+     * @param list the list sliced
+     * @param op {@link TokenType#TAKE} or {@link TokenType#DROP}
+     * @param lineNumber the source line number of this node
+     */
+    public SliceNode(SyntaxNode count, SyntaxNode list, TokenType op, long lineNumber) {
+        super(lineNumber);
+        this.count = adopt(count);
+        this.list = adopt(list);
+        this.op = op;
+    }
+
+    /** @return the number of elements taken or dropped. */
+    public SyntaxNode getCount() {
+        return count;
+    }
+
+    /** @return the list sliced. */
+    public SyntaxNode getList() {
+        return list;
+    }
+
+    /** @return {@link TokenType#TAKE} or {@link TokenType#DROP}. */
+    public TokenType getOp() {
+        return op;
+    }
+
+    /** @return the keyword naming the slice. */
+    private String name() {
+        return op.name().toLowerCase();
+    }
+
+    @Override
+    protected String displayHeader() {
+        return name() + "(";
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        Object n = count.evaluate(env);
+        return apply(n, list.evaluate(env));
+    }
+
+    /**
+     * Applies the slice to already evaluated operands.
+     *
+     * @param n the value of the count.
+     * @param v the value of the list.
+     * @return the slice of the list.
+     * @throws EvaluationException if {@code n} is not an int or {@code v}
+     *                             is not a list.
+     */
+    public Object apply(Object n, Object v) throws EvaluationException {
+        if (!(n instanceof Integer k)) {
+            logError(name() + " expects an int count");
+            throw new EvaluationException();
+        }
+        if (!(v instanceof List<?> l)) {
+            logError(name() + " expects a list");
+            throw new EvaluationException();
+        }
+        int at = Math.max(0, Math.min(k, l.size()));
+        if (op == TokenType.TAKE)
+            return ListValue.slice(l, 0, at);
+        return ListValue.slice(l, at, l.size());
+    }
+
+    @Override
+    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
+        Type ct = count.typeOf(tenv, inferencer);
+        Type lt = list.typeOf(tenv, inferencer);
+        return typeOf(ct, lt, tenv, inferencer);
+    }
+
+    /**
+     * Performs type inference for the slice given the types of its
+     * operands: {@code int * [t] -> [t]}.
+     *
+     * @param ct the type of the count.
+     * @param lt the type of the list.
+     * @return the type of the result.
+     * @throws TypeException if the count is not an int or the list not a list.
+     */
+    public Type typeOf(Type ct, Type lt, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
+        inferencer.unify(ct, new IntType(), buildErrorMessage(name() + " expects an int count"));
+        VarType elemType = tenv.getTypeVariable();
+        ListType listOfElem = new ListType(elemType);
+        inferencer.unify(lt, listOfElem, buildErrorMessage(name() + " expects a list"));
+        return inferencer.getSubstitutions().apply(listOfElem);
+    }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(count, list);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (count == oldChild)
+            count = newChild;
+        else if (list == oldChild)
+            list = newChild;
+        else
+            return false;
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import java.util.List;
+
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.SortedLists;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.ListType;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import ast.typesystem.types.VarType;
+import environment.Environment;
+import environment.TypeEnvironment;
+
+/**
+ * Represents {@code sort <list>}, which sorts a list of numbers into
+ * ascending order. The sorting itself is in {@link SortedLists}.
+ */
+public final class SortNode extends SyntaxNode {
+    private SyntaxNode expr;
+
+    /**
+     * Constructs a sort node.
+     *
+     * @param expr the list expression to sort
+     * @param lineNumber the source line number of this node
+     */
+    public SortNode(SyntaxNode expr, long lineNumber) {
+        super(lineNumber);
+        this.expr = adopt(expr);
+    }
+
+    /** @return the list operand. */
+    public SyntaxNode getExpr() {
+        return expr;
+    }
+
+    @Override
+    protected String displayHeader() {
+        return "sort(";
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        return apply(expr.evaluate(env));
+    }
+
+    /**
+     * Applies {@code sort} to an already evaluated operand.
+     *
+     * @param v the value of the operand.
+     * @return the sorted list.
+     * @throws EvaluationException if the operand is not a list of numbers.
+     */
+    public Object apply(Object v) throws EvaluationException {
+        if (!(v instanceof List<?> list)) {
+            logError("sort expects a list");
+            throw new EvaluationException();
+        }
+
+        ListValue sorted = SortedLists.sort(list);
+        if (sorted == null) {
+            logError("sort expects a list of numbers");
+            throw new EvaluationException();
+        }
+        return sorted;
+    }
+
+    @Override
+    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
+        return typeOf(expr.typeOf(tenv, inferencer), tenv, inferencer);
+    }
+
+    /**
+     * Performs type inference for {@code sort} given the type of its
+     * operand: {@code [int] -> [int]} or {@code [real] -> [real]}. A list
+     * whose element type is not yet known is taken to be a list of ints.
+     *
+     * @param exprType the type of the operand.
+     * @return the type of the result.
+     * @throws TypeException if the operand is not a list of numbers.
+     */
+    public Type typeOf(Type exprType, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
+        VarType elemType = tenv.getTypeVariable();
+        inferencer.unify(exprType, new ListType(elemType),
+                buildErrorMessage("sort expects a list"));
+
+        Type t = inferencer.getSubstitutions().apply(elemType);
+        if (t instanceof VarType) {
+            t = new IntType();
+            inferencer.unify(elemType, t,
+                    buildErrorMessage("sort expects a list of numbers."));
+        }
+        if (!(t instanceof IntType) && !(t instanceof RealType))
+            throw new TypeException(buildErrorMessage("sort expects a list of numbers."));
+        return new ListType(t);
+    }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(expr);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (expr != oldChild)
+            return false;
+        expr = newChild;
+        return true;
+    }
+}
@@ -1,10 +1,17 @@
 package ast.nodes;
 
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import ast.CostModel;
+import ast.ErrorLog;
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.Type;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 
 /**
@@ -12,22 +19,125 @@ import environment.TypeEnvironment;
  * Phase 3 uses the typeOf method with a TypeEnvironment and an Inferencer.
  */
 public abstract class SyntaxNode {
+    /** The widest indent printed by {@link #displaySubtree(int)}. */
+    public static final int MAX_INDENT = 80;
+
     // Source line number for diagnostics
     private final long lineNumber;
+    // The node holding this node as a child, null for the root.
+    private SyntaxNode parent;
+    // The estimated cost of evaluating this subtree, or -1 if not estimated.
+    private int cost = -1;
 
     /** Construct a node occurring on the given source line. */
     public SyntaxNode(long lineNumber) {
         this.lineNumber = lineNumber;
     }
 
-    /** Allow subclasses to read the line number for error reporting. */
-    protected long lineNumber() {
+    /** The source line of this node, used for error reporting. */
+    public long lineNumber() {
         return lineNumber;
     }
 
+    /** The node holding this node as a child, or null for the root. */
+    public SyntaxNode getParent() {
+        return parent;
+    }
+
+    /**
+     * The estimated cost of evaluating this subtree, as set by the
+     * {@link ast.CostModel}, or -1 if it has not been estimated.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /** Record the estimated cost of evaluating this subtree. */
+    public void setCost(int cost) {
+        this.cost = cost;
+    }
+
+    /** Record this node as the parent of {@code child} and return the child. */
+    protected <T extends SyntaxNode> T adopt(T child) {
+        if (child != null)
+            ((SyntaxNode) child).parent = this;
+        return child;
+    }
+
+    /**
+     * Replace this node by {@code newNode} in its parent. Nodes use this to
+     * rewrite themselves into specialized forms while the tree runs, which
+     * other threads evaluating the tree may be doing at the same time; they
+     * see either this node or all of {@code newNode}. A node without a
+     * parent is left in place.
+     *
+     * @param newNode the node to take the place of this one.
+     * @return {@code newNode}.
+     */
+    public SyntaxNode replace(SyntaxNode newNode) {
+        // Publish newNode as if its fields were final, as the threads
+        // reading it through the parent do not synchronize.
+        VarHandle.releaseFence();
+        if (parent != null && parent.replaceChild(this, newNode))
+            newNode.parent = parent;
+        return newNode;
+    }
+
+    /**
+     * Swap the child {@code oldChild} for {@code newChild}. Nodes with
+     * children override this.
+     *
+     * @return true if {@code oldChild} was a child of this node.
+     */
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        return false;
+    }
+
+    /** The children of this node, in evaluation order. */
+    public List<SyntaxNode> children() {
+        return List.of();
+    }
+
+    /**
+     * Resolve the names used in this subtree, giving each let binding a slot
+     * in the frame of locals. The children are resolved in order, the body
+     * of a let in the scope of its name. The tree is walked with a stack of
+     * its own, so it may be as deep as the heap allows; leaves override this
+     * to resolve themselves.
+     *
+     * @param scope the let bindings in scope.
+     */
+    public void resolve(Scope scope) {
+        ArrayDeque<SyntaxNode> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> next = new ArrayDeque<>();   // The child to resolve.
+        nodes.push(this);
+        next.push(0);
+        while (!nodes.isEmpty()) {
+            SyntaxNode node = nodes.peek();
+            List<SyntaxNode> children = node.children();
+            int i = next.pop();
+            if (i == 1 && node instanceof LetNode)
+                ((LetNode) node).bind(scope);
+            if (i < children.size()) {
+                next.push(i + 1);
+                SyntaxNode child = children.get(i);
+                if (child.children().isEmpty()) {
+                    child.resolve(scope);
+                } else {
+                    nodes.push(child);
+                    next.push(0);
+                }
+                continue;
+            }
+            if (node instanceof LetNode)
+                scope.unbind();
+            nodes.pop();
+        }
+    }
+
     /** Print a formatted error tied to this node’s line. */
-    protected void logError(String msg) {
-        System.out.println("Error (line " + lineNumber + "): " + msg);
+    public void logError(String msg) {
+        ErrorLog.report("Error (line " + lineNumber + "): " + msg);
     }
 
     /** Build a standard error message with the line number. */
@@ -35,15 +145,68 @@ public abstract class SyntaxNode {
         return "(line " + lineNumber + ") " + msg;
     }
 
-    /** Print an indented message (debug tree printing helper). */
+    /**
+     * Print an indented message (debug tree printing helper). Indents past
+     * {@link #MAX_INDENT} are printed as the level of the line, so deep
+     * trees print in space proportional to their size.
+     */
     protected void printIndented(String msg, int indentAmt) {
-        for (int i = 0; i < indentAmt; i++) System.out.print(" ");
-        System.out.println(msg);
+        if (indentAmt > MAX_INDENT)
+            System.out.println(" ".repeat(MAX_INDENT) + "<" + indentAmt / 2
+                    + "> " + msg);
+        else
+            System.out.println(" ".repeat(indentAmt) + msg);
+    }
+
+    /**
+     * Print the first line of this node's subtree, followed by its estimated
+     * cost once it has one, and whether it forks its operands.
+     */
+    protected void printHeader(String msg, int indentAmt) {
+        if (cost >= 0)
+            msg += "  {cost " + cost
+                    + (CostModel.forksOperands(this) ? ", forks}" : "}");
+        printIndented(msg, indentAmt);
     }
 
     /** Evaluate the node in the execution environment. */
     public abstract Object evaluate(Environment env) throws EvaluationException;
 
+    /**
+     * Evaluate the node as an unboxed {@code int}. Nodes whose static type is
+     * known to be {@code int} override this to avoid boxing; the default
+     * unboxes the result of {@link #evaluate(Environment)}.
+     *
+     * @throws UnexpectedResultException if the value is not an {@code int}.
+     */
+    public int evaluateInt(Environment env) throws EvaluationException {
+        Object v = evaluate(env);
+        if (v instanceof Integer)
+            return (Integer) v;
+        throw new UnexpectedResultException(v);
+    }
+
+    /**
+     * Evaluate the node as an unboxed {@code double}. Integer results are
+     * widened, matching the mixed arithmetic rules of the language.
+     */
+    public double evaluateDouble(Environment env) throws EvaluationException {
+        Object v = evaluate(env);
+        if (v instanceof Double)
+            return (Double) v;
+        if (v instanceof Integer)
+            return (Integer) v;
+        throw new UnexpectedResultException(v);
+    }
+
+    /** Evaluate the node as an unboxed {@code boolean}. */
+    public boolean evaluateBoolean(Environment env) throws EvaluationException {
+        Object v = evaluate(env);
+        if (v instanceof Boolean)
+            return (Boolean) v;
+        throw new UnexpectedResultException(v);
+    }
+
     /**
      * Phase 3 typing entry point.
      * Return this node’s static type using the type environment and inferencer.
@@ -51,6 +214,54 @@ public abstract class SyntaxNode {
     public abstract Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
             throws TypeException;
 
-    /** Pretty print this node’s subtree with the given indentation. */
-    public abstract void displaySubtree(int indentAmt);
+    /**
+     * Pretty print this node’s subtree with the given indentation. Each
+     * node prints its header, its children indented below it, and its
+     * footer. The tree is walked with a stack of its own, so it may be as
+     * deep as the heap allows.
+     */
+    public void displaySubtree(int indentAmt) {
+        ArrayDeque<SyntaxNode> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> next = new ArrayDeque<>();   // The child to print.
+        printHeader(displayHeader(), indentAmt);
+        nodes.push(this);
+        next.push(0);
+        while (!nodes.isEmpty()) {
+            SyntaxNode node = nodes.peek();
+            int indent = indentAmt + 2 * (nodes.size() - 1);
+            List<SyntaxNode> children = node.children();
+            int i = next.pop();
+            if (i < children.size()) {
+                String separator = i > 0 ? node.displaySeparator(i) : null;
+                if (separator != null)
+                    printIndented(separator, indent);
+                next.push(i + 1);
+                SyntaxNode child = children.get(i);
+                child.printHeader(child.displayHeader(), indent + 2);
+                nodes.push(child);
+                next.push(0);
+                continue;
+            }
+            String footer = node.displayFooter();
+            if (footer != null)
+                printIndented(footer, indent);
+            nodes.pop();
+        }
+    }
+
+    /** @return the first line this node prints, before its cost. */
+    protected abstract String displayHeader();
+
+    /**
+     * @param child the index of a child after the first.
+     * @return the line printed before that child, or null for none.
+     */
+    protected String displaySeparator(int child) {
+        return null;
+    }
+
+    /** @return the line printed after the children, or null for none. */
+    protected String displayFooter() {
+        return ")";
+    }
 }
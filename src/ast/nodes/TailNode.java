@@ -1,8 +1,9 @@
 package ast.nodes;
 
-import java.util.LinkedList;
+import java.util.List;
 
 import ast.EvaluationException;
+import ast.ListValue;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.ListType;
@@ -22,7 +23,7 @@ import environment.TypeEnvironment;
  * @author Zach Kissel
  */
 public final class TailNode extends SyntaxNode {
-    private final SyntaxNode expr;
+    private SyntaxNode expr;
 
     /**
      * Constructs a new {@code TailNode}.
@@ -32,7 +33,12 @@ public final class TailNode extends SyntaxNode {
      */
     public TailNode(SyntaxNode expr, long lineNumber) {
         super(lineNumber);
-        this.expr = expr;
+        this.expr = adopt(expr);
+    }
+
+    /** @return the list operand. */
+    public SyntaxNode getExpr() {
+        return expr;
     }
 
     /**
@@ -45,30 +51,37 @@ public final class TailNode extends SyntaxNode {
      * @param indentAmt the indentation level for pretty-printing.
      */
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("tl(", indentAmt);
-        expr.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "tl(";
     }
 
     /**
      * Evaluates the {@code tl} operation at runtime.
      * <p>
      * The method retrieves the value of the operand expression, verifies that it is
-     * a non-empty {@link LinkedList}, and returns a new list containing all but the
-     * first element. If the operand is not a list or is empty, an
+     * a non-empty {@link List}, and returns a view of it containing all but the
+     * first element, which shares its elements rather than copying them. If the operand is not a list or is empty, an
      * {@link EvaluationException} is thrown.
      * </p>
      *
      * @param env the runtime environment containing variable bindings.
-     * @return a new {@link LinkedList} representing the tail of the evaluated list.
+     * @return a {@link List} representing the tail of the evaluated list.
      * @throws EvaluationException if the operand is not a list or is empty.
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-        Object v = expr.evaluate(env);
+        return apply(expr.evaluate(env));
+    }
 
-        if (!(v instanceof LinkedList<?> list)) {
+    /**
+     * Applies {@code tl} to an already evaluated operand.
+     *
+     * @param v the value of the operand.
+     * @return the result.
+     * @throws EvaluationException if the operand is not valid for {@code tl}.
+     */
+    public Object apply(Object v) throws EvaluationException {
+        if (!(v instanceof List<?> list)) {
             logError("tl expects a list");
             throw new EvaluationException();
         }
@@ -78,11 +91,7 @@ public final class TailNode extends SyntaxNode {
             throw new EvaluationException();
         }
 
-        LinkedList<Object> out = new LinkedList<>();
-        for (int i = 1; i < list.size(); i++) {
-            out.add(list.get(i));
-        }
-        return out;
+        return ListValue.slice(list, 1, list.size());
     }
 
     /**
@@ -100,9 +109,18 @@ public final class TailNode extends SyntaxNode {
      */
     @Override
     public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
-        // infer the type of the operand
-        Type exprType = expr.typeOf(tenv, inferencer);
+        return typeOf(expr.typeOf(tenv, inferencer), tenv, inferencer);
+    }
 
+    /**
+     * Performs type inference for {@code tl} given the type of its operand.
+     *
+     * @param exprType the type of the operand.
+     * @return the type of the result.
+     * @throws TypeException if the operand is not a list.
+     */
+    public Type typeOf(Type exprType, TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
         // create a fresh element type and assert the operand is a list of that type
         VarType elemType = tenv.getTypeVariable();
         ListType listOfElem = new ListType(elemType);
@@ -113,4 +131,17 @@ public final class TailNode extends SyntaxNode {
         // tl returns a list of the same element type
         return inferencer.getSubstitutions().apply(listOfElem);
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(expr);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (expr != oldChild)
+            return false;
+        expr = newChild;
+        return true;
+    }
 }
@@ -17,6 +17,7 @@
 package ast.nodes;
 
 import ast.EvaluationException;
+import ast.Thunk;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.BoolType;
@@ -24,6 +25,7 @@ import ast.typesystem.types.IntType;
 import ast.typesystem.types.RealType;
 import ast.typesystem.types.Type;
 import environment.Environment;
+import environment.Scope;
 import environment.TypeEnvironment;
 import lexer.Token;
 import lexer.TokenType;
@@ -34,24 +36,100 @@ import lexer.TokenType;
  */
 public final class TokenNode extends SyntaxNode {
     private final Token tok;
+    private final Object literal;   // The parsed literal value, null for identifiers.
+    private int slot = -1;          // The frame slot of a let bound name, or -1.
 
     public TokenNode(Token tok, long line) {
         super(line);
         this.tok = tok;
+        this.literal = parseLiteral(tok);
+    }
+
+    /** @return the token held by this node. */
+    public Token getToken() {
+        return tok;
+    }
+
+    /** @return the literal value, or null if the token is an identifier. */
+    public Object getLiteral() {
+        return literal;
+    }
+
+    /** @return the frame slot of a let bound name, or -1 for a val. */
+    public int getSlot() {
+        return slot;
     }
 
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("Token[" + tok.getValue() + "]", indentAmt);
+    protected String displayHeader() {
+        return "Token[" + tok.getValue() + "]";
+    }
+
+    @Override
+    protected String displayFooter() {
+        return null;
+    }
+
+    /**
+     * Identifiers bound by an enclosing let are read from its frame slot.
+     */
+    @Override
+    public void resolve(Scope scope) {
+        if (literal == null)
+            slot = scope.lookup(tok.getValue());
     }
 
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-        // First try identifier lookup
-        Object bound = env.lookup(tok);
+        // Literals are parsed once, when the node is built.
+        if (literal != null) return literal;
+
+        // Let bound names live in the frame, vals in the environment.
+        if (slot >= 0) return Thunk.force(env.getLocal(slot));
+        Object bound = Thunk.force(env.lookup(tok));
         if (bound != null) return bound;
 
-        // Otherwise interpret as a literal at runtime
+        // If we reach here it is an unbound identifier
+        logError(tok.getValue() + " is not defined.");
+        throw new EvaluationException();
+    }
+
+    /**
+     * Evaluates an integer literal or identifier without boxing literals.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException {
+        if (literal instanceof Integer) return (Integer) literal;
+        return super.evaluateInt(env);
+    }
+
+    /**
+     * Evaluates a numeric literal or identifier as a double.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException {
+        if (literal instanceof Double) return (Double) literal;
+        if (literal instanceof Integer) return (Integer) literal;
+        return super.evaluateDouble(env);
+    }
+
+    /**
+     * Evaluates a boolean literal or identifier.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException {
+        if (literal instanceof Boolean) return (Boolean) literal;
+        return super.evaluateBoolean(env);
+    }
+
+    /**
+     * Interprets a literal token as a value.
+     *
+     * @param tok the token to interpret.
+     * @return the value of the literal, or null if the token is not a valid
+     *         literal.
+     */
+    private static Object parseLiteral(Token tok) {
         String v = tok.getValue();
         TokenType type = tok.getType();
 
@@ -61,19 +139,18 @@ public final class TokenNode extends SyntaxNode {
         // integer literal
         if (type == TokenType.INT) {
             try { return Integer.parseInt(v); }
-            catch (NumberFormatException e) { /* fall through to real */ }
+            catch (NumberFormatException e) { return null; }
         }
 
         // real literal
         if (type == TokenType.REAL) {
             try { return Double.parseDouble(v); }
-            catch (NumberFormatException e) { /* fall through */ }
+            catch (NumberFormatException e) { return null; }
         }
 
-        // If we reach here it is an unbound identifier
-        logError(tok.getValue() + " is not defined.");
-        throw new EvaluationException();
+        return null;
     }
+
     /**
      * Type checking:
      * If identifier, look up in type environment.
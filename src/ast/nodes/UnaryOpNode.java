@@ -1,5 +1,7 @@
 package ast.nodes;
 
+import java.util.List;
+
 import ast.EvaluationException;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
@@ -17,8 +19,9 @@ import lexer.TokenType;
  * @author Zach Kissel
  */
 public final class UnaryOpNode extends SyntaxNode {
-    private final SyntaxNode expr;
+    private SyntaxNode expr;
     private final TokenType op;
+    private Type resultType;   // The static result type, recorded by typeOf.
 
     /**
      * Creates a new unary operation node.
@@ -29,15 +32,28 @@ public final class UnaryOpNode extends SyntaxNode {
      */
     public UnaryOpNode(SyntaxNode expr, TokenType op, long line) {
         super(line);
-        this.expr = expr;
+        this.expr = adopt(expr);
         this.op = op;
     }
 
+    /** @return the operand. */
+    public SyntaxNode getExpr() {
+        return expr;
+    }
+
+    /** @return the operator. */
+    public TokenType getOp() {
+        return op;
+    }
+
+    /** @return the static result type, or null if the node is not type checked. */
+    public Type getResultType() {
+        return resultType;
+    }
+
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("UnaryOp[" + op + "](", indentAmt);
-        expr.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "UnaryOp[" + op + "](";
     }
 
     /**
@@ -45,8 +61,25 @@ public final class UnaryOpNode extends SyntaxNode {
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-        Object val = expr.evaluate(env);
+        if (resultType instanceof IntType)
+            return evaluateInt(env);
+        if (resultType instanceof RealType)
+            return evaluateDouble(env);
+        if (resultType instanceof BoolType)
+            return evaluateBoolean(env);
 
+        return apply(expr.evaluate(env));
+    }
+
+    /**
+     * Applies the operator to an already evaluated operand.
+     *
+     * @param val the value of the operand.
+     * @return the result of the operation.
+     * @throws EvaluationException if the operand is not valid for the
+     *                             operator.
+     */
+    public Object apply(Object val) throws EvaluationException {
         if (op == TokenType.NOT) {
             if (val instanceof Boolean)
                 return !((Boolean) val);
@@ -66,25 +99,85 @@ public final class UnaryOpNode extends SyntaxNode {
             throw new EvaluationException();
         }
     }
+
+    /**
+     * Evaluates an integer negation without boxing.
+     */
+    @Override
+    public int evaluateInt(Environment env) throws EvaluationException {
+        if (resultType instanceof IntType)
+            return -expr.evaluateInt(env);
+        return super.evaluateInt(env);
+    }
+
+    /**
+     * Evaluates a real negation without boxing.
+     */
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException {
+        if (resultType instanceof IntType)
+            return evaluateInt(env);
+        if (resultType instanceof RealType)
+            return -expr.evaluateDouble(env);
+        return super.evaluateDouble(env);
+    }
+
+    /**
+     * Evaluates a logical not without boxing.
+     */
+    @Override
+    public boolean evaluateBoolean(Environment env) throws EvaluationException {
+        if (resultType instanceof BoolType)
+            return !expr.evaluateBoolean(env);
+        return super.evaluateBoolean(env);
+    }
+
     /**
      * Performs type inference for the unary operation.
      */
     @Override
     public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
-        Type t = expr.typeOf(tenv, inferencer);
+        return typeOf(expr.typeOf(tenv, inferencer));
+    }
 
+    /**
+     * Performs type inference for the unary operation given the type of its
+     * operand.
+     *
+     * @param t the type of the operand.
+     * @return the type of the operation.
+     * @throws TypeException if the operand is not valid for the operator.
+     */
+    public Type typeOf(Type t) throws TypeException {
         if (op == TokenType.NOT) {
-            if (t instanceof BoolType)
-                return new BoolType();
+            if (t instanceof BoolType) {
+                resultType = new BoolType();
+                return resultType;
+            }
             throw new TypeException(buildErrorMessage("not expects a boolean."));
         } else if (op == TokenType.SUB) {
             if (t instanceof IntType)
-                return new IntType();
+                resultType = new IntType();
             else if (t instanceof RealType)
-                return new RealType();
-            throw new TypeException(buildErrorMessage("Unary - expects numeric operands."));
+                resultType = new RealType();
+            else
+                throw new TypeException(buildErrorMessage("Unary - expects numeric operands."));
+            return resultType;
         }
 
         throw new TypeException(buildErrorMessage("Unknown unary operator: " + op));
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(expr);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (expr != oldChild)
+            return false;
+        expr = newChild;
+        return true;
+    }
 }
@@ -0,0 +1,50 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes;
+
+import ast.EvaluationException;
+
+/**
+ * Thrown by the unboxed evaluation entry points of {@link SyntaxNode} when the
+ * node produced a value of a different type than the one requested. The
+ * value itself is carried along so the caller can finish the operation
+ * without evaluating the node again.
+ */
+public class UnexpectedResultException extends EvaluationException
+{
+    private final transient Object result;   // The value that was produced.
+
+    /**
+     * Constructs a new exception carrying {@code result}.
+     *
+     * @param result the value the node actually produced.
+     */
+    public UnexpectedResultException(Object result)
+    {
+        this.result = result;
+    }
+
+    /**
+     * Gets the value the node actually produced.
+     *
+     * @return the produced value.
+     */
+    public Object getResult()
+    {
+        return result;
+    }
+}
@@ -16,7 +16,10 @@
  */
 package ast.nodes;
 
+import java.util.List;
+
 import ast.EvaluationException;
+import ast.Thunk;
 import ast.typesystem.TypeException;
 import ast.typesystem.inferencer.Inferencer;
 import ast.typesystem.types.Type;
@@ -32,12 +35,12 @@ import lexer.Token;
  */
 public final class ValNode extends SyntaxNode {
     private final Token name;
-    private final SyntaxNode expr;
+    private SyntaxNode expr;
 
     public ValNode(Token name, SyntaxNode expr, long line) {
         super(line);
         this.name = name;
-        this.expr = expr;
+        this.expr = adopt(expr);
     }
 
     /** Expose the name token so ProgNode can bind globals in the type env. */
@@ -45,20 +48,25 @@ public final class ValNode extends SyntaxNode {
         return name;
     }
 
+    /** @return the expression bound to the global. */
+    public SyntaxNode getExpr() {
+        return expr;
+    }
+
     @Override
-    public void displaySubtree(int indentAmt) {
-        printIndented("Val[" + name.getValue() + "](", indentAmt);
-        expr.displaySubtree(indentAmt + 2);
-        printIndented(")", indentAmt);
+    protected String displayHeader() {
+        return "Val[" + name.getValue() + "](";
     }
 
     /**
      * Runtime semantics:
      * evaluate expr, bind it to x if x is not already defined.
+     * Lazy evaluation binds a thunk for expr instead.
      */
     @Override
     public Object evaluate(Environment env) throws EvaluationException {
-        Object val = expr.evaluate(env);
+        Object val = env.isLazy() ? new Thunk(expr, env.capture())
+                : expr.evaluate(env);
         if (env.lookup(name) == null) {
             env.updateEnvironment(name, val);
         } else {
@@ -77,4 +85,17 @@ public final class ValNode extends SyntaxNode {
     public Type typeOf(TypeEnvironment tenv, Inferencer inferencer) throws TypeException {
         return expr.typeOf(tenv, inferencer);
     }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(expr);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (expr != oldChild)
+            return false;
+        expr = newChild;
+        return true;
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes.specialized;
+
+import ast.EvaluationException;
+import ast.nodes.BinOpNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.UnexpectedResultException;
+import ast.typesystem.TypeException;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import environment.Environment;
+import lexer.TokenType;
+
+/**
+ * Base class for arithmetic nodes specialized to integer operands.
+ */
+public abstract class IntArithNode extends SpecializedBinaryNode {
+
+    protected IntArithNode(SyntaxNode leftTerm, TokenType op,
+            SyntaxNode rightTerm, long line) {
+        super(leftTerm, op, rightTerm, line);
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        try {
+            return evaluateInt(env);
+        } catch (UnexpectedResultException ex) {
+            // The node fell back to the generic form; this is its result.
+            return ex.getResult();
+        }
+    }
+
+    @Override
+    public double evaluateDouble(Environment env) throws EvaluationException {
+        return evaluateInt(env);
+    }
+
+    /**
+     * Evaluates the operands as ints and applies the operator to them. If
+     * an operand is not an int, the node falls back to the generic form.
+     */
+    @Override
+    public final int evaluateInt(Environment env) throws EvaluationException {
+        int l;
+        try {
+            l = leftTerm.evaluateInt(env);
+        } catch (UnexpectedResultException ex) {
+            return fallback(ex.getResult(), rightTerm.evaluate(env));
+        }
+
+        int r;
+        try {
+            r = rightTerm.evaluateInt(env);
+        } catch (UnexpectedResultException ex) {
+            return fallback(l, ex.getResult());
+        }
+
+        return compute(l, r);
+    }
+
+    /**
+     * Applies the operator to operands of the specialized type.
+     *
+     * @param l the left-hand side.
+     * @param r the right-hand side.
+     * @return the result.
+     */
+    protected abstract int compute(int l, int r);
+
+    /**
+     * Rewrites this node back into a generic {@link BinOpNode} and finishes
+     * the operation on the values that did not match the specialization.
+     *
+     * @param lval the value of the left-hand side.
+     * @param rval the value of the right-hand side.
+     * @return the integer result of the operation.
+     * @throws UnexpectedResultException if the result is not an integer.
+     */
+    protected int fallback(Object lval, Object rval) throws EvaluationException {
+        BinOpNode generic = new BinOpNode(leftTerm, op, rightTerm, lineNumber(),
+                false);
+        replace(generic);
+
+        Object res = generic.apply(lval, rval);
+        if (res instanceof Integer)
+            return (Integer) res;
+        throw new UnexpectedResultException(res);
+    }
+
+    @Override
+    protected String genericName() {
+        return "BinOp";
+    }
+
+    @Override
+    protected String operandKind() {
+        return "int";
+    }
+
+    @Override
+    protected Type resultType(Type lt, Type rt) throws TypeException {
+        if (lt instanceof RealType || rt instanceof RealType)
+            return new RealType();
+        return new IntType();
+    }
+}
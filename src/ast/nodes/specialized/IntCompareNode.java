@@ -0,0 +1,107 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes.specialized;
+
+import ast.EvaluationException;
+import ast.nodes.RelOpNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.UnexpectedResultException;
+import ast.typesystem.TypeException;
+import ast.typesystem.types.BoolType;
+import ast.typesystem.types.Type;
+import environment.Environment;
+import lexer.TokenType;
+
+/**
+ * Base class for relational nodes specialized to int operands.
+ */
+public abstract class IntCompareNode extends SpecializedBinaryNode {
+
+    protected IntCompareNode(SyntaxNode leftTerm, TokenType op,
+            SyntaxNode rightTerm, long line) {
+        super(leftTerm, op, rightTerm, line);
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        return evaluateBoolean(env);
+    }
+
+    /**
+     * Evaluates the operands as ints and applies the operator to them. If
+     * an operand is not an int, the node falls back to the generic form.
+     */
+    @Override
+    public final boolean evaluateBoolean(Environment env) throws EvaluationException {
+        int l;
+        try {
+            l = leftTerm.evaluateInt(env);
+        } catch (UnexpectedResultException ex) {
+            return fallback(ex.getResult(), rightTerm.evaluate(env));
+        }
+
+        int r;
+        try {
+            r = rightTerm.evaluateInt(env);
+        } catch (UnexpectedResultException ex) {
+            return fallback(l, ex.getResult());
+        }
+
+        return compute(l, r);
+    }
+
+    /**
+     * Applies the operator to operands of the specialized type.
+     *
+     * @param l the left-hand side.
+     * @param r the right-hand side.
+     * @return the result.
+     */
+    protected abstract boolean compute(int l, int r);
+
+    /**
+     * Rewrites this node back into a generic {@link RelOpNode} and finishes
+     * the comparison on the values that did not match the specialization.
+     *
+     * @param lval the value of the left-hand side.
+     * @param rval the value of the right-hand side.
+     * @return the result of the comparison.
+     * @throws EvaluationException if the values can not be compared.
+     */
+    protected boolean fallback(Object lval, Object rval)
+            throws EvaluationException {
+        RelOpNode generic = new RelOpNode(leftTerm, op, rightTerm, lineNumber(),
+                false);
+        replace(generic);
+        return (Boolean) generic.apply(lval, rval);
+    }
+
+    @Override
+    protected String genericName() {
+        return "RelOp";
+    }
+
+    @Override
+    protected String operandKind() {
+        return "int";
+    }
+
+    @Override
+    protected Type resultType(Type lt, Type rt) throws TypeException {
+        return new BoolType();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes.specialized;
+
+import ast.EvaluationException;
+import ast.nodes.BinOpNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.UnexpectedResultException;
+import ast.typesystem.TypeException;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import environment.Environment;
+import lexer.TokenType;
+
+/**
+ * Base class for arithmetic nodes specialized to real operands. An integer
+ * operand is widened when the other is a real, as in mixed arithmetic; two
+ * integers rewrite the node back into the generic form.
+ */
+public abstract class RealArithNode extends SpecializedBinaryNode {
+
+    protected RealArithNode(SyntaxNode leftTerm, TokenType op,
+            SyntaxNode rightTerm, long line) {
+        super(leftTerm, op, rightTerm, line);
+    }
+
+    @Override
+    public Object evaluate(Environment env) throws EvaluationException {
+        try {
+            return evaluateDouble(env);
+        } catch (UnexpectedResultException ex) {
+            // The node fell back to the generic form; this is its result.
+            return ex.getResult();
+        }
+    }
+
+    /**
+     * Evaluates the operands as doubles and applies the operator to them. An
+     * int operand is widened if the other operand is a real, as in mixed
+     * arithmetic. If both are ints, or either is not a number, the node falls
+     * back to the generic form, so two ints still give an int.
+     */
+    @Override
+    public final double evaluateDouble(Environment env) throws EvaluationException {
+        double l;
+        try {
+            l = real(leftTerm, env);
+        } catch (UnexpectedResultException ex) {
+            Object lval = ex.getResult();
+            Object rval = rightTerm.evaluate(env);
+            if (lval instanceof Integer && rval instanceof Double)
+                return compute((Integer) lval, (Double) rval);
+            return fallback(lval, rval);
+        }
+
+        // The left operand is a real, so the result is one whatever the right.
+        double r;
+        try {
+            r = rightTerm.evaluateDouble(env);
+        } catch (UnexpectedResultException ex) {
+            return fallback(l, ex.getResult());
+        }
+
+        return compute(l, r);
+    }
+
+    /**
+     * Evaluates an operand that must be a real. {@link SyntaxNode#evaluateDouble}
+     * widens ints, so it is used only for operands that are themselves
+     * specialized to reals.
+     *
+     * @throws UnexpectedResultException if the operand is not a real.
+     */
+    private static double real(SyntaxNode operand, Environment env)
+            throws EvaluationException {
+        if (operand instanceof RealArithNode)
+            return operand.evaluateDouble(env);
+        Object v = operand.evaluate(env);
+        if (v instanceof Double)
+            return (Double) v;
+        throw new UnexpectedResultException(v);
+    }
+
+    /**
+     * Applies the operator to operands of the specialized type.
+     *
+     * @param l the left-hand side.
+     * @param r the right-hand side.
+     * @return the result.
+     */
+    protected abstract double compute(double l, double r);
+
+    /**
+     * Rewrites this node back into a generic {@link BinOpNode} and finishes
+     * the operation on the values that did not match the specialization.
+     *
+     * @param lval the value of the left-hand side.
+     * @param rval the value of the right-hand side.
+     * @return the real result of the operation.
+     * @throws UnexpectedResultException if the result is not a real.
+     */
+    protected double fallback(Object lval, Object rval)
+            throws EvaluationException {
+        BinOpNode generic = new BinOpNode(leftTerm, op, rightTerm, lineNumber(),
+                false);
+        replace(generic);
+
+        Object res = generic.apply(lval, rval);
+        if (res instanceof Double)
+            return (Double) res;
+        throw new UnexpectedResultException(res);
+    }
+
+    @Override
+    protected String genericName() {
+        return "BinOp";
+    }
+
+    @Override
+    protected String operandKind() {
+        return "real";
+    }
+
+    @Override
+    protected Type resultType(Type lt, Type rt) throws TypeException {
+        return new RealType();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes.specialized;
+
+import java.util.List;
+
+import ast.nodes.SyntaxNode;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import ast.typesystem.types.IntType;
+import ast.typesystem.types.RealType;
+import ast.typesystem.types.Type;
+import environment.TypeEnvironment;
+import lexer.TokenType;
+
+/**
+ * Base class for binary operation nodes specialized to a single operator and
+ * operand type. A generic {@code BinOpNode} or {@code RelOpNode} rewrites
+ * itself into one of these once it has observed its operand types, so that
+ * later evaluations neither switch on the operator nor inspect the operands.
+ * If the operand types ever change, the specialized node rewrites itself back
+ * into the generic form.
+ */
+public abstract class SpecializedBinaryNode extends SyntaxNode {
+    protected SyntaxNode leftTerm;
+    protected SyntaxNode rightTerm;
+    protected final TokenType op;
+
+    /**
+     * Creates a new specialized binary node.
+     *
+     * @param leftTerm the left-hand side operand.
+     * @param op the operator implemented by the node.
+     * @param rightTerm the right-hand side operand.
+     * @param line the line number.
+     */
+    protected SpecializedBinaryNode(SyntaxNode leftTerm, TokenType op,
+            SyntaxNode rightTerm, long line) {
+        super(line);
+        this.leftTerm = adopt(leftTerm);
+        this.rightTerm = adopt(rightTerm);
+        this.op = op;
+    }
+
+    /** @return the left-hand side operand. */
+    public SyntaxNode getLeftTerm() {
+        return leftTerm;
+    }
+
+    /** @return the right-hand side operand. */
+    public SyntaxNode getRightTerm() {
+        return rightTerm;
+    }
+
+    /** @return the operator. */
+    public TokenType getOp() {
+        return op;
+    }
+
+    /** @return the name of the generic node this node specializes. */
+    protected abstract String genericName();
+
+    /** @return the operand type the node is specialized for. */
+    protected abstract String operandKind();
+
+    /**
+     * Computes the result type from the operand types, which are known to be
+     * numeric.
+     */
+    protected abstract Type resultType(Type lt, Type rt) throws TypeException;
+
+    @Override
+    protected String displayHeader() {
+        return genericName() + "[" + op + ":" + operandKind() + "](";
+    }
+
+    /**
+     * Performs type inference for the operation. Specialized nodes only exist
+     * for numeric operands.
+     */
+    @Override
+    public Type typeOf(TypeEnvironment tenv, Inferencer inferencer)
+            throws TypeException {
+        Type lt = leftTerm.typeOf(tenv, inferencer);
+        Type rt = rightTerm.typeOf(tenv, inferencer);
+
+        if (!isNumeric(lt) || !isNumeric(rt))
+            throw new TypeException(
+                    buildErrorMessage(op + " expects numeric operands."));
+        return resultType(lt, rt);
+    }
+
+    @Override
+    public List<SyntaxNode> children() {
+        return List.of(leftTerm, rightTerm);
+    }
+
+    @Override
+    protected boolean replaceChild(SyntaxNode oldChild, SyntaxNode newChild) {
+        if (leftTerm == oldChild)
+            leftTerm = newChild;
+        else if (rightTerm == oldChild)
+            rightTerm = newChild;
+        else
+            return false;
+        return true;
+    }
+
+    private static boolean isNumeric(Type t) {
+        return (t instanceof IntType) || (t instanceof RealType);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.nodes.specialized;
+
+import ast.nodes.BinOpNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SyntaxNode;
+
+/**
+ * Chooses the specialized replacement for a generic operation node once the
+ * node has observed the types of its operands. Specialization is on by
+ * default and can be turned off with the {@code mfl.specialize} system
+ * property, which is useful when comparing against the generic evaluator.
+ */
+public final class Specializer {
+    private static boolean enabled =
+            !"false".equals(System.getProperty("mfl.specialize"));
+
+    private Specializer() {}
+
+    /**
+     * Turns node specialization on or off for nodes that have not yet
+     * specialized.
+     *
+     * @param on true to enable specialization.
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /** @return true if nodes may specialize themselves. */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the specialized form of an arithmetic node.
+     *
+     * @param node the generic node.
+     * @param real true if the operands were reals, false if both were integers.
+     * @return the specialized node, or null if there is none.
+     */
+    public static SyntaxNode specialize(BinOpNode node, boolean real) {
+        if (!enabled)
+            return null;
+
+        SyntaxNode l = node.getLeftTerm();
+        SyntaxNode r = node.getRightTerm();
+        long line = node.lineNumber();
+
+        switch (node.getOp()) {
+            case ADD:
+                return real ? new RealAddNode(l, r, line) : new IntAddNode(l, r, line);
+            case SUB:
+                return real ? new RealSubNode(l, r, line) : new IntSubNode(l, r, line);
+            case MULT:
+                return real ? new RealMultNode(l, r, line) : new IntMultNode(l, r, line);
+            case DIV:
+                return real ? new RealDivNode(l, r, line) : new IntDivNode(l, r, line);
+            case MOD:
+                return real ? null : new IntModNode(l, r, line);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Builds the specialized form of a relational node.
+     *
+     * @param node the generic node.
+     * @param real true if the operands are compared as reals.
+     * @return the specialized node, or null if there is none.
+     */
+    public static SyntaxNode specialize(RelOpNode node, boolean real) {
+        if (!enabled)
+            return null;
+
+        SyntaxNode l = node.getLeftTerm();
+        SyntaxNode r = node.getRightTerm();
+        long line = node.lineNumber();
+
+        switch (node.getOp()) {
+            case LT:
+                return real ? new RealLtNode(l, r, line) : new IntLtNode(l, r, line);
+            case GT:
+                return real ? new RealGtNode(l, r, line) : new IntGtNode(l, r, line);
+            case LTE:
+                return real ? new RealLteNode(l, r, line) : new IntLteNode(l, r, line);
+            case GTE:
+                return real ? new RealGteNode(l, r, line) : new IntGteNode(l, r, line);
+            case EQ:
+                return real ? new RealEqNode(l, r, line) : new IntEqNode(l, r, line);
+            case NEQ:
+                return real ? new RealNeqNode(l, r, line) : new IntNeqNode(l, r, line);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.optimizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import ast.nodes.LetNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TokenNode;
+
+/**
+ * The let binding each identifier in a tree refers to. Identifiers not
+ * bound by a let name top-level vals.
+ */
+final class Bindings
+{
+    // The let binding each let bound identifier refers to.
+    private final IdentityHashMap<TokenNode, LetNode> binders =
+            new IdentityHashMap<>();
+    // The identifiers referring to each let binding, in evaluation order.
+    private final IdentityHashMap<LetNode, List<TokenNode>> uses =
+            new IdentityHashMap<>();
+
+    /**
+     * Resolves the identifiers in the tree rooted at {@code root}.
+     *
+     * @param root the root of the tree.
+     */
+    Bindings(SyntaxNode root)
+    {
+        resolve(root);
+    }
+
+    /**
+     * Resolves the identifiers in a tree, in evaluation order. The tree is
+     * walked with a stack of its own, so it may be as deep as the heap
+     * allows.
+     */
+    private void resolve(SyntaxNode root)
+    {
+        ArrayDeque<LetNode> scope = new ArrayDeque<>();
+        ArrayDeque<SyntaxNode> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> states = new ArrayDeque<>();   // Lets: parts done.
+        stack.push(root);
+        states.push(0);
+        while (!stack.isEmpty())
+        {
+            SyntaxNode node = stack.pop();
+            int state = states.pop();
+            if (node instanceof LetNode)
+            {
+                LetNode let = (LetNode) node;
+                if (state == 0)
+                {
+                    uses.put(let, new ArrayList<>());
+                    push(stack, states, let, 1);
+                    push(stack, states, let.getBound(), 0);
+                }
+                else if (state == 1)
+                {
+                    scope.push(let);
+                    push(stack, states, let, 2);
+                    push(stack, states, let.getBody(), 0);
+                }
+                else
+                    scope.pop();
+            }
+            else if (node instanceof TokenNode)
+            {
+                TokenNode tok = (TokenNode) node;
+                if (tok.getLiteral() != null)
+                    continue;
+                String name = tok.getToken().getValue();
+                for (Iterator<LetNode> it = scope.iterator(); it.hasNext(); )
+                {
+                    LetNode let = it.next();   // Innermost first.
+                    if (let.getName().getValue().equals(name))
+                    {
+                        bind(tok, let);
+                        break;
+                    }
+                }
+            }
+            else
+            {
+                List<SyntaxNode> children = node.children();
+                for (int i = children.size() - 1; i >= 0; i--)
+                    push(stack, states, children.get(i), 0);
+            }
+        }
+    }
+
+    private static void push(ArrayDeque<SyntaxNode> stack,
+            ArrayDeque<Integer> states, SyntaxNode node, int state)
+    {
+        stack.push(node);
+        states.push(state);
+    }
+
+    /**
+     * Records that {@code use} refers to the binding {@code let}.
+     *
+     * @param use an identifier.
+     * @param let the binding it refers to.
+     */
+    void bind(TokenNode use, LetNode let)
+    {
+        binders.put(use, let);
+        uses.computeIfAbsent(let, k -> new ArrayList<>()).add(use);
+    }
+
+    /**
+     * Gets the let binding an identifier refers to.
+     *
+     * @param use an identifier.
+     * @return the binding, or null if {@code use} names a val.
+     */
+    LetNode binderOf(TokenNode use)
+    {
+        return binders.get(use);
+    }
+
+    /**
+     * Gets the identifiers referring to a let binding.
+     *
+     * @param let a let binding in the tree.
+     * @return its uses, in evaluation order.
+     */
+    List<TokenNode> usesOf(LetNode let)
+    {
+        return uses.getOrDefault(let, List.of());
+    }
+}
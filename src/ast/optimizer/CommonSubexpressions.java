@@ -0,0 +1,365 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.optimizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+
+import ast.nodes.AggregateNode;
+import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.HeadNode;
+import ast.nodes.IndexNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.ProgNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import lexer.Symbol;
+import lexer.Token;
+
+/**
+ * Eliminates common subexpressions: an expression computed more than once
+ * is computed once, bound by a synthetic let, and read from the binding.
+ * <p>
+ * Expressions are compared structurally, and identifiers match only when
+ * they refer to the same binding. The let is placed at the lowest node
+ * holding every occurrence, which is always inside the bindings the
+ * expression refers to. Only occurrences that are evaluated whenever that
+ * node is are shared: the right operand of {@code and} and {@code or} is
+ * evaluated conditionally, so it is optimized on its own, as is every
+ * top-level statement.
+ * </p>
+ * <p>
+ * MFL has no side effects, so the program computes the same value. An
+ * expression that fails fails earlier, so a program that fails may report
+ * a different one of its errors first. The tree should have been type
+ * checked, so the operands of every operation have the right types.
+ * </p>
+ */
+public final class CommonSubexpressions
+{
+    private static final String PREFIX = "$cse";   // Not a lexable name.
+
+    /** A subtree in a region, hashed and compared by its structure. */
+    private final class Key
+    {
+        final SyntaxNode node;
+        final SyntaxNode region;
+        final int hash;
+
+        Key(SyntaxNode node, SyntaxNode region, int hash)
+        {
+            this.node = node;
+            this.region = region;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return other.hash == hash && other.region == region
+                    && same(node, other.node);
+        }
+    }
+
+    private SyntaxNode root;
+    private Bindings bindings;
+    private int eliminated;   // The nodes no longer evaluated.
+    private int count;        // The synthetic bindings made.
+
+    /**
+     * Prepares to optimize the tree rooted at {@code root}.
+     *
+     * @param root the root of the tree.
+     */
+    public CommonSubexpressions(SyntaxNode root)
+    {
+        this.root = root;
+    }
+
+    /**
+     * Eliminates the common subexpressions of the tree. The tree is
+     * rewritten in place.
+     *
+     * @return the root of the optimized tree.
+     */
+    public SyntaxNode run()
+    {
+        // Each round shares the largest repeated expression, whose own
+        // subexpressions then occur only once.
+        List<SyntaxNode> group;
+        do
+        {
+            bindings = new Bindings(root);
+            group = largestGroup();
+            if (group != null)
+                hoist(group);
+        }
+        while (group != null);
+        return root;
+    }
+
+    /**
+     * Gets the number of nodes the optimized tree no longer evaluates.
+     *
+     * @return the number of nodes eliminated.
+     */
+    public int getEliminated()
+    {
+        return eliminated;
+    }
+
+    /************
+     * Finding repeated expressions
+     ************/
+
+    /**
+     * Finds the largest expression occurring more than once in one region.
+     *
+     * @return its occurrences in evaluation order, or null if there are none.
+     */
+    private List<SyntaxNode> largestGroup()
+    {
+        HashMap<Key, List<SyntaxNode>> groups = new HashMap<>();
+        IdentityHashMap<SyntaxNode, Integer> sizes = new IdentityHashMap<>();
+        collect(root, groups, sizes);
+
+        List<SyntaxNode> best = null;
+        int bestSize = 1;
+        for (List<SyntaxNode> occurrences : groups.values())
+        {
+            int size = sizes.get(occurrences.get(0));
+            if (occurrences.size() < 2 || size <= bestSize)
+                continue;
+            best = occurrences;
+            bestSize = size;
+        }
+        return best;
+    }
+
+    /**
+     * Hashes every subtree and groups the candidate expressions by their
+     * structure and region.
+     *
+     * @return the hash of {@code node}, or null if it may not be shared.
+     */
+    private Integer collect(SyntaxNode node,
+            HashMap<Key, List<SyntaxNode>> groups,
+            IdentityHashMap<SyntaxNode, Integer> sizes)
+    {
+        boolean candidate = isOperation(node);
+        int hash = Objects.hash(node.getClass(), operator(node));
+        int size = 1;
+        for (SyntaxNode child : node.children())
+        {
+            Integer h = collect(child, groups, sizes);
+            if (h == null)
+                candidate = false;
+            else
+            {
+                hash = 31 * hash + h;
+                size += sizes.get(child);
+            }
+        }
+        sizes.put(node, size);
+
+        if (node instanceof TokenNode)
+            return hashToken((TokenNode) node);
+        if (!candidate)
+            return null;
+
+        // The region is part of the key, so occurrences in different
+        // regions are never grouped.
+        groups.computeIfAbsent(new Key(node, region(node), hash),
+                k -> new ArrayList<>()).add(node);
+        return hash;
+    }
+
+    private int hashToken(TokenNode node)
+    {
+        if (node.getLiteral() != null)
+            return node.getLiteral().hashCode();
+        return 31 * node.getToken().getValue().hashCode()
+                + System.identityHashCode(bindings.binderOf(node));
+    }
+
+    /**
+     * Determines if {@code node} is an operation that may be shared when
+     * all its operands are.
+     */
+    private static boolean isOperation(SyntaxNode node)
+    {
+        return node instanceof BinOpNode || node instanceof RelOpNode
+                || node instanceof LogicalNode || node instanceof UnaryOpNode
+                || node instanceof HeadNode || node instanceof TailNode
+                || node instanceof LenNode || node instanceof ListNode
+                || node instanceof AggregateNode || node instanceof SortNode
+                || node instanceof ElemNode || node instanceof IndexNode
+                || node instanceof SliceNode;
+    }
+
+    private static Object operator(SyntaxNode node)
+    {
+        if (node instanceof BinOpNode)
+            return ((BinOpNode) node).getOp();
+        if (node instanceof RelOpNode)
+            return ((RelOpNode) node).getOp();
+        if (node instanceof LogicalNode)
+            return ((LogicalNode) node).getOp();
+        if (node instanceof UnaryOpNode)
+            return ((UnaryOpNode) node).getOp();
+        if (node instanceof AggregateNode)
+            return ((AggregateNode) node).getOp();
+        return null;
+    }
+
+    /**
+     * Determines if two subtrees compute the same value.
+     */
+    private boolean same(SyntaxNode a, SyntaxNode b)
+    {
+        if (a.getClass() != b.getClass()
+                || !Objects.equals(operator(a), operator(b)))
+            return false;
+
+        if (a instanceof TokenNode)
+        {
+            TokenNode x = (TokenNode) a;
+            TokenNode y = (TokenNode) b;
+            if (x.getLiteral() != null || y.getLiteral() != null)
+                return Objects.equals(x.getLiteral(), y.getLiteral());
+            return x.getToken().getValue().equals(y.getToken().getValue())
+                    && bindings.binderOf(x) == bindings.binderOf(y);
+        }
+
+        List<SyntaxNode> as = a.children();
+        List<SyntaxNode> bs = b.children();
+        if (as.size() != bs.size())
+            return false;
+        for (int i = 0; i < as.size(); i++)
+            if (!same(as.get(i), bs.get(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Gets the root of the region {@code node} is in: the nearest enclosing
+     * top-level statement or conditionally evaluated operand.
+     */
+    private SyntaxNode region(SyntaxNode node)
+    {
+        while (node.getParent() != null)
+        {
+            SyntaxNode parent = node.getParent();
+            if (parent instanceof ProgNode)
+                return node;
+            if (parent instanceof LogicalNode
+                    && ((LogicalNode) parent).getRightTerm() == node)
+                return node;
+            node = parent;
+        }
+        return node;
+    }
+
+    /************
+     * Sharing
+     ************/
+
+    /**
+     * Binds the first occurrence of an expression at the lowest node
+     * holding all of them, and replaces every occurrence by the name.
+     */
+    private void hoist(List<SyntaxNode> occurrences)
+    {
+        SyntaxNode scope = commonAncestor(occurrences);
+        SyntaxNode first = occurrences.get(0);
+        Token name = new Token(Symbol.intern(PREFIX + count++));
+        long line = first.lineNumber();
+
+        for (SyntaxNode occurrence : occurrences)
+            occurrence.replace(new TokenNode(name, occurrence.lineNumber()));
+
+        // The let takes the place of the scope, which becomes its body.
+        SyntaxNode hole = new TokenNode(name, line);
+        scope.replace(hole);
+        LetNode let = new LetNode(name, first, scope, line);
+        hole.replace(let);
+        if (scope == root)
+            root = let;
+
+        eliminated += (occurrences.size() - 1) * count(first);
+    }
+
+    private static int count(SyntaxNode node)
+    {
+        int size = 1;
+        for (SyntaxNode child : node.children())
+            size += count(child);
+        return size;
+    }
+
+    /**
+     * Finds the lowest node that is an ancestor of every occurrence.
+     */
+    private static SyntaxNode commonAncestor(List<SyntaxNode> nodes)
+    {
+        IdentityHashMap<SyntaxNode, Boolean> ancestors =
+                new IdentityHashMap<>();
+        for (SyntaxNode n = nodes.get(0).getParent(); n != null;
+                n = n.getParent())
+            ancestors.put(n, true);
+
+        SyntaxNode lowest = nodes.get(0).getParent();
+        for (SyntaxNode node : nodes.subList(1, nodes.size()))
+        {
+            SyntaxNode n = node.getParent();
+            while (!ancestors.containsKey(n))
+                n = n.getParent();
+            if (depth(n) < depth(lowest))
+                lowest = n;
+        }
+        return lowest;
+    }
+
+    private static int depth(SyntaxNode node)
+    {
+        int depth = 0;
+        for (SyntaxNode n = node; n.getParent() != null; n = n.getParent())
+            depth++;
+        return depth;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.optimizer;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import ast.EvaluationException;
+import ast.nodes.BinOpNode;
+import ast.nodes.HeadNode;
+import ast.nodes.LenNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TailNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * Folds constant subexpressions of a type checked tree into literals.
+ * <p>
+ * Arithmetic, relational, logical and unary operations on literals are
+ * replaced by their value, and {@code len}, {@code hd}, {@code tl} and
+ * {@code ++} on list literals by the list they compute. An expression that
+ * would fail -- integer division by zero, {@code hd} of an empty list -- is
+ * left as it is, so it fails when the program runs, exactly as before. So
+ * is any operation whose result depends on evaluating an expression that
+ * folding would drop.
+ * </p>
+ * <p>
+ * The tree must have been type checked, so the operands of every operation
+ * have the types it expects.
+ * </p>
+ */
+public final class ConstantFolder
+{
+    private ConstantFolder() {}
+
+    /**
+     * Folds the tree rooted at {@code node}. The tree is rewritten in place.
+     *
+     * @param node the root of the tree.
+     * @return the root of the folded tree, which is {@code node} unless the
+     *         root itself was folded.
+     */
+    public static SyntaxNode fold(SyntaxNode node)
+    {
+        for (SyntaxNode child : List.copyOf(node.children()))
+        {
+            SyntaxNode folded = fold(child);
+            if (folded != child)
+                child.replace(folded);
+        }
+
+        try
+        {
+            SyntaxNode folded = foldNode(node);
+            return folded != null ? folded : node;
+        }
+        catch (EvaluationException ex)
+        {
+            return node;   // Not reached: the operands were checked.
+        }
+    }
+
+    /**
+     * Folds a node whose children are folded already.
+     *
+     * @return the folded node, or null if the node does not fold.
+     */
+    private static SyntaxNode foldNode(SyntaxNode node)
+            throws EvaluationException
+    {
+        if (node instanceof BinOpNode)
+            return foldBinOp((BinOpNode) node);
+        if (node instanceof RelOpNode)
+            return foldRelOp((RelOpNode) node);
+        if (node instanceof LogicalNode)
+            return foldLogical((LogicalNode) node);
+        if (node instanceof UnaryOpNode)
+            return foldUnaryOp((UnaryOpNode) node);
+        if (node instanceof LenNode)
+            return foldLen((LenNode) node);
+        if (node instanceof HeadNode)
+            return foldHead((HeadNode) node);
+        if (node instanceof TailNode)
+            return foldTail((TailNode) node);
+        return null;
+    }
+
+    private static SyntaxNode foldBinOp(BinOpNode node)
+            throws EvaluationException
+    {
+        SyntaxNode left = node.getLeftTerm();
+        SyntaxNode right = node.getRightTerm();
+
+        // Both lists are evaluated in order either way.
+        if (node.getOp() == TokenType.CONCAT)
+        {
+            if (!(left instanceof ListNode) || !(right instanceof ListNode))
+                return null;
+            LinkedList<SyntaxNode> elems =
+                    new LinkedList<>(((ListNode) left).getElements());
+            elems.addAll(((ListNode) right).getElements());
+            return new ListNode(elems, node.lineNumber());
+        }
+
+        Object l = literal(left);
+        Object r = literal(right);
+        if (!isNumber(l) || !isNumber(r))
+            return null;
+
+        boolean ints = l instanceof Integer && r instanceof Integer;
+        if (node.getOp() == TokenType.MOD && !ints)
+            return null;
+        if ((node.getOp() == TokenType.DIV || node.getOp() == TokenType.MOD)
+                && ints && (Integer) r == 0)
+            return null;   // Fails at run time.
+        return literal(node.apply(l, r), node);
+    }
+
+    private static SyntaxNode foldRelOp(RelOpNode node)
+            throws EvaluationException
+    {
+        Object l = literal(node.getLeftTerm());
+        Object r = literal(node.getRightTerm());
+        if (l == null || r == null)
+            return null;
+        if (node.getOp() != TokenType.EQ && node.getOp() != TokenType.NEQ
+                && (!isNumber(l) || !isNumber(r)))
+            return null;
+        return literal(node.apply(l, r), node);
+    }
+
+    private static SyntaxNode foldLogical(LogicalNode node)
+    {
+        Object l = literal(node.getLeftTerm());
+        Object r = literal(node.getRightTerm());
+
+        // A deciding left operand skips the right one, whatever it is; any
+        // other left operand leaves the right one to give the result.
+        if (l instanceof Boolean)
+            return node.decides((Boolean) l) ? node.getLeftTerm()
+                    : node.getRightTerm();
+
+        // The left operand is still evaluated, for its errors.
+        if (r instanceof Boolean && !node.decides((Boolean) r))
+            return node.getLeftTerm();
+        return null;
+    }
+
+    private static SyntaxNode foldUnaryOp(UnaryOpNode node)
+            throws EvaluationException
+    {
+        Object v = literal(node.getExpr());
+        if (node.getOp() == TokenType.NOT ? !(v instanceof Boolean)
+                : !isNumber(v))
+            return null;
+        return literal(node.apply(v), node);
+    }
+
+    private static SyntaxNode foldLen(LenNode node)
+    {
+        if (!isConstant(node.getExpr()))
+            return null;
+        int len = ((ListNode) node.getExpr()).getElements().size();
+        return literal(len, node);
+    }
+
+    private static SyntaxNode foldHead(HeadNode node)
+    {
+        if (!(node.getExpr() instanceof ListNode))
+            return null;
+        LinkedList<SyntaxNode> elems = ((ListNode) node.getExpr()).getElements();
+        if (elems.isEmpty() || !allConstant(elems.subList(1, elems.size())))
+            return null;
+        return elems.getFirst();
+    }
+
+    private static SyntaxNode foldTail(TailNode node)
+    {
+        if (!(node.getExpr() instanceof ListNode))
+            return null;
+        LinkedList<SyntaxNode> elems = ((ListNode) node.getExpr()).getElements();
+        if (elems.isEmpty() || !isConstant(elems.getFirst()))
+            return null;
+        return new ListNode(new LinkedList<>(elems.subList(1, elems.size())),
+                node.lineNumber());
+    }
+
+    /************
+     * Literals
+     ************/
+
+    /**
+     * Gets the value of a literal.
+     *
+     * @return the value, or null if {@code node} is not a literal.
+     */
+    private static Object literal(SyntaxNode node)
+    {
+        return node instanceof TokenNode ? ((TokenNode) node).getLiteral()
+                : null;
+    }
+
+    /**
+     * Builds the literal for {@code value}, in place of {@code node}.
+     */
+    private static SyntaxNode literal(Object value, SyntaxNode node)
+    {
+        Token tok;
+        if (value instanceof Integer)
+            tok = new Token(TokenType.INT, value.toString());
+        else if (value instanceof Double)
+            tok = new Token(TokenType.REAL, value.toString());
+        else if (Boolean.TRUE.equals(value))
+            tok = new Token(TokenType.TRUE, "true");
+        else if (Boolean.FALSE.equals(value))
+            tok = new Token(TokenType.FALSE, "false");
+        else
+            return null;
+        return new TokenNode(tok, node.lineNumber());
+    }
+
+    /**
+     * Determines if {@code node} is a literal or a list of them, which can
+     * be dropped without losing an error.
+     */
+    static boolean isConstant(SyntaxNode node)
+    {
+        if (node instanceof ListNode)
+            return allConstant(((ListNode) node).getElements());
+        return literal(node) != null;
+    }
+
+    private static boolean allConstant(List<SyntaxNode> nodes)
+    {
+        for (SyntaxNode n : nodes)
+            if (!isConstant(n))
+                return false;
+        return true;
+    }
+
+    private static boolean isNumber(Object v)
+    {
+        return v instanceof Integer || v instanceof Double;
+    }
+}
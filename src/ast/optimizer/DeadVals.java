@@ -0,0 +1,92 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.optimizer;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.List;
+
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+
+/**
+ * Removes the top-level statements a program's result does not depend on.
+ * <p>
+ * The value of a program is the value of its last statement. A val it
+ * does not refer to, directly or through other vals, and an expression
+ * statement before it, only compute a value that is thrown away. Such a
+ * statement is removed when evaluating it cannot fail, or when the caller
+ * assumes no statement fails; otherwise it is kept, with the vals it uses,
+ * so its errors are still reported.
+ * </p>
+ * <p>
+ * Removed vals are not bound, so the pass is for running a whole program
+ * for its result, not for a line whose vals later lines use. The program
+ * must have been type checked, so no name is bound by two vals.
+ * </p>
+ */
+public final class DeadVals
+{
+    private DeadVals() {}
+
+    /**
+     * Removes the statements of {@code prog} that its result does not
+     * depend on.
+     *
+     * @param prog a type checked program.
+     * @param assumeTotal true to remove statements that may fail.
+     * @return the program without them.
+     */
+    public static ProgNode eliminate(ProgNode prog, boolean assumeTotal)
+    {
+        ValDependencies graph = new ValDependencies(prog);
+        List<SyntaxNode> statements = graph.getStatements();
+        int n = statements.size();
+        if (n == 0)
+            return prog;
+
+        // Live statements: the last one, those that may fail, and the vals
+        // they refer to.
+        boolean[] live = new boolean[n];
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.push(n - 1);
+        if (!assumeTotal)
+            for (int i = 0; i < n; i++)
+                if (!LetInliner.isTotal(graph.getExpression(i)))
+                    work.push(i);
+
+        int count = 0;
+        while (!work.isEmpty())
+        {
+            int i = work.pop();
+            if (live[i])
+                continue;
+            live[i] = true;
+            count++;
+            for (int dep : graph.getDependencies(i))
+                work.push(dep);
+        }
+
+        if (count == n)
+            return prog;
+        LinkedList<SyntaxNode> kept = new LinkedList<>();
+        for (int i = 0; i < n; i++)
+            if (live[i])
+                kept.add(statements.get(i));
+        return new ProgNode(kept, prog.lineNumber());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.optimizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import ast.nodes.BinOpNode;
+import ast.nodes.LenNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.LogicalNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TokenNode;
+import ast.nodes.UnaryOpNode;
+import lexer.TokenType;
+
+/**
+ * Removes let bindings a type checked tree does not need.
+ * <p>
+ * A let binding a literal or another variable is substituted into its
+ * body. So is a let whose name is used once, when that use is evaluated
+ * whenever the body is. A let whose name is not used is dropped, when
+ * evaluating the bound expression cannot fail. Substitution is skipped
+ * where a let in the body would capture a name the bound expression uses.
+ * </p>
+ * <p>
+ * The value of the program is unchanged, and so is whether it fails. A
+ * bound expression used once is evaluated where it is used, so a program
+ * with several errors may report a different one first.
+ * </p>
+ */
+public final class LetInliner
+{
+    private final Bindings bindings;
+
+    private LetInliner(SyntaxNode root)
+    {
+        bindings = new Bindings(root);
+    }
+
+    /**
+     * Inlines the lets in the tree rooted at {@code node}. The tree is
+     * rewritten in place.
+     *
+     * @param node the root of the tree.
+     * @return the root of the rewritten tree, which is {@code node} unless
+     *         the root itself was a let that was removed.
+     */
+    public static SyntaxNode inline(SyntaxNode node)
+    {
+        return new LetInliner(node).rewrite(node);
+    }
+
+    /**
+     * Rewrites a tree whose enclosing lets are rewritten already. The uses
+     * of a let are all in its body, so they are still in place when the
+     * let is reached.
+     */
+    private SyntaxNode rewrite(SyntaxNode node)
+    {
+        SyntaxNode body;
+        while (node instanceof LetNode
+                && (body = inlineLet((LetNode) node)) != null)
+            node = body;
+
+        for (SyntaxNode child : List.copyOf(node.children()))
+        {
+            SyntaxNode rewritten = rewrite(child);
+            if (rewritten != child)
+                child.replace(rewritten);
+        }
+        return node;
+    }
+
+    /**
+     * Substitutes the bound expression of a let into its body.
+     *
+     * @return the body, or null if the let must stay.
+     */
+    private SyntaxNode inlineLet(LetNode let)
+    {
+        SyntaxNode bound = let.getBound();
+        List<TokenNode> uses = bindings.usesOf(let);
+
+        if (uses.isEmpty())
+            return isTotal(bound) ? let.getBody() : null;
+
+        List<String> names = new ArrayList<>();
+        names(bound, names);
+        for (TokenNode use : uses)
+            if (captures(use, let, names))
+                return null;
+
+        if (bound instanceof TokenNode)
+        {
+            for (TokenNode use : uses)
+            {
+                TokenNode copy = new TokenNode(
+                        ((TokenNode) bound).getToken(), use.lineNumber());
+                LetNode binder = bindings.binderOf((TokenNode) bound);
+                if (binder != null)
+                    bindings.bind(copy, binder);
+                use.replace(copy);
+            }
+            return let.getBody();
+        }
+
+        if (uses.size() == 1 && !isConditional(uses.get(0), let))
+        {
+            uses.get(0).replace(bound);
+            return let.getBody();
+        }
+        return null;
+    }
+
+    /**
+     * Collects the identifiers used in a tree.
+     */
+    private static void names(SyntaxNode node, List<String> names)
+    {
+        if (node instanceof TokenNode)
+        {
+            if (((TokenNode) node).getLiteral() == null)
+                names.add(((TokenNode) node).getToken().getValue());
+            return;
+        }
+        for (SyntaxNode child : node.children())
+            names(child, names);
+    }
+
+    /**
+     * Determines if a let between {@code use} and {@code let} binds one of
+     * the names, so that substituting at the use would change what they
+     * refer to.
+     */
+    private static boolean captures(TokenNode use, LetNode let,
+            List<String> names)
+    {
+        SyntaxNode child = use;
+        for (SyntaxNode n = use.getParent(); n != let; n = n.getParent())
+        {
+            if (n instanceof LetNode && ((LetNode) n).getBody() == child
+                    && names.contains(((LetNode) n).getName().getValue()))
+                return true;
+            child = n;
+        }
+        return false;
+    }
+
+    /**
+     * Determines if {@code use} is in an operand the body of {@code let}
+     * may skip: the right operand of an {@code and} or {@code or}.
+     */
+    private static boolean isConditional(TokenNode use, LetNode let)
+    {
+        SyntaxNode child = use;
+        for (SyntaxNode n = use.getParent(); n != let; n = n.getParent())
+        {
+            if (n instanceof LogicalNode
+                    && ((LogicalNode) n).getRightTerm() == child)
+                return true;
+            child = n;
+        }
+        return false;
+    }
+
+    /**
+     * Determines if evaluating a type checked expression cannot fail. Only
+     * integer division and remainder, {@code hd} and {@code tl} can. The
+     * tree is walked with a stack of its own.
+     */
+    static boolean isTotal(SyntaxNode root)
+    {
+        ArrayDeque<SyntaxNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty())
+        {
+            SyntaxNode node = stack.pop();
+            if (node instanceof TokenNode)
+                continue;
+            if (node instanceof BinOpNode)
+            {
+                TokenType op = ((BinOpNode) node).getOp();
+                if (op == TokenType.DIV || op == TokenType.MOD)
+                    return false;
+            }
+            else if (!(node instanceof RelOpNode || node instanceof LogicalNode
+                    || node instanceof UnaryOpNode || node instanceof LenNode
+                    || node instanceof ListNode))
+                return false;
+
+            for (SyntaxNode child : node.children())
+                stack.push(child);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package ast.optimizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TokenNode;
+import ast.nodes.ValNode;
+
+/**
+ * The use-def graph of a program's top-level statements: for each
+ * statement, the earlier vals whose values it reads. A name no earlier val
+ * binds is read from the environment the program starts in.
+ */
+public final class ValDependencies
+{
+    private final List<SyntaxNode> statements;
+    private final int[][] dependencies;
+
+    /**
+     * Builds the use-def graph of {@code prog}.
+     *
+     * @param prog a program.
+     */
+    public ValDependencies(ProgNode prog)
+    {
+        statements = List.copyOf(prog.getStatements());
+        dependencies = new int[statements.size()][];
+
+        Bindings bindings = new Bindings(prog);
+        HashMap<String, Integer> defs = new HashMap<>();   // The latest val.
+        for (int i = 0; i < statements.size(); i++)
+        {
+            SyntaxNode s = statements.get(i);
+            Set<String> names = new HashSet<>();
+            freeNames(s, bindings, names);
+
+            List<Integer> deps = new ArrayList<>();
+            for (String name : names)
+                if (defs.containsKey(name))
+                    deps.add(defs.get(name));
+            dependencies[i] = deps.stream().mapToInt(Integer::intValue)
+                    .sorted().toArray();
+
+            if (s instanceof ValNode)
+                defs.put(((ValNode) s).getNameToken().getValue(), i);
+        }
+    }
+
+    /**
+     * Gets the statements of the program.
+     *
+     * @return the statements, in source order.
+     */
+    public List<SyntaxNode> getStatements()
+    {
+        return statements;
+    }
+
+    /**
+     * Gets the vals a statement reads.
+     *
+     * @param statement the index of a statement.
+     * @return the indices of the vals, in source order. They all come
+     *         before {@code statement}.
+     */
+    public int[] getDependencies(int statement)
+    {
+        return dependencies[statement];
+    }
+
+    /**
+     * Gets the expression a statement evaluates: the bound expression of a
+     * val, or the statement itself.
+     *
+     * @param statement the index of a statement.
+     * @return its expression.
+     */
+    public SyntaxNode getExpression(int statement)
+    {
+        SyntaxNode s = statements.get(statement);
+        return s instanceof ValNode ? ((ValNode) s).getExpr() : s;
+    }
+
+    /**
+     * Collects the names of vals used in a tree: the identifiers no let
+     * binds. The tree is walked with a stack of its own.
+     */
+    private static void freeNames(SyntaxNode root, Bindings bindings,
+            Set<String> names)
+    {
+        ArrayDeque<SyntaxNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty())
+        {
+            SyntaxNode node = stack.pop();
+            if (node instanceof TokenNode)
+            {
+                TokenNode tok = (TokenNode) node;
+                if (tok.getLiteral() == null && bindings.binderOf(tok) == null)
+                    names.add(tok.getToken().getValue());
+                continue;
+            }
+            for (SyntaxNode child : node.children())
+                stack.push(child);
+        }
+    }
+}
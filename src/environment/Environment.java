@@ -16,25 +16,33 @@
  */
 package environment;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import lexer.Token;
 
 /**
- * A simple representation of an executional environment.
+ * A simple representation of an executional environment. Top-level vals are
+ * kept in a persistent map keyed by the id of the symbol naming them, so
+ * copying the environment is constant time. Let bound values are kept in a
+ * frame of slots assigned to them when the program is resolved.
  * 
  * @author Zach Kissel
  */
 public class Environment
 {
-    private HashMap<String, Object> env;
+    private static final Object[] EMPTY_FRAME = {};
+
+    private PersistentMap<Object> env;      // The vals, by symbol id.
+    private Object[] frame = EMPTY_FRAME;   // The values of let bound names.
+    private boolean lazy;                   // Bind thunks instead of values.
+    private boolean parallel;               // Fork costly lists and operands.
 
     /**
      * Sets up the initial environment.
      */
     public Environment()
     {
-        env = new HashMap<>();
+        env = PersistentMap.empty();
     }
 
     /**
@@ -46,7 +54,7 @@ public class Environment
      */
     public Object lookup(Token tok)
     {
-        return env.get(tok.getValue());
+        return env.get(tok.getSymbol().getId());
     }
 
     /**
@@ -58,19 +66,117 @@ public class Environment
      */
     public void updateEnvironment(Token tok, Object val)
     {
-        if (env.replace(tok.getValue(), val) == null)
-            env.put(tok.getValue(), val);
+        env = env.put(tok.getSymbol().getId(), val);
+    }
+
+    /**
+     * Returns the let bound value in slot {@code slot} of the frame.
+     * 
+     * @param slot the slot to read.
+     * @return the value in the slot.
+     */
+    public Object getLocal(int slot)
+    {
+        return frame[slot];
+    }
+
+    /**
+     * Stores the let bound value {@code val} in slot {@code slot}, growing
+     * the frame if needed.
+     * 
+     * @param slot the slot to write.
+     * @param val the value to store.
+     */
+    public void setLocal(int slot, Object val)
+    {
+        if (slot >= frame.length)
+            frame = Arrays.copyOf(frame, Math.max(slot + 1, 2 * frame.length));
+        frame[slot] = val;
+    }
+
+    /**
+     * Makes sure the frame has at least {@code size} slots.
+     * 
+     * @param size the number of slots needed.
+     */
+    public void ensureFrame(int size)
+    {
+        if (size > frame.length)
+            frame = Arrays.copyOf(frame, size);
+    }
+
+    /**
+     * Determines if lets and vals bind thunks, evaluated when first used,
+     * instead of values.
+     * 
+     * @return true if bindings are lazy.
+     */
+    public boolean isLazy()
+    {
+        return lazy;
+    }
+
+    /**
+     * Sets whether lets and vals bind thunks instead of values.
+     * 
+     * @param lazy true to make bindings lazy.
+     */
+    public void setLazy(boolean lazy)
+    {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Determines if the elements of wide list literals, and costly operands,
+     * are evaluated in parallel.
+     * 
+     * @return true if wide lists and costly operands are evaluated in
+     *         parallel.
+     */
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
+    /**
+     * Sets whether the elements of wide list literals, and costly operands,
+     * are evaluated in parallel.
+     * 
+     * @param parallel true to evaluate wide lists and costly operands in
+     *                 parallel.
+     */
+    public void setParallel(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Makes a copy of the environment, frame included, for evaluating an
+     * expression later. The vals are shared in constant time; the frame is
+     * only as large as lets are nested.
+     * 
+     * @return a copy of the environment and its frame.
+     */
+    public Environment capture()
+    {
+        Environment newEnv = copy();
+        newEnv.frame = frame.clone();
+        return newEnv;
     }
 
     /**
-     * Makes a copy of the current environment.
+     * Makes a copy of the current environment in constant time. Updates to
+     * either environment are not seen by the other, and the copy has a frame
+     * of its own.
      * 
      * @return a copy of the environment.
      */
     public Environment copy()
     {
         Environment newEnv = new Environment();
-        newEnv.env.putAll(env);
+        newEnv.env = env;
+        newEnv.lazy = lazy;
+        newEnv.parallel = parallel;
         return newEnv;
     }
 }
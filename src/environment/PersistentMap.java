@@ -0,0 +1,252 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package environment;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A persistent map from symbol ids to values, stored as a hash array mapped
+ * trie. Updates return a new map sharing all but the path to the changed
+ * entry with the old one, so keeping an old version around is free.
+ * <p>
+ * Each level of the trie consumes five bits of the key, and a node stores
+ * only the children present, found through a 32 bit bitmap. Symbol ids are
+ * distinct non-negative ints, so a key is its own perfect hash and no
+ * collision nodes are needed.
+ * </p>
+ *
+ * @param <V> the type of the values.
+ */
+final class PersistentMap<V>
+{
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<Object> EMPTY =
+            new PersistentMap<>(new Node(0, new Object[0]), 0);
+
+    /** A key and its value, stored where the trie path for the key ends. */
+    private static final class Leaf
+    {
+        final int key;
+        final Object value;
+
+        Leaf(int key, Object value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /** An interior node; its entries are leaves or nodes, in bit order. */
+    private static final class Node
+    {
+        final int bitmap;
+        final Object[] entries;
+
+        Node(int bitmap, Object[] entries)
+        {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        int index(int bit)
+        {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size)
+    {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Gets the empty map.
+     *
+     * @param <V> the type of the values.
+     * @return a map with no entries.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> PersistentMap<V> empty()
+    {
+        return (PersistentMap<V>) EMPTY;
+    }
+
+    /**
+     * Gets the number of entries in the map.
+     *
+     * @return the number of keys mapped.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the value of {@code key}.
+     *
+     * @param key the key to look up.
+     * @return the value, or null if {@code key} is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key)
+    {
+        Node node = root;
+        for (int shift = 0; ; shift += BITS)
+        {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0)
+                return null;
+            Object entry = node.entries[node.index(bit)];
+            if (entry instanceof Leaf)
+            {
+                Leaf leaf = (Leaf) entry;
+                return leaf.key == key ? (V) leaf.value : null;
+            }
+            node = (Node) entry;
+        }
+    }
+
+    /**
+     * Maps {@code key} to {@code value}. A null value removes the key.
+     *
+     * @param key the key to map.
+     * @param value the value of the key.
+     * @return the updated map; this map is unchanged.
+     */
+    PersistentMap<V> put(int key, V value)
+    {
+        if (value == null)
+            return remove(key);
+        int grown = get(key) == null ? 1 : 0;
+        return new PersistentMap<>(put(root, 0, new Leaf(key, value)),
+                size + grown);
+    }
+
+    /**
+     * Removes {@code key} from the map.
+     *
+     * @param key the key to remove.
+     * @return the updated map; this map is unchanged.
+     */
+    PersistentMap<V> remove(int key)
+    {
+        if (get(key) == null)
+            return this;
+        Object rest = remove(root, 0, key);
+        if (rest == null)
+            return empty();
+        if (rest instanceof Leaf)   // The root is always a node.
+            rest = put(new Node(0, new Object[0]), 0, (Leaf) rest);
+        return new PersistentMap<>((Node) rest, size - 1);
+    }
+
+    /**
+     * Calls {@code action} with every value and its key.
+     *
+     * @param action what to do with each entry.
+     */
+    void forEach(ObjIntConsumer<V> action)
+    {
+        forEach(root, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, ObjIntConsumer<V> action)
+    {
+        for (Object entry : node.entries)
+        {
+            if (entry instanceof Leaf)
+                action.accept((V) ((Leaf) entry).value, ((Leaf) entry).key);
+            else
+                forEach((Node) entry, action);
+        }
+    }
+
+    private static Node put(Node node, int shift, Leaf leaf)
+    {
+        int bit = 1 << ((leaf.key >>> shift) & MASK);
+        int idx = node.index(bit);
+
+        if ((node.bitmap & bit) == 0)
+        {
+            Object[] entries = new Object[node.entries.length + 1];
+            System.arraycopy(node.entries, 0, entries, 0, idx);
+            entries[idx] = leaf;
+            System.arraycopy(node.entries, idx, entries, idx + 1,
+                    node.entries.length - idx);
+            return new Node(node.bitmap | bit, entries);
+        }
+
+        Object entry = node.entries[idx];
+        Object replacement;
+        if (entry instanceof Node)
+            replacement = put((Node) entry, shift + BITS, leaf);
+        else if (((Leaf) entry).key == leaf.key)
+            replacement = leaf;
+        else
+        {
+            // Two keys share the path so far; push both a level down.
+            Node pair = put(new Node(0, new Object[0]), shift + BITS,
+                    (Leaf) entry);
+            replacement = put(pair, shift + BITS, leaf);
+        }
+
+        Object[] entries = node.entries.clone();
+        entries[idx] = replacement;
+        return new Node(node.bitmap, entries);
+    }
+
+    /**
+     * Removes {@code key}, which must be in the subtrie.
+     *
+     * @return the remaining node, a lone leaf to be pulled up a level, or
+     *         null if nothing is left.
+     */
+    private static Object remove(Node node, int shift, int key)
+    {
+        int bit = 1 << ((key >>> shift) & MASK);
+        int idx = node.index(bit);
+        Object entry = node.entries[idx];
+        Object rest = entry instanceof Leaf ? null
+                : remove((Node) entry, shift + BITS, key);
+
+        if (rest != null)
+        {
+            Object[] entries = node.entries.clone();
+            entries[idx] = rest;
+            if (entries.length == 1 && rest instanceof Leaf)
+                return rest;
+            return new Node(node.bitmap, entries);
+        }
+
+        if (node.entries.length == 1)
+            return null;
+        Object[] entries = new Object[node.entries.length - 1];
+        System.arraycopy(node.entries, 0, entries, 0, idx);
+        System.arraycopy(node.entries, idx + 1, entries, idx,
+                entries.length - idx);
+        if (entries.length == 1 && entries[0] instanceof Leaf)
+            return entries[0];
+        return new Node(node.bitmap & ~bit, entries);
+    }
+}
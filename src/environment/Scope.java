@@ -0,0 +1,78 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package environment;
+
+import java.util.ArrayList;
+
+/**
+ * The static scope used to resolve names before evaluation. Each let binding
+ * in scope is given a slot in the frame of local values; a name that is not
+ * bound by an enclosing let refers to a top-level val.
+ * <p>
+ * MFL has no functions, so there is only ever one frame and every local is
+ * addressed by its slot alone. A binding takes the first slot not held by an
+ * enclosing binding, so the frame needs only as many slots as lets are
+ * nested.
+ * </p>
+ */
+public class Scope
+{
+    private final ArrayList<String> names = new ArrayList<>();   // By slot.
+    private int frameSize;
+
+    /**
+     * Binds {@code name} in a new innermost scope.
+     *
+     * @param name the name to bind.
+     * @return the slot holding the value of {@code name}.
+     */
+    public int bind(String name)
+    {
+        names.add(name);
+        frameSize = Math.max(frameSize, names.size());
+        return names.size() - 1;
+    }
+
+    /**
+     * Leaves the innermost scope.
+     */
+    public void unbind()
+    {
+        names.remove(names.size() - 1);
+    }
+
+    /**
+     * Finds the slot of the innermost binding of {@code name}.
+     *
+     * @param name the name to look up.
+     * @return the slot, or -1 if {@code name} is not bound by a let.
+     */
+    public int lookup(String name)
+    {
+        return names.lastIndexOf(name);
+    }
+
+    /**
+     * Gets the number of slots the frame needs.
+     *
+     * @return the largest number of bindings in scope at once.
+     */
+    public int getFrameSize()
+    {
+        return frameSize;
+    }
+}
@@ -16,15 +16,18 @@
  */
 package environment;
 
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import ast.typesystem.types.Type;
 import ast.typesystem.types.VarType;
+import lexer.Symbol;
 import lexer.Token;
 
 /**
- * A simple representation of an type environment.
+ * A simple representation of an type environment. Types are kept in a
+ * persistent map keyed by the id of the symbol naming them, so copying the
+ * environment is constant time.
  * 
  * @author Zach Kissel
  */
@@ -58,14 +61,14 @@ public class TypeEnvironment
     }
 
     private VarGenerator gen;               // The type varaible generator.
-    private HashMap<String, Type> env;      // The environemnt
+    private PersistentMap<Type> env;        // The types, by symbol id.
 
     /**
      * Sets up the initial environment.
      */
     public TypeEnvironment()
     {
-        env = new HashMap<>();
+        env = PersistentMap.empty();
         gen = new VarGenerator();
     }
 
@@ -78,7 +81,7 @@ public class TypeEnvironment
      */
     public Type lookup(Token tok)
     {
-        return env.get(tok.getValue());
+        return env.get(tok.getSymbol().getId());
     }
 
     /**
@@ -86,7 +89,7 @@ public class TypeEnvironment
      */
     public void clearTenv()
     {
-        env.clear();
+        env = PersistentMap.empty();
     }
 
     /**
@@ -98,19 +101,19 @@ public class TypeEnvironment
      */
     public void updateEnvironment(Token tok, Type type)
     {
-        if (env.replace(tok.getValue(), type) == null)
-            env.put(tok.getValue(), type);
+        env = env.put(tok.getSymbol().getId(), type);
     }
 
     /**
-     * Makes a copy of the current environment.
+     * Makes a copy of the current environment in constant time. Updates to
+     * either environment are not seen by the other.
      * 
      * @return a copy of the environment.
      */
     public TypeEnvironment copy()
     {
         TypeEnvironment newEnv = new TypeEnvironment();
-        newEnv.env.putAll(env);
+        newEnv.env = env;
 
         // Don't make a copy of the variable generator since
         // we want to maintain the invariant that all type 
@@ -126,7 +129,9 @@ public class TypeEnvironment
      */
     public Set<String> getKnowVariables()
     {
-        return env.keySet();
+        LinkedHashSet<String> vars = new LinkedHashSet<>();
+        env.forEach((type, id) -> vars.add(Symbol.forId(id).getName()));
+        return vars;
     }
 
     /**
@@ -147,6 +152,12 @@ public class TypeEnvironment
     @Override
     public String toString()
     {
-        return env.toString();
+        StringBuilder sb = new StringBuilder("{");
+        env.forEach((type, id) -> {
+            if (sb.length() > 1)
+                sb.append(", ");
+            sb.append(Symbol.forId(id)).append("=").append(type);
+        });
+        return sb.append("}").toString();
     }
 }
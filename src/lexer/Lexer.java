@@ -88,7 +88,7 @@ public class Lexer
                 // the keyword dictionary, it is an indentifier.
                 if (keywords.containsKey(value))
                     return new Token(keywords.get(value), value);
-                return new Token(TokenType.ID, value);
+                return new Token(Symbol.intern(value));
 
             // The state where we are recognizing digits.
             // Regex: [0-9]+
@@ -221,7 +221,7 @@ public class Lexer
             else
             {
                 stream.skipNextAdvance();
-                return new Token(TokenType.UNKNOWN, "");
+                return new Token(TokenType.INDEX, "!");
             }
         case '>':
             stream.advance();
@@ -272,6 +272,14 @@ public class Lexer
         keywords.put("hd", TokenType.HEAD);
         keywords.put("tl", TokenType.TAIL);
         keywords.put("len", TokenType.LEN);
+        keywords.put("sum", TokenType.SUM);
+        keywords.put("prod", TokenType.PROD);
+        keywords.put("min", TokenType.MIN);
+        keywords.put("max", TokenType.MAX);
+        keywords.put("sort", TokenType.SORT);
+        keywords.put("elem", TokenType.ELEM);
+        keywords.put("take", TokenType.TAKE);
+        keywords.put("drop", TokenType.DROP);
     }
 
      /**
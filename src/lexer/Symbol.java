@@ -0,0 +1,96 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package lexer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * An interned identifier. The lexer gives every occurrence of an identifier
+ * the same symbol, and each distinct identifier a dense integer id, so the
+ * environments can index their bindings by id instead of hashing names.
+ */
+public final class Symbol
+{
+    private static final HashMap<String, Symbol> table = new HashMap<>();
+    private static final ArrayList<Symbol> byId = new ArrayList<>();
+
+    private final String name;
+    private final int id;
+
+    private Symbol(String name, int id)
+    {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Gets the symbol for the identifier {@code name}, creating it the first
+     * time the name is seen.
+     *
+     * @param name the identifier.
+     * @return the unique symbol for {@code name}.
+     */
+    public static synchronized Symbol intern(String name)
+    {
+        Symbol sym = table.get(name);
+        if (sym == null)
+        {
+            sym = new Symbol(name, byId.size());
+            table.put(name, sym);
+            byId.add(sym);
+        }
+        return sym;
+    }
+
+    /**
+     * Gets the symbol with id {@code id}.
+     *
+     * @param id the id of an interned symbol.
+     * @return the symbol.
+     */
+    public static synchronized Symbol forId(int id)
+    {
+        return byId.get(id);
+    }
+
+    /**
+     * Gets the name of the symbol.
+     *
+     * @return the identifier.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Gets the id of the symbol, which is unique and counts from 0.
+     *
+     * @return the id.
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -25,6 +25,7 @@ public class Token
 {
     private String val; // The value of the token.
     private TokenType type; // The type of token represented.
+    private Symbol sym;     // The interned identifier, if an identifier.
 
     /**
      * This is the default constructor.
@@ -48,6 +49,17 @@ public class Token
         this.val = val;
     }
 
+    /**
+     * Constructs an identifier token for the symbol {@code sym}.
+     *
+     * @param sym the interned identifier.
+     */
+    public Token(Symbol sym)
+    {
+        this(TokenType.ID, sym.getName());
+        this.sym = sym;
+    }
+
     /**
      * Get the current value associated with the token.
      *
@@ -58,6 +70,18 @@ public class Token
         return val;
     }
 
+    /**
+     * Get the interned symbol for the value of the token.
+     *
+     * @return the symbol naming the value of the token.
+     */
+    public Symbol getSymbol()
+    {
+        if (sym == null)
+            sym = Symbol.intern(val);
+        return sym;
+    }
+
     /**
      * Get the current type associated with the token.
      *
@@ -76,6 +100,7 @@ public class Token
     public void setValue(String val)
     {
         this.val = val;
+        this.sym = null;
     }
 
     /**
@@ -182,6 +207,24 @@ public class Token
             return "TAIL";
         case LEN:
             return "LEN";
+        case SUM:
+            return "SUM";
+        case PROD:
+            return "PROD";
+        case MIN:
+            return "MIN";
+        case MAX:
+            return "MAX";
+        case SORT:
+            return "SORT";
+        case ELEM:
+            return "ELEM";
+        case INDEX:
+            return "INDEX";
+        case TAKE:
+            return "TAKE";
+        case DROP:
+            return "DROP";
         case EOF:
             return "EOF";
         case CONCAT:
@@ -176,6 +176,51 @@ public enum TokenType
      */
     LEN,
 
+    /**
+     * The sum of a list of numbers.
+     */
+    SUM,
+
+    /**
+     * The product of a list of numbers.
+     */
+    PROD,
+
+    /**
+     * The least of a list of numbers.
+     */
+    MIN,
+
+    /**
+     * The greatest of a list of numbers.
+     */
+    MAX,
+
+    /**
+     * Sorts a list of numbers.
+     */
+    SORT,
+
+    /**
+     * List membership.
+     */
+    ELEM,
+
+    /**
+     * The element of a list at an index.
+     */
+    INDEX,
+
+    /**
+     * The first elements of a list.
+     */
+    TAKE,
+
+    /**
+     * A list without its first elements.
+     */
+    DROP,
+
 
     /**
      * Left Bracket
@@ -21,10 +21,16 @@ import java.io.FileNotFoundException;
 import java.util.LinkedList;
 
 import ast.SyntaxTree;
+import ast.nodes.AggregateNode;
 import ast.nodes.BinOpNode;
+import ast.nodes.ElemNode;
+import ast.nodes.IndexNode;
 import ast.nodes.LetNode;
+import ast.nodes.LogicalNode;
 import ast.nodes.ProgNode;
 import ast.nodes.RelOpNode;
+import ast.nodes.SliceNode;
+import ast.nodes.SortNode;
 import ast.nodes.SyntaxNode;
 import ast.nodes.TokenNode;
 import ast.nodes.UnaryOpNode;
@@ -187,7 +193,7 @@ public class MFLParser extends Parser {
 
     while (checkMatch(TokenType.AND) || checkMatch(TokenType.OR)) {
       rexpr = getGoodParse(evalRexpr());
-      expr = new BinOpNode(expr, op, rexpr, getCurrLine());
+      expr = new LogicalNode(expr, op, rexpr, getCurrLine());
       op = getCurrToken().getType();
     }
     trace("Exit <bexpr>");
@@ -263,13 +269,13 @@ public class MFLParser extends Parser {
           getCurrLine());
     }
 
-    term = getGoodParse(evalFactor());
+    term = getGoodParse(evalIndex());
 
     // Handle the higher level binary operations.
     op = getCurrToken().getType(); // Save off what we think is an operation
     while (checkMatch(TokenType.MULT) || checkMatch(TokenType.DIV)
         || checkMatch(TokenType.MOD)) {
-      rfact = getGoodParse(evalFactor());
+      rfact = getGoodParse(evalIndex());
       term = new BinOpNode(term, op, rfact, getCurrLine());
       op = getCurrToken().getType();
     }
@@ -277,6 +283,26 @@ public class MFLParser extends Parser {
     return term;
   }
 
+  /**
+   * Evaluates the index non-terminal: factors separated by {@code !}, which
+   * takes the element of a list at an index and binds more tightly than
+   * {@code *}. It associates to the left, so {@code xs ! i ! j} is
+   * {@code (xs ! i) ! j}.
+   *
+   * @return the subtree representing the expression.
+   * @throws ParseException when parsing fails.
+   */
+  private SyntaxNode evalIndex() throws ParseException {
+    SyntaxNode expr = getGoodParse(evalFactor());
+
+    while (checkMatch(TokenType.INDEX)) {
+      SyntaxNode index = getGoodParse(evalFactor());
+      expr = new IndexNode(expr, index, getCurrLine());
+    }
+
+    return expr;
+  }
+
   /**
      * Method to evaluate the factor non-terminal (the tightest binding operations). 
      * @return the subtree resulting from the parse.
@@ -306,6 +332,29 @@ public class MFLParser extends Parser {
             SyntaxNode inner = getGoodParse(evalFactor());
             return new LenNode(inner, getCurrLine());
         }
+        else if (tokenIs(TokenType.SUM) || tokenIs(TokenType.PROD)
+                || tokenIs(TokenType.MIN) || tokenIs(TokenType.MAX)) {
+            TokenType op = getCurrToken().getType();
+            nextToken();
+            SyntaxNode inner = getGoodParse(evalFactor());
+            return new AggregateNode(inner, op, getCurrLine());
+        }
+        else if (checkMatch(TokenType.SORT)) {
+            SyntaxNode inner = getGoodParse(evalFactor());
+            return new SortNode(inner, getCurrLine());
+        }
+        else if (checkMatch(TokenType.ELEM)) {
+            SyntaxNode x = getGoodParse(evalFactor());
+            SyntaxNode list = getGoodParse(evalFactor());
+            return new ElemNode(x, list, getCurrLine());
+        }
+        else if (tokenIs(TokenType.TAKE) || tokenIs(TokenType.DROP)) {
+            TokenType op = getCurrToken().getType();
+            nextToken();
+            SyntaxNode count = getGoodParse(evalFactor());
+            SyntaxNode list = getGoodParse(evalFactor());
+            return new SliceNode(count, list, op, getCurrLine());
+        }
 
     
         // Parenthsized expression.
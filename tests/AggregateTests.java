@@ -0,0 +1,118 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of the sum, prod, min and max of lists.
+ */
+public class AggregateTests extends LangTest
+{
+    @Test
+    public void intAggregates()
+    {
+        runTypeTest("intAggregates", "sum [3, 1, 4];", "int");
+        runEvalTest("intAggregates", "sum [3, 1, 4];", "8");
+        runEvalTest("intAggregates", "prod [3, 1, 4];", "12");
+        runEvalTest("intAggregates", "min [3, 1, 4];", "1");
+        runEvalTest("intAggregates", "max [3, 1, 4];", "4");
+        runEvalTest("intAggregates", "sum [2147483647, 1];", "-2147483648");
+    }
+
+    @Test
+    public void realAggregates()
+    {
+        runTypeTest("realAggregates", "max [2.5, 0.5];", "real");
+        runCheckedEvalTest("realAggregates", "sum [2.5, 0.5, 4.0];", "7.0");
+        runCheckedEvalTest("realAggregates", "prod [2.5, 0.5, 4.0];", "5.0");
+        runCheckedEvalTest("realAggregates", "min [2.5, 0.5, 4.0];", "0.5");
+        runCheckedEvalTest("realAggregates", "max [2.5, 0.5, 4.0];", "4.0");
+    }
+
+    @Test
+    public void emptyLists()
+    {
+        runTypeTest("emptyLists", "sum [];", "int");
+        runCheckedEvalTest("emptyLists", "sum [];", "0");
+        runCheckedEvalTest("emptyLists", "prod tl [1];", "1");
+        runCheckedEvalTest("emptyLists", "sum tl [1.5];", "0.0");
+        runCheckedEvalTest("emptyLists", "prod tl [1.5];", "1.0");
+    }
+
+    @Test
+    public void aggregatesBindTightly()
+    {
+        runTypeTest("aggregatesBindTightly",
+                "let xs := [1, 2, 3] in sum xs * max tl xs + len xs;", "int");
+        runEvalTest("aggregatesBindTightly",
+                "let xs := [1, 2, 3] in sum xs * max tl xs + len xs;", "21");
+        runEvalTest("aggregatesBindTightly",
+                "sum [sum [1, 2], min [5, 4]] = 7;", "true");
+    }
+
+    @Test
+    public void rejectsNonNumericLists() throws ParseException
+    {
+        for (String program : new String[] { "sum [true];", "min 3;",
+                "max [[1]];" })
+        {
+            SyntaxTree ast = new MFLParser(program).parse();
+            assertFalse(program, ast.typeCheck());
+        }
+    }
+
+    @Test
+    public void reportsEmptyMinAndMax() throws ParseException
+    {
+        for (Backend b : Backend.values())
+            for (String program : new String[] { "min tl [1];",
+                    "max tl [1.0];" })
+            {
+                SyntaxTree ast = new MFLParser(program).parse();
+                assertTrue(program, ast.typeCheck());
+                ast.setBackend(b);
+                try
+                {
+                    ast.evaluate();
+                    fail(program + " on " + b);
+                }
+                catch (EvaluationException ex)
+                {
+                    // Expected.
+                }
+            }
+    }
+
+    @Test
+    public void agreesAcrossBackends()
+    {
+        runBackendTest("agreesAcrossBackends",
+                "val xs := [5, 3, 8, 1]; val ys := [1.5, 2.5];"
+                + " [sum xs, prod xs, min xs, max xs, sum tl tl tl tl xs]"
+                + " ++ [len ys + min [max xs, 2]];",
+                "[17, 120, 1, 8, 0, 4]");
+    }
+}
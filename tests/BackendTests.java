@@ -0,0 +1,160 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import ast.compiler.Bytecode;
+import ast.compiler.BytecodeCompiler;
+import ast.compiler.JvmCompiler;
+import ast.typesystem.TypeException;
+import environment.Environment;
+import lexer.Token;
+import lexer.TokenType;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Differential tests checking that every backend computes the same values as
+ * the tree-walking evaluator.
+ */
+public class BackendTests extends LangTest
+{
+    private static final String[] PROGRAMS = {
+        "1 + 2 * 3 - 4 / 2;",
+        "2.5 * 2 + 1;",
+        "let x := 5 in x * x + (let x := 2 in x);",
+        "val y := 3; y mod 2 = 1 and not (y < 2);",
+        "hd [1, 2, 3] + len tl [4, 5, 6];",
+        "[1 + 1, 2 * 3] ++ tl [7, 8];",
+        "let z := 1.5 in z >= 1.0 or z < 0.0;",
+        "-(7 mod 3) * 2 = -2 and 1.5 != 2.0;",
+        "not (2.0 / 4.0 < 0.5) and len [1, 2] + 1 > 2;",
+        "100000 * 3 + 70000 - 2.25;",
+        "false and hd tl [1] = 1;",
+        "1 < 2 or hd tl [true];",
+        "true and (false or 2 > 1) and not (1 = 1 and false);",
+    };
+
+    private SyntaxTree parse(String program, Backend backend, boolean typed)
+            throws ParseException, TypeException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        ast.setBackend(backend);
+        if (typed)
+            ast.getType();
+        return ast;
+    }
+
+    private void agree(boolean typed) throws ParseException, TypeException
+    {
+        for (String program : PROGRAMS)
+        {
+            String expected = runCapturingOutput(
+                    parse(program, Backend.TREE, typed));
+            assertFalse(expected, expected.endsWith("failed"));
+            for (Backend b : Backend.values())
+                assertEquals(b + ": " + program, expected,
+                        runCapturingOutput(parse(program, b, typed)));
+        }
+    }
+
+    @Test
+    public void backendsAgree() throws ParseException, TypeException
+    {
+        agree(false);
+    }
+
+    @Test
+    public void backendsAgreeTyped() throws ParseException, TypeException
+    {
+        agree(true);
+    }
+
+    @Test
+    public void compilersAccept() throws ParseException, TypeException
+    {
+        for (String program : PROGRAMS)
+        {
+            SyntaxTree ast = new MFLParser(program).parse();
+            assertNotNull(program, BytecodeCompiler.compile(ast.getRootNode()));
+            ast.getType();
+            assertNotNull(program, JvmCompiler.compile(ast.getRootNode()));
+            assertNotNull(program, BytecodeCompiler.compile(ast.getRootNode()));
+        }
+    }
+
+    @Test
+    public void bytecodeRoundTrip() throws ParseException, TypeException,
+            EvaluationException, IOException
+    {
+        for (String program : PROGRAMS)
+        {
+            SyntaxTree ast = new MFLParser(program).parse();
+            ast.getType();
+            Bytecode code = BytecodeCompiler.compile(ast.getRootNode());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            code.write(out);
+            Bytecode copy = Bytecode.read(
+                    new ByteArrayInputStream(out.toByteArray()));
+
+            assertEquals(program, code.toString(), copy.toString());
+            assertEquals(program,
+                    runCapturingOutput(parse(program, Backend.TREE, true)),
+                    copy.run(new Environment()).toString());
+        }
+    }
+
+    @Test
+    public void letRestoredAfterError() throws ParseException
+    {
+        for (Backend b : Backend.values())
+        {
+            SyntaxTree ast = new MFLParser("let q := 1 in hd [];").parse();
+            ast.setBackend(b);
+            try
+            {
+                ast.evaluate();
+            }
+            catch (EvaluationException ex)
+            {
+                // Expected, the list is empty.
+            }
+            assertEquals(b + ": letRestoredAfterError", null,
+                    ast.getEnvironment().lookup(new Token(TokenType.ID, "q")));
+        }
+    }
+
+    @Test
+    public void compiledTreeReruns() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = new MFLParser("let a := 4 in a * a;").parse();
+        ast.setBackend(Backend.CLOSURE);
+        assertEquals("compiledTreeReruns:", "16", ast.evaluate().toString());
+        assertEquals("compiledTreeReruns:", "16", ast.evaluate().toString());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import environment.Environment;
+import lexer.Symbol;
+import lexer.Token;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of evaluating one tree from many threads at once.
+ */
+public class ConcurrentEvaluationTests
+{
+    private static final int THREADS = 8;
+    private static final int RUNS = 400;
+
+    private static Token name(String name)
+    {
+        return new Token(Symbol.intern(name));
+    }
+
+    /**
+     * Evaluates a tree with n bound to 0 through RUNS - 1 on many threads,
+     * returning the results in order of n.
+     */
+    private static List<String> evaluateAll(SyntaxTree ast) throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < RUNS; i++)
+            {
+                Environment initial = new Environment();
+                initial.updateEnvironment(name("n"), i);
+                results.add(pool.submit(
+                        () -> String.valueOf(ast.evaluate(initial))));
+            }
+            List<String> out = new ArrayList<>();
+            for (Future<String> f : results)
+                out.add(f.get());
+            return out;
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void evaluatesOnManyThreads() throws Exception
+    {
+        String program = "val sq := n * n; "
+                + "let k := sq + 1 in let j := k - n in [j, hd [k, n], n mod 3];";
+        for (Backend b : Backend.values())
+            for (boolean parallel : new boolean[] { false, true })
+            {
+                SyntaxTree ast = new MFLParser(program).parse();
+                ast.setBackend(b);
+                ast.setParallel(parallel);
+                List<String> results = evaluateAll(ast);
+                for (int n = 0; n < RUNS; n++)
+                    assertEquals(b + " n = " + n, "[" + (n * n + 1 - n) + ", "
+                            + (n * n + 1) + ", " + n % 3 + "]", results.get(n));
+            }
+    }
+
+    @Test
+    public void evaluatesIntsAndRealsAlike() throws Exception
+    {
+        // The first evaluation binds a real, so the tree walker specializes
+        // the division and product to reals; the ints that follow must
+        // still give ints.
+        String program = "val y := x / 2; y * 3;";
+        for (Backend b : Backend.values())
+        {
+            SyntaxTree ast = new MFLParser(program).parse();
+            ast.setBackend(b);
+            Environment real = new Environment();
+            real.updateEnvironment(name("x"), 5.0);
+            assertEquals(b.toString(), 7.5, ast.evaluate(real));
+
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            try
+            {
+                List<Future<Object>> results = new ArrayList<>();
+                for (int i = 0; i < RUNS; i++)
+                {
+                    Environment initial = new Environment();
+                    initial.updateEnvironment(name("x"),
+                            i % 2 == 0 ? (Object) 5 : (Object) 5.0);
+                    results.add(pool.submit(() -> ast.evaluate(initial)));
+                }
+                for (int i = 0; i < RUNS; i++)
+                    assertEquals(b + " run " + i, i % 2 == 0 ? (Object) 6
+                            : (Object) 7.5, results.get(i).get());
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void leavesInitialEnvironmentAlone()
+            throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = new MFLParser("val a := n + 1; a * 2;").parse();
+        Environment initial = new Environment();
+        initial.updateEnvironment(name("n"), 20);
+
+        assertEquals(42, ast.evaluate(initial));
+        // The vals are bound again, in an environment of their own.
+        assertEquals(42, ast.evaluate(initial));
+        assertNull(initial.lookup(name("a")));
+        assertNull(ast.getEnvironment().lookup(name("a")));
+    }
+}
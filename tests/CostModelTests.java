@@ -0,0 +1,89 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ast.CostModel;
+import ast.nodes.BinOpNode;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of the static cost estimates.
+ */
+public class CostModelTests
+{
+    /**
+     * Parses a program of one statement, returning the statement.
+     */
+    private SyntaxNode parse(String program) throws ParseException
+    {
+        ProgNode prog = (ProgNode) new MFLParser(program).parse().getRootNode();
+        return prog.getStatements().getFirst();
+    }
+
+    @Test
+    public void countsNodes() throws ParseException
+    {
+        assertEquals(1, CostModel.cost(parse("7;")));
+        assertEquals(5, CostModel.cost(parse("1 + 2 * 3;")));
+        assertEquals(4, CostModel.cost(parse("hd (x + 1);")));
+    }
+
+    @Test
+    public void chargesForLists() throws ParseException
+    {
+        // Four nodes, and one per element built.
+        assertEquals(4 + 3, CostModel.cost(parse("[1, 2, 3];")));
+        // Building both lists, then copying their elements.
+        assertEquals(1 + (3 + 2) + (2 + 1) + 3,
+                CostModel.cost(parse("[1, 2] ++ [3];")));
+        // Copying a list of unknown length.
+        assertEquals(2 + CostModel.COPY_COST, CostModel.cost(parse("sort x;")));
+        // A tail shares the elements of its list.
+        assertEquals(2, CostModel.cost(parse("tl x;")));
+    }
+
+    @Test
+    public void estimatesAgainForNewRoots() throws ParseException
+    {
+        SyntaxNode root = parse("1 + 2;");
+        BinOpNode bin = (BinOpNode) root;
+        bin.getLeftTerm().setCost(100);
+        assertEquals(3, CostModel.estimate(root));
+        assertEquals(1, bin.getLeftTerm().getCost());
+    }
+
+    @Test
+    public void forksOnlyCostlyOperands() throws ParseException
+    {
+        StringBuilder sb = new StringBuilder("1");
+        for (int i = 0; i < CostModel.getForkThreshold(); i++)
+            sb.append(" + 1");
+        String costly = "(" + sb + ")";
+
+        assertTrue(CostModel.forksOperands(parse(costly + " * " + costly + ";")));
+        assertTrue(CostModel.forksOperands(parse(costly + " <= " + costly + ";")));
+        assertFalse(CostModel.forksOperands(parse(costly + " * 2;")));
+        assertFalse(CostModel.forksOperands(parse("[" + costly + ", " + costly + "];")));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of common subexpression elimination.
+ */
+public class CseTests extends LangTest
+{
+    private static final String[] PROGRAMS = {
+        "let x := [1, 2, 3] in len x * len x;",
+        "let x := 4 in (x + 1) * (x + 1) - (x + 1);",
+        "let l := [1, 2, 3, 4] in hd tl tl l + hd tl tl l;",
+        "let x := 1 in (x + 1) * (let x := 2 in x + 1);",
+        "let x := 3 in let y := x * x in x * x + y;",
+        "val v := 5; let a := v * 2 in (v * 2) + a;",
+        "let x := 2 in x > 1 and x * x > 3 or x * x = 4;",
+        "let l := [1] in [hd l + 1, hd l + 1] ++ [hd l + 1];",
+    };
+
+    private SyntaxTree check(String program) throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        assertTrue(ast.typeCheck());
+        return ast;
+    }
+
+    @Test
+    public void keepsResults() throws ParseException, EvaluationException
+    {
+        for (String program : PROGRAMS)
+            runBackendTest(program, program,
+                    check(program).evaluate().toString(),
+                    SyntaxTree::eliminateCommonSubexpressions);
+    }
+
+    @Test
+    public void countsEliminatedNodes() throws ParseException
+    {
+        // len x: 2 nodes, evaluated once instead of twice.
+        assertEquals(2, check("let x := [1, 2, 3] in len x * len x;")
+                .eliminateCommonSubexpressions());
+        // v + 1: 3 nodes, once instead of three times.
+        assertEquals(6, check("val v := 4; (v + 1) * (v + 1) - (v + 1);")
+                .eliminateCommonSubexpressions());
+        // hd tl tl l: 4 nodes; its subexpressions are shared with it.
+        assertEquals(4, check("let l := [1, 2] in hd tl tl l + hd tl tl l;")
+                .eliminateCommonSubexpressions());
+    }
+
+    @Test
+    public void respectsScopes() throws ParseException
+    {
+        // The two x * (x + 1) refer to different bindings of x.
+        assertEquals(0, check("val v := 1; let x := len [v] in "
+                + "x * (x + 1) * (let x := len [v, v] in x * (x + 1));")
+                .eliminateCommonSubexpressions());
+        // Statements are optimized separately.
+        assertEquals(0, check("val v := 5; v * 2; v * 2;")
+                .eliminateCommonSubexpressions());
+    }
+
+    @Test
+    public void keepsConditionalOperands()
+            throws ParseException, EvaluationException
+    {
+        // Hoisting hd l out of the right operand would fail on [].
+        SyntaxTree ast = check("let l := tl [1] in len l = 0 or hd l + hd l > 0;");
+        ast.eliminateCommonSubexpressions();
+        assertEquals("true", ast.evaluate().toString());
+
+        ast = check("let l := tl [1] in len l > 0 and hd l = 1 or len l = 0;");
+        assertEquals(0, ast.eliminateCommonSubexpressions());
+        assertEquals("true", ast.evaluate().toString());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of dead top-level val elimination.
+ */
+public class DeadValTests
+{
+    private SyntaxTree check(String program) throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        assertTrue(ast.typeCheck());
+        return ast;
+    }
+
+    @Test
+    public void skipsUnusedVals() throws ParseException, EvaluationException
+    {
+        String program = "val a := 2; val b := [a, 3]; val c := len b; "
+                + "val d := a * 10; 7; d + 1;";
+        for (Backend backend : Backend.values())
+        {
+            SyntaxTree ast = check(program);
+            ast.setBackend(backend);
+            // b, c and the expression statement 7.
+            assertEquals(3, ast.eliminateDeadVals(false));
+            assertEquals("21", ast.evaluate().toString());
+        }
+    }
+
+    @Test
+    public void keepsFailingVals() throws ParseException
+    {
+        // e may fail, so it is evaluated, and so is l, which it uses.
+        String program = "val l := [1]; val e := hd tl l; val k := 5; k;";
+        SyntaxTree ast = check(program);
+        assertEquals(0, ast.eliminateDeadVals(false));
+        try
+        {
+            ast.evaluate();
+            fail("hd of an empty list did not fail");
+        }
+        catch (EvaluationException ex)
+        {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void assumesTotality() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = check("val l := [1]; val e := hd tl l; val k := 5; k;");
+        assertEquals(2, ast.eliminateDeadVals(true));
+        assertEquals("5", ast.evaluate().toString());
+    }
+
+    @Test
+    public void keepsTheResult() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = check("val a := 1; val b := a + 1;");
+        assertEquals(0, ast.eliminateDeadVals(false));
+        assertEquals("b", ast.evaluate().toString());
+    }
+}
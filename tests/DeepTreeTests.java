@@ -0,0 +1,260 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.MemoCache;
+import ast.StackEvaluator;
+import ast.StackTypeChecker;
+import ast.SyntaxTree;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TokenNode;
+import ast.nodes.ValNode;
+import ast.typesystem.TypeException;
+import ast.typesystem.inferencer.Inferencer;
+import environment.Environment;
+import environment.TypeEnvironment;
+import lexer.Symbol;
+import lexer.Token;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of type checking and evaluating trees too deep to walk recursively.
+ */
+public class DeepTreeTests extends LangTest
+{
+    private static final String[] PROGRAMS = {
+        "val a := 1; val b := 2; val c := a + b; val d := c * a; d + b;",
+        "val x := [1, 2, 3]; val y := len x; val z := hd x; y * 10 + z;",
+        "val p := 3; 7; val q := let p := 4 in p * p; p + q;",
+        "let xs := [1.5, 2.5] in -hd tl xs * 2.0 + len xs;",
+        "let b := 1 < 2 in not b or (3 = 3 and 2.5 >= 1);",
+        "[[1, 2], [3]] ++ [tl [4]];",
+        "tl [true];",
+        "[];",
+    };
+
+    /**
+     * Builds {@code x + 1 + ... + 1} with {@code terms} ones, in a let
+     * binding x to {@code start}.
+     */
+    private static String chain(String start, int terms, String last)
+    {
+        StringBuilder sb = new StringBuilder("let x := ").append(start)
+                .append(" in x");
+        for (int i = 1; i < terms; i++)
+            sb.append(" + 1");
+        return sb.append(" + ").append(last).append(";").toString();
+    }
+
+    /**
+     * Builds {@code depth} nested lets, each binding one more than the last.
+     */
+    private static String lets(int depth)
+    {
+        StringBuilder sb = new StringBuilder("let a0 := 1 in ");
+        for (int i = 1; i < depth; i++)
+            sb.append("let a").append(i).append(" := a").append(i - 1)
+                    .append(" + 1 in ");
+        return sb.append("a").append(depth - 1).append(";").toString();
+    }
+
+    /**
+     * Parses a program to evaluate with a backend. If {@code type} is not
+     * null, the program is type checked and must have that type.
+     */
+    private SyntaxTree parse(String program, Backend backend, boolean lazy,
+            String type) throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        if (type != null)
+        {
+            assertTrue(ast.typeCheck());
+            try
+            {
+                assertEquals(type, ast.getType().toString());
+            }
+            catch (TypeException ex)
+            {
+                fail(ex.getMessage());
+            }
+        }
+        ast.setBackend(backend);
+        ast.setLazy(lazy);
+        return ast;
+    }
+
+    @Test
+    public void evaluatesLongChains() throws ParseException
+    {
+        String ints = chain("1", 20000, "1");
+        String reals = chain("0.5", 20000, "1.0");
+        for (Backend b : Backend.values())
+            for (boolean lazy : new boolean[] { false, true })
+            {
+                assertEquals(b.toString(), "20001",
+                        runCapturingOutput(parse(ints, b, lazy, null)));
+                assertEquals(b.toString(), "20001",
+                        runCapturingOutput(parse(ints, b, lazy, "int")));
+                assertEquals(b.toString(), "20000.5",
+                        runCapturingOutput(parse(reals, b, lazy, "real")));
+            }
+    }
+
+    @Test
+    public void evaluatesDeepLets() throws ParseException
+    {
+        String program = lets(1500);
+        for (Backend b : Backend.values())
+            for (boolean lazy : new boolean[] { false, true })
+                assertEquals(b.toString(), "1500",
+                        runCapturingOutput(parse(program, b, lazy, "int")));
+    }
+
+    @Test
+    public void reportsErrorsInDeepTrees() throws ParseException
+    {
+        String program = chain("1", 5000, "hd tl [1]");
+        for (Backend b : Backend.values())
+        {
+            String res = runCapturingOutput(parse(program, b, false, null));
+            assertTrue(res, res.endsWith("failed"));
+            assertEquals(1, res.split("\n").length - 1);
+        }
+
+        SyntaxTree ast = new MFLParser(chain("1", 5000, "true")).parse();
+        TypeEnvironment tenv = new TypeEnvironment();
+        ast.setTypeEnvironment(tenv);
+        try
+        {
+            ast.getType();
+            fail("int + bool type checked");
+        }
+        catch (TypeException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("(line 1)"));
+        }
+        // The name bound by the let is not left in scope.
+        assertNull(tenv.lookup(new Token(Symbol.intern("x"))));
+    }
+
+    @Test
+    public void walksOnlyDeepStatementsWithAStack()
+            throws ParseException, EvaluationException
+    {
+        int limit = StackEvaluator.getMaxRecursiveDepth();
+        for (int depth : new int[] { limit, limit + 1 })
+        {
+            // The val, its chain of depth - 2 operators, and a leaf.
+            StringBuilder deep = new StringBuilder("val b := a");
+            for (int i = 2; i < depth; i++)
+                deep.append(" + 1");
+            String program = "val a := 1 + 2; " + deep + "; b - a;";
+            for (Backend backend : Backend.values())
+                for (int mode = 0; mode < 3; mode++)
+                {
+                    SyntaxTree ast = new MFLParser(program).parse();
+                    ProgNode prog = (ProgNode) ast.getRootNode();
+                    assertEquals(depth,
+                            StackEvaluator.depth(prog.getStatements().get(1)));
+                    assertEquals(depth > limit ? 1 : 0,
+                            ast.getDeepStatements());
+                    assertTrue(ast.typeCheck());
+
+                    // The statements that are not deep are still optimized.
+                    prog = (ProgNode) ast.getRootNode();
+                    assertTrue(((ValNode) prog.getStatements().get(0))
+                            .getExpr() instanceof TokenNode);
+                    ast.setBackend(backend);
+                    ast.setParallel(mode == 1);
+                    ast.setCache(mode == 2 ? new MemoCache() : null);
+                    for (int i = 0; i < 2; i++)
+                        assertEquals(backend + " " + mode, depth - 2,
+                                ast.evaluate(new Environment()));
+                }
+        }
+    }
+
+    @Test
+    public void printsDeepTrees() throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(chain("1", 20000, "1")).parse();
+
+        // The program, the let, and each of the 20000 operators open and
+        // close; the let prints its in, and the leaves one line each.
+        String[] lines = captureOutput(ast::printTree).split("\n");
+        assertEquals(2 + 3 + 2 * 20000 + 20001, lines.length);
+        assertTrue(lines[0].startsWith("Prog("));
+        assertEquals(")", lines[lines.length - 1]);
+        String deepest = " ".repeat(SyntaxNode.MAX_INDENT) + "<20002> Token[x]";
+        assertTrue(lines[20004], lines[20004].startsWith(deepest));
+        for (String line : lines)
+            assertTrue(line, line.indexOf(line.trim())
+                    <= SyntaxNode.MAX_INDENT);
+    }
+
+    @Test
+    public void agreesWithRecursiveWalk()
+            throws ParseException, EvaluationException
+    {
+        for (String program : PROGRAMS)
+        {
+            SyntaxTree ast = new MFLParser(program).parse();
+            assertFalse(StackEvaluator.isDeep(ast.getRootNode()));
+
+            String expected;
+            try
+            {
+                expected = ast.getRootNode()
+                        .typeOf(new TypeEnvironment(), new Inferencer())
+                        .toString();
+            }
+            catch (TypeException ex)
+            {
+                expected = ex.getMessage();
+            }
+            String actual;
+            try
+            {
+                actual = StackTypeChecker.typeOf(ast.getRootNode(),
+                        new TypeEnvironment(), new Inferencer()).toString();
+            }
+            catch (TypeException ex)
+            {
+                actual = ex.getMessage();
+            }
+            assertEquals(program, expected, actual);
+
+            Environment env = new Environment();
+            env.ensureFrame(8);
+            Object value = ast.getRootNode().evaluate(env);
+            env = new Environment();
+            env.ensureFrame(8);
+            assertEquals(program, value,
+                    StackEvaluator.evaluate(ast.getRootNode(), env));
+        }
+    }
+}
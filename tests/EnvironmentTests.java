@@ -0,0 +1,84 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import ast.typesystem.types.IntType;
+import environment.Environment;
+import environment.TypeEnvironment;
+import lexer.Symbol;
+import lexer.Token;
+
+/**
+ * Tests of the persistent environments the interpreter snapshots between
+ * lines.
+ */
+public class EnvironmentTests
+{
+    private static Token id(String name)
+    {
+        return new Token(Symbol.intern(name));
+    }
+
+    @Test
+    public void copyIsIndependent()
+    {
+        Environment env = new Environment();
+        env.updateEnvironment(id("a"), 1);
+
+        Environment copy = env.copy();
+        copy.updateEnvironment(id("a"), 2);
+        copy.updateEnvironment(id("b"), 3);
+
+        assertEquals(1, env.lookup(id("a")));
+        assertNull(env.lookup(id("b")));
+        assertEquals(2, copy.lookup(id("a")));
+        assertEquals(3, copy.lookup(id("b")));
+    }
+
+    @Test
+    public void manyBindings()
+    {
+        Environment env = new Environment();
+        for (int i = 0; i < 5000; i++)
+            env.updateEnvironment(id("v" + i), i);
+
+        Environment snapshot = env.copy();
+        for (int i = 0; i < 5000; i += 2)
+            env.updateEnvironment(id("v" + i), null);
+
+        for (int i = 0; i < 5000; i++)
+        {
+            assertEquals(i, snapshot.lookup(id("v" + i)));
+            assertEquals(i % 2 == 0 ? null : i, env.lookup(id("v" + i)));
+        }
+    }
+
+    @Test
+    public void typeCopyIsIndependent()
+    {
+        TypeEnvironment tenv = new TypeEnvironment();
+        TypeEnvironment copy = tenv.copy();
+        copy.updateEnvironment(id("t"), new IntType());
+
+        assertNull(tenv.lookup(id("t")));
+        assertEquals("int", copy.lookup(id("t")).toString());
+        assertEquals(1, copy.getKnowVariables().size());
+    }
+}
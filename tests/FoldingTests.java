@@ -0,0 +1,107 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import ast.nodes.HeadNode;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TokenNode;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of constant folding after type checking.
+ */
+public class FoldingTests
+{
+    private SyntaxTree check(String program) throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        assertTrue(ast.typeCheck());
+        return ast;
+    }
+
+    /** Gets the only statement of a checked program. */
+    private SyntaxNode statement(SyntaxTree ast)
+    {
+        return ((ProgNode) ast.getRootNode()).getStatements().getFirst();
+    }
+
+    private void folds(String program, String value)
+            throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = check(program);
+        SyntaxNode s = statement(ast);
+        assertTrue(program, s instanceof TokenNode
+                && ((TokenNode) s).getLiteral() != null);
+        assertEquals(program, value, ast.evaluate().toString());
+    }
+
+    @Test
+    public void arithmetic() throws ParseException, EvaluationException
+    {
+        folds("3 * 2 + 4;", "10");
+        folds("7 / 2 + 1.5;", "4.5");
+        folds("-(7 mod 3) * 2;", "-2");
+    }
+
+    @Test
+    public void relationalAndLogical()
+            throws ParseException, EvaluationException
+    {
+        folds("1 + 1 = 2 and not (2.0 < 1.0);", "true");
+        folds("false and 1 < 2 or true;", "true");
+    }
+
+    @Test
+    public void listOperations() throws ParseException, EvaluationException
+    {
+        folds("len [1, 2, 3];", "3");
+        folds("hd tl [1, 2, 3];", "2");
+        folds("len ([1] ++ [2, 3]);", "3");
+    }
+
+    @Test
+    public void keepsVariables() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = check("let x := 2 in hd [x, 1 + 1] * (3 - 1);");
+        assertEquals("4", ast.evaluate().toString());
+    }
+
+    @Test
+    public void keepsFailures() throws ParseException
+    {
+        SyntaxTree ast = check("hd tl [1];");
+        assertTrue(statement(ast) instanceof HeadNode);
+
+        ast = check("1 + 4 / (2 - 2);");
+        try
+        {
+            ast.evaluate();
+        }
+        catch (ArithmeticException | EvaluationException ex)
+        {
+            return;
+        }
+        throw new AssertionError("division by zero was folded");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.RandomAccess;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.ListValue;
+import ast.SyntaxTree;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of taking the element of a list at an index.
+ */
+public class IndexTests extends LangTest
+{
+    @Test
+    public void indexesLists()
+    {
+        runTypeTest("indexesLists", "[3, 5, 7] ! 1;", "int");
+        runEvalTest("indexesLists", "[3, 5, 7] ! 1;", "5");
+        runEvalTest("indexesLists", "[3, 5, 7] ! 0;", "3");
+        runTypeTest("indexesLists", "[[1.5], [2.5, 3.5]] ! 1;", "[ real ]");
+        runCheckedEvalTest("indexesLists", "[[1.5], [2.5, 3.5]] ! 1 ! 0;",
+                "2.5");
+        runCheckedEvalTest("indexesLists", "tl [true, false] ! 0;", "false");
+        runCheckedEvalTest("indexesLists",
+                "let xs := [4, 8, 16] in xs ! (len xs - 1);", "16");
+    }
+
+    @Test
+    public void indexBindsTightly()
+    {
+        runEvalTest("indexBindsTightly", "2 * [3, 5, 7] ! 2 + 1;", "15");
+        runEvalTest("indexBindsTightly", "hd [[3, 5]] ! 1;", "5");
+        runEvalTest("indexBindsTightly", "[3, 5] ! hd [1];", "5");
+    }
+
+    @Test
+    public void rejectsIllTypedOperands() throws ParseException
+    {
+        for (String program : new String[] { "3 ! 0;", "[1, 2] ! 1.0;",
+                "[1, 2] ! true;", "[1] ! 0 and true;" })
+            assertFalse(program, new MFLParser(program).parse().typeCheck());
+    }
+
+    @Test
+    public void reportsIndicesOutOfBounds() throws ParseException
+    {
+        for (Backend b : Backend.values())
+            for (String program : new String[] { "[1, 2] ! 2;",
+                    "[1, 2] ! (0 - 1);", "tl [1] ! 0;" })
+            {
+                SyntaxTree ast = new MFLParser(program).parse();
+                assertTrue(ast.typeCheck());
+                ast.setBackend(b);
+                try
+                {
+                    ast.evaluate();
+                    fail(program + " on " + b);
+                }
+                catch (EvaluationException ex)
+                {
+                    // Expected.
+                }
+            }
+    }
+
+    @Test
+    public void agreesAcrossBackends()
+    {
+        runBackendTest("agreesAcrossBackends",
+                "val xs := [5, 3, 8, 1]; val i := 2;"
+                + " [xs ! 0, xs ! i, xs ! (i + 1), tl xs ! i, [xs] ! 0 ! 1];",
+                "[5, 8, 1, 1, 3]");
+    }
+
+    @Test
+    public void listsHaveRandomAccess()
+    {
+        ListValue list = new ListValue();
+        for (int i = 0; i < 1000; i++)
+            list.add(i * i);
+        assertTrue(list instanceof RandomAccess);
+        assertEquals(999 * 999, list.get(999));
+        assertEquals(1000, list.size());
+        try
+        {
+            list.get(1000);
+            fail();
+        }
+        catch (IndexOutOfBoundsException ex)
+        {
+            // Expected.
+        }
+    }
+}
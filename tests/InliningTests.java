@@ -0,0 +1,123 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import ast.nodes.BinOpNode;
+import ast.nodes.LetNode;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import ast.nodes.TokenNode;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of let inlining and dead binding elimination.
+ */
+public class InliningTests
+{
+    private SyntaxTree check(String program) throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        assertTrue(ast.typeCheck());
+        return ast;
+    }
+
+    /** Gets the last statement of a checked program. */
+    private SyntaxNode statement(SyntaxTree ast)
+    {
+        return ((ProgNode) ast.getRootNode()).getStatements().getLast();
+    }
+
+    private void fails(String program) throws ParseException
+    {
+        for (Backend b : Backend.values())
+        {
+            SyntaxTree ast = check(program);
+            ast.setBackend(b);
+            try
+            {
+                ast.evaluate();
+                fail(program + " did not fail on " + b);
+            }
+            catch (EvaluationException ex)
+            {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void inlinesTrivialBindings()
+            throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = check("let x := 3 in let y := x in y * x + y;");
+        assertTrue(statement(ast) instanceof TokenNode);
+        assertEquals("12", ast.evaluate().toString());
+    }
+
+    @Test
+    public void inlinesSingleUses() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = check("val v := [1, 2]; let x := hd v in x + 1;");
+        assertTrue(statement(ast) instanceof BinOpNode);
+        assertEquals("2", ast.evaluate().toString());
+
+        // Used twice: the list is built once.
+        ast = check("val v := 1; let l := [v, 2] in hd l + len l;");
+        assertTrue(statement(ast) instanceof LetNode);
+    }
+
+    @Test
+    public void dropsUnusedBindings()
+            throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = check("val v := 2; let x := [v * 3, len [v]] in 1;");
+        assertTrue(statement(ast) instanceof TokenNode);
+        assertEquals("1", ast.evaluate().toString());
+    }
+
+    @Test
+    public void keepsFailures() throws ParseException
+    {
+        // Unused, but hd of an empty list fails.
+        fails("val v := [1]; let x := hd tl v in 1;");
+        // Used once, but only when the left operand does not decide.
+        String program =
+                "val v := [1]; let x := hd tl v in len v = 1 or x > 0;";
+        assertTrue(statement(check(program)) instanceof LetNode);
+        fails(program);
+    }
+
+    @Test
+    public void avoidsCapture() throws ParseException, EvaluationException
+    {
+        String program = "val y := 1; let x := y + 1 in let y := 10 in x * y;";
+        for (Backend b : Backend.values())
+        {
+            SyntaxTree ast = check(program);
+            ast.setBackend(b);
+            assertEquals(b.toString(), "20", ast.evaluate().toString());
+        }
+    }
+}
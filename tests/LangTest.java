@@ -16,7 +16,13 @@
  */
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.function.Consumer;
+
+import ast.Backend;
 import ast.EvaluationException;
 import ast.SyntaxTree;
 import ast.typesystem.TypeException;
@@ -91,4 +97,140 @@ public class LangTest {
 
         assertEquals(name + ":", expected, res.toString());
     }
+
+    /**
+     * Type check the expression and then evaluate it, so that the evaluator
+     * may use the static types recorded during type checking.
+     * 
+     * @param name      the name of the test.
+     * @param statement the statement to evaluate.
+     * @param expected  the expected output of the test.
+     */
+    public void runCheckedEvalTest(String name, String statement,
+            String expected)
+    {
+        MFLParser p = new MFLParser(statement);
+        SyntaxTree ast = null;
+        try {
+            ast = p.parse();
+        } catch (ParseException e) {
+            assertFalse(name + ": Bad parse " + e, true);
+        }
+        Object res = null;
+
+        try
+        {
+            ast.getType();
+            res = ast.evaluate();
+        }
+        catch (TypeException ex)
+        {
+            assertFalse(name + ": Unexpected type error " + ex, true);
+        }
+        catch (EvaluationException ex)
+        {
+            assertFalse(name + ": Unexpected Exception.", true);
+        }
+
+        assertEquals(name + ":", expected, res.toString());
+    }
+    /**
+     * Type check the program and evaluate it with each backend in turn,
+     * expecting the same output from all of them.
+     * 
+     * @param name     the name of the test.
+     * @param program  the program to evaluate.
+     * @param expected the expected output of the test.
+     */
+    public void runBackendTest(String name, String program, String expected)
+    {
+        runBackendTest(name, program, expected, ast -> {});
+    }
+
+    /**
+     * Type check the program, rewrite it with {@code prepare}, and evaluate
+     * it with each backend in turn, expecting the same output from all of
+     * them.
+     * 
+     * @param name     the name of the test.
+     * @param program  the program to evaluate.
+     * @param expected the expected output of the test.
+     * @param prepare  the rewriting applied to the checked tree.
+     */
+    public void runBackendTest(String name, String program, String expected,
+            Consumer<SyntaxTree> prepare)
+    {
+        for (Backend b : Backend.values())
+        {
+            MFLParser p = new MFLParser(program);
+            SyntaxTree ast = null;
+            try {
+                ast = p.parse();
+            } catch (ParseException e) {
+                assertFalse(name + ": Bad parse " + e, true);
+            }
+            Object res = null;
+
+            try
+            {
+                assertTrue(name + ": Type error.", ast.typeCheck());
+                prepare.accept(ast);
+                ast.setBackend(b);
+                res = ast.evaluate();
+            }
+            catch (EvaluationException ex)
+            {
+                assertFalse(name + " on " + b + ": Unexpected Exception.",
+                        true);
+            }
+
+            assertEquals(name + " on " + b + ":", expected,
+                    String.valueOf(res));
+        }
+    }
+
+    /**
+     * Perform an action, returning what it printed to standard output.
+     * 
+     * @param action the action to perform.
+     * @return the text printed by the action.
+     */
+    public String captureOutput(Runnable action)
+    {
+        PrintStream out = System.out;
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buf, true));
+        try
+        {
+            action.run();
+        }
+        finally
+        {
+            System.setOut(out);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Evaluate the tree, returning what it printed followed by its result,
+     * or by "failed" if it could not be evaluated.
+     * 
+     * @param ast the tree to evaluate.
+     * @return the output and the result of the tree.
+     */
+    public String runCapturingOutput(SyntaxTree ast)
+    {
+        String[] res = { "failed" };
+        String printed = captureOutput(() -> {
+            try
+            {
+                res[0] = String.valueOf(ast.evaluate());
+            }
+            catch (EvaluationException ex)
+            {
+                // Reported as failed.
+            }
+        });
+        return printed + res[0];
+    }
 }
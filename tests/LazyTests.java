@@ -0,0 +1,83 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.SyntaxTree;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of lazy let and val bindings.
+ */
+public class LazyTests extends LangTest
+{
+    private static final String[] PROGRAMS = {
+        "let x := 5 in x * x + (let x := 2 in x);",
+        "let a := (let b := 1 in b + 1) in a + a;",
+        "let x := 2 in let x := x + 1 in x * x;",
+        "val y := 3; val z := y * 2; z + y;",
+        "let l := [1, 2, 3] in hd tl l + len l;",
+    };
+
+    private SyntaxTree parse(String program, Backend backend, boolean lazy)
+            throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        ast.setBackend(backend);
+        ast.setLazy(lazy);
+        return ast;
+    }
+
+    @Test
+    public void lazyAgreesWithEager() throws ParseException
+    {
+        for (String program : PROGRAMS)
+        {
+            String expected = runCapturingOutput(
+                    parse(program, Backend.TREE, false));
+            assertFalse(expected, expected.endsWith("failed"));
+            for (Backend b : Backend.values())
+                assertEquals(b + ": " + program, expected,
+                        runCapturingOutput(parse(program, b, true)));
+        }
+    }
+
+    @Test
+    public void unusedBindingNotEvaluated() throws ParseException
+    {
+        for (Backend b : Backend.values())
+        {
+            assertEquals("5", runCapturingOutput(
+                    parse("let x := hd tl [1] in 5;", b, true)));
+            assertEquals("3", runCapturingOutput(
+                    parse("val a := hd tl [1]; 3;", b, true)));
+        }
+    }
+
+    @Test
+    public void usedBindingFails() throws ParseException
+    {
+        String res = runCapturingOutput(
+                parse("let x := hd tl [1] in x + 1;", Backend.TREE, true));
+        assertTrue(res, res.endsWith("failed"));
+    }
+}
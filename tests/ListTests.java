@@ -15,8 +15,16 @@
  *   You should have received a copy of the GNU General Public License
  *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
 import org.junit.Test;
 
+import ast.ListValue;
+
 public class ListTests extends LangTest
 {
     /*
@@ -208,4 +216,64 @@ public class ListTests extends LangTest
         runEvalTest("nestedTlTest", "tl(tl([3, 4, 5]));",
                 "[5]");
     }
+
+    /*
+     * Tests of list equality.
+     */
+
+    @Test
+    public void intListEquality()
+    {
+        runTypeTest("intListEquality", "[1, 2, 3] = [1, 2, 3];", "bool");
+        runEvalTest("intListEquality", "[1, 2, 3] = [1, 2, 3];", "true");
+        runEvalTest("intListEquality", "[1, 2, 3] = [1, 2, 4];", "false");
+        runEvalTest("intListEquality", "[1, 2, 3] != tl [0, 1, 2, 3];",
+                "false");
+        runEvalTest("intListEquality", "[1, 2] = [1, 2, 3];", "false");
+        runEvalTest("intListEquality", "tl [1] = tl [2];", "true");
+    }
+
+    @Test
+    public void realListEquality()
+    {
+        runEvalTest("realListEquality", "[1.5, 2.5] = [1.5] ++ [2.5];",
+                "true");
+        runEvalTest("realListEquality", "[1.5, 2.5] != [1.5, 2.0];", "true");
+    }
+
+    @Test
+    public void nestedListEquality()
+    {
+        runTypeTest("nestedListEquality", "[[1, 2], [3]] = [[1, 2], [3]];",
+                "bool");
+        runEvalTest("nestedListEquality", "[[1, 2], [3]] = [[1, 2], [3]];",
+                "true");
+        runEvalTest("nestedListEquality",
+                "let xs := [[1, 2], [3]] in xs = [[1, 2], [4]];", "false");
+        runEvalTest("nestedListEquality",
+                "let xs := [true, false] in [xs, xs] = [xs, [true, false]];",
+                "true");
+    }
+
+    @Test
+    public void listValueMatchesLinkedList()
+    {
+        ListValue ints = new ListValue(Arrays.asList(1, 2, 3));
+        LinkedList<Object> plain = new LinkedList<>(Arrays.asList(1, 2, 3));
+        assertEquals(plain, ints);
+        assertEquals(ints, plain);
+        assertEquals(plain.hashCode(), ints.hashCode());
+
+        // A list changed after hashing is hashed again.
+        ints.add(4);
+        plain.add(4);
+        assertEquals(plain.hashCode(), ints.hashCode());
+        assertEquals(new ListValue(plain), ints);
+
+        // Reals compare as Double.equals does.
+        assertNotEquals(new ListValue(Arrays.asList(0.0)),
+                new ListValue(Arrays.asList(-0.0)));
+        assertEquals(new ListValue(Arrays.asList(Double.NaN)),
+                new ListValue(Arrays.asList(Double.NaN)));
+    }
 }
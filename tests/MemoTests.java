@@ -0,0 +1,128 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.MemoCache;
+import ast.SyntaxTree;
+import environment.Environment;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of caching the values of top-level statements.
+ */
+public class MemoTests
+{
+    /**
+     * Evaluates a line in an environment, as the REPL does, with a cache.
+     */
+    private static Object line(String program, Environment env, MemoCache memo,
+            Backend backend) throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        ast.setEnvironment(env);
+        ast.setBackend(backend);
+        ast.setCache(memo);
+        return ast.evaluate();
+    }
+
+    @Test
+    public void reusesValuesOfRepeatedLines()
+            throws ParseException, EvaluationException
+    {
+        for (Backend b : Backend.values())
+        {
+            MemoCache memo = new MemoCache();
+            Environment env = new Environment();
+            line("val xs := [1, 2, 3];", env, memo, b);
+            Object first = line("let n := len xs in n * hd xs + 1;", env, memo, b);
+            Object again = line("let n := len xs in n * hd xs + 1;", env, memo, b);
+
+            assertEquals(4, first);
+            assertEquals(4, again);
+            assertEquals(b.toString(), 1, memo.getHits());
+            assertEquals(2, memo.getMisses());
+        }
+    }
+
+    @Test
+    public void missesWhenValsChange()
+            throws ParseException, EvaluationException
+    {
+        MemoCache memo = new MemoCache();
+        Environment a = new Environment();
+        Environment b = new Environment();
+        line("val x := 1000;", a, memo, Backend.CLOSURE);
+        line("val x := 2000;", b, memo, Backend.CLOSURE);
+
+        assertEquals(1001, line("x + 1;", a, memo, Backend.CLOSURE));
+        assertEquals(2001, line("x + 1;", b, memo, Backend.CLOSURE));
+        assertEquals(1001, line("x + 1;", a, memo, Backend.CLOSURE));
+        // Only the last lookup of x + 1 hits.
+        assertEquals(1, memo.getHits());
+
+        // Different literals and names are different expressions.
+        assertEquals(1001.0, line("x + 1.0;", a, memo, Backend.CLOSURE));
+        assertEquals(2, line("let y := 1 in y + 1;", a, memo, Backend.CLOSURE));
+        assertEquals(2, line("let z := 1 in z + 1;", a, memo, Backend.CLOSURE));
+        assertEquals(1, memo.getHits());
+    }
+
+    @Test
+    public void evaluatesFailingStatementsEveryTime() throws ParseException
+    {
+        MemoCache memo = new MemoCache();
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                line("hd tl [1];", new Environment(), memo, Backend.CLOSURE);
+                fail("hd of an empty list did not fail");
+            }
+            catch (EvaluationException ex)
+            {
+                // Expected.
+            }
+        }
+        assertEquals(0, memo.getHits());
+        assertEquals(0, memo.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed()
+            throws ParseException, EvaluationException
+    {
+        MemoCache memo = new MemoCache(2);
+        Environment env = new Environment();
+        line("1 + 1;", env, memo, Backend.TREE);
+        line("2 + 2;", env, memo, Backend.TREE);
+        line("1 + 1;", env, memo, Backend.TREE);   // Hit; 2 + 2 is oldest.
+        line("3 + 3;", env, memo, Backend.TREE);   // Evicts 2 + 2.
+        line("1 + 1;", env, memo, Backend.TREE);
+        line("2 + 2;", env, memo, Backend.TREE);
+
+        assertEquals(2, memo.getHits());
+        assertEquals(4, memo.getMisses());
+        assertEquals(2, memo.getEvictions());
+        assertEquals(2, memo.size());
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.CostModel;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import ast.nodes.LetNode;
+import ast.nodes.ProgNode;
+import lexer.Symbol;
+import lexer.Token;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of evaluating top-level vals, wide lists and costly operands in
+ * parallel.
+ */
+public class ParallelTests extends LangTest
+{
+    private static final String[] PROGRAMS = {
+        "val a := 1; val b := 2; val c := a + b; val d := c * a; d + b;",
+        "val x := [1, 2, 3]; val y := len x; val z := hd x; y * 10 + z;",
+        "val p := 3; 7; val q := let p := 4 in p * p; p + q;",
+        "val s := 1; val t := s + 1;",
+    };
+
+    /**
+     * Builds a program with a list literal wide enough to fork, whose
+     * elements at the given indices fail.
+     */
+    private static String wideList(int... failing)
+    {
+        StringBuilder sb = new StringBuilder("val x := 5; [");
+        for (int i = 0; i < 600; i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            int index = i;
+            if (Arrays.stream(failing).anyMatch(f -> f == index))
+                sb.append("hd tl [").append(i).append("]");
+            else
+                sb.append("let y := x + ").append(i).append(" in y * y - ")
+                        .append("(x mod 3) * ").append(i);
+        }
+        return sb.append("];").toString();
+    }
+
+    /**
+     * Builds a sum of {@code terms} products of x, costly enough to fork.
+     */
+    private static String sum(int terms)
+    {
+        StringBuilder sb = new StringBuilder("(x");
+        for (int i = 1; i < terms; i++)
+            sb.append(" + x * ").append(i);
+        return sb.append(")").toString();
+    }
+
+    private SyntaxTree parse(String program, Backend backend, boolean parallel)
+            throws ParseException
+    {
+        return parse(program, backend, parallel, false);
+    }
+
+    private SyntaxTree parse(String program, Backend backend, boolean parallel,
+            boolean typed) throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(program).parse();
+        if (typed)
+            assertTrue(ast.typeCheck());
+        ast.setBackend(backend);
+        ast.setParallel(parallel);
+        return ast;
+    }
+
+    @Test
+    public void agreesWithSequential() throws ParseException
+    {
+        for (String program : PROGRAMS)
+            for (Backend b : Backend.values())
+                assertEquals(program + " on " + b,
+                        runCapturingOutput(parse(program, b, false)),
+                        runCapturingOutput(parse(program, b, true)));
+    }
+
+    @Test
+    public void reportsFirstErrorInSourceOrder() throws ParseException
+    {
+        String program = "val a := hd tl [1]; val b := 1 + 1; "
+                + "val c := hd tl [2, 3]; val d := tl tl tl [4]; b;";
+        for (Backend b : Backend.values())
+        {
+            String expected = runCapturingOutput(parse(program, b, false));
+            assertEquals(program + " on " + b, expected,
+                    runCapturingOutput(parse(program, b, true)));
+            assertEquals(1, expected.split("\n").length - 1);
+        }
+    }
+
+    @Test
+    public void forksWideLists() throws ParseException
+    {
+        String program = wideList();
+        for (Backend b : Backend.values())
+            assertEquals(b.toString(),
+                    runCapturingOutput(parse(program, b, false)),
+                    runCapturingOutput(parse(program, b, true)));
+    }
+
+    @Test
+    public void reportsFirstFailingElement() throws ParseException
+    {
+        String program = wideList(20, 310, 580);
+        for (Backend b : Backend.values())
+        {
+            String expected = runCapturingOutput(parse(program, b, false));
+            assertEquals(b.toString(), expected,
+                    runCapturingOutput(parse(program, b, true)));
+            assertEquals(1, expected.split("\n").length - 1);
+        }
+    }
+
+    @Test
+    public void forksCostlyOperands() throws ParseException
+    {
+        String[] programs = {
+            "let x := 3 in " + sum(300) + " * " + sum(300) + ";",
+            "let x := 1.5 in " + sum(300) + " - " + sum(300) + ";",
+            "let x := 2 in " + sum(300) + " < " + sum(301) + ";",
+            "let x := 2 in " + sum(300) + " = " + sum(300) + ";",
+        };
+        for (String program : programs)
+        {
+            ProgNode prog = (ProgNode) parse(program, Backend.TREE, true)
+                    .getRootNode();
+            assertTrue(CostModel.forksOperands(
+                    ((LetNode) prog.getStatements().getFirst()).getBody()));
+            for (Backend b : Backend.values())
+                for (boolean typed : new boolean[] { false, true })
+                    assertEquals(b + (typed ? " typed" : ""),
+                            runCapturingOutput(parse(program, b, false, typed)),
+                            runCapturingOutput(parse(program, b, true, typed)));
+        }
+    }
+
+    @Test
+    public void reportsLeftOperandErrorFirst() throws ParseException
+    {
+        String program = "let x := 3 in (" + sum(300) + " + hd tl [1]) * ("
+                + sum(300) + " + hd tl [2]);";
+        for (Backend b : Backend.values())
+        {
+            String expected = runCapturingOutput(parse(program, b, false));
+            assertEquals(b.toString(), expected,
+                    runCapturingOutput(parse(program, b, true)));
+            assertEquals(1, expected.split("\n").length - 1);
+        }
+    }
+
+    @Test
+    public void bindsValsInEnvironment()
+            throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = parse("val m := 6; val n := m * 7; n;",
+                Backend.CLOSURE, true);
+        assertEquals("42", ast.evaluate().toString());
+        assertNotNull(ast.getEnvironment().lookup(new Token(Symbol.intern("m"))));
+        assertEquals(42, ast.getEnvironment().lookup(new Token(Symbol.intern("n"))));
+
+        // Binding the vals again fails, as it does in order.
+        try
+        {
+            ast.evaluate();
+            fail("vals were bound twice");
+        }
+        catch (EvaluationException ex)
+        {
+            // Expected.
+        }
+    }
+}
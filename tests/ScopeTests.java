@@ -57,4 +57,26 @@ public class ScopeTests extends LangTest
         runEvalTest("shadowLetValScope", "val x := 5;\nlet x := 3 in x * 2 + 5;",
                 "11");
     }
+
+    @Test
+    public void shadowEndsScope()
+    {
+        runEvalTest("shadowEndsScope", "let x := 5 in (let x := 3 in x) + x;",
+                "8");
+    }
+
+    @Test
+    public void boundOutsideScope()
+    {
+        runEvalTest("boundOutsideScope",
+                "let x := 2 in let x := x + 1 in x * x;", "9");
+    }
+
+    @Test
+    public void siblingScopes()
+    {
+        runEvalTest("siblingScopes",
+                "let a := (let b := 1 in b) in a + (let c := 2 in c) + a;",
+                "4");
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ast.ListValue;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of taking and dropping the first elements of lists.
+ */
+public class SliceTests extends LangTest
+{
+    @Test
+    public void takesAndDrops()
+    {
+        runTypeTest("takesAndDrops", "take 2 [3, 5, 7];", "[ int ]");
+        runEvalTest("takesAndDrops", "take 2 [3, 5, 7];", "[3, 5]");
+        runEvalTest("takesAndDrops", "drop 2 [3, 5, 7];", "[7]");
+        runTypeTest("takesAndDrops", "drop 1 [true];", "[ bool ]");
+        runCheckedEvalTest("takesAndDrops", "drop 1 [true];", "[]");
+        runCheckedEvalTest("takesAndDrops", "take 1 [[1.5], [2.5]];",
+                "[[1.5]]");
+    }
+
+    @Test
+    public void clampsCounts()
+    {
+        runEvalTest("clampsCounts", "take 9 [3, 5, 7];", "[3, 5, 7]");
+        runEvalTest("clampsCounts", "drop 9 [3, 5, 7];", "[]");
+        runEvalTest("clampsCounts", "take (0 - 1) [3, 5, 7];", "[]");
+        runEvalTest("clampsCounts", "drop (0 - 1) [3, 5, 7];", "[3, 5, 7]");
+        runCheckedEvalTest("clampsCounts", "take 0 tl [1];", "[]");
+    }
+
+    @Test
+    public void slicesActAsLists()
+    {
+        runEvalTest("slicesActAsLists",
+                "let ys := drop 1 take 4 [1, 2, 3, 4, 5] in"
+                        + " [len ys, hd ys, hd tl ys, ys ! 2];",
+                "[3, 2, 3, 4]");
+        runEvalTest("slicesActAsLists",
+                "let ys := drop 1 [1, 2, 3, 4] in take 2 ys ++ drop 2 ys = ys;",
+                "true");
+        runEvalTest("slicesActAsLists",
+                "drop 2 tl [1, 2, 3, 4] ++ take 1 [9, 8];", "[4, 9]");
+        runEvalTest("slicesActAsLists", "sum drop 1 [1, 2, 3] = 5;", "true");
+        runEvalTest("slicesActAsLists", "elem 1 drop 1 [1, 2, 3];", "false");
+    }
+
+    @Test
+    public void rejectsIllTypedOperands() throws ParseException
+    {
+        for (String program : new String[] { "take 1.0 [1];", "drop 1 2;",
+                "take [1] [1];", "drop 1 [1] = [true];" })
+            assertFalse(program, new MFLParser(program).parse().typeCheck());
+    }
+
+    @Test
+    public void agreesAcrossBackends()
+    {
+        runBackendTest("agreesAcrossBackends",
+                "val xs := [5, 3, 8, 1, 9]; val n := 2;"
+                + " [take n xs, drop n xs, drop 1 take 4 tl xs,"
+                + " take 9 xs ++ drop 9 xs, [len (drop n xs)]];",
+                "[[5, 3], [8, 1, 9], [8, 1, 9], [5, 3, 8, 1, 9], [3]]");
+    }
+
+    @Test
+    public void slicesShareTheirList()
+    {
+        ListValue list = new ListValue(Arrays.asList(1, 2, 3, 4, 5));
+        ListValue tail = ListValue.slice(list, 1, 5);
+        ListValue mid = ListValue.slice(tail, 1, 3);
+        assertEquals(Arrays.asList(3, 4), mid);
+        assertEquals(new ListValue(Arrays.asList(3, 4)).hashCode(),
+                mid.hashCode());
+        assertSame(mid, ListValue.slice(mid, 0, 2));
+        assertEquals(Arrays.asList(2, 3, 4, 5, 3, 4),
+                ListValue.concat(tail, mid));
+
+        // Adding to the list leaves its slices as they were.
+        list.add(6);
+        assertEquals(Arrays.asList(2, 3, 4, 5), tail);
+        try
+        {
+            tail.add(6);
+            fail();
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ast.ListValue;
+import ast.SortedLists;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests of sorting lists and searching them.
+ */
+public class SortTests extends LangTest
+{
+    @Test
+    public void sortsNumbers()
+    {
+        runTypeTest("sortsNumbers", "sort [3, 1, 2];", "[ int ]");
+        runEvalTest("sortsNumbers", "sort [3, 1, 2, 1];", "[1, 1, 2, 3]");
+        runTypeTest("sortsNumbers", "sort [2.5, -1.0];", "[ real ]");
+        runCheckedEvalTest("sortsNumbers", "sort [2.5, -1.0, 0.5];",
+                "[-1.0, 0.5, 2.5]");
+        runCheckedEvalTest("sortsNumbers", "sort [];", "[]");
+        runCheckedEvalTest("sortsNumbers", "hd sort [4, 9, -2] + len sort [];",
+                "-2");
+    }
+
+    @Test
+    public void findsElements()
+    {
+        runTypeTest("findsElements", "elem 3 [1, 2, 3];", "bool");
+        runEvalTest("findsElements", "elem 3 [1, 2, 3];", "true");
+        runEvalTest("findsElements", "elem 4 [3, 1, 2];", "false");
+        runEvalTest("findsElements", "elem 2 sort [3, 1, 2];", "true");
+        runEvalTest("findsElements", "elem 0 sort [3, 1, 2];", "false");
+        runCheckedEvalTest("findsElements", "elem 1.5 [2.5, 1.5];", "true");
+        runCheckedEvalTest("findsElements", "elem [1] [[2], [1]];", "true");
+        runCheckedEvalTest("findsElements", "elem true tl [true];", "false");
+        runCheckedEvalTest("findsElements", "not elem 1 [2] and true;", "true");
+    }
+
+    @Test
+    public void rejectsIllTypedOperands() throws ParseException
+    {
+        for (String program : new String[] { "sort [true];", "sort 3;",
+                "elem 1 [1.0];", "elem 1 2;" })
+            assertFalse(program, new MFLParser(program).parse().typeCheck());
+    }
+
+    @Test
+    public void agreesAcrossBackends()
+    {
+        Random rnd = new Random(42);
+        // Wide literals are slow to check, so the parallel sort is left to
+        // searchesSortedListsByBisection.
+        int[] xs = new int[300];
+        StringBuilder sb = new StringBuilder("val xs := [");
+        for (int i = 0; i < xs.length; i++)
+        {
+            xs[i] = rnd.nextInt(1000) - 500;
+            sb.append(i > 0 ? ", " : "").append(xs[i]);
+        }
+        sb.append("]; val s := sort xs; ");
+        int[] sorted = xs.clone();
+        Arrays.sort(sorted);
+        String expected = "[" + sorted[0] + ", " + sorted[1] + ", "
+                + xs.length + ", 0, " + sorted[xs.length - 1] + "]";
+        boolean found = Arrays.stream(sorted).anyMatch(x -> x == 499);
+        runBackendTest("agreesAcrossBackends",
+                sb + "[hd s, hd tl s, len s, sum s - sum xs, max s];", expected);
+        runBackendTest("agreesAcrossBackends", sb + "elem 499 s;",
+                String.valueOf(found));
+    }
+
+    @Test
+    public void searchesSortedListsByBisection()
+    {
+        Random rnd = new Random(7);
+        ListValue ints = new ListValue();
+        ListValue reals = new ListValue();
+        for (int i = 0; i < 2 * SortedLists.PARALLEL_THRESHOLD; i++)
+        {
+            ints.add(rnd.nextInt(500));
+            reals.add(rnd.nextInt(500) / 4.0);
+        }
+        ListValue si = SortedLists.sort(ints);
+        ListValue sr = SortedLists.sort(reals);
+        assertEquals(ints.size(), si.size());
+        Object[] is = ints.toArray();
+        Object[] rs = reals.toArray();
+        Arrays.sort(is);
+        Arrays.sort(rs);
+        assertTrue(Arrays.equals(is, si.toArray()));
+        assertTrue(Arrays.equals(rs, sr.toArray()));
+        // Sorting a sorted list gives it back.
+        assertSame(si, SortedLists.sort(si));
+
+        for (int key = -1; key <= 501; key++)
+        {
+            assertEquals(ints.contains(key), SortedLists.contains(key, si));
+            assertEquals(ints.contains(key), SortedLists.contains(key, ints));
+            double r = key / 4.0;
+            assertEquals(reals.contains(r), SortedLists.contains(r, sr));
+        }
+        assertNull(SortedLists.sort(new ListValue(Arrays.asList(true))));
+    }
+}
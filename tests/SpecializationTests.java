@@ -0,0 +1,116 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ast.Backend;
+import ast.EvaluationException;
+import ast.SyntaxTree;
+import environment.Environment;
+import lexer.Token;
+import lexer.TokenType;
+import parser.MFLParser;
+import parser.ParseException;
+
+/**
+ * Tests that nodes which specialize themselves keep producing the same
+ * results, including when the operand types change after specialization.
+ */
+public class SpecializationTests
+{
+    private static final Token X = new Token(TokenType.ID, "x");
+
+    private SyntaxTree parseWithX(String statement, Object x)
+            throws ParseException
+    {
+        SyntaxTree ast = new MFLParser(statement).parse();
+        Environment env = new Environment();
+        env.updateEnvironment(X, x);
+        ast.setEnvironment(env);
+        return ast;
+    }
+
+    @Test
+    public void repeatedArith() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = parseWithX("x * 2 + 1 - x mod 3;", 7);
+        for (int i = 0; i < 3; i++)
+            assertEquals("repeatedArith:", "14", ast.evaluate().toString());
+    }
+
+    @Test
+    public void arithFallback() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = parseWithX("x + 1;", 2);
+        assertEquals("arithFallback:", "3", ast.evaluate().toString());
+        assertEquals("arithFallback:", "3", ast.evaluate().toString());
+
+        // The node specialized to integers must give way to reals.
+        ast.getEnvironment().updateEnvironment(X, 2.5);
+        assertEquals("arithFallback:", "3.5", ast.evaluate().toString());
+        ast.getEnvironment().updateEnvironment(X, 4);
+        assertEquals("arithFallback:", "5", ast.evaluate().toString());
+    }
+
+    @Test
+    public void realArithFallback() throws ParseException, EvaluationException
+    {
+        // Every backend, including the tree walker that specializes, must
+        // give an int once a node specialized to reals sees two ints.
+        for (Backend b : Backend.values())
+        {
+            SyntaxTree ast = parseWithX("x + 1;", 2.5);
+            ast.setBackend(b);
+            assertEquals(b + ":", "3.5", ast.evaluate().toString());
+            assertEquals(b + ":", "3.5", ast.evaluate().toString());
+            ast.getEnvironment().updateEnvironment(X, 4);
+            assertEquals(b + ":", "5", ast.evaluate().toString());
+
+            ast = parseWithX("x / 2;", 5.0);
+            ast.setBackend(b);
+            assertEquals(b + ":", "2.5", ast.evaluate().toString());
+            assertEquals(b + ":", "2.5", ast.evaluate().toString());
+            ast.getEnvironment().updateEnvironment(X, 5);
+            assertEquals(b + ":", "2", ast.evaluate().toString());
+            ast.getEnvironment().updateEnvironment(X, 5.0);
+            assertEquals(b + ":", "2.5", ast.evaluate().toString());
+        }
+    }
+
+    @Test
+    public void mixedRealArith() throws ParseException, EvaluationException
+    {
+        // An int on the left of a node specialized to reals is widened.
+        SyntaxTree ast = parseWithX("(x * 2.0) + (x / 2.0);", 2.0);
+        ast.setBackend(Backend.TREE);
+        assertEquals("mixedRealArith:", "5.0", ast.evaluate().toString());
+        ast.getEnvironment().updateEnvironment(X, 2);
+        assertEquals("mixedRealArith:", "5.0", ast.evaluate().toString());
+    }
+
+    @Test
+    public void compareFallback() throws ParseException, EvaluationException
+    {
+        SyntaxTree ast = parseWithX("x = 2;", 2);
+        assertEquals("compareFallback:", "true", ast.evaluate().toString());
+        assertEquals("compareFallback:", "true", ast.evaluate().toString());
+
+        ast.getEnvironment().updateEnvironment(X, true);
+        assertEquals("compareFallback:", "false", ast.evaluate().toString());
+    }
+}
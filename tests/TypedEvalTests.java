@@ -0,0 +1,64 @@
+/*
+ *   Copyright (C) 2022 -- 2025  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+import org.junit.Test;
+
+/**
+ * Tests evaluation of type checked programs, which use the unboxed
+ * evaluation paths.
+ */
+public class TypedEvalTests extends LangTest
+{
+    @Test
+    public void intArith()
+    {
+        runCheckedEvalTest("intArith", "3 - 5 + 6 * 2 mod 5;", "0");
+        runCheckedEvalTest("intDiv", "7 / 2;", "3");
+    }
+
+    @Test
+    public void realArith()
+    {
+        runCheckedEvalTest("realArith", "5.2 / 0.3 + .4 - 1.0 * 6.0;",
+                "11.733333333333334");
+        runCheckedEvalTest("negReal", "-2.5 * 2.0;", "-5.0");
+    }
+
+    @Test
+    public void relational()
+    {
+        runCheckedEvalTest("intLT", "3 < 5;", "true");
+        runCheckedEvalTest("realGTE", "3.1415 >= 5.0;", "false");
+        runCheckedEvalTest("boolEq", "true = (2 > 3);", "false");
+        runCheckedEvalTest("listEq", "[1, 2] = [1, 2];", "true");
+    }
+
+    @Test
+    public void logical()
+    {
+        runCheckedEvalTest("andOr", "2 < 3 and not (2 = 2) or 6 > 4;", "true");
+    }
+
+    @Test
+    public void typedBindings()
+    {
+        runCheckedEvalTest("letArith", "let x := 5 in let y := 7 in x * y;",
+                "35");
+        runCheckedEvalTest("valArith",
+                "val x := 3 + 5 * 2;\nval y := 4 + x;\nx > y;", "false");
+        runCheckedEvalTest("hdArith", "hd([3, 5]) + len([1, 2]);", "5");
+    }
+}